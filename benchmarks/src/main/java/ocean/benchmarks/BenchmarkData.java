@@ -0,0 +1,29 @@
+package ocean.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import ocean.OceanPicture;
+
+// Gemeinsame Testdaten der Benchmarks
+public final class BenchmarkData {
+
+	private BenchmarkData() {
+	}
+
+	// Bild mit blaeulichem Rauschen, komprimiert aehnlich schlecht wie echte Submarine-Fotos
+	public static BufferedImage noiseImage(int width, int height, Random random) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				img.setRGB(x, y, (random.nextInt(40) << 16) | (random.nextInt(80) << 8) | (80 + random.nextInt(120)));
+			}
+		}
+		return img;
+	}
+
+	// PNG des Bildes als Hex-String (Format der picture-Nachricht)
+	public static String noisePictureHex(int width, int height, Random random) {
+		return OceanPicture.convertImage2HexString(noiseImage(width, height, random));
+	}
+}
@@ -0,0 +1,116 @@
+package ocean.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Vergleicht zwei JMH-Ergebnisdateien (-rf json) und meldet Verschlechterungen.
+//
+// Verglichen werden je Benchmark und Parameterkombination die Laufzeit bzw. der
+// Durchsatz (primaryMetric, unter Beruecksichtigung des Modus) und die Allokation
+// pro Operation (gc.alloc.rate.norm aus -prof gc).
+//
+//   java -cp benchmarks/target/benchmarks.jar ocean.benchmarks.BenchmarkRegressionCheck \
+//        baseline.json results.json [schwelleProzent=10] [allocSchwelleProzent=10]
+//
+// Exit-Code 1, falls mindestens ein Benchmark schlechter als die Schwelle ist.
+public class BenchmarkRegressionCheck {
+
+	private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Aufruf: BenchmarkRegressionCheck <baseline.json> <results.json> [schwelle%] [allocSchwelle%]");
+			System.exit(2);
+		}
+		double threshold = args.length >= 3 ? Double.parseDouble(args[2]) : 10.0;
+		double allocThreshold = args.length >= 4 ? Double.parseDouble(args[3]) : threshold;
+
+		Map<String, JSONObject> baseline = load(Path.of(args[0]));
+		Map<String, JSONObject> current = load(Path.of(args[1]));
+
+		int regressions = 0;
+		for (Map.Entry<String, JSONObject> e : current.entrySet()) {
+			JSONObject base = baseline.get(e.getKey());
+			if (base == null) {
+				System.out.printf("NEU        %s%n", e.getKey());
+				continue;
+			}
+			JSONObject cur = e.getValue();
+			boolean higherIsBetter = "thrpt".equals(cur.optString("mode"));
+			double b = base.getJSONObject("primaryMetric").getDouble("score");
+			double c = cur.getJSONObject("primaryMetric").getDouble("score");
+			String unit = cur.getJSONObject("primaryMetric").optString("scoreUnit");
+			double change = percentChange(b, c, higherIsBetter);
+			boolean slower = change > threshold;
+
+			double ba = allocation(base);
+			double ca = allocation(cur);
+			double allocChange = ba >= 0 && ca >= 0 ? percentChange(ba, ca, false) : 0;
+			// Allokationen unter 1 Byte/op gelten als allokationsfrei (Messrauschen)
+			boolean moreAlloc = ca >= 1 && allocChange > allocThreshold;
+
+			if (slower || moreAlloc) {
+				regressions++;
+			}
+			System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%)%s%n",
+					slower || moreAlloc ? "SCHLECHTER" : "OK", e.getKey(), b, c, unit, change,
+					ba >= 0 && ca >= 0 ? String.format(", alloc %.0f -> %.0f B/op (%+.1f%%)", ba, ca, allocChange) : "");
+		}
+		for (String key : baseline.keySet()) {
+			if (!current.containsKey(key)) {
+				System.out.printf("FEHLT      %s%n", key);
+			}
+		}
+		System.out.printf("%d Benchmarks verglichen, %d schlechter als %.1f%% (Allokation %.1f%%)%n",
+				current.size(), regressions, threshold, allocThreshold);
+		System.exit(regressions > 0 ? 1 : 0);
+	}
+
+	// Schluessel: Benchmark-Name + sortierte Parameter, z.B. "shipapp.StateJsonBenchmark.buildState{submarines=10}"
+	static Map<String, JSONObject> load(Path file) throws IOException {
+		JSONArray results = new JSONArray(Files.readString(file, StandardCharsets.UTF_8));
+		Map<String, JSONObject> byKey = new LinkedHashMap<>();
+		for (int i = 0; i < results.length(); i++) {
+			JSONObject r = results.getJSONObject(i);
+			Map<String, Object> params = new TreeMap<>();
+			JSONObject p = r.optJSONObject("params");
+			if (p != null) {
+				params.putAll(p.toMap());
+			}
+			byKey.put(r.getString("benchmark") + (params.isEmpty() ? "" : params.toString()), r);
+		}
+		return byKey;
+	}
+
+	// positiv = schlechter
+	static double percentChange(double baseline, double current, boolean higherIsBetter) {
+		if (baseline == 0) {
+			return 0;
+		}
+		double change = (current - baseline) / baseline * 100.0;
+		return higherIsBetter ? -change : change;
+	}
+
+	// Bytes pro Operation oder -1, falls ohne -prof gc gemessen
+	static double allocation(JSONObject result) {
+		JSONObject secondary = result.optJSONObject("secondaryMetrics");
+		if (secondary == null) {
+			return -1;
+		}
+		for (String key : secondary.keySet()) {
+			// aeltere JMH-Versionen setzen ein "·" vor den Namen
+			if (key.endsWith(ALLOC_METRIC)) {
+				return secondary.getJSONObject(key).getDouble("score");
+			}
+		}
+		return -1;
+	}
+}
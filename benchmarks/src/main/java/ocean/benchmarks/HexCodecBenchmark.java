@@ -0,0 +1,82 @@
+package ocean.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocean.HexCodec;
+
+// HexCodec gegen HexFormat: Dekodieren aus String bzw. ASCII-Bytes in einen
+// wiederverwendeten Puffer und Hex -> Base64 ohne Zwischen-Array
+//
+//   java -jar benchmarks/target/benchmarks.jar HexCodecBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexCodecBenchmark {
+
+	// Breite x Hoehe des Bildes
+	@Param({ "64x48", "320x240" })
+	public String size;
+
+	private String hex;
+	private byte[] ascii;
+	private byte[] buffer;
+
+	@Setup
+	public void setup() {
+		String[] wh = size.split("x");
+		hex = BenchmarkData.noisePictureHex(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), new Random(42));
+		ascii = hex.getBytes(StandardCharsets.US_ASCII);
+		buffer = new byte[hex.length() / 2];
+	}
+
+	@Benchmark
+	public byte[] hexFormatDecode() {
+		return HexFormat.of().parseHex(hex);
+	}
+
+	@Benchmark
+	public byte[] decodeString() {
+		HexCodec.decode(hex, 0, hex.length(), buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] decodeAscii() {
+		HexCodec.decode(ascii, 0, ascii.length, buffer, 0);
+		return buffer;
+	}
+
+	@Benchmark
+	public String hexFormatBase64() {
+		return Base64.getEncoder().encodeToString(HexFormat.of().parseHex(hex));
+	}
+
+	@Benchmark
+	public String hexToBase64() {
+		return HexCodec.hexToBase64(hex);
+	}
+
+	@Benchmark
+	public String hexToBase64Ascii() {
+		return HexCodec.hexToBase64(ascii, 0, ascii.length);
+	}
+}
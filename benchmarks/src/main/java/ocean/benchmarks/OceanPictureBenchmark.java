@@ -0,0 +1,55 @@
+package ocean.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocean.OceanPicture;
+
+// Hex-String <-> BufferedImage, wie fuer jede picture-Nachricht eines Submarines
+//
+//   java -jar benchmarks/target/benchmarks.jar OceanPictureBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OceanPictureBenchmark {
+
+	// Breite x Hoehe des Bildes
+	@Param({ "64x48", "320x240" })
+	public String size;
+
+	private BufferedImage image;
+	private String hex;
+
+	@Setup
+	public void setup() {
+		String[] wh = size.split("x");
+		image = BenchmarkData.noiseImage(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), new Random(42));
+		hex = OceanPicture.convertImage2HexString(image);
+	}
+
+	@Benchmark
+	public BufferedImage hexToImage() {
+		return OceanPicture.convertHexString2Image(hex);
+	}
+
+	@Benchmark
+	public String imageToHex() {
+		return OceanPicture.convertImage2HexString(image);
+	}
+}
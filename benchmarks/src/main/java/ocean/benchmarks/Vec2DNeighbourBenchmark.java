@@ -0,0 +1,135 @@
+package ocean.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ocean.PackedVec2D;
+import ocean.SectorNeighbourhood;
+import ocean.SectorVisitor;
+import ocean.Vec2D;
+
+// Vergleich Vec2D.getNeighbours() mit den allokationsfreien Varianten
+// aus SectorNeighbourhood (Visitor, gepackter Cursor, Index-Schleife)
+// sowie Radius-Abfragen (exploreRadius aus oceanserver.conf)
+//
+// Aufruf mit Allokationsprofil:
+//   java -jar benchmarks/target/benchmarks.jar Vec2DNeighbourBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vec2DNeighbourBenchmark {
+
+	@Param({ "2" })
+	public int radius;
+
+	private Vec2D sector;
+	private long packedSector;
+	private final SectorNeighbourhood.Cursor cursor = new SectorNeighbourhood.Cursor();
+	private long sum;
+
+	// einmal angelegt: ein Lambda pro Aufruf wuerde die Allokationen der
+	// Visitor-Varianten verfaelschen (es faengt this bzw. den Blackhole)
+	private final SectorVisitor sumVisitor = (x, y) -> {
+		sum += x + y;
+		return true;
+	};
+
+	@Setup
+	public void setup() {
+		sector = new Vec2D(42, 17);
+		packedSector = sector.toPacked();
+	}
+
+	// ---------------- 8er-Nachbarschaft ----------------
+
+	@Benchmark
+	public void neighboursArray(Blackhole bh) {
+		for (Vec2D n : sector.getNeighbours()) {
+			bh.consume(n.getX() + n.getY());
+		}
+	}
+
+	@Benchmark
+	public long neighboursVisitor() {
+		sum = 0;
+		sector.forEachNeighbour(sumVisitor);
+		return sum;
+	}
+
+	@Benchmark
+	public void neighboursCursor(Blackhole bh) {
+		cursor.neighbours(packedSector);
+		while (cursor.hasNext()) {
+			long n = cursor.nextLong();
+			bh.consume(PackedVec2D.x(n) + PackedVec2D.y(n));
+		}
+	}
+
+	@Benchmark
+	public long neighboursIndexLoop() {
+		long s = 0;
+		for (int i = 0; i < 8; i++) {
+			long n = PackedVec2D.neighbour(packedSector, i);
+			s += PackedVec2D.x(n) + PackedVec2D.y(n);
+		}
+		return s;
+	}
+
+	// ---------------- Radius-Abfrage ----------------
+
+	// so wuerde man es heute mit getNeighbours() loesen: Breitensuche mit HashSet
+	@Benchmark
+	public int radiusWithArrays() {
+		Set<Vec2D> seen = new HashSet<>();
+		Set<Vec2D> frontier = new HashSet<>();
+		seen.add(sector);
+		frontier.add(sector);
+		for (int k = 0; k < radius; k++) {
+			Set<Vec2D> next = new HashSet<>();
+			for (Vec2D v : frontier) {
+				for (Vec2D n : v.getNeighbours()) {
+					if (seen.add(n)) {
+						next.add(n);
+					}
+				}
+			}
+			frontier = next;
+		}
+		return seen.size();
+	}
+
+	@Benchmark
+	public long radiusVisitor() {
+		sum = 0;
+		SectorNeighbourhood.forEachInRadius(sector.getX(), sector.getY(), radius, sumVisitor);
+		return sum;
+	}
+
+	@Benchmark
+	public long radiusCursor() {
+		long s = 0;
+		cursor.radius(packedSector, radius);
+		while (cursor.hasNext()) {
+			long n = cursor.nextLong();
+			s += PackedVec2D.x(n) + PackedVec2D.y(n);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,73 @@
+package ocean.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocean.Vec;
+import ocean.Vec2D;
+
+// JSON-Hin- und Rueckweg fuer Vec/Vec2D, wie bei jeder Protokollnachricht
+// (pos, dir, sector, abspos, Messpunkte in measure)
+//
+//   java -jar benchmarks/target/benchmarks.jar VecJsonBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VecJsonBenchmark {
+
+	private Vec vec;
+	private Vec2D vec2d;
+	private String vecJson;
+	private String vec2dJson;
+
+	@Setup
+	public void setup() {
+		vec = new Vec(4711, 815, -120);
+		vec2d = new Vec2D(47, 8);
+		vecJson = vec.toJson().toString();
+		vec2dJson = vec2d.toJson().toString();
+	}
+
+	@Benchmark
+	public String vecToJson() {
+		return vec.toJson().toString();
+	}
+
+	@Benchmark
+	public Vec vecFromJson() {
+		return Vec.fromJson(vecJson);
+	}
+
+	@Benchmark
+	public Vec vecRoundTrip() {
+		return Vec.fromJson(vec.toJson().toString());
+	}
+
+	@Benchmark
+	public String vec2dToJson() {
+		return vec2d.toJson().toString();
+	}
+
+	@Benchmark
+	public Vec2D vec2dFromJson() {
+		return Vec2D.fromJson(vec2dJson);
+	}
+
+	@Benchmark
+	public Vec2D vec2dRoundTrip() {
+		return Vec2D.fromJson(vec2d.toJson().toString());
+	}
+}
@@ -0,0 +1,41 @@
+package shipapp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verbundene Socket-Paare über localhost, damit Benchmarks echte
+ * {@link ShipAppApiServer.SubmarineSession}s erzeugen können.
+ */
+final class BenchmarkSockets implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    BenchmarkSockets() throws IOException {
+        server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @return serverseitiges Ende einer neuen Verbindung
+     */
+    Socket accept() throws IOException {
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        Socket accepted = server.accept();
+        sockets.add(client);
+        sockets.add(accepted);
+        return accepted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Socket s : sockets) {
+            s.close();
+        }
+        server.close();
+    }
+}
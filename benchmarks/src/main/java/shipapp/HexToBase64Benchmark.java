@@ -0,0 +1,63 @@
+package shipapp;
+
+import ocean.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex -> Base64 für die Live-View (GET /api/submarine/picture).
+ *
+ * Vergleicht die beiden Wege in {@link ShipAppApiServer} (Bild aus der Datenbank
+ * bzw. aus der aktiven Session) mit {@link HexFormat} als Referenz.
+ * Liegt im Paket shipapp, weil die Methoden package-private sind.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar HexToBase64Benchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexToBase64Benchmark {
+
+    @Param({ "64x48", "320x240" })
+    public String size;
+
+    private String hex;
+
+    @Setup
+    public void setup() {
+        String[] wh = size.split("x");
+        hex = BenchmarkData.noisePictureHex(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), new Random(42));
+    }
+
+    @Benchmark
+    public String databasePicture() {
+        return ShipAppApiServer.hexToBase64(hex);
+    }
+
+    @Benchmark
+    public String sessionPicture() {
+        return Base64.getEncoder().encodeToString(ShipAppApiServer.hexStringToByteArray(hex));
+    }
+
+    @Benchmark
+    public String hexFormatReference() {
+        return Base64.getEncoder().encodeToString(HexFormat.of().parseHex(hex));
+    }
+}
@@ -0,0 +1,133 @@
+package shipapp;
+
+import ocean.Vec;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verarbeitung einer Protokollzeile vom Parsen bis zum Handler, für Nachrichten des
+ * Ocean-Servers (Ship-Port) und der Submarines. Ohne Datenbank; das Log steht auf WARN,
+ * damit nur der Dispatch selbst gemessen wird.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar MessageDispatchBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDispatchBenchmark {
+
+    @State(Scope.Thread)
+    public static class ShipState {
+
+        @Param({ "move2d", "scanned", "radarresponse", "message" })
+        public String cmd;
+
+        ShipAppApiServer server;
+        String line;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            AsyncLog.setLevel(AsyncLog.Level.WARN);
+            server = new ShipAppApiServer();
+            line = shipMessage(cmd).toString();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SubmarineState {
+
+        // measure: Anzahl Messpunkte je Nachricht
+        @Param({ "ready", "measure" })
+        public String cmd;
+
+        @Param({ "10" })
+        public int points;
+
+        BenchmarkSockets sockets;
+        ShipAppApiServer.SubmarineSession session;
+        String line;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            AsyncLog.setLevel(AsyncLog.Level.WARN);
+            ShipAppApiServer server = new ShipAppApiServer();
+            sockets = new BenchmarkSockets();
+            session = server.new SubmarineSession(sockets.accept());
+            session.handleSubmarineMessage(submarineReady("bench-1", 0).toString());
+            line = "ready".equals(cmd) ? submarineReady("bench-1", 1).toString() : submarineMeasure(points).toString();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            sockets.close();
+        }
+    }
+
+    @Benchmark
+    public void shipMessage(ShipState state) {
+        state.server.handleShipMessage(state.line);
+    }
+
+    @Benchmark
+    public void submarineMessage(SubmarineState state) {
+        state.session.handleSubmarineMessage(state.line);
+    }
+
+    static JSONObject shipMessage(String cmd) {
+        JSONObject msg = new JSONObject().put("cmd", cmd);
+        switch (cmd) {
+            case "move2d" -> msg.put("sector", new Vec2D(47, 11).toJson())
+                    .put("dir", new Vec2D(1, 0).toJson())
+                    .put("abspos", new Vec2D(4750, 1150).toJson());
+            case "scanned" -> msg.put("id", "ship-1").put("depth", 142).put("stddev", 1.25);
+            case "radarresponse" -> {
+                JSONArray echos = new JSONArray();
+                for (Vec2D n : new Vec2D(47, 11).getNeighbours()) {
+                    echos.put(new JSONObject().put("sector", n.toJson()).put("height", -120).put("ground", "Water"));
+                }
+                msg.put("echos", echos);
+            }
+            default -> msg.put("type", "info").put("text", "Benchmark");
+        }
+        return msg;
+    }
+
+    static JSONObject submarineReady(String id, int distance) {
+        return new JSONObject()
+                .put("cmd", "ready")
+                .put("id", id)
+                .put("pos", new Vec(4711, 815, -120).toJson())
+                .put("dir", new Vec(1, 0, 0).toJson())
+                .put("depth", 140)
+                .put("distance", distance);
+    }
+
+    static JSONObject submarineMeasure(int points) {
+        Random random = new Random(42);
+        JSONArray vecs = new JSONArray();
+        for (int i = 0; i < points; i++) {
+            vecs.put(new Vec(4700 + random.nextInt(100), 800 + random.nextInt(100), -100 - random.nextInt(50)).toJson());
+        }
+        return new JSONObject().put("cmd", "measure").put("vecs", vecs);
+    }
+}
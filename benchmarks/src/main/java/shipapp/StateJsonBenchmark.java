@@ -0,0 +1,75 @@
+package shipapp;
+
+import ocean.Vec2D;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisierung von GET /api/state (Zustand aufbauen, JSON-Text, UTF-8-Bytes),
+ * abhängig von der Anzahl verbundener Submarines. Das Frontend fragt den Zustand
+ * regelmäßig ab.
+ *
+ *   java -jar benchmarks/target/benchmarks.jar StateJsonBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateJsonBenchmark {
+
+    @Param({ "0", "10", "100" })
+    public int submarines;
+
+    private ShipAppApiServer server;
+    private BenchmarkSockets sockets;
+
+    @Setup
+    public void setup() throws IOException {
+        AsyncLog.setLevel(AsyncLog.Level.WARN);
+        server = new ShipAppApiServer();
+        server.handleShipMessage(new JSONObject()
+                .put("cmd", "launched")
+                .put("id", "ship-1")
+                .put("sector", new Vec2D(47, 11).toJson())
+                .put("abspos", new Vec2D(4750, 1150).toJson())
+                .toString());
+        server.handleShipMessage(MessageDispatchBenchmark.shipMessage("move2d").toString());
+        sockets = new BenchmarkSockets();
+        for (int i = 0; i < submarines; i++) {
+            ShipAppApiServer.SubmarineSession session = server.new SubmarineSession(sockets.accept());
+            session.handleSubmarineMessage(MessageDispatchBenchmark.submarineReady("bench-" + i, i).toString());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sockets.close();
+    }
+
+    @Benchmark
+    public JSONObject buildState() {
+        return server.buildStateJson();
+    }
+
+    @Benchmark
+    public byte[] serializeState() {
+        return server.buildStateJson().toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
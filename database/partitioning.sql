@@ -0,0 +1,92 @@
+-- Ocean Explorer - Zeitpartitionierung der wachsenden Tabellen (optional)
+--
+-- Stellt measurements, submarine_positions und submarine_pictures auf
+-- RANGE-Partitionen über TO_DAYS(recorded_at) um. Neue Partitionen (Monat oder Tag)
+-- legt die ShipApp selbst an, alte entfernt sie nach der Aufbewahrungsdauer
+-- (shipapp.PartitionMaintenance, -Dshipapp.retention.days=...).
+--
+-- Einmalig nach schema.sql ausführen:
+--   mysql -u root -p ocean_explorer < database/partitioning.sql
+--
+-- Einschränkungen von MySQL/MariaDB für partitionierte Tabellen:
+-- - keine Fremdschlüssel: die Verweise auf submarines (und duplicate_of bei den
+--   Bildern) entfallen, ON DELETE CASCADE greift für diese Tabellen nicht mehr
+-- - jeder eindeutige Schlüssel muss recorded_at enthalten: Primärschlüssel (id, recorded_at)
+-- - TIMESTAMP mit Millisekunden ist als Partitionsspalte nicht erlaubt, recorded_at wird DATETIME(3)
+--
+-- Die Fremdschlüssel werden über information_schema.REFERENTIAL_CONSTRAINTS gesucht
+-- und gemeinsam entfernt, ihre Namen (z.B. aus einer älteren schema.sql) spielen
+-- keine Rolle; hat eine Tabelle keine mehr, entfällt der Schritt.
+--
+-- Bestehende Zeilen landen in p_old (bis Ende des laufenden Monats), pmax bleibt leer.
+-- Das Umstellen kopiert jede Tabelle einmal und sperrt sie dabei.
+
+USE ocean_explorer;
+
+-- ------------------------------------------------------------
+-- measurements
+-- ------------------------------------------------------------
+SET @sql = (SELECT IFNULL(CONCAT('ALTER TABLE measurements ',
+        GROUP_CONCAT('DROP FOREIGN KEY `', CONSTRAINT_NAME, '`' SEPARATOR ', ')), 'DO 0')
+    FROM information_schema.REFERENTIAL_CONSTRAINTS
+    WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'measurements');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+ALTER TABLE measurements
+    MODIFY recorded_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, recorded_at);
+
+SET @sql = CONCAT('ALTER TABLE measurements PARTITION BY RANGE (TO_DAYS(recorded_at)) (',
+    'PARTITION p_old VALUES LESS THAN (', TO_DAYS(DATE_FORMAT(CURDATE(), '%Y-%m-01') + INTERVAL 1 MONTH), '), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ------------------------------------------------------------
+-- submarine_positions
+-- ------------------------------------------------------------
+SET @sql = (SELECT IFNULL(CONCAT('ALTER TABLE submarine_positions ',
+        GROUP_CONCAT('DROP FOREIGN KEY `', CONSTRAINT_NAME, '`' SEPARATOR ', ')), 'DO 0')
+    FROM information_schema.REFERENTIAL_CONSTRAINTS
+    WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'submarine_positions');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+ALTER TABLE submarine_positions
+    MODIFY recorded_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, recorded_at);
+
+SET @sql = CONCAT('ALTER TABLE submarine_positions PARTITION BY RANGE (TO_DAYS(recorded_at)) (',
+    'PARTITION p_old VALUES LESS THAN (', TO_DAYS(DATE_FORMAT(CURDATE(), '%Y-%m-01') + INTERVAL 1 MONTH), '), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ------------------------------------------------------------
+-- submarine_pictures
+-- Verweise (duplicate_of) zeigen nur wenige Minuten zurück; fällt das Original
+-- mit einer alten Partition weg, liefern die Abfragen für den Verweis kein Bild.
+-- ------------------------------------------------------------
+SET @sql = (SELECT IFNULL(CONCAT('ALTER TABLE submarine_pictures ',
+        GROUP_CONCAT('DROP FOREIGN KEY `', CONSTRAINT_NAME, '`' SEPARATOR ', ')), 'DO 0')
+    FROM information_schema.REFERENTIAL_CONSTRAINTS
+    WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'submarine_pictures');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+ALTER TABLE submarine_pictures
+    MODIFY recorded_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, recorded_at);
+
+SET @sql = CONCAT('ALTER TABLE submarine_pictures PARTITION BY RANGE (TO_DAYS(recorded_at)) (',
+    'PARTITION p_old VALUES LESS THAN (', TO_DAYS(DATE_FORMAT(CURDATE(), '%Y-%m-01') + INTERVAL 1 MONTH), '), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
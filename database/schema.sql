@@ -31,12 +31,20 @@ CREATE TABLE IF NOT EXISTS submarine_positions (
     dir_z DOUBLE,
     depth INT,
     distance INT,
-    recorded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    recorded_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    is_keyframe BOOLEAN NOT NULL DEFAULT TRUE, -- FALSE: nur wegen Bewegung gespeichert (Delta)
     FOREIGN KEY (submarine_id) REFERENCES submarines(id) ON DELETE CASCADE,
     INDEX idx_submarine_id (submarine_id),
-    INDEX idx_recorded_at (recorded_at)
+    INDEX idx_recorded_at (recorded_at),
+    INDEX idx_submarine_time (submarine_id, recorded_at)
 );
 
+-- Bestehende Datenbanken nachrüsten (Keyframes/Deltas, Zeit in ms):
+-- ALTER TABLE submarine_positions
+--     MODIFY recorded_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+--     ADD COLUMN is_keyframe BOOLEAN NOT NULL DEFAULT TRUE AFTER recorded_at,
+--     ADD INDEX idx_submarine_time (submarine_id, recorded_at);
+
 -- Tabelle für Messpunkte (Measure-Daten)
 CREATE TABLE IF NOT EXISTS measurements (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -55,14 +63,26 @@ CREATE TABLE IF NOT EXISTS measurements (
 CREATE TABLE IF NOT EXISTS submarine_pictures (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     submarine_id VARCHAR(100) NOT NULL,
-    picture_hex LONGTEXT NOT NULL,
+    picture_hex LONGTEXT,                   -- NULL bei Duplikaten (siehe duplicate_of)
     file_path VARCHAR(500),
+    content_hash BIGINT,                    -- Länge und CRC32C der PNG-Bytes
+    perceptual_hash BIGINT,                 -- dHash für fast gleiche Bilder
+    duplicate_of BIGINT,                    -- gespeichertes Bild, dem dieses gleicht
     recorded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (submarine_id) REFERENCES submarines(id) ON DELETE CASCADE,
+    FOREIGN KEY (duplicate_of) REFERENCES submarine_pictures(id) ON DELETE CASCADE,
     INDEX idx_submarine_id (submarine_id),
     INDEX idx_recorded_at (recorded_at)
 );
 
+-- Bestehende Datenbanken ohne Duplikat-Spalten nachrüsten:
+-- ALTER TABLE submarine_pictures
+--     MODIFY picture_hex LONGTEXT NULL,
+--     ADD COLUMN content_hash BIGINT AFTER file_path,
+--     ADD COLUMN perceptual_hash BIGINT AFTER content_hash,
+--     ADD COLUMN duplicate_of BIGINT AFTER perceptual_hash,
+--     ADD FOREIGN KEY (duplicate_of) REFERENCES submarine_pictures(id) ON DELETE CASCADE;
+
 -- Tabelle für Crash-Ereignisse
 CREATE TABLE IF NOT EXISTS submarine_crashes (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -90,6 +110,19 @@ CREATE TABLE IF NOT EXISTS submarine_arises (
     INDEX idx_submarine_id (submarine_id)
 );
 
+-- Bereits übertragene Ereignisse des ShipApp-Journals (shipapp.EventJournal)
+-- Verhindert doppelte Zeilen, wenn Ereignisse nach einem Absturz erneut übertragen
+-- werden; row_id ist die ID einer neu angelegten Bildzeile (für duplicate_of).
+-- Einträge älter als ein Tag entfernt die ShipApp selbst.
+CREATE TABLE IF NOT EXISTS journal_applied (
+    journal_id CHAR(36) NOT NULL,
+    seq BIGINT NOT NULL,
+    row_id BIGINT,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (journal_id, seq),
+    INDEX idx_applied_at (applied_at)
+);
+
 -- View für aktuelle Submarine-Übersicht
 CREATE OR REPLACE VIEW submarine_overview AS
 SELECT 
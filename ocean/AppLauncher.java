@@ -1,10 +1,43 @@
 package ocean;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import org.json.JSONObject;
+
 public class AppLauncher {
 
+	// Threads zum parallelen Starten von Submarine-Prozessen
+	private static final ExecutorService launchExecutor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "AppLauncher-Launch");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// optionaler Pool vorgewaermter JVMs (siehe enableWarmPool)
+	private static volatile SubmarineProcessPool warmPool;
+	private static volatile String warmPoolJar;
+
+	// optional: AppCDS-Archive fuer Submarine-JVMs (-Docean.cds=true, -Docean.cds.dir=.cds)
+	private static volatile ClassDataSharing cds = Boolean.getBoolean("ocean.cds")
+			? new ClassDataSharing(new File(System.getProperty("ocean.cds.dir", ".cds")))
+			: null;
+	// zusaetzliche JVM-Optionen fuer Submarine-JVMs (-Docean.submarine.jvmflags="-Xmx256m ...")
+	private static volatile List<String> jvmFlags = ClassDataSharing.parseFlags(
+			System.getProperty("ocean.submarine.jvmflags"));
+
+	// CDS-Art je laufendem Prozess (pid) und Startzeiten je Art
+	private static final Map<Long, String> launchModes = new ConcurrentHashMap<>();
+	private static final Map<String, long[]> startupStats = new TreeMap<>();
+
 	// Starten Submarine-Anwendung, die im Working-Directory der Anwendung
 	// (=Projektverzeichnis) liegt
 	public static boolean startSubmarine(String shipID, String shipHost, int shipPort, String oceanSrvHost,
@@ -15,32 +48,25 @@ public class AppLauncher {
 	// Starten Submarine-Anwendung, die im submarinePath liegt (nur der reine Pfad)
 	public static boolean startSubmarine(String submarinePath, String shipID, String shipHost, int shipPort,
 			String oceanSrvHost, int oceanSrvPort) {
-		String submarine = "submarine.jar";
-		if (submarinePath != null && !submarinePath.isEmpty()) {
-			if ( !submarinePath.endsWith("\\") && !submarinePath.endsWith("/")) {
-					submarinePath += "/";
-			}
-			submarine = submarinePath + submarine;
-		}
+		String submarine = submarineJar(submarinePath);
 		ArrayList<String> cmd = new ArrayList<>();
 		String javaExecutablePath = ProcessHandle.current().info().command().orElseThrow();
 		System.out.println("javaExecutablePath:"+javaExecutablePath);
 		System.out.println(submarine);
-		cmd.add(javaExecutablePath); 
+		cmd.add(javaExecutablePath);
 		cmd.add("--add-exports");
 		cmd.add("java.desktop/sun.awt=ALL-UNNAMED");
+		cmd.addAll(jvmFlags);
+		ClassDataSharing.Mode cdsMode = addCdsFlags(cmd, submarine, "jar");
 		cmd.add("-jar");
 		cmd.add(submarine);
-		cmd.add("-shipid=" + shipID);
-		cmd.add("-shiphost=" + shipHost);
-		cmd.add("-shipport=" + shipPort);
-		cmd.add("-oceanhost=" + oceanSrvHost);
-		cmd.add("-oceanport=" + oceanSrvPort);
+		cmd.addAll(submarineArgs(shipID, shipHost, shipPort, oceanSrvHost, oceanSrvPort));
 
 		ProcessBuilder pb = new ProcessBuilder(cmd);
 		pb.inheritIO();
 		try {
 			Process p = pb.start();
+			watchDump(p, cdsMode, submarine, "jar");
 			boolean rc = p.waitFor(1000, TimeUnit.MILLISECONDS);
 			int exitVal = 1;
 			try {
@@ -52,7 +78,7 @@ public class AppLauncher {
 			if (exitVal!=0) {
 				return false;
 			}
-			
+
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -60,4 +86,177 @@ public class AppLauncher {
 
 	}
 
+	// Startet die Submarine-Anwendung asynchron, ohne den Aufrufer zu blockieren.
+	//
+	// ready wird vom Aufrufer abgeschlossen, sobald die ready-Nachricht des neuen
+	// Submarines am Submarine-Server eintrifft (Wert = Submarine-ID).
+	// Beendet sich der Prozess vorher, wird ready mit einer Exception abgeschlossen
+	// (ProcessHandle.onExit statt festem Warten). Mehrere Starts laufen parallel.
+	// Ist ein Pool vorgewaermter JVMs aktiv, wird zuerst dort eine JVM entnommen.
+	public static CompletableFuture<String> startSubmarineAsync(String submarinePath, String shipID, String shipHost,
+			int shipPort, String oceanSrvHost, int oceanSrvPort, CompletableFuture<String> ready) {
+		String submarine = submarineJar(submarinePath);
+		List<String> args = submarineArgs(shipID, shipHost, shipPort, oceanSrvHost, oceanSrvPort);
+		long startedAt = System.nanoTime();
+		launchExecutor.execute(() -> {
+			try {
+				Process p = null;
+				String mode = null;
+				SubmarineProcessPool pool = warmPool;
+				if (pool != null && submarine.equals(warmPoolJar)) {
+					p = pool.acquire(args);
+					if (p != null) {
+						mode = "pool/" + launchModes.getOrDefault(p.pid(), ClassDataSharing.Mode.Off.name());
+					}
+				}
+				if (p == null) {
+					List<String> cmd = javaCommand();
+					ClassDataSharing.Mode cdsMode = addCdsFlags(cmd, submarine, "jar");
+					cmd.add("-jar");
+					cmd.add(submarine);
+					cmd.addAll(args);
+					ProcessBuilder pb = new ProcessBuilder(cmd);
+					pb.inheritIO();
+					p = pb.start();
+					watchDump(p, cdsMode, submarine, "jar");
+					mode = "jar/" + cdsMode.name();
+				}
+				final long pid = p.pid();
+				final String launchMode = mode;
+				ready.thenRun(() -> recordStartup(launchMode, System.nanoTime() - startedAt));
+				p.onExit().thenAccept(exited -> ready.completeExceptionally(new IllegalStateException(
+						"Submarine-Prozess " + pid + " beendet mit Code " + exited.exitValue())));
+			} catch (Exception e) {
+				ready.completeExceptionally(e);
+			}
+		});
+		return ready;
+	}
+
+	// Haelt size vorgestartete JVMs fuer submarine.jar im submarinePath bereit.
+	// size <= 0 schaltet den Pool ab.
+	public static synchronized void enableWarmPool(String submarinePath, int size) {
+		if (warmPool != null) {
+			warmPool.close();
+			warmPool = null;
+		}
+		if (size <= 0) {
+			return;
+		}
+		String submarine = submarineJar(submarinePath);
+		warmPoolJar = submarine;
+		warmPool = new SubmarineProcessPool(() -> {
+			List<String> cmd = javaCommand();
+			ClassDataSharing.Mode cdsMode = addCdsFlags(cmd, submarine, "pool");
+			cmd.add("-cp");
+			cmd.add(System.getProperty("java.class.path"));
+			cmd.add(SubmarineBootstrap.class.getName());
+			cmd.add(new File(submarine).getAbsolutePath());
+			ProcessBuilder pb = new ProcessBuilder(cmd);
+			pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+			Process p = pb.start();
+			watchDump(p, cdsMode, submarine, "pool");
+			return p;
+		}, size, launchExecutor);
+	}
+
+	// Schaltet AppCDS fuer Submarine-JVMs ein (archiveDir = Ablageort der Archive)
+	// oder aus (archiveDir = null). Wirkt auf alle folgenden Starts.
+	public static void setClassDataSharing(File archiveDir) {
+		cds = archiveDir != null ? new ClassDataSharing(archiveDir) : null;
+	}
+
+	// Zusaetzliche JVM-Optionen fuer alle folgenden Submarine-Starts
+	public static void setJvmFlags(List<String> flags) {
+		jvmFlags = flags != null ? List.copyOf(flags) : List.of();
+	}
+
+	// Startzeiten (Start bis ready-Nachricht) je Startart, z.B. "jar/Off", "jar/Shared", "pool/Shared".
+	// gainMs = mittlere Startzeit ohne CDS minus mittlere Startzeit mit Archiv
+	public static JSONObject getStartupStatsJson() {
+		JSONObject jo = new JSONObject();
+		synchronized (startupStats) {
+			for (Map.Entry<String, long[]> e : startupStats.entrySet()) {
+				long[] v = e.getValue();
+				jo.put(e.getKey(), new JSONObject()
+						.put("count", v[0])
+						.put("avgMs", v[0] > 0 ? v[1] / v[0] : 0)
+						.put("minMs", v[2])
+						.put("maxMs", v[3]));
+			}
+		}
+		JSONObject off = jo.optJSONObject("jar/Off");
+		JSONObject shared = jo.optJSONObject("jar/Shared");
+		if (off != null && shared != null) {
+			jo.put("gainMs", off.getLong("avgMs") - shared.getLong("avgMs"));
+		}
+		return jo;
+	}
+
+	private static void recordStartup(String mode, long nanos) {
+		long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+		synchronized (startupStats) {
+			long[] v = startupStats.computeIfAbsent(mode, k -> new long[] { 0, 0, Long.MAX_VALUE, 0 });
+			v[0]++;
+			v[1] += ms;
+			v[2] = Math.min(v[2], ms);
+			v[3] = Math.max(v[3], ms);
+		}
+	}
+
+	private static ClassDataSharing.Mode addCdsFlags(List<String> cmd, String submarine, String variant) {
+		ClassDataSharing sharing = cds;
+		return sharing != null ? sharing.addFlags(cmd, submarine, variant) : ClassDataSharing.Mode.Off;
+	}
+
+	// merkt sich die CDS-Art des Prozesses und gibt ein erzeugtes Archiv nach Prozessende frei
+	private static void watchDump(Process p, ClassDataSharing.Mode mode, String submarine, String variant) {
+		launchModes.put(p.pid(), mode.name());
+		ClassDataSharing sharing = cds;
+		p.onExit().thenRun(() -> {
+			launchModes.remove(p.pid());
+			if (mode == ClassDataSharing.Mode.Dump && sharing != null) {
+				sharing.dumpFinished(submarine, variant);
+			}
+		});
+	}
+
+	// Anzahl bereitstehender JVMs im Pool (0 ohne Pool)
+	public static int getWarmPoolIdleCount() {
+		SubmarineProcessPool pool = warmPool;
+		return pool != null ? pool.idleCount() : 0;
+	}
+
+	private static String submarineJar(String submarinePath) {
+		String submarine = "submarine.jar";
+		if (submarinePath != null && !submarinePath.isEmpty()) {
+			if ( !submarinePath.endsWith("\\") && !submarinePath.endsWith("/")) {
+					submarinePath += "/";
+			}
+			submarine = submarinePath + submarine;
+		}
+		return submarine;
+	}
+
+	private static List<String> javaCommand() {
+		List<String> cmd = new ArrayList<>();
+		cmd.add(ProcessHandle.current().info().command().orElseThrow());
+		cmd.add("--add-exports");
+		cmd.add("java.desktop/sun.awt=ALL-UNNAMED");
+		cmd.addAll(jvmFlags);
+		return cmd;
+	}
+
+	private static List<String> submarineArgs(String shipID, String shipHost, int shipPort, String oceanSrvHost,
+			int oceanSrvPort) {
+		List<String> args = new ArrayList<>();
+		args.add("-shipid=" + shipID);
+		args.add("-shiphost=" + shipHost);
+		args.add("-shipport=" + shipPort);
+		args.add("-oceanhost=" + oceanSrvHost);
+		args.add("-oceanport=" + oceanSrvPort);
+		return args;
+	}
+
 }
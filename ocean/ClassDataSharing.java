@@ -0,0 +1,137 @@
+package ocean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Verwaltung von AppCDS-Archiven (Class Data Sharing) fuer gestartete Submarine-JVMs.
+//
+// Beim ersten Start wird das Archiv mit -XX:ArchiveClassesAtExit erzeugt (die JVM
+// schreibt es beim Beenden), spaetere Starts verwenden es mit -XX:SharedArchiveFile.
+// Der Archivname enthaelt einen Hash des Jars; aendert sich das Jar, werden alte
+// Archive geloescht und ein neues erzeugt.
+public class ClassDataSharing {
+
+	// Art der CDS-Nutzung eines Starts (fuer die Startzeit-Statistik)
+	public enum Mode {
+		Off,		// ohne CDS
+		Dump,		// Archiv wird bei diesem Start erzeugt
+		Shared		// vorhandenes Archiv wird verwendet
+	}
+
+	private final File archiveDir;
+	// Archive, die gerade von einer laufenden JVM erzeugt werden
+	private final Set<String> dumpsInProgress = ConcurrentHashMap.newKeySet();
+	// Cache: Jar-Pfad + Groesse + Aenderungszeit -> Hash
+	private final ConcurrentHashMap<String, String> jarHashes = new ConcurrentHashMap<>();
+
+	public ClassDataSharing(File archiveDir) {
+		this.archiveDir = archiveDir;
+	}
+
+	public File getArchiveDir() {
+		return archiveDir;
+	}
+
+	// Haengt die passenden CDS-Optionen an cmd an und liefert die verwendete Art.
+	// variant unterscheidet Archive fuer verschiedene Klassenpfade (z.B. "jar", "pool").
+	public Mode addFlags(List<String> cmd, String jarPath, String variant) {
+		File jar = new File(jarPath);
+		if (!jar.isFile()) {
+			return Mode.Off;
+		}
+		String hash;
+		try {
+			hash = jarHash(jar);
+		} catch (IOException e) {
+			System.err.println("ClassDataSharing: Hash fuer " + jarPath + " nicht berechenbar: " + e.getMessage());
+			return Mode.Off;
+		}
+		String prefix = stripExtension(jar.getName()) + "-" + variant + "-";
+		File archive = new File(archiveDir, prefix + hash + ".jsa");
+		deleteStaleArchives(prefix, archive.getName());
+
+		if (archive.isFile() && !dumpsInProgress.contains(archive.getPath())) {
+			cmd.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+			return Mode.Shared;
+		}
+		if (!archiveDir.isDirectory() && !archiveDir.mkdirs()) {
+			return Mode.Off;
+		}
+		// nur eine JVM erzeugt das Archiv, parallele Starts laufen ohne CDS
+		if (dumpsInProgress.add(archive.getPath())) {
+			cmd.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+			return Mode.Dump;
+		}
+		return Mode.Off;
+	}
+
+	// Muss aufgerufen werden, wenn die JVM beendet ist, die mit Mode.Dump gestartet wurde
+	public void dumpFinished(String jarPath, String variant) {
+		String prefix = stripExtension(new File(jarPath).getName()) + "-" + variant + "-";
+		dumpsInProgress.removeIf(path -> new File(path).getName().startsWith(prefix));
+	}
+
+	private void deleteStaleArchives(String prefix, String currentName) {
+		File[] files = archiveDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".jsa")
+				&& !name.equals(currentName));
+		if (files == null) {
+			return;
+		}
+		for (File f : files) {
+			if (f.delete()) {
+				System.out.println("ClassDataSharing: veraltetes Archiv geloescht: " + f.getName());
+			}
+		}
+	}
+
+	private String jarHash(File jar) throws IOException {
+		String key = jar.getAbsolutePath() + "|" + jar.length() + "|" + jar.lastModified();
+		String cached = jarHashes.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(jar.toPath())) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, n);
+			}
+		}
+		String hash = HexFormat.of().formatHex(digest.digest(), 0, 8);
+		jarHashes.put(key, hash);
+		return hash;
+	}
+
+	private static String stripExtension(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	// Zerlegt zusaetzliche JVM-Optionen (durch Leerzeichen getrennt)
+	public static List<String> parseFlags(String flags) {
+		List<String> result = new ArrayList<>();
+		if (flags != null) {
+			for (String f : flags.trim().split("\\s+")) {
+				if (!f.isEmpty()) {
+					result.add(f);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,96 @@
+package ocean;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Unveraenderliche Variante von Vec, geeignet als Map-Schluessel (z.B. Voxel).
+// Alle Rechenoperationen liefern neue Objekte, hashCode() erzeugt keine Objekte.
+// JSON-Darstellung wie Vec: "vec":[x,y,z]
+public final class ConstVec {
+
+	public static final ConstVec NullVec = new ConstVec(0, 0, 0);
+
+	private final int x;
+	private final int y;
+	private final int z;
+
+	public ConstVec(int x, int y, int z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public ConstVec(Vec v) {
+		this(v.getX(), v.getY(), v.getZ());
+	}
+
+	public static ConstVec ofPacked(long packed) {
+		return new ConstVec(PackedVec.x(packed), PackedVec.y(packed), PackedVec.z(packed));
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	// nur gueltig, wenn alle Komponenten in 21 Bit passen (siehe PackedVec)
+	public long packed() {
+		return PackedVec.pack(x, y, z);
+	}
+
+	public ConstVec add(ConstVec v) {
+		return new ConstVec(x + v.x, y + v.y, z + v.z);
+	}
+
+	public ConstVec mul(int factor) {
+		return new ConstVec(x * factor, y * factor, z * factor);
+	}
+
+	public ConstVec getDelta(ConstVec v) {
+		return new ConstVec(x - v.x, y - v.y, z - v.z);
+	}
+
+	public ConstVec2D reduce() {
+		return new ConstVec2D(x, y);
+	}
+
+	// veraenderliche Kopie
+	public Vec toVec() {
+		return new Vec(x, y, z);
+	}
+
+	public String toString() {
+		return "(" + x + "," + y + "," + z + ")";
+	}
+
+	@Override
+	public int hashCode() {
+		int h = x * 0x9E3779B1;
+		h = (h ^ (h >>> 15)) + y * 0x85EBCA77;
+		h = (h ^ (h >>> 13)) + z * 0xC2B2AE3D;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ConstVec))
+			return false;
+		ConstVec other = (ConstVec) obj;
+		return x == other.x && y == other.y && z == other.z;
+	}
+
+	public JSONObject toJson() {
+		JSONObject jo = new JSONObject();
+		jo.put("vec", new JSONArray().put(x).put(y).put(z));
+		return jo;
+	}
+}
@@ -0,0 +1,82 @@
+package ocean;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Unveraenderliche Variante von Vec2D, geeignet als Map-Schluessel.
+// Alle Rechenoperationen liefern neue Objekte, hashCode() erzeugt keine Objekte.
+// JSON-Darstellung wie Vec2D: "vec2":[x,y]
+public final class ConstVec2D {
+
+	public static final ConstVec2D NullVec = new ConstVec2D(0, 0);
+
+	private final int x;
+	private final int y;
+
+	public ConstVec2D(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public ConstVec2D(Vec2D v) {
+		this(v.getX(), v.getY());
+	}
+
+	public static ConstVec2D ofPacked(long packed) {
+		return new ConstVec2D(PackedVec2D.x(packed), PackedVec2D.y(packed));
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public long packed() {
+		return PackedVec2D.pack(x, y);
+	}
+
+	public ConstVec2D add(ConstVec2D v) {
+		return new ConstVec2D(x + v.x, y + v.y);
+	}
+
+	public ConstVec2D mul(int factor) {
+		return new ConstVec2D(x * factor, y * factor);
+	}
+
+	public ConstVec2D invert() {
+		return new ConstVec2D(-x, -y);
+	}
+
+	// veraenderliche Kopie
+	public Vec2D toVec2D() {
+		return new Vec2D(x, y);
+	}
+
+	public String toString() {
+		return "(" + x + "," + y + ")";
+	}
+
+	@Override
+	public int hashCode() {
+		return PackedVec2D.hash(packed());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ConstVec2D))
+			return false;
+		ConstVec2D other = (ConstVec2D) obj;
+		return x == other.x && y == other.y;
+	}
+
+	public JSONObject toJson() {
+		JSONObject jo = new JSONObject();
+		jo.put("vec2", new JSONArray().put(x).put(y));
+		return jo;
+	}
+}
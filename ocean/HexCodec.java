@@ -0,0 +1,315 @@
+package ocean;
+
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Hex-Kodierung fuer Bilddaten (PNG als Hex-String, mehrere 100 KB pro Bild).
+// Eine gemeinsame Implementierung fuer OceanPicture und den ShipAppApiServer:
+// - Dekodieren ueber eine Lookup-Tabelle direkt aus CharSequence oder byte[] (ASCII)
+//   in einen vom Aufrufer uebergebenen Puffer, ohne Zwischen-Arrays
+// - fuer byte[]-Eingaben werden je 8 Hex-Zeichen in einem long verarbeitet (SWAR)
+// - hexToBase64 wandelt direkt um, ohne das dekodierte byte[] zu erzeugen
+// Ungueltige Zeichen oder eine ungerade Laenge fuehren wie bei HexFormat zu
+// einer IllegalArgumentException.
+public final class HexCodec {
+
+	private static final byte[] ENCODE = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+	// Bytes pro Block bei hexToBase64, durch 3 teilbar
+	private static final int BASE64_CHUNK = 3 * 1024;
+
+	// Zeichen -> Nibble, -1 fuer ungueltige Zeichen (nur ASCII, alles darueber ist ungueltig)
+	private static final byte[] DECODE = new byte[128];
+
+	private static final VarHandle LONG_LE =
+			MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_LE =
+			MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH = 0x8080808080808080L;
+
+	static {
+		Arrays.fill(DECODE, (byte) -1);
+		for (int i = 0; i < 10; i++) {
+			DECODE['0' + i] = (byte) i;
+		}
+		for (int i = 0; i < 6; i++) {
+			DECODE['a' + i] = (byte) (10 + i);
+			DECODE['A' + i] = (byte) (10 + i);
+		}
+	}
+
+	private HexCodec() {
+	}
+
+	public static int decodedLength(int hexLength) {
+		if ((hexLength & 1) != 0) {
+			throw new IllegalArgumentException("Hex-String hat ungerade Laenge: " + hexLength);
+		}
+		return hexLength >>> 1;
+	}
+
+	// ------------------------------------------------------------
+	// Dekodieren
+	// ------------------------------------------------------------
+
+	public static byte[] decode(CharSequence hex) {
+		byte[] dst = new byte[decodedLength(hex.length())];
+		decode(hex, 0, hex.length(), dst, 0);
+		return dst;
+	}
+
+	// Dekodiert hex[from, to) nach dst ab off; liefert die Anzahl geschriebener Bytes
+	public static int decode(CharSequence hex, int from, int to, byte[] dst, int off) {
+		int n = decodedLength(to - from);
+		checkBounds(dst, off, n);
+		int bad = 0;
+		for (int i = from, o = off; i < to; i += 2, o++) {
+			int hi = nibble(hex.charAt(i));
+			int lo = nibble(hex.charAt(i + 1));
+			// ungueltige Zeichen liefern -1, das Vorzeichen bleibt im ODER erhalten
+			bad |= hi | lo;
+			dst[o] = (byte) ((hi << 4) | lo);
+		}
+		if (bad < 0) {
+			throw invalid(hex, from, to);
+		}
+		return n;
+	}
+
+	public static byte[] decode(byte[] hex, int from, int to) {
+		byte[] dst = new byte[decodedLength(to - from)];
+		decode(hex, from, to, dst, 0);
+		return dst;
+	}
+
+	// Dekodiert ASCII-Hex aus hex[from, to) nach dst ab off; liefert die Anzahl geschriebener Bytes
+	public static int decode(byte[] hex, int from, int to, byte[] dst, int off) {
+		int n = decodedLength(to - from);
+		checkBounds(dst, off, n);
+		if (from < 0 || to > hex.length || from > to) {
+			throw new IndexOutOfBoundsException("Bereich " + from + ".." + to + " ausserhalb von " + hex.length);
+		}
+		int i = from;
+		int o = off;
+		// 8 Zeichen -> 4 Bytes pro Schritt
+		for (; i + 8 <= to; i += 8, o += 4) {
+			long v = (long) LONG_LE.get(hex, i);
+			long nibbles = swarNibbles(v);
+			if (nibbles == -1L) {
+				throw invalid(hex, from, to);
+			}
+			INT_LE.set(dst, o, swarPack(nibbles));
+		}
+		int bad = 0;
+		for (; i < to; i += 2, o++) {
+			int hi = nibble(hex[i]);
+			int lo = nibble(hex[i + 1]);
+			bad |= hi | lo;
+			dst[o] = (byte) ((hi << 4) | lo);
+		}
+		if (bad < 0) {
+			throw invalid(hex, from, to);
+		}
+		return n;
+	}
+
+	// Wandelt 8 ASCII-Zeichen (Little Endian im long) in 8 Nibbles um; -1 bei ungueltigen Zeichen
+	private static long swarNibbles(long v) {
+		if ((v & HIGH) != 0) {
+			return -1L;
+		}
+		// '0'..'9' im Original, 'a'..'f' nach dem Setzen von Bit 5 (A-F -> a-f)
+		long lower = v | (0x20 * ONES);
+		long isDigit = geq(v, 0x30) & ~gt(v, 0x39);
+		long isLetter = geq(lower, 0x61) & ~gt(lower, 0x66);
+		if ((isDigit | isLetter) != HIGH) {
+			return -1L;
+		}
+		return (v & (0x0F * ONES)) + ((isLetter >>> 7) * 9);
+	}
+
+	// Hoechstes Bit je Byte gesetzt, wenn das Byte (< 0x80) >= c ist
+	private static long geq(long v, int c) {
+		return (v + (0x80 - c) * ONES) & HIGH;
+	}
+
+	// Hoechstes Bit je Byte gesetzt, wenn das Byte (< 0x80) > c ist
+	private static long gt(long v, int c) {
+		return (v + (0x7F - c) * ONES) & HIGH;
+	}
+
+	// Fasst je zwei Nibbles zu einem Byte zusammen: 8 Nibbles -> 4 Bytes (Little Endian)
+	private static int swarPack(long nibbles) {
+		long t = ((nibbles & 0x000F000F000F000FL) << 4) | ((nibbles >>> 8) & 0x000F000F000F000FL);
+		t = (t | (t >>> 8)) & 0x0000FFFF0000FFFFL;
+		return (int) (t | (t >>> 16));
+	}
+
+	// auch negative Werte (vorzeichenbehaftete bytes) sind ungueltig
+	private static int nibble(int c) {
+		return (c & ~0x7F) == 0 ? DECODE[c] : -1;
+	}
+
+	// ------------------------------------------------------------
+	// Kodieren
+	// ------------------------------------------------------------
+
+	public static String encode(byte[] src) {
+		return encode(src, 0, src.length);
+	}
+
+	public static String encode(byte[] src, int off, int len) {
+		byte[] dst = new byte[len * 2];
+		encode(src, off, len, dst, 0);
+		return new String(dst, StandardCharsets.ISO_8859_1);
+	}
+
+	// Schreibt 2 * len ASCII-Zeichen (Kleinbuchstaben) nach dst ab dstOff
+	public static void encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		for (int i = 0; i < len; i++) {
+			int b = src[off + i];
+			dst[dstOff + 2 * i] = ENCODE[(b >> 4) & 0x0F];
+			dst[dstOff + 2 * i + 1] = ENCODE[b & 0x0F];
+		}
+	}
+
+	// ------------------------------------------------------------
+	// Hex -> Base64
+	// ------------------------------------------------------------
+
+	// Wandelt Hex direkt in Base64 (mit Padding) um. Die Bytes werden nur blockweise
+	// in einem kleinen Puffer dekodiert, das komplette byte[] des Bildes entsteht nie.
+	public static String hexToBase64(CharSequence hex) {
+		int len = hex.length();
+		byte[] out = new byte[base64Length(decodedLength(len))];
+		byte[] ascii = new byte[Math.min(len, 2 * BASE64_CHUNK)];
+		byte[] bytes = new byte[BASE64_CHUNK];
+		int o = 0;
+		for (int i = 0; i < len; ) {
+			int end = Math.min(len, i + ascii.length);
+			int chars = 0;
+			for (int k = i; k < end; k++) {
+				chars |= hex.charAt(k);
+				ascii[k - i] = (byte) hex.charAt(k);
+			}
+			// Zeichen ausserhalb von ASCII wuerden beim Abschneiden auf ein byte gueltig aussehen
+			if ((chars & ~0x7F) != 0) {
+				throw invalid(hex, i, end);
+			}
+			o = base64Block(ascii, 0, end - i, bytes, out, o);
+			i = end;
+		}
+		return new String(out, StandardCharsets.ISO_8859_1);
+	}
+
+	// Wie hexToBase64(CharSequence) fuer ASCII-Hex in hex[from, to)
+	public static String hexToBase64(byte[] hex, int from, int to) {
+		byte[] out = new byte[base64Length(decodedLength(to - from))];
+		byte[] bytes = new byte[BASE64_CHUNK];
+		int o = 0;
+		for (int i = from; i < to; i += 2 * BASE64_CHUNK) {
+			o = base64Block(hex, i, Math.min(to, i + 2 * BASE64_CHUNK), bytes, out, o);
+		}
+		return new String(out, StandardCharsets.ISO_8859_1);
+	}
+
+	// Dekodiert einen Block (hoechstens 2 * BASE64_CHUNK Zeichen) und haengt ihn Base64-codiert
+	// an out an. Da BASE64_CHUNK durch 3 teilbar ist, entsteht Padding nur im letzten Block.
+	private static int base64Block(byte[] hex, int from, int to, byte[] bytes, byte[] out, int o) {
+		int n = decode(hex, from, to, bytes, 0);
+		byte[] src = n == bytes.length ? bytes : Arrays.copyOf(bytes, n);
+		byte[] encoded = BASE64_ENCODER.encode(src);
+		System.arraycopy(encoded, 0, out, o, encoded.length);
+		return o + encoded.length;
+	}
+
+	private static int base64Length(int bytes) {
+		return ((bytes + 2) / 3) * 4;
+	}
+
+	// Reader, der src[off, off + len) als Hex-Zeichen liefert (z.B. fuer
+	// PreparedStatement.setCharacterStream), ohne den Hex-String zu erzeugen
+	public static Reader reader(byte[] src, int off, int len) {
+		return new HexReader(src, off, len);
+	}
+
+	private static final class HexReader extends Reader {
+		private final byte[] src;
+		private final int end;
+		private int pos;
+		// zweites Zeichen eines Bytes, wenn der Zielpuffer nach dem ersten voll war
+		private int pending = -1;
+
+		HexReader(byte[] src, int off, int len) {
+			this.src = src;
+			this.pos = off;
+			this.end = off + len;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (pos == end && pending < 0) {
+				return -1;
+			}
+			int o = off;
+			int stop = off + len;
+			if (pending >= 0) {
+				cbuf[o++] = (char) pending;
+				pending = -1;
+			}
+			while (o + 1 < stop && pos < end) {
+				int b = src[pos++];
+				cbuf[o++] = (char) ENCODE[(b >> 4) & 0x0F];
+				cbuf[o++] = (char) ENCODE[b & 0x0F];
+			}
+			if (o < stop && pos < end) {
+				int b = src[pos++];
+				cbuf[o++] = (char) ENCODE[(b >> 4) & 0x0F];
+				pending = ENCODE[b & 0x0F];
+			}
+			return o - off;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// ------------------------------------------------------------
+	// Fehler
+	// ------------------------------------------------------------
+
+	private static void checkBounds(byte[] dst, int off, int n) {
+		if (off < 0 || off + n > dst.length) {
+			throw new IndexOutOfBoundsException("Zielpuffer zu klein: " + (off + n) + " > " + dst.length);
+		}
+	}
+
+	private static IllegalArgumentException invalid(CharSequence hex, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (nibble(hex.charAt(i)) < 0) {
+				return new IllegalArgumentException("Ungueltiges Hex-Zeichen an Position " + i + ": " + hex.charAt(i));
+			}
+		}
+		return new IllegalArgumentException("Ungueltiger Hex-String");
+	}
+
+	private static IllegalArgumentException invalid(byte[] hex, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (nibble(hex[i]) < 0) {
+				return new IllegalArgumentException("Ungueltiges Hex-Zeichen an Position " + i + ": " + (char) (hex[i] & 0xFF));
+			}
+		}
+		return new IllegalArgumentException("Ungueltiger Hex-String");
+	}
+}
@@ -0,0 +1,128 @@
+package ocean;
+
+import java.util.Arrays;
+
+// Hash-Map long -> int mit offener Adressierung, ohne Boxing.
+// Gedacht fuer Sektor- und Voxel-Karten mit Schluesseln aus PackedVec2D/PackedVec.
+// Nicht threadsicher.
+public class LongIntMap {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+	private final int missingValue;
+
+	// missingValue wird von get() fuer nicht vorhandene Schluessel geliefert
+	public LongIntMap(int expectedSize, int missingValue) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.missingValue = missingValue;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int get(long key) {
+		checkKey(key);
+		int i = index(key);
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				return values[i];
+			}
+			if (k == EMPTY) {
+				return missingValue;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public boolean containsKey(long key) {
+		checkKey(key);
+		int i = index(key);
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				return true;
+			}
+			if (k == EMPTY) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	// liefert den alten Wert oder missingValue
+	public int put(long key, int value) {
+		checkKey(key);
+		int i = index(key);
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+			if (k == EMPTY) {
+				keys[i] = key;
+				values[i] = value;
+				if (++size * 2 > keys.length) {
+					grow();
+				}
+				return missingValue;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	// Besucht alle Eintraege (Reihenfolge undefiniert)
+	public void forEach(Visitor visitor) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface Visitor {
+		void visit(long key, int value);
+	}
+
+	private int index(long key) {
+		return PackedVec2D.hash(key) & mask;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static void checkKey(long key) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("LongIntMap: Schluessel Long.MIN_VALUE ist reserviert");
+		}
+	}
+}
@@ -5,7 +5,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.HexFormat;
 
 import javax.imageio.ImageIO;
 
@@ -13,9 +12,12 @@ public class OceanPicture {
 
 	// Wandelt einen Hex-codierten String mit Bildinformationen in ein BufferesImage um
 	public static BufferedImage convertHexString2Image(String hexValues) {
-		HexFormat hexFormat = HexFormat.of();
-		byte[] bytes = hexFormat.parseHex(hexValues);
-    	ByteArrayInputStream bin = new ByteArrayInputStream(bytes);
+		byte[] bytes = HexCodec.decode(hexValues);
+		return convertBytes2Image(bytes, 0, bytes.length);
+	}
+	// Wandelt PNG-Bytes (z.B. direkt aus dem Datenstrom dekodiert) in ein BufferedImage um
+	public static BufferedImage convertBytes2Image(byte[] bytes, int off, int len) {
+    	ByteArrayInputStream bin = new ByteArrayInputStream(bytes, off, len);
     	try {
 			return ImageIO.read(bin);
 		} catch (IOException e) {
@@ -28,9 +30,7 @@ public class OceanPicture {
 		String pngStr = null;
     	try {
 			if(ImageIO.write(bimg, "png", bos)) {
-				byte[] bytes = bos.toByteArray();
-				HexFormat hexFormat = HexFormat.of();
-				pngStr =  hexFormat.formatHex(bytes);
+				pngStr = HexCodec.encode(bos.toByteArray());
 			}
 		} catch (IOException e) {
 		}
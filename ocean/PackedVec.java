@@ -0,0 +1,95 @@
+package ocean;
+
+// Kodierung einer 3D-Koordinate in einem einzigen long:
+// je 21 Bit (mit Vorzeichen) fuer x, y und z, Wertebereich -1048576..1048575.
+// Bit 63 bleibt frei. Reicht fuer alle Ozean-Koordinaten (Sektoren 0-99 zu je 100 Einheiten).
+public final class PackedVec {
+
+	public static final int BITS = 21;
+	public static final int MIN = -(1 << (BITS - 1));
+	public static final int MAX = (1 << (BITS - 1)) - 1;
+
+	private static final long MASK = (1L << BITS) - 1;
+
+	public static final long ZERO = 0L;
+
+	private PackedVec() {
+	}
+
+	public static long pack(int x, int y, int z) {
+		checkRange(x);
+		checkRange(y);
+		checkRange(z);
+		return ((x & MASK) << (2 * BITS)) | ((y & MASK) << BITS) | (z & MASK);
+	}
+
+	public static boolean fits(int x, int y, int z) {
+		return x >= MIN && x <= MAX && y >= MIN && y <= MAX && z >= MIN && z <= MAX;
+	}
+
+	public static int x(long packed) {
+		return signExtend(packed >>> (2 * BITS));
+	}
+
+	public static int y(long packed) {
+		return signExtend(packed >>> BITS);
+	}
+
+	public static int z(long packed) {
+		return signExtend(packed);
+	}
+
+	public static long add(long a, long b) {
+		return pack(x(a) + x(b), y(a) + y(b), z(a) + z(b));
+	}
+
+	public static long add(long a, int dx, int dy, int dz) {
+		return pack(x(a) + dx, y(a) + dy, z(a) + dz);
+	}
+
+	public static long sub(long a, long b) {
+		return pack(x(a) - x(b), y(a) - y(b), z(a) - z(b));
+	}
+
+	public static long mul(long a, int factor) {
+		return pack(x(a) * factor, y(a) * factor, z(a) * factor);
+	}
+
+	// Projektion auf die xy-Ebene als PackedVec2D
+	public static long reduce(long packed) {
+		return PackedVec2D.pack(x(packed), y(packed));
+	}
+
+	// Liefert den i-ten der 26 Nachbarn (0..25) im 3x3x3-Wuerfel ohne Mittelpunkt
+	public static long neighbour(long packed, int i) {
+		int k = i < 13 ? i : i + 1; // Mittelpunkt (13) ueberspringen
+		return add(packed, k % 3 - 1, (k / 3) % 3 - 1, k / 9 - 1);
+	}
+
+	public static int hash(long packed) {
+		long h = packed * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	public static long fromVec(Vec v) {
+		return pack(v.getX(), v.getY(), v.getZ());
+	}
+
+	public static Vec toVec(long packed) {
+		return new Vec(x(packed), y(packed), z(packed));
+	}
+
+	public static String toString(long packed) {
+		return "(" + x(packed) + "," + y(packed) + "," + z(packed) + ")";
+	}
+
+	private static int signExtend(long bits) {
+		return (int) ((bits & MASK) << (64 - BITS) >> (64 - BITS));
+	}
+
+	private static void checkRange(int v) {
+		if (v < MIN || v > MAX) {
+			throw new IllegalArgumentException("PackedVec: Wert ausserhalb von 21 Bit: " + v);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package ocean;
+
+// Kodierung einer 2D-Koordinate (zwei int32) in einem einzigen long:
+// obere 32 Bit = x, untere 32 Bit = y.
+// Damit lassen sich Sektoren ohne Objekt-Erzeugung speichern, vergleichen
+// und als Schluessel in primitiven Maps/Sets verwenden.
+public final class PackedVec2D {
+
+	// Reihenfolge wie Vec2D.getNeighbours()
+	static final int[] NEIGHBOUR_DX = {-1, -1, 0, 1, 1, 1, 0, -1};
+	static final int[] NEIGHBOUR_DY = { 0, 1, 1, 1, 0, -1, -1, -1};
+
+	public static final long ZERO = 0L;
+
+	private PackedVec2D() {
+	}
+
+	public static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	public static int x(long packed) {
+		return (int) (packed >> 32);
+	}
+
+	public static int y(long packed) {
+		return (int) packed;
+	}
+
+	public static long add(long a, long b) {
+		return pack(x(a) + x(b), y(a) + y(b));
+	}
+
+	public static long add(long a, int dx, int dy) {
+		return pack(x(a) + dx, y(a) + dy);
+	}
+
+	public static long sub(long a, long b) {
+		return pack(x(a) - x(b), y(a) - y(b));
+	}
+
+	public static long mul(long a, int factor) {
+		return pack(x(a) * factor, y(a) * factor);
+	}
+
+	public static long invert(long a) {
+		return pack(-x(a), -y(a));
+	}
+
+	// Liefert den i-ten Nachbarn (0..7), Reihenfolge wie Vec2D.getNeighbours()
+	public static long neighbour(long packed, int i) {
+		return pack(x(packed) + NEIGHBOUR_DX[i], y(packed) + NEIGHBOUR_DY[i]);
+	}
+
+	// Schachbrett-Abstand (Anzahl Zuege eines Koenigs)
+	public static int chebyshevDistance(long a, long b) {
+		return Math.max(Math.abs(x(a) - x(b)), Math.abs(y(a) - y(b)));
+	}
+
+	// Durchmischter Hashwert (ohne Objekt-Erzeugung), z.B. fuer offene Adressierung
+	public static int hash(long packed) {
+		long h = packed * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	public static long fromVec2D(Vec2D v) {
+		return pack(v.getX(), v.getY());
+	}
+
+	public static Vec2D toVec2D(long packed) {
+		return new Vec2D(x(packed), y(packed));
+	}
+
+	public static String toString(long packed) {
+		return "(" + x(packed) + "," + y(packed) + ")";
+	}
+}
@@ -0,0 +1,158 @@
+package ocean;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+// Allokationsfreie Nachbarschafts-Abfragen auf dem Sektor-Gitter.
+// Alternative zu Vec2D.getNeighbours(), das pro Aufruf 9 Objekte erzeugt.
+//
+// Ring k = alle Sektoren mit Schachbrett-Abstand genau k (8*k Sektoren, Ring 0 = Mittelpunkt),
+// Radius r = Ringe 0..r, passend zum exploreRadius aus oceanserver.conf.
+// Es gibt keine Bereichspruefung.
+public final class SectorNeighbourhood {
+
+	private SectorNeighbourhood() {
+	}
+
+	// Besucht die 8 Nachbarn in der Reihenfolge von Vec2D.getNeighbours()
+	// liefert false, wenn der Visitor abgebrochen hat
+	public static boolean forEachNeighbour(int x, int y, SectorVisitor visitor) {
+		for (int i = 0; i < 8; i++) {
+			if (!visitor.visit(x + PackedVec2D.NEIGHBOUR_DX[i], y + PackedVec2D.NEIGHBOUR_DY[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static int ringSize(int k) {
+		return k == 0 ? 1 : 8 * k;
+	}
+
+	public static int radiusSize(int r) {
+		return (2 * r + 1) * (2 * r + 1);
+	}
+
+	// Liefert den i-ten Sektor (0 .. ringSize(k)-1) des Rings k um center (gepackt)
+	// Reihenfolge: obere Kante, rechte Kante, untere Kante, linke Kante
+	public static long ringCell(long center, int k, int i) {
+		if (k == 0) {
+			return center;
+		}
+		int edge = 2 * k;
+		int side = i / edge;
+		int off = i - side * edge;
+		int dx;
+		int dy;
+		switch (side) {
+			case 0 -> { dx = -k + off; dy = -k; }
+			case 1 -> { dx = k; dy = -k + off; }
+			case 2 -> { dx = k - off; dy = k; }
+			default -> { dx = -k; dy = k - off; }
+		}
+		return PackedVec2D.add(center, dx, dy);
+	}
+
+	public static boolean forEachInRing(int x, int y, int k, SectorVisitor visitor) {
+		if (k == 0) {
+			return visitor.visit(x, y);
+		}
+		// obere, rechte, untere und linke Kante (wie ringCell)
+		for (int dx = -k; dx < k; dx++) {
+			if (!visitor.visit(x + dx, y - k)) {
+				return false;
+			}
+		}
+		for (int dy = -k; dy < k; dy++) {
+			if (!visitor.visit(x + k, y + dy)) {
+				return false;
+			}
+		}
+		for (int dx = k; dx > -k; dx--) {
+			if (!visitor.visit(x + dx, y + k)) {
+				return false;
+			}
+		}
+		for (int dy = k; dy > -k; dy--) {
+			if (!visitor.visit(x - k, y + dy)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Besucht alle Sektoren im Radius r, ringweise von innen nach aussen
+	public static boolean forEachInRadius(int x, int y, int r, SectorVisitor visitor) {
+		for (int k = 0; k <= r; k++) {
+			if (!forEachInRing(x, y, k, visitor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Wiederverwendbarer Iterator ueber gepackte Sektoren (PackedVec2D).
+	// Nach reset...() kann dasselbe Objekt beliebig oft benutzt werden,
+	// es entstehen keine weiteren Objekte.
+	public static final class Cursor implements PrimitiveIterator.OfLong {
+		private long center;
+		private int ring;
+		private int maxRing;
+		private int index;
+		private boolean neighboursOnly;
+
+		// die 8 direkten Nachbarn (Reihenfolge wie Vec2D.getNeighbours())
+		public Cursor neighbours(long center) {
+			this.center = center;
+			this.neighboursOnly = true;
+			this.ring = 1;
+			this.maxRing = 1;
+			this.index = 0;
+			return this;
+		}
+
+		// nur Ring k
+		public Cursor ring(long center, int k) {
+			return radius(center, k, k);
+		}
+
+		// Ringe 0..r
+		public Cursor radius(long center, int r) {
+			return radius(center, 0, r);
+		}
+
+		private Cursor radius(long center, int fromRing, int toRing) {
+			this.center = center;
+			this.neighboursOnly = false;
+			this.ring = fromRing;
+			this.maxRing = toRing;
+			this.index = 0;
+			return this;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return ring < maxRing || (ring == maxRing && index < (neighboursOnly ? 8 : ringSize(ring)));
+		}
+
+		@Override
+		public long nextLong() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			long cell;
+			if (neighboursOnly) {
+				cell = PackedVec2D.neighbour(center, index);
+			} else {
+				cell = ringCell(center, ring, index);
+			}
+			if (++index >= (neighboursOnly ? 8 : ringSize(ring))) {
+				if (ring < maxRing) {
+					ring++;
+					index = 0;
+				}
+			}
+			return cell;
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package ocean;
+
+// Rueckruf fuer die allokationsfreie Traversierung von Sektoren
+// (siehe SectorNeighbourhood). Liefert false, um die Traversierung abzubrechen.
+@FunctionalInterface
+public interface SectorVisitor {
+	boolean visit(int x, int y);
+}
@@ -0,0 +1,58 @@
+package ocean;
+
+// Bewegungsmodell eines Schiffs auf dem Sektor-Gitter.
+//
+// Die Fahrtrichtung ist einer der 8 Einheitsvektoren (dx,dy mit -1..1).
+// Ein navigate-Befehl dreht die Richtung je nach Ruder um 45 Grad
+// (Left = gegen den Uhrzeigersinn, Right = im Uhrzeigersinn) und bewegt das
+// Schiff danach einen Sektor vorwaerts bzw. rueckwaerts.
+public final class ShipKinematics {
+
+	// Richtungen gegen den Uhrzeigersinn, beginnend bei (1,0)
+	private static final int[] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	public static final int DIRECTIONS = 8;
+
+	private ShipKinematics() {
+	}
+
+	// Index (0..7) der Richtung (dx,dy), -1 falls keine gueltige Richtung
+	public static int dirIndex(int dx, int dy) {
+		for (int i = 0; i < DIRECTIONS; i++) {
+			if (DIR_X[i] == dx && DIR_Y[i] == dy) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public static int dirX(int dirIndex) {
+		return DIR_X[dirIndex];
+	}
+
+	public static int dirY(int dirIndex) {
+		return DIR_Y[dirIndex];
+	}
+
+	// Neue Richtung nach einem Ruderausschlag
+	public static int turn(int dirIndex, Rudder rudder) {
+		return switch (rudder) {
+			case Left -> (dirIndex + 1) % DIRECTIONS;
+			case Right -> (dirIndex + DIRECTIONS - 1) % DIRECTIONS;
+			default -> dirIndex;
+		};
+	}
+
+	// Zielsektor (gepackt, siehe PackedVec2D) nach einem navigate-Befehl
+	public static long step(long sector, int dirIndex, Rudder rudder, Course course) {
+		int d = turn(dirIndex, rudder);
+		int sign = course == Course.Backward ? -1 : 1;
+		return PackedVec2D.add(sector, sign * DIR_X[d], sign * DIR_Y[d]);
+	}
+
+	// Richtung als Vec2D
+	public static Vec2D dirVec(int dirIndex) {
+		return new Vec2D(DIR_X[dirIndex], DIR_Y[dirIndex]);
+	}
+}
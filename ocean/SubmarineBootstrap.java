@@ -0,0 +1,65 @@
+package ocean;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// Einstiegspunkt fuer vorgewaermte Submarine-JVMs (siehe SubmarineProcessPool).
+//
+// Aufruf: java -cp <classpath> ocean.SubmarineBootstrap <submarine.jar>
+// Die JVM laedt die Klassen aus submarine.jar vorab (ohne sie zu initialisieren)
+// und wartet dann auf stdin auf eine Zeile mit den Programmargumenten
+// (durch Tabulator getrennt). Danach wird die Main-Class des Jars gestartet.
+public class SubmarineBootstrap {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("SubmarineBootstrap: Pfad zu submarine.jar fehlt");
+			System.exit(2);
+		}
+		File jar = new File(args[0]);
+		String mainClassName;
+		URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() },
+				SubmarineBootstrap.class.getClassLoader());
+		try (JarFile jarFile = new JarFile(jar)) {
+			mainClassName = jarFile.getManifest().getMainAttributes().getValue("Main-Class");
+			preload(jarFile, loader);
+		}
+		Class<?> mainClass = Class.forName(mainClassName, false, loader);
+		Method main = mainClass.getMethod("main", String[].class);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line = in.readLine();
+		if (line == null) {
+			// Pool wurde geschlossen, ohne dass diese JVM gebraucht wurde
+			System.exit(0);
+		}
+		String[] submarineArgs = line.isEmpty() ? new String[0] : line.split("\t");
+		Thread.currentThread().setContextClassLoader(loader);
+		main.invoke(null, (Object) submarineArgs);
+	}
+
+	// Laedt alle Klassen des Jars, ohne statische Initialisierer auszufuehren
+	private static void preload(JarFile jarFile, ClassLoader loader) {
+		Enumeration<JarEntry> entries = jarFile.entries();
+		while (entries.hasMoreElements()) {
+			String name = entries.nextElement().getName();
+			if (!name.endsWith(".class") || name.contains("-")) {
+				continue;
+			}
+			String className = name.substring(0, name.length() - 6).replace('/', '.');
+			try {
+				Class.forName(className, false, loader);
+			} catch (Throwable e) {
+				// optionale Abhaengigkeiten duerfen fehlen
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package ocean;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+// Pool vorgestarteter Submarine-JVMs.
+// Jede JVM laeuft mit SubmarineBootstrap, hat submarine.jar bereits geladen und
+// wartet nur noch auf die Programmargumente. Ein Start kostet dadurch keinen
+// JVM-Start und kein Klassenladen mehr. Entnommene JVMs werden im Hintergrund ersetzt.
+public class SubmarineProcessPool {
+
+	private final Callable<Process> starter;
+	private final BlockingQueue<Process> idle;
+	private final Executor executor;
+	private volatile boolean closed = false;
+
+	// starter: startet eine JVM mit SubmarineBootstrap (stdin als Pipe)
+	SubmarineProcessPool(Callable<Process> starter, int size, Executor executor) {
+		this.starter = starter;
+		this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+		this.executor = executor;
+		for (int i = 0; i < size; i++) {
+			executor.execute(this::refill);
+		}
+	}
+
+	// Liefert eine vorgewaermte JVM, die mit den Argumenten gestartet wurde,
+	// oder null, wenn gerade keine bereitsteht
+	Process acquire(List<String> submarineArgs) {
+		Process p;
+		while ((p = idle.poll()) != null) {
+			executor.execute(this::refill);
+			if (!p.isAlive()) {
+				continue;
+			}
+			try {
+				OutputStream os = p.getOutputStream();
+				os.write((String.join("\t", submarineArgs) + "\n").getBytes(StandardCharsets.UTF_8));
+				os.flush();
+				return p;
+			} catch (IOException e) {
+				p.destroy();
+			}
+		}
+		return null;
+	}
+
+	public int idleCount() {
+		return idle.size();
+	}
+
+	public void close() {
+		closed = true;
+		Process p;
+		while ((p = idle.poll()) != null) {
+			try {
+				// stdin schliessen -> SubmarineBootstrap beendet sich selbst
+				p.getOutputStream().close();
+			} catch (IOException e) {
+				p.destroy();
+			}
+		}
+	}
+
+	private void refill() {
+		if (closed || idle.remainingCapacity() == 0) {
+			return;
+		}
+		try {
+			Process p = starter.call();
+			if (!idle.offer(p)) {
+				p.destroy();
+			} else if (closed && idle.remove(p)) {
+				p.destroy();
+			}
+		} catch (Exception e) {
+			System.err.println("SubmarineProcessPool: JVM konnte nicht gestartet werden: " + e.getMessage());
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package ocean;
 
-import java.util.Objects;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -80,10 +78,25 @@ public class Vec {
 	public Vec2D reduce() {
 		return new Vec2D(x,y);
 	}
+
+	// Kodierung als long (siehe PackedVec)
+	public long toPacked() {
+		return PackedVec.pack(x, y, z);
+	}
+
+	public static Vec fromPacked(long packed) {
+		return PackedVec.toVec(packed);
+	}
+
+	// unveraenderliche Kopie
+	public ConstVec toConst() {
+		return new ConstVec(x, y, z);
+	}
 	
+	// gleiche Werte wie Objects.hash(x, y, z), aber ohne Varargs-Array und Boxing
 	@Override
 	public int hashCode() {
-		return Objects.hash(x, y, z);
+		return 31 * (31 * (31 + x) + y) + z;
 	}
 
 	@Override
@@ -1,7 +1,5 @@
 package ocean;
 
-import java.util.Objects;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -80,9 +78,10 @@ public class Vec2D {
 		return "("+ x+ ","+y+")";
 	}
 	
+	// gleiche Werte wie Objects.hash(x, y), aber ohne Varargs-Array und Boxing
 	@Override
 	public int hashCode() {
-		return Objects.hash(x, y);
+		return 31 * (31 + x) + y;
 	}
 
 	@Override
@@ -112,6 +111,20 @@ public class Vec2D {
 	public Vec asVec() {
 		return new Vec(x, y, 0);
 	}
+	// Kodierung als long (siehe PackedVec2D)
+	public long toPacked() {
+		return PackedVec2D.pack(x, y);
+	}
+
+	public static Vec2D fromPacked(long packed) {
+		return PackedVec2D.toVec2D(packed);
+	}
+
+	// unveraenderliche Kopie
+	public ConstVec2D toConst() {
+		return new ConstVec2D(x, y);
+	}
+
 	// Richtung spiegeln
 	public Vec2D invert() {
 		return new Vec2D(x * -1,y * -1);
@@ -126,6 +139,11 @@ public class Vec2D {
 		}
 		return neighbours;
 	}
+
+	// Wie getNeighbours(), aber ohne Objekt-Erzeugung (siehe SectorNeighbourhood)
+	public boolean forEachNeighbour(SectorVisitor visitor) {
+		return SectorNeighbourhood.forEachNeighbour(x, y, visitor);
+	}
 	
 	public static Vec2D fromJson(String json) {
 		return fromJson(new JSONObject(json));
@@ -179,7 +179,9 @@ function App() {
   const fetchPictureAfterTakePhoto = useCallback(
     async (subId, maxAttempts = 8, intervalMs = 800) => {
       setLastPicture((prev) => ({ ...prev, loading: true, id: subId }))
-      const url = subId ? `/submarine/picture?id=${encodeURIComponent(subId)}` : '/submarine/picture'
+      const url = subId
+        ? `/submarine/picture?id=${encodeURIComponent(subId)}&size=preview`
+        : '/submarine/picture?size=preview'
       for (let attempt = 0; attempt < maxAttempts; attempt++) {
         await new Promise((r) => setTimeout(r, attempt === 0 ? 600 : intervalMs))
         try {
@@ -201,7 +203,7 @@ function App() {
       // Fallback: Bild einmalig über Datei-URL anzeigen
       setLastPicture({
         picture: null,
-        pictureUrl: `${API_BASE}/submarine/picture/latest?id=${encodeURIComponent(subId)}&t=${Date.now()}`,
+        pictureUrl: `${API_BASE}/submarine/picture/latest?id=${encodeURIComponent(subId)}&size=preview&t=${Date.now()}`,
         id: subId,
         timestamp: null,
         loading: false,
@@ -0,0 +1,333 @@
+package shipapp;
+
+import ocean.ConstVec;
+import ocean.ConstVec2D;
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchrones Logging für die heißen Pfade des ShipAppApiServers.
+ *
+ * Log-Aufrufe schreiben nur Format-String und Argumente in einen lock-freien
+ * Ringpuffer (mehrere Produzenten, ein Konsument). Formatierung und Ausgabe auf
+ * stdout/stderr übernimmt ein Hintergrund-Thread. Ist der Puffer voll, wird die
+ * Meldung verworfen und gezählt, der aufrufende Thread blockiert nie.
+ *
+ * Jede Meldung hat einen Typ (z.B. "ocean.raw", "sub.picture"), für den
+ * Sampling (jede n-te Meldung) und ein Limit pro Sekunde gesetzt werden können.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.log.level=DEBUG|INFO|WARN|ERROR|OFF   (Standard: INFO)
+ *   -Dshipapp.log.format=text|json                  (Standard: text)
+ *   -Dshipapp.log.buffer=8192                       (Puffergröße, Zweierpotenz)
+ *   -Dshipapp.log.sample.<typ>=n                    (nur jede n-te Meldung)
+ *   -Dshipapp.log.rate.<typ>=n                      (max. n Meldungen pro Sekunde)
+ */
+public final class AsyncLog {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final String PROP_PREFIX = "shipapp.log.";
+
+    private static volatile Level threshold = parseLevel(System.getProperty(PROP_PREFIX + "level"), Level.INFO);
+    private static volatile boolean json = "json".equalsIgnoreCase(System.getProperty(PROP_PREFIX + "format"));
+
+    // Ringpuffer: pro Slot eine Sequenznummer (Vyukov-Queue) plus die Nutzdaten
+    private static final int CAPACITY = roundUpToPowerOfTwo(Integer.getInteger(PROP_PREFIX + "buffer", 8192));
+    private static final int MASK = CAPACITY - 1;
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final String[] types = new String[CAPACITY];
+    private static final String[] formats = new String[CAPACITY];
+    private static final Object[][] arguments = new Object[CAPACITY][];
+    private static final String[] threadNames = new String[CAPACITY];
+
+    private static final AtomicLong tail = new AtomicLong();
+    private static long head = 0; // nur unter dem Klassen-Lock (drainAvailable) benutzt
+
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final Map<String, TypePolicy> policies = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        Thread drain = new Thread(AsyncLog::drainLoop, "ShipAppApi-LogWriter");
+        drain.setDaemon(true);
+        drain.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "ShipAppApi-LogFlush"));
+    }
+
+    private AsyncLog() {
+    }
+
+    // ------------------------------------------------------------
+    // Konfiguration
+    // ------------------------------------------------------------
+
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static void setJsonOutput(boolean enabled) {
+        json = enabled;
+    }
+
+    /**
+     * Setzt Sampling und Ratenlimit für einen Meldungstyp.
+     *
+     * @param type        Meldungstyp
+     * @param sampleEvery nur jede n-te Meldung ausgeben (1 = alle)
+     * @param maxPerSecond maximale Meldungen pro Sekunde (0 = unbegrenzt)
+     */
+    public static void configure(String type, int sampleEvery, int maxPerSecond) {
+        policies.put(type, new TypePolicy(sampleEvery, maxPerSecond));
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+
+    /**
+     * Anzahl der wegen vollem Puffer verworfenen Meldungen.
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // ------------------------------------------------------------
+    // Log-Aufrufe
+    // ------------------------------------------------------------
+
+    public static void debug(String type, String format, Object... args) {
+        log(Level.DEBUG, type, format, args);
+    }
+
+    public static void info(String type, String format, Object... args) {
+        log(Level.INFO, type, format, args);
+    }
+
+    public static void warn(String type, String format, Object... args) {
+        log(Level.WARN, type, format, args);
+    }
+
+    public static void error(String type, String format, Object... args) {
+        log(Level.ERROR, type, format, args);
+    }
+
+    public static void log(Level level, String type, String format, Object... args) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        TypePolicy policy = policies.computeIfAbsent(type, AsyncLog::policyFromProperties);
+        if (!policy.admit()) {
+            return;
+        }
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) (pos & MASK);
+            long seq = sequences.get(slot);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    timestamps[slot] = System.currentTimeMillis();
+                    levels[slot] = level;
+                    types[slot] = type;
+                    formats[slot] = format;
+                    arguments[slot] = snapshot(args);
+                    threadNames[slot] = Thread.currentThread().getName();
+                    sequences.set(slot, pos + 1);
+                    return;
+                }
+                pos = tail.get();
+            } else if (seq < pos) {
+                // Puffer voll: lieber verwerfen als blockieren
+                dropped.incrementAndGet();
+                return;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Veränderliche Argumente (Vec2D, JSONObject, ...) werden schon beim Aufruf in
+     * Text umgewandelt, sonst gäbe der Schreib-Thread später evtl. geänderte Werte aus.
+     * Zahlen, Strings, Enums und ConstVec/ConstVec2D werden unverändert übernommen.
+     */
+    private static Object[] snapshot(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] copy = null;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (isImmutable(arg)) {
+                continue;
+            }
+            if (copy == null) {
+                copy = args.clone();
+            }
+            if (arg instanceof AtomicLong || arg instanceof AtomicInteger) {
+                copy[i] = ((Number) arg).longValue(); // bleibt für %d formatierbar
+            } else {
+                copy[i] = String.valueOf(arg);
+            }
+        }
+        return copy != null ? copy : args;
+    }
+
+    private static boolean isImmutable(Object arg) {
+        return arg == null
+                || arg instanceof String
+                || arg instanceof Integer || arg instanceof Long
+                || arg instanceof Double || arg instanceof Float
+                || arg instanceof Short || arg instanceof Byte
+                || arg instanceof Boolean || arg instanceof Character
+                || arg instanceof Enum<?>
+                || arg instanceof ConstVec2D || arg instanceof ConstVec;
+    }
+
+    // ------------------------------------------------------------
+    // Hintergrund-Thread
+    // ------------------------------------------------------------
+
+    private static void drainLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            int written = drainAvailable();
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                System.err.printf("AsyncLog: %d Meldungen verworfen (Puffer voll)%n", drops - reportedDrops);
+                reportedDrops = drops;
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+    }
+
+    private static synchronized int drainAvailable() {
+        int written = 0;
+        while (true) {
+            int slot = (int) (head & MASK);
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            write(timestamps[slot], levels[slot], types[slot], formats[slot], arguments[slot], threadNames[slot]);
+            arguments[slot] = null;
+            formats[slot] = null;
+            sequences.set(slot, head + CAPACITY);
+            head++;
+            written++;
+        }
+        if (written > 0) {
+            System.out.flush();
+        }
+        return written;
+    }
+
+    /**
+     * Gibt alle bereits gepufferten Meldungen synchron aus.
+     */
+    public static void flush() {
+        drainAvailable();
+        System.err.flush();
+    }
+
+    private static void write(long ts, Level level, String type, String format, Object[] args, String thread) {
+        String text;
+        try {
+            text = args == null || args.length == 0 ? format : String.format(format, args);
+        } catch (RuntimeException e) {
+            text = format;
+        }
+        PrintStream out = level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+        if (json) {
+            JSONObject jo = new JSONObject();
+            jo.put("ts", Instant.ofEpochMilli(ts).toString());
+            jo.put("level", level.name());
+            jo.put("type", type);
+            jo.put("thread", thread);
+            jo.put("msg", text);
+            out.println(jo.toString());
+        } else {
+            out.println(text);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Sampling / Ratenlimit pro Meldungstyp
+    // ------------------------------------------------------------
+
+    private static TypePolicy policyFromProperties(String type) {
+        int sample = Integer.getInteger(PROP_PREFIX + "sample." + type, 1);
+        int rate = Integer.getInteger(PROP_PREFIX + "rate." + type, 0);
+        return new TypePolicy(sample, rate);
+    }
+
+    private static final class TypePolicy {
+        private final int sampleEvery;
+        private final int maxPerSecond;
+        private final AtomicLong counter = new AtomicLong();
+        // obere 32 Bit: Sekunde, untere 32 Bit: Anzahl in dieser Sekunde
+        private final AtomicLong window = new AtomicLong();
+
+        TypePolicy(int sampleEvery, int maxPerSecond) {
+            this.sampleEvery = Math.max(1, sampleEvery);
+            this.maxPerSecond = Math.max(0, maxPerSecond);
+        }
+
+        boolean admit() {
+            if (sampleEvery > 1 && counter.getAndIncrement() % sampleEvery != 0) {
+                return false;
+            }
+            if (maxPerSecond == 0) {
+                return true;
+            }
+            long second = System.currentTimeMillis() / 1000;
+            while (true) {
+                long current = window.get();
+                long currentSecond = current >>> 32;
+                long count = current & 0xFFFFFFFFL;
+                long next;
+                if (currentSecond != second) {
+                    next = (second << 32) | 1;
+                } else if (count < maxPerSecond) {
+                    next = current + 1;
+                } else {
+                    return false;
+                }
+                if (window.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int v = Math.max(2, value);
+        return Integer.highestOneBit(v - 1) << 1;
+    }
+}
@@ -0,0 +1,146 @@
+package shipapp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit Breaker vor einer entfernten Ressource (hier der Datenbank).
+ *
+ * Zustände:
+ * - CLOSED: Aufrufe laufen normal; Fehler werden gezählt
+ * - OPEN: nach failureThreshold Fehlern in Folge (oder wenn die Verbindung nachweislich
+ *   weg ist). Aufrufer prüfen {@link #allow()} und brechen sofort ab, statt selbst
+ *   auf einen Verbindungsaufbau zu warten.
+ * - HALF_OPEN: ein einzelner Hintergrund-Thread probiert gerade die Wiederverbindung.
+ *   Schlägt die Probe fehl, wartet er doppelt so lange bis zur nächsten (bis maxBackoff);
+ *   gelingt sie, ist der Breaker wieder CLOSED.
+ *
+ * Threadsicher. Die Probe läuft nie parallel zu sich selbst.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Wiederverbindungsversuch; wirft bei Misserfolg.
+     */
+    interface Probe {
+        void run() throws Exception;
+    }
+
+    private static final Metrics.Family<Metrics.Counter> OPENED = Metrics.counter(
+            "shipapp_circuit_opened_total", "Wie oft der Circuit Breaker geöffnet wurde", "circuit");
+    private static final Metrics.Family<Metrics.Counter> REJECTED = Metrics.counter(
+            "shipapp_circuit_rejected_total", "Wegen offenem Circuit Breaker sofort abgebrochene Aufrufe", "circuit");
+    private static final Metrics.Family<Metrics.Counter> PROBES = Metrics.counter(
+            "shipapp_circuit_probes_total", "Wiederverbindungsversuche des Circuit Breakers je Ergebnis", "circuit", "result");
+
+    private final String name;
+    private final int failureThreshold;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Probe probe;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    private volatile String lastError;
+
+    /**
+     * @param name                 Name für Metriken und Log (z.B. "db")
+     * @param failureThreshold     Fehler in Folge, nach denen der Breaker öffnet
+     * @param initialBackoffMillis Wartezeit vor der ersten Probe
+     * @param maxBackoffMillis     größte Wartezeit zwischen zwei Proben
+     * @param probe                Wiederverbindung; nach Erfolg ist die Ressource wieder nutzbar
+     */
+    CircuitBreaker(String name, int failureThreshold, long initialBackoffMillis, long maxBackoffMillis, Probe probe) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.probe = probe;
+        Metrics.gauge("shipapp_" + name + "_circuit_state", "Zustand des Circuit Breakers (0 = geschlossen, 1 = offen, 2 = Probe läuft)",
+                () -> state.get().ordinal());
+    }
+
+    /**
+     * true, wenn Aufrufe durchgelassen werden. Bei offenem Breaker wird der abgewiesene
+     * Aufruf gezählt.
+     */
+    boolean allow() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        REJECTED.labels(name).inc();
+        return false;
+    }
+
+    State state() {
+        return state.get();
+    }
+
+    /**
+     * Erfolgreicher Aufruf: Fehlerzähler zurücksetzen.
+     */
+    void success() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * Fehlgeschlagener Aufruf; öffnet den Breaker nach failureThreshold Fehlern in Folge.
+     */
+    void failure(Throwable cause) {
+        lastError = String.valueOf(cause.getMessage());
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(cause);
+        }
+    }
+
+    /**
+     * Öffnet den Breaker sofort und startet die Probe (falls nicht schon offen).
+     */
+    void open(Throwable cause) {
+        if (!state.compareAndSet(State.CLOSED, State.OPEN)) {
+            return;
+        }
+        openedAt = System.currentTimeMillis();
+        if (cause != null) {
+            lastError = String.valueOf(cause.getMessage());
+        }
+        OPENED.labels(name).inc();
+        AsyncLog.warn("circuit", "Circuit Breaker %s geöffnet: %s", name, lastError);
+        Thread thread = new Thread(this::probeLoop, "ShipAppApi-Probe-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void probeLoop() {
+        long backoff = initialBackoffMillis;
+        while (true) {
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            state.set(State.HALF_OPEN);
+            try {
+                probe.run();
+                PROBES.labels(name, "success").inc();
+                consecutiveFailures.set(0);
+                state.set(State.CLOSED);
+                AsyncLog.info("circuit", "Circuit Breaker %s geschlossen, Ressource nach %d s wieder erreichbar",
+                        name, (System.currentTimeMillis() - openedAt) / 1000);
+                return;
+            } catch (Exception e) {
+                PROBES.labels(name, "failure").inc();
+                lastError = String.valueOf(e.getMessage());
+                state.set(State.OPEN);
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+                AsyncLog.debug("circuit", "Circuit Breaker %s: Probe fehlgeschlagen, nächste in %d ms: %s",
+                        name, backoff, lastError);
+            }
+        }
+    }
+}
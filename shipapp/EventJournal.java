@@ -0,0 +1,604 @@
+package shipapp;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Lokales Journal der Submarine-Ereignisse vor der Datenbank (nur anhängen).
+ *
+ * Jedes Ereignis (Operation des {@link SubmarineRepository}, Argumente als JSON und
+ * optional Binärdaten wie ein PNG) wird als Datensatz mit fortlaufender Nummer (seq)
+ * und CRC32C an das aktuelle Segment angehängt. Segmente sind Dateien
+ * segment-&lt;erste seq&gt;.log; ist eines voll, beginnt ein neues.
+ *
+ * Dauerhaft wird ein Datensatz erst mit fsync. Das übernimmt ein eigener Thread für
+ * alle bis dahin geschriebenen Datensätze gemeinsam (Group Commit): Viele gleichzeitige
+ * {@link #append} warten so auf dasselbe fsync statt jedes auf ein eigenes.
+ *
+ * Der {@link JournalReplayer} liest die Datensätze wieder und trägt sie in die Datenbank
+ * ein; bis wohin das geschehen ist, steht in der Datei checkpoint. Vollständig
+ * übertragene Segmente werden gelöscht. Beim Öffnen wird ein nach einem Absturz
+ * unvollständiger letzter Datensatz abgeschnitten.
+ *
+ * Ein Journal-Verzeichnis gehört genau einem Prozess (Dateisperre auf lock). Die Datei
+ * id enthält eine zufällige Kennung, mit der die Datenbank bereits übertragene
+ * Datensätze verschiedener Journale unterscheidet.
+ */
+public final class EventJournal implements AutoCloseable {
+
+    // Datensatz: Länge (ohne diese 4 Bytes), CRC32C über den Rest, dann der Inhalt
+    private static final int HEADER_BYTES = 4 + 4;
+    // Inhalt: seq, Zeit, Länge op, op, Länge JSON, JSON, Binärdaten
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private static final Metrics.Counter APPENDED = Metrics.counter(
+            "shipapp_journal_appended_total", "In das Journal geschriebene Ereignisse").labels();
+    private static final Metrics.Counter APPENDED_BYTES = Metrics.counter(
+            "shipapp_journal_appended_bytes_total", "In das Journal geschriebene Bytes").labels();
+    private static final Metrics.Counter SYNCS = Metrics.counter(
+            "shipapp_journal_fsyncs_total", "fsync-Aufrufe des Journals (ein Aufruf deckt alle wartenden Ereignisse ab)").labels();
+    private static final Metrics.Histogram COMMIT_SECONDS = Metrics.histogram(
+            "shipapp_journal_commit_seconds", "Wartezeit von append bis das Ereignis dauerhaft gespeichert ist").labels();
+    private static final Metrics.Counter DROPPED_SEGMENTS = Metrics.counter(
+            "shipapp_journal_dropped_segments_total", "Wegen maxMb verworfene, noch nicht übertragene Segmente").labels();
+
+    /**
+     * Ein gelesener Datensatz. blob ist ein Ausschnitt eines wiederverwendeten Puffers
+     * und nur bis zum nächsten Lesen gültig.
+     */
+    record Entry(long seq, long time, String op, JSONObject args, byte[] blob, int blobOffset, int blobLength,
+                 Path segment, long endPosition) {
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final boolean waitForSync;
+    private final String id;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    // Schreiben (unter writeLock)
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private Path segment;
+    private long segmentSize;
+    private long lastSeq;
+    // lastSeq für den fsync-Thread, ohne writeLock lesbar
+    private volatile long writtenSeq;
+
+    // Dauerhaftigkeit (unter syncLock, nie writeLock innerhalb von syncLock nehmen)
+    private final Object syncLock = new Object();
+    private volatile long syncedSeq;
+    private volatile boolean closed;
+    private final Thread syncer;
+
+    /**
+     * Öffnet (oder legt an) das Journal in dir.
+     *
+     * @param segmentBytes Größe, ab der ein neues Segment beginnt
+     * @param maxBytes     maximale Gesamtgröße; darüber werden die ältesten Segmente
+     *                     verworfen, auch wenn sie noch nicht übertragen sind
+     * @param waitForSync  true: append kehrt erst nach dem fsync zurück
+     * @throws IOException wenn das Verzeichnis nicht nutzbar ist oder ein anderer Prozess es sperrt
+     */
+    public EventJournal(Path dir, long segmentBytes, long maxBytes, boolean waitForSync) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.waitForSync = waitForSync;
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = tryLock(lockChannel);
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Journal " + dir.toAbsolutePath() + " wird bereits benutzt (anderer Prozess oder zweites Repository)");
+        }
+        this.id = readOrCreateId();
+        recover();
+        this.syncer = new Thread(this::syncLoop, "ShipAppApi-JournalSync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+    // null, wenn ein anderer Prozess oder diese JVM das Verzeichnis schon benutzt
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Kennung dieses Journals (bleibt über Neustarts gleich).
+     */
+    public String id() {
+        return id;
+    }
+
+    public Path directory() {
+        return dir;
+    }
+
+    /**
+     * Hängt ein Ereignis an und wartet (je nach Einstellung) bis es dauerhaft gespeichert ist.
+     *
+     * @return seq des Ereignisses
+     */
+    public long append(String op, JSONObject args, byte[] blob, int blobOffset, int blobLength) throws IOException {
+        byte[] opBytes = op.getBytes(StandardCharsets.UTF_8);
+        byte[] json = args.toString().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 8 + 8 + 2 + opBytes.length + 4 + json.length + blobLength;
+        if (bodyLength + 4 > MAX_RECORD_BYTES) {
+            throw new IOException("Ereignis zu groß für das Journal: " + bodyLength + " Bytes");
+        }
+
+        long start = System.nanoTime();
+        long seq;
+        synchronized (writeLock) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            seq = lastSeq + 1;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES + 8 + 8 + 2 + opBytes.length + 4 + json.length);
+            head.putInt(bodyLength + 4).putInt(0)
+                    .putLong(seq).putLong(System.currentTimeMillis())
+                    .putShort((short) opBytes.length).put(opBytes)
+                    .putInt(json.length).put(json);
+            CRC32C crc = new CRC32C();
+            crc.update(head.array(), HEADER_BYTES, head.position() - HEADER_BYTES);
+            if (blobLength > 0) {
+                crc.update(blob, blobOffset, blobLength);
+            }
+            head.putInt(4, (int) crc.getValue());
+            head.flip();
+
+            if (channel == null || segmentSize >= segmentBytes) {
+                roll(seq);
+            }
+            try {
+                writeFully(head);
+                if (blobLength > 0) {
+                    writeFully(ByteBuffer.wrap(blob, blobOffset, blobLength));
+                }
+            } catch (IOException e) {
+                discardPartialRecord(e);
+                throw e;
+            }
+            segmentSize += HEADER_BYTES + bodyLength;
+            lastSeq = seq;
+            writtenSeq = seq;
+        }
+        APPENDED.inc();
+        APPENDED_BYTES.add(HEADER_BYTES + bodyLength);
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+            if (waitForSync) {
+                while (syncedSeq < seq && !closed) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        COMMIT_SECONDS.observeSince(start);
+        return seq;
+    }
+
+    /**
+     * Höchste geschriebene seq (auch wenn noch nicht per fsync gesichert).
+     */
+    public long lastSeq() {
+        return writtenSeq;
+    }
+
+    /**
+     * Höchste per fsync gesicherte seq. Nur bis hierhin darf übertragen werden: Ein nicht
+     * gesicherter Datensatz kann bei einem Absturz verloren gehen und seine seq danach
+     * neu vergeben werden.
+     */
+    public long syncedSeq() {
+        return syncedSeq;
+    }
+
+    // ------------------------------------------------------------
+    // Schreiben und fsync
+    // ------------------------------------------------------------
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Entfernt einen halb geschriebenen Datensatz (z.B. Platte voll) wieder aus dem
+     * Segment. Sonst bliebe der Replayer an ihm hängen und übersähe nach dem nächsten
+     * Segmentwechsel alles dahinter. Klappt das Abschneiden nicht, wird das Segment
+     * geschlossen; das nächste append beginnt ein neues, hinter dem Rest steht dann nichts.
+     */
+    private void discardPartialRecord(IOException cause) {
+        try {
+            channel.truncate(segmentSize);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            AsyncLog.error("journal", "Unvollständiger Datensatz in %s nicht entfernt, neues Segment folgt: %s",
+                    segment.getFileName(), e.getMessage());
+            try {
+                // die vollständigen Datensätze davor trotzdem sichern
+                channel.force(false);
+            } catch (IOException ex) {
+                AsyncLog.error("journal", "fsync des Journals fehlgeschlagen: %s", ex.getMessage());
+            }
+            // wie beim Segmentwechsel: ohne offenes Segment sichert der fsync-Thread nichts mehr
+            markSynced(lastSeq);
+            try {
+                channel.close();
+                if (segmentSize == 0) {
+                    // leeres Segment: das nächste bekommt denselben Namen
+                    Files.deleteIfExists(segment);
+                }
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    // neues Segment beginnen; das alte wird vorher vollständig gesichert
+    private void roll(long firstSeq) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            markSynced(lastSeq);
+        }
+        segment = dir.resolve(String.format("segment-%020d.log", firstSeq));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+        enforceMaxSize();
+    }
+
+    private void syncLoop() {
+        while (!closed) {
+            FileChannel ch;
+            long target;
+            synchronized (syncLock) {
+                try {
+                    while (!closed && syncedSeq >= writtenSeq) {
+                        // regelmäßig aufwachen, falls ein notify verpasst wurde
+                        syncLock.wait(100);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            synchronized (writeLock) {
+                ch = channel;
+                target = lastSeq;
+            }
+            try {
+                if (ch != null) {
+                    ch.force(false);
+                    SYNCS.inc();
+                }
+            } catch (ClosedChannelException e) {
+                // Segment wurde inzwischen gewechselt, roll() hat es bereits gesichert
+            } catch (IOException e) {
+                AsyncLog.error("journal", "fsync des Journals fehlgeschlagen: %s", e.getMessage());
+                continue;
+            }
+            markSynced(target);
+        }
+    }
+
+    private void markSynced(long seq) {
+        synchronized (syncLock) {
+            syncedSeq = Math.max(syncedSeq, seq);
+            syncLock.notifyAll();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Lesen
+    // ------------------------------------------------------------
+
+    /**
+     * Liest Datensätze ab einer Position. Wird vom Replayer-Thread benutzt.
+     */
+    final class Reader implements AutoCloseable {
+        private Path current;
+        private FileChannel in;
+        private long position;
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        /**
+         * Beginnt beim ersten Datensatz mit seq größer als afterSeq.
+         */
+        Reader(long afterSeq) throws IOException {
+            List<Path> segments = segments();
+            for (Path p : segments) {
+                if (firstSeq(p) <= afterSeq + 1) {
+                    current = p;
+                }
+            }
+            if (current == null && !segments.isEmpty()) {
+                current = segments.get(0);
+            }
+            if (current != null) {
+                in = FileChannel.open(current, StandardOpenOption.READ);
+                // bereits übertragene Datensätze im ersten Segment überspringen
+                Entry e;
+                while ((e = peek()) != null && e.seq() <= afterSeq) {
+                    position = e.endPosition();
+                }
+            }
+        }
+
+        /**
+         * Nächster per fsync gesicherter Datensatz oder null, wenn (noch) keiner vorliegt.
+         * Wechselt bei Bedarf in das nächste Segment.
+         */
+        Entry next() throws IOException {
+            while (true) {
+                if (in == null) {
+                    List<Path> segments = segments();
+                    if (segments.isEmpty()) {
+                        return null;
+                    }
+                    current = segments.get(0);
+                    in = FileChannel.open(current, StandardOpenOption.READ);
+                    position = 0;
+                }
+                Entry e = peek();
+                if (e != null) {
+                    if (e.seq() > syncedSeq) {
+                        return null;
+                    }
+                    position = e.endPosition();
+                    return e;
+                }
+                Path following = nextSegment(current);
+                if (following == null) {
+                    // Ende erreicht oder Datensatz wird gerade noch geschrieben
+                    return null;
+                }
+                if (position < in.size()) {
+                    // abgeschlossenes Segment mit beschädigtem Datensatz: Rest überspringen
+                    AsyncLog.error("journal", "Journal %s: beschädigter Datensatz bei Byte %d, Rest des Segments übersprungen",
+                            current.getFileName(), position);
+                }
+                in.close();
+                current = following;
+                in = FileChannel.open(current, StandardOpenOption.READ);
+                position = 0;
+            }
+        }
+
+        private Entry peek() throws IOException {
+            return readEntry(in, current, position, this);
+        }
+
+        ByteBuffer buffer(int size) {
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+            }
+            buffer.clear().limit(size);
+            return buffer;
+        }
+
+        Path segment() {
+            return current;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    Reader reader(long afterSeq) throws IOException {
+        return new Reader(afterSeq);
+    }
+
+    // null, wenn an position kein vollständiger, gültiger Datensatz steht
+    private static Entry readEntry(FileChannel in, Path segment, long position, Reader reader) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (readFully(in, header, position) < HEADER_BYTES) {
+            return null;
+        }
+        int length = header.getInt(0);
+        int crcValue = header.getInt(4);
+        if (length < 4 + 8 + 8 + 2 + 4 || length > MAX_RECORD_BYTES) {
+            return null;
+        }
+        int bodyLength = length - 4;
+        ByteBuffer body = reader != null ? reader.buffer(bodyLength) : ByteBuffer.allocate(bodyLength);
+        if (readFully(in, body, position + HEADER_BYTES) < bodyLength) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body.array(), 0, bodyLength);
+        if ((int) crc.getValue() != crcValue) {
+            return null;
+        }
+        body.flip();
+        long seq = body.getLong();
+        long time = body.getLong();
+        byte[] op = new byte[body.getShort()];
+        body.get(op);
+        byte[] json = new byte[body.getInt()];
+        body.get(json);
+        int blobOffset = body.position();
+        return new Entry(seq, time, new String(op, StandardCharsets.UTF_8),
+                new JSONObject(new String(json, StandardCharsets.UTF_8)),
+                body.array(), blobOffset, bodyLength - blobOffset, segment, position + HEADER_BYTES + bodyLength);
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    // ------------------------------------------------------------
+    // Checkpoint und Aufräumen
+    // ------------------------------------------------------------
+
+    /**
+     * seq des zuletzt in die Datenbank übertragenen Ereignisses (0 = keines).
+     */
+    long readCheckpoint() {
+        try {
+            return Long.parseLong(Files.readString(dir.resolve("checkpoint")).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Speichert den Checkpoint und löscht Segmente, die vollständig davor liegen.
+     *
+     * @param currentSegment Segment, aus dem gerade gelesen wird (bleibt stehen)
+     */
+    void checkpoint(long seq, Path currentSegment) throws IOException {
+        Path tmp = dir.resolve("checkpoint.tmp");
+        Files.writeString(tmp, Long.toString(seq));
+        Files.move(tmp, dir.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (currentSegment == null) {
+            return;
+        }
+        for (Path p : segments()) {
+            if (p.equals(currentSegment) || firstSeq(p) >= firstSeq(currentSegment)) {
+                break;
+            }
+            Files.deleteIfExists(p);
+        }
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().matches("segment-\\d{20}\\.log"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path nextSegment(Path current) throws IOException {
+        for (Path p : segments()) {
+            if (firstSeq(p) > firstSeq(current)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    // älteste Segmente verwerfen, wenn das Journal zu groß wird (Datenbank lange weg)
+    private void enforceMaxSize() throws IOException {
+        List<Path> segments = new ArrayList<>(segments());
+        long total = 0;
+        for (Path p : segments) {
+            total += Files.size(p);
+        }
+        while (total > maxBytes && segments.size() > 1) {
+            Path oldest = segments.remove(0);
+            total -= Files.size(oldest);
+            Files.deleteIfExists(oldest);
+            DROPPED_SEGMENTS.inc();
+            AsyncLog.error("journal", "Journal größer als %d MB, Segment %s verworfen",
+                    maxBytes / (1024 * 1024), oldest.getFileName());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Öffnen
+    // ------------------------------------------------------------
+
+    private String readOrCreateId() throws IOException {
+        Path file = dir.resolve("id");
+        if (Files.exists(file)) {
+            return Files.readString(file).trim();
+        }
+        String newId = UUID.randomUUID().toString();
+        Files.writeString(file, newId);
+        return newId;
+    }
+
+    // letzte seq bestimmen und einen abgerissenen Datensatz am Ende abschneiden
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        lastSeq = Math.max(0, readCheckpoint());
+        if (segments.isEmpty()) {
+            syncedSeq = lastSeq;
+            writtenSeq = lastSeq;
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long position = 0;
+        try (FileChannel in = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            lastSeq = Math.max(lastSeq, firstSeq(last) - 1);
+            Entry e;
+            while ((e = readEntry(in, last, position, null)) != null) {
+                lastSeq = e.seq();
+                position = e.endPosition();
+            }
+            if (position < in.size()) {
+                AsyncLog.warn("journal", "Journal %s: unvollständigen Datensatz am Ende abgeschnitten (%d Bytes)",
+                        last.getFileName(), in.size() - position);
+                in.truncate(position);
+                in.force(true);
+            }
+        }
+        syncedSeq = lastSeq;
+        writtenSeq = lastSeq;
+        segment = last;
+        channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            closed = true;
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+        markSynced(writtenSeq);
+        syncer.interrupt();
+        lock.release();
+        lockChannel.close();
+    }
+}
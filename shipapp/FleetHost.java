@@ -0,0 +1,141 @@
+package shipapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fleet-Modus: mehrere Schiffe in einer JVM hinter einem gemeinsamen HTTP-Server.
+ *
+ * Jedes Schiff hat eine eigene Verbindung zum Ocean-Server und einen eigenen
+ * Submarine-Server-Port, teilt sich aber HTTP-Server, Thread-Pool,
+ * Datenbank-Repository, Karte ({@link TerrainMap}) und Bildverkleinerung
+ * ({@link PictureThumbnailer}) mit den anderen Schiffen.
+ *
+ * Die Endpunkte eines Schiffs liegen unter /api/ships/{nr}/..., z.B.
+ * /api/ships/1/state, /api/ships/2/navigate. GET /api/ships listet alle Schiffe.
+ *
+ * Aufruf:
+ *   java FleetHost [httpPort] [anzahlSchiffe] [ersterSubServerPort] [oceanShipPort] [oceanSubPort] [oceanHost]
+ *
+ * Beispiel für 5 Schiffe (maxships aus oceanserver.conf), Submarine-Ports 6000-6004:
+ *   java FleetHost 8080 5 6000 8150 8151 localhost
+ */
+public class FleetHost {
+
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final int DEFAULT_SHIP_COUNT = 5;
+    private static final int DEFAULT_FIRST_SUB_SERVER_PORT = 6000;
+    private static final int DEFAULT_OCEAN_SHIP_PORT = 8150;
+    private static final int DEFAULT_OCEAN_SUB_PORT = 8151;
+    private static final String DEFAULT_OCEAN_HOST = "localhost";
+
+    private final List<ShipAppApiServer> ships = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        int httpPort = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_HTTP_PORT;
+        int shipCount = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_SHIP_COUNT;
+        int firstSubServerPort = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_FIRST_SUB_SERVER_PORT;
+        int oceanShipPort = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_OCEAN_SHIP_PORT;
+        int oceanSubPort = args.length >= 5 ? Integer.parseInt(args[4]) : DEFAULT_OCEAN_SUB_PORT;
+        String oceanHost = args.length >= 6 ? args[5] : DEFAULT_OCEAN_HOST;
+
+        System.out.println("=== FleetHost Konfiguration ===");
+        System.out.printf("  HTTP-Port:           %d%n", httpPort);
+        System.out.printf("  Schiffe:             %d%n", shipCount);
+        System.out.printf("  Submarine-Server:    %d-%d%n", firstSubServerPort, firstSubServerPort + shipCount - 1);
+        System.out.printf("  Ocean-Ship-Port:     %d%n", oceanShipPort);
+        System.out.printf("  Ocean-Sub-Port:      %d%n", oceanSubPort);
+        System.out.printf("  Ocean-Host:          %s%n", oceanHost);
+        System.out.println("===============================");
+
+        new FleetHost().start(httpPort, shipCount, firstSubServerPort, oceanShipPort, oceanSubPort, oceanHost);
+    }
+
+    public void start(int httpPort, int shipCount, int firstSubServerPort, int oceanShipPort,
+                      int oceanSubPort, String oceanHost) throws IOException {
+        // gemeinsame Ressourcen
+        SubmarineRepository repository = new SubmarineRepository();
+        TerrainMap terrainMap = new TerrainMap();
+        PictureThumbnailer thumbnailer = new PictureThumbnailer();
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors() * 2), r -> {
+                    Thread t = new Thread(r, "FleetHost-Http-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(httpPort), 0);
+        for (int i = 0; i < shipCount; i++) {
+            int nr = i + 1;
+            ShipAppApiServer ship = new ShipAppApiServer(httpPort, firstSubServerPort + i,
+                    oceanShipPort, oceanSubPort, oceanHost);
+            ship.startInFleet(httpServer, "/api/ships/" + nr, repository, terrainMap, thumbnailer);
+            ships.add(ship);
+            System.out.printf("Schiff %d bereit (Submarine-Server-Port %d)%n", nr, firstSubServerPort + i);
+        }
+        ShipAppApiServer.enableSubmarinePoolFromConfig();
+        PartitionMaintenance.startFromConfig();
+        HeightmapBuilder.startFromConfig();
+
+        httpServer.createContext("/api/ships", this::handleShips);
+        // Metriken, JFR-Aufzeichnung, Tabellenwartung und Höhenkarte sind JVM-weit, daher einmal für die ganze Flotte
+        httpServer.createContext("/api/metrics", new ShipAppApiServer.MetricsHandler());
+        httpServer.createContext("/api/admin/jfr", new ShipAppApiServer.JfrHandler());
+        httpServer.createContext("/api/admin/maintenance", new ShipAppApiServer.MaintenanceHandler());
+        httpServer.createContext("/api/map/heightmap", new ShipAppApiServer.HeightmapHandler());
+        httpServer.createContext("/api", this::handleRoot);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+
+        System.out.println("FleetHost läuft auf http://localhost:" + httpPort + "/api/ships");
+    }
+
+    // GET /api - Statusantwort; unbekannte /api-Pfade liefern 404 statt "ok"
+    private void handleRoot(HttpExchange exchange) throws IOException {
+        if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+            ShipAppApiServer.handleOptions(exchange);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/api") && !path.equals("/api/")) {
+            ShipAppApiServer.sendJson(exchange, 404, new JSONObject().put("error", "unknown endpoint"));
+            return;
+        }
+        ShipAppApiServer.sendJson(exchange, 200, new JSONObject().put("status", "ok").put("ships", ships.size()));
+    }
+
+    // GET /api/ships - Übersicht aller Schiffe; unbekannte Unterpfade liefern 404
+    private void handleShips(HttpExchange exchange) throws IOException {
+        if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+            ShipAppApiServer.handleOptions(exchange);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/api/ships") && !path.equals("/api/ships/")) {
+            ShipAppApiServer.sendJson(exchange, 404, new JSONObject().put("error", "unknown ship or endpoint"));
+            return;
+        }
+        JSONArray list = new JSONArray();
+        for (int i = 0; i < ships.size(); i++) {
+            ShipAppApiServer ship = ships.get(i);
+            list.put(new JSONObject()
+                    .put("nr", i + 1)
+                    .put("shipId", ship.getShipId() != null ? ship.getShipId() : JSONObject.NULL)
+                    .put("subServerPort", ship.getSubServerPort())
+                    .put("submarines", ship.getSubmarineCount())
+                    .put("api", "/api/ships/" + (i + 1)));
+        }
+        ShipAppApiServer.sendJson(exchange, 200, new JSONObject().put("ships", list));
+    }
+}
@@ -0,0 +1,146 @@
+package shipapp;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Steuert eine JFR-Aufzeichnung zur Laufzeit (Endpunkte /api/admin/jfr/...).
+ *
+ * Es gibt höchstens eine Aufzeichnung pro JVM, im Fleet-Modus teilen sich also alle
+ * Schiffe dieselbe. Neben den JDK-Events (Einstellungen "default" oder "profile")
+ * sind immer alle ShipApp-Events ({@link JfrEvents}, {@link IngestTracer}) ohne
+ * Schwellwert aktiv.
+ *
+ * Dateien landen im Verzeichnis aus -Dshipapp.jfr.dir (Standard: recordings);
+ * Dateinamen aus der Anfrage werden auf ihren Namensteil reduziert.
+ */
+public final class FlightRecording {
+
+    private static final Path DIR = Paths.get(System.getProperty("shipapp.jfr.dir", "recordings"));
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String[] SHIPAPP_EVENTS = {
+            "shipapp.OceanMessage", "shipapp.SubmarineMessage", "shipapp.Database",
+            "shipapp.Picture", "shipapp.HttpRequest", "shipapp.IngestTrace"
+    };
+
+    private static Recording recording;
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Startet eine Aufzeichnung.
+     *
+     * @param settings "default" (geringer Overhead) oder "profile"
+     * @param maxAge   älteste Daten, die im Puffer gehalten werden (null = unbegrenzt)
+     * @throws IllegalStateException    wenn bereits eine Aufzeichnung läuft
+     * @throws IllegalArgumentException wenn es die Einstellungen nicht gibt
+     */
+    public static synchronized JSONObject start(String settings, Duration maxAge) throws IOException, ParseException {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("Flight Recorder ist in dieser JVM nicht verfügbar");
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Es läuft bereits eine Aufzeichnung");
+        }
+        Recording r = new Recording(configuration(settings));
+        r.setName("shipapp-" + settings);
+        r.setToDisk(true);
+        if (maxAge != null) {
+            r.setMaxAge(maxAge);
+        }
+        for (String event : SHIPAPP_EVENTS) {
+            r.enable(event).withThreshold(Duration.ZERO).withStackTrace();
+        }
+        r.start();
+        recording = r;
+        AsyncLog.info("jfr", "JFR-Aufzeichnung gestartet (settings=%s, maxAge=%s)", settings, maxAge);
+        return status();
+    }
+
+    // nur die mitgelieferten Einstellungen (default, profile); keine Dateipfade aus der Anfrage
+    private static Configuration configuration(String settings) throws IOException, ParseException {
+        for (Configuration c : Configuration.getConfigurations()) {
+            if (c.getName().equals(settings)) {
+                return Configuration.getConfiguration(settings);
+            }
+        }
+        throw new IllegalArgumentException("unknown settings: " + settings);
+    }
+
+    /**
+     * Schreibt den aktuellen Stand der laufenden Aufzeichnung in eine Datei.
+     *
+     * @return Pfad der geschriebenen Datei
+     */
+    public static synchronized Path dump(String fileName) throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("Keine laufende Aufzeichnung");
+        }
+        Path file = target(fileName);
+        recording.dump(file);
+        AsyncLog.info("jfr", "JFR-Aufzeichnung gesichert: %s", file);
+        return file;
+    }
+
+    /**
+     * Beendet die Aufzeichnung und schreibt sie in eine Datei.
+     *
+     * @return Pfad der geschriebenen Datei
+     */
+    public static synchronized Path stop(String fileName) throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("Keine laufende Aufzeichnung");
+        }
+        Path file = target(fileName);
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        AsyncLog.info("jfr", "JFR-Aufzeichnung beendet: %s", file);
+        return file;
+    }
+
+    public static synchronized JSONObject status() {
+        JSONObject jo = new JSONObject()
+                .put("available", FlightRecorder.isAvailable())
+                .put("directory", DIR.toAbsolutePath().toString());
+        if (recording == null) {
+            return jo.put("state", "none");
+        }
+        jo.put("state", recording.getState().name())
+                .put("name", recording.getName())
+                .put("startTime", recording.getStartTime() != null ? recording.getStartTime().toString() : JSONObject.NULL)
+                .put("sizeBytes", recording.getSize());
+        if (recording.getMaxAge() != null) {
+            jo.put("maxAgeSeconds", recording.getMaxAge().toSeconds());
+        }
+        return jo;
+    }
+
+    private static Path target(String fileName) throws IOException {
+        Files.createDirectories(DIR);
+        String name = fileName == null || fileName.isBlank()
+                ? "shipapp-" + LocalDateTime.now().format(FILE_TIME) + ".jfr"
+                : Paths.get(fileName).getFileName().toString();
+        if (!name.endsWith(".jfr")) {
+            name += ".jfr";
+        }
+        return DIR.resolve(name);
+    }
+}
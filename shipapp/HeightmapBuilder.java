@@ -0,0 +1,637 @@
+package shipapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Höhenkarte des Meeresbodens aus den Messpunkten der Tabelle measurements
+ * (Endpunkte /api/map/heightmap).
+ *
+ * Die Punkte (x, y, z) werden in Zellen der Kantenlänge cellSize einsortiert (Standard
+ * 100 = ein Sektor des Simulators, kleinere Werte ergeben ein feineres Gitter); je Zelle
+ * werden Anzahl, kleinste, größte und Summe der z-Werte gehalten, daraus der Mittelwert.
+ *
+ * Der Aufbau ist inkrementell: gelesen werden nur Zeilen mit id größer als die zuletzt
+ * verarbeitete, seitenweise über den Primärschlüssel. Jede Seite wird parallel einsortiert:
+ * die Punkte werden nach Zeilenbändern des Gitters (Sektor-Shards) verteilt, je Band
+ * schreibt eine Fork/Join-Teilaufgabe direkt in das gemeinsame Gitter. Die Bänder sind
+ * disjunkt, daher braucht es weder Sperren je Zelle noch ein Zusammenführen.
+ *
+ * Nach jedem Lauf wird das Gitter als kompakte Datei gesichert (GZIP, leere Zellen
+ * belegen 4 Bytes); beim Start wird sie geladen und nur der Rest nachgelesen. Gelöschte
+ * Messpunkte (Aufbewahrungsdauer) bleiben in der Karte; POST ?full=true baut sie neu auf.
+ *
+ * Punkte mit |x| oder |y| größer extent (oder NaN/Unendlich) werden übersprungen und nur
+ * gezählt, damit ein einzelner Ausreißer das Gitter nicht beliebig vergrößert. Eine
+ * Zellgröße, die nicht größer 0 ist oder mehr als MAX_AXIS_CELLS Zellen je Achse ergäbe,
+ * wird beim Start verworfen.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.heightmap.intervalMinutes=n  (Standard 10, 0 = nur auf Anfrage)
+ *   -Dshipapp.heightmap.cellSize=n         (Kantenlänge einer Zelle, Standard 100)
+ *   -Dshipapp.heightmap.extent=n           (größter Betrag von x und y, Standard 100000)
+ *   -Dshipapp.heightmap.file=pfad          (Standard heightmap.bin)
+ *   -Dshipapp.heightmap.pageSize=n         (Zeilen je Abfrage, Standard 200000)
+ */
+public final class HeightmapBuilder {
+
+    private static final String PROP_PREFIX = "shipapp.heightmap.";
+    private static final int INTERVAL_MINUTES = Integer.getInteger(PROP_PREFIX + "intervalMinutes", 10);
+    // höchstens so viele Zellen je Achse (2 * extent / cellSize)
+    private static final int MAX_AXIS_CELLS = 1 << 14;
+    private static final double EXTENT = positive("extent", 100_000);
+    private static final double CELL_SIZE = cellSize();
+    private static final Path FILE = Paths.get(System.getProperty(PROP_PREFIX + "file", "heightmap.bin"));
+    private static final int PAGE_SIZE = Math.max(1000, Integer.getInteger(PROP_PREFIX + "pageSize", 200_000));
+
+    // Dateiformat: "OHM1"
+    private static final int MAGIC = 0x4F484D31;
+    // kleinere Teilaufgaben lohnen den Fork/Join-Aufwand nicht
+    private static final int MIN_SHARD_POINTS = 8192;
+
+    private static final Metrics.Counter POINTS = Metrics.counter(
+            "shipapp_heightmap_points_total", "In die Höhenkarte einsortierte Messpunkte").labels();
+    private static final Metrics.Counter SKIPPED = Metrics.counter(
+            "shipapp_heightmap_points_skipped_total", "Messpunkte außerhalb von shipapp.heightmap.extent").labels();
+    private static final Metrics.Histogram BUILD_SECONDS = Metrics.histogram(
+            "shipapp_heightmap_build_seconds", "Dauer eines Laufs der Höhenkarte").labels();
+
+    private static final Object RUN_LOCK = new Object();
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static ScheduledExecutorService scheduler;
+
+    // unter LOCK
+    private static Grid grid;
+    private static long lastId;
+    private static long points;
+    private static long builtAt;
+    private static volatile boolean loaded;
+
+    static {
+        Metrics.gauge("shipapp_heightmap_cells", "Zellen der Höhenkarte mit Messpunkten", HeightmapBuilder::cells);
+    }
+
+    private HeightmapBuilder() {
+    }
+
+    private static double positive(String name, double fallback) {
+        String value = System.getProperty(PROP_PREFIX + name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            double d = Double.parseDouble(value);
+            if (d > 0 && Double.isFinite(d)) {
+                return d;
+            }
+        } catch (NumberFormatException e) {
+            // unten gemeldet
+        }
+        AsyncLog.warn("heightmap", "Ungültiger Wert %s%s=%s, verwende %s", PROP_PREFIX, name, value, fallback);
+        return fallback;
+    }
+
+    private static double cellSize() {
+        double fallback = Math.max(100, Math.ceil(2 * EXTENT / MAX_AXIS_CELLS));
+        double cellSize = positive("cellSize", 100);
+        if (2 * EXTENT / cellSize > MAX_AXIS_CELLS) {
+            AsyncLog.warn("heightmap", "Zellgröße %s ergibt mehr als %d Zellen je Achse, verwende %s",
+                    cellSize, MAX_AXIS_CELLS, fallback);
+            return fallback;
+        }
+        return cellSize;
+    }
+
+    /**
+     * Lädt die gesicherte Karte und startet den regelmäßigen Aufbau (nur beim ersten Aufruf).
+     */
+    public static synchronized void startFromConfig() {
+        ensureLoaded();
+        if (scheduler != null || INTERVAL_MINUTES <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ShipAppApi-Heightmap");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(HeightmapBuilder::runQuietly, 5, INTERVAL_MINUTES * 60L, TimeUnit.SECONDS);
+        System.out.printf("Höhenkarte aktiv (alle %d min, Zellgröße %s, Datei %s)%n", INTERVAL_MINUTES, CELL_SIZE, FILE);
+    }
+
+    /**
+     * Liest neue Messpunkte (bzw. mit full alle) und sichert die Karte, im aufrufenden Thread.
+     *
+     * @return Zustand nach dem Lauf, mit der Zahl der neuen Punkte unter "added"
+     * @throws SQLException wenn keine Verbindung zur Datenbank möglich ist
+     */
+    public static JSONObject runNow(boolean full) throws SQLException {
+        ensureLoaded();
+        long start = System.nanoTime();
+        JfrEvents.Database event = JfrEvents.Database.start();
+        // nur ein Lauf gleichzeitig (Zeitplan und POST /api/map/heightmap)
+        synchronized (RUN_LOCK) {
+            try (Connection connection = SubmarineRepository.openConnection()) {
+                Grid g;
+                long last;
+                long total;
+                LOCK.readLock().lock();
+                try {
+                    g = full ? null : grid;
+                    last = full ? 0 : lastId;
+                    total = full ? 0 : points;
+                } finally {
+                    LOCK.readLock().unlock();
+                }
+
+                Page page = new Page(PAGE_SIZE);
+                long from = last;
+                long added = 0;
+                do {
+                    last = readPage(connection, last, page);
+                    if (page.rows == 0) {
+                        break;
+                    }
+                    LOCK.writeLock().lock();
+                    try {
+                        if (page.size > 0) {
+                            g = add(g, page);
+                        }
+                        total += page.size;
+                        // beim Neuaufbau bleibt die alte Karte sichtbar, bis alles gelesen ist
+                        if (!full) {
+                            publish(g, last, total);
+                        }
+                    } finally {
+                        LOCK.writeLock().unlock();
+                    }
+                    added += page.size;
+                    POINTS.add(page.size);
+                    SKIPPED.add(page.rows - page.size);
+                } while (page.rows == PAGE_SIZE);
+
+                // auch wenn alle Punkte übersprungen wurden, damit lastId weiterkommt
+                if (full || last != from) {
+                    LOCK.writeLock().lock();
+                    try {
+                        publish(g, last, total);
+                    } finally {
+                        LOCK.writeLock().unlock();
+                    }
+                    save();
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                if (added > 0) {
+                    AsyncLog.info("heightmap", "Höhenkarte: %d neue Messpunkte in %d ms, %d Zellen", added, millis, cells());
+                }
+                return status().put("added", added).put("millis", millis);
+            } finally {
+                BUILD_SECONDS.observeSince(start);
+                event.finish("heightmap");
+            }
+        }
+    }
+
+    public static JSONObject status() {
+        ensureLoaded();
+        LOCK.readLock().lock();
+        try {
+            return statusJson();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    // unter der Lesesperre
+    private static JSONObject statusJson() {
+        JSONObject status = new JSONObject()
+                .put("cellSize", CELL_SIZE)
+                .put("points", points)
+                .put("cells", cells())
+                .put("lastId", lastId)
+                .put("builtAt", builtAt)
+                .put("file", FILE.toString());
+        if (grid != null) {
+            status.put("width", grid.width).put("height", grid.height);
+        }
+        return status;
+    }
+
+    /**
+     * Karte für die UI: Gitter ab origin (linke untere Ecke der ersten Zelle), zeilenweise
+     * je ein Array für mean, min, max und count; leere Zellen sind null bzw. 0.
+     */
+    public static JSONObject toJson() {
+        ensureLoaded();
+        LOCK.readLock().lock();
+        try {
+            JSONObject root = statusJson();
+            Grid g = grid;
+            if (g == null) {
+                return root.put("width", 0).put("height", 0);
+            }
+            JSONArray mean = new JSONArray();
+            JSONArray min = new JSONArray();
+            JSONArray max = new JSONArray();
+            JSONArray count = new JSONArray();
+            for (int i = 0; i < g.count.length; i++) {
+                int n = g.count[i];
+                count.put(n);
+                if (n == 0) {
+                    mean.put(JSONObject.NULL);
+                    min.put(JSONObject.NULL);
+                    max.put(JSONObject.NULL);
+                } else {
+                    mean.put(round(g.sum[i] / n));
+                    min.put(round(g.min[i]));
+                    max.put(round(g.max[i]));
+                }
+            }
+            return root
+                    .put("origin", new JSONObject().put("x", g.minX * CELL_SIZE).put("y", g.minY * CELL_SIZE))
+                    .put("mean", mean)
+                    .put("min", min)
+                    .put("max", max)
+                    .put("count", count);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Die gesicherte Datei (für ?format=bin), null wenn es noch keine gibt.
+     *
+     * Aufbau (GZIP, big-endian): int MAGIC, double cellSize, long lastId, long points,
+     * long builtAt, int minX, int minY, int width, int height (in Zellen), danach je Zelle
+     * zeilenweise int count und bei count &gt; 0 float min, float max, double sum.
+     */
+    public static Path file() {
+        return Files.exists(FILE) ? FILE : null;
+    }
+
+    private static void runQuietly() {
+        try {
+            runNow(false);
+        } catch (SQLException e) {
+            AsyncLog.warn("heightmap", "Höhenkarte nicht aktualisiert, keine Datenbank: %s", e.getMessage());
+        } catch (RuntimeException e) {
+            AsyncLog.error("heightmap", "Höhenkarte fehlgeschlagen: %s", e.toString());
+        }
+    }
+
+    private static void publish(Grid g, long last, long total) {
+        grid = g;
+        lastId = last;
+        points = total;
+        builtAt = System.currentTimeMillis();
+    }
+
+    private static long cells() {
+        LOCK.readLock().lock();
+        try {
+            return grid != null ? grid.filled() : 0;
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+
+    // ------------------------------------------------------------
+    // Lesen und Einsortieren
+    // ------------------------------------------------------------
+
+    /**
+     * Eine Seite Messpunkte in primitiven Arrays (wird für jede Seite wiederverwendet).
+     * rows zählt die gelesenen Zeilen, size die davon übernommenen Punkte.
+     */
+    static final class Page {
+        final double[] x;
+        final double[] y;
+        final float[] z;
+        int rows;
+        int size;
+
+        Page(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            z = new float[capacity];
+        }
+    }
+
+    // nächste Seite nach afterId; liefert die größte gelesene id
+    private static long readPage(Connection connection, long afterId, Page page) throws SQLException {
+        page.rows = 0;
+        page.size = 0;
+        long last = afterId;
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT id, vec_x, vec_y, vec_z FROM measurements WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, page.x.length);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    last = rs.getLong(1);
+                    page.rows++;
+                    double x = rs.getDouble(2);
+                    double y = rs.getDouble(3);
+                    double z = rs.getDouble(4);
+                    if (!(Math.abs(x) <= EXTENT && Math.abs(y) <= EXTENT && Double.isFinite(z))) {
+                        continue;
+                    }
+                    page.x[page.size] = x;
+                    page.y[page.size] = y;
+                    page.z[page.size] = (float) z;
+                    page.size++;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Sortiert eine Seite in das Gitter ein (vergrößert es bei Bedarf) und liefert das Gitter.
+     */
+    static Grid add(Grid g, Page page) {
+        int n = page.size;
+        int[] cx = new int[n];
+        int[] cy = new int[n];
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            cx[i] = (int) Math.floor(page.x[i] / CELL_SIZE);
+            cy[i] = (int) Math.floor(page.y[i] / CELL_SIZE);
+            minX = Math.min(minX, cx[i]);
+            minY = Math.min(minY, cy[i]);
+            maxX = Math.max(maxX, cx[i]);
+            maxY = Math.max(maxY, cy[i]);
+        }
+        g = g == null ? new Grid(minX, minY, maxX - minX + 1, maxY - minY + 1) : g.cover(minX, minY, maxX, maxY);
+
+        // Punkte nach Zeilenbändern verteilen (Counting Sort), je Band eine Teilaufgabe
+        int rows = maxY - minY + 1;
+        int shards = Math.max(1, Math.min(rows, ForkJoinPool.getCommonPoolParallelism() * 4));
+        int[] start = new int[shards + 1];
+        for (int i = 0; i < n; i++) {
+            start[band(cy[i], minY, rows, shards) + 1]++;
+        }
+        for (int s = 0; s < shards; s++) {
+            start[s + 1] += start[s];
+        }
+        int[] next = Arrays.copyOf(start, shards);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[next[band(cy[i], minY, rows, shards)]++] = i;
+        }
+        ForkJoinPool.commonPool().invoke(new BinTask(g, page.z, cx, cy, order, start, 0, shards));
+        return g;
+    }
+
+    private static int band(int cellY, int minY, int rows, int shards) {
+        return (int) ((long) (cellY - minY) * shards / rows);
+    }
+
+    /**
+     * Sortiert die Punkte der Bänder [from, to) ein; teilt sich, solange es sich lohnt.
+     */
+    private static final class BinTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid grid;
+        private final float[] z;
+        private final int[] cx;
+        private final int[] cy;
+        private final int[] order;
+        private final int[] start;
+        private final int from;
+        private final int to;
+
+        BinTask(Grid grid, float[] z, int[] cx, int[] cy, int[] order, int[] start, int from, int to) {
+            this.grid = grid;
+            this.z = z;
+            this.cx = cx;
+            this.cy = cy;
+            this.order = order;
+            this.start = start;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && start[to] - start[from] > MIN_SHARD_POINTS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BinTask(grid, z, cx, cy, order, start, from, mid),
+                        new BinTask(grid, z, cx, cy, order, start, mid, to));
+                return;
+            }
+            for (int k = start[from]; k < start[to]; k++) {
+                int i = order[k];
+                grid.add((cy[i] - grid.minY) * grid.width + (cx[i] - grid.minX), z[i]);
+            }
+        }
+    }
+
+    /**
+     * Dichtes Gitter über das Rechteck aller bisher gesehenen Zellen.
+     */
+    static final class Grid {
+        final int minX;
+        final int minY;
+        final int width;
+        final int height;
+        final int[] count;
+        final float[] min;
+        final float[] max;
+        final double[] sum;
+
+        Grid(int minX, int minY, int width, int height) {
+            this.minX = minX;
+            this.minY = minY;
+            this.width = width;
+            this.height = height;
+            int cells = Math.multiplyExact(width, height);
+            count = new int[cells];
+            min = new float[cells];
+            max = new float[cells];
+            sum = new double[cells];
+        }
+
+        void add(int cell, float z) {
+            if (count[cell]++ == 0) {
+                min[cell] = z;
+                max[cell] = z;
+            } else {
+                if (z < min[cell]) {
+                    min[cell] = z;
+                }
+                if (z > max[cell]) {
+                    max[cell] = z;
+                }
+            }
+            sum[cell] += z;
+        }
+
+        // Gitter, das zusätzlich die Zellen (x0..x1, y0..y1) enthält; this, wenn es schon passt
+        Grid cover(int x0, int y0, int x1, int y1) {
+            int nx0 = Math.min(minX, x0);
+            int ny0 = Math.min(minY, y0);
+            int nx1 = Math.max(minX + width - 1, x1);
+            int ny1 = Math.max(minY + height - 1, y1);
+            if (nx0 == minX && ny0 == minY && nx1 == minX + width - 1 && ny1 == minY + height - 1) {
+                return this;
+            }
+            Grid g = new Grid(nx0, ny0, nx1 - nx0 + 1, ny1 - ny0 + 1);
+            for (int row = 0; row < height; row++) {
+                int from = row * width;
+                int to = (row + minY - ny0) * g.width + (minX - nx0);
+                System.arraycopy(count, from, g.count, to, width);
+                System.arraycopy(min, from, g.min, to, width);
+                System.arraycopy(max, from, g.max, to, width);
+                System.arraycopy(sum, from, g.sum, to, width);
+            }
+            return g;
+        }
+
+        int filled() {
+            int n = 0;
+            for (int c : count) {
+                if (c > 0) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Datei
+    // ------------------------------------------------------------
+
+    private static void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        LOCK.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (Files.exists(FILE)) {
+                load();
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    // unter der Schreibsperre
+    private static void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(FILE))))) {
+            if (in.readInt() != MAGIC) {
+                AsyncLog.warn("heightmap", "%s ist keine Höhenkarte, sie wird neu aufgebaut", FILE);
+                return;
+            }
+            double cellSize = in.readDouble();
+            if (cellSize != CELL_SIZE) {
+                AsyncLog.info("heightmap", "Zellgröße geändert (%s statt %s), Höhenkarte wird neu aufgebaut",
+                        CELL_SIZE, cellSize);
+                return;
+            }
+            long last = in.readLong();
+            long total = in.readLong();
+            long built = in.readLong();
+            int minX = in.readInt();
+            int minY = in.readInt();
+            int width = in.readInt();
+            int height = in.readInt();
+            Grid g = null;
+            if (width > 0 && height > 0) {
+                g = new Grid(minX, minY, width, height);
+                for (int i = 0; i < g.count.length; i++) {
+                    int n = in.readInt();
+                    if (n > 0) {
+                        g.count[i] = n;
+                        g.min[i] = in.readFloat();
+                        g.max[i] = in.readFloat();
+                        g.sum[i] = in.readDouble();
+                    }
+                }
+            }
+            grid = g;
+            lastId = last;
+            points = total;
+            builtAt = built;
+            AsyncLog.info("heightmap", "Höhenkarte geladen: %d Messpunkte bis id %d", total, last);
+        } catch (IOException | RuntimeException e) {
+            AsyncLog.warn("heightmap", "Höhenkarte %s nicht lesbar, sie wird neu aufgebaut: %s", FILE, e.getMessage());
+        }
+    }
+
+    // neue Datei daneben schreiben und dann ersetzen, damit nie eine halbe Karte liegt
+    static void save() {
+        Path tmp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+        LOCK.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+            Grid g = grid;
+            out.writeInt(MAGIC);
+            out.writeDouble(CELL_SIZE);
+            out.writeLong(lastId);
+            out.writeLong(points);
+            out.writeLong(builtAt);
+            out.writeInt(g != null ? g.minX : 0);
+            out.writeInt(g != null ? g.minY : 0);
+            out.writeInt(g != null ? g.width : 0);
+            out.writeInt(g != null ? g.height : 0);
+            if (g != null) {
+                for (int i = 0; i < g.count.length; i++) {
+                    out.writeInt(g.count[i]);
+                    if (g.count[i] > 0) {
+                        out.writeFloat(g.min[i]);
+                        out.writeFloat(g.max[i]);
+                        out.writeDouble(g.sum[i]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            AsyncLog.error("heightmap", "Höhenkarte konnte nicht gesichert werden: %s", e.getMessage());
+            return;
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        try {
+            Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            AsyncLog.error("heightmap", "Höhenkarte konnte nicht gesichert werden: %s", e.getMessage());
+        }
+    }
+}
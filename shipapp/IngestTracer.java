@@ -0,0 +1,274 @@
+package shipapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tracing der Submarine-Nachrichten vom Lesen am Socket bis zum Datenbank-Commit.
+ *
+ * Pro Nachricht werden die Zeiten der einzelnen Abschnitte ({@link Span}) gemessen:
+ * Lesen der Zeile (bei Bildern inklusive Hex-Dekodierung, siehe {@link SubmarineLineReader}),
+ * JSON-Parsen, Handler, Bild dekodieren/speichern (OceanPicture) und Repository-Aufrufe. Eine Nachricht wird komplett im Thread ihrer
+ * SubmarineSession verarbeitet, der laufende Trace hängt deshalb an einem
+ * ThreadLocal und die inneren Abschnitte müssen nichts durchreichen.
+ *
+ * Nur jede n-te Nachricht wird (zufällig) aufgezeichnet und in einem Ringpuffer fester
+ * Größe abgelegt; GET /api/trace/slowest liefert daraus die langsamsten Nachrichten.
+ * Ist das JFR-Event "shipapp.IngestTrace" in einer laufenden Aufzeichnung aktiv,
+ * wird jede Nachricht gemessen und als Event geschrieben.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.trace.sample=n     (jede n-te Nachricht in den Puffer, Standard 10, 0 = aus)
+ *   -Dshipapp.trace.buffer=n     (Anzahl gespeicherter Traces, Zweierpotenz, Standard 1024)
+ */
+public final class IngestTracer {
+
+    /**
+     * Abschnitte einer Nachricht. HANDLER enthält die darin verschachtelten
+     * Abschnitte PICTURE, PICTURE_WRITE und REPOSITORY.
+     */
+    public enum Span {
+        READ("read"),
+        PARSE("parse"),
+        HANDLER("handler"),
+        PICTURE("picture"),
+        PICTURE_WRITE("pictureWrite"),
+        REPOSITORY("repository");
+
+        private final String key;
+
+        Span(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final String PROP_PREFIX = "shipapp.trace.";
+    private static final int SAMPLE_EVERY = Math.max(0, Integer.getInteger(PROP_PREFIX + "sample", 10));
+    private static final int CAPACITY = roundUpToPowerOfTwo(Integer.getInteger(PROP_PREFIX + "buffer", 1024));
+
+    private static final AtomicReferenceArray<Trace> buffer = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong written = new AtomicLong();
+    private static final EventType EVENT_TYPE = EventType.getEventType(IngestTraceEvent.class);
+    private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+
+    private IngestTracer() {
+    }
+
+    /**
+     * Beginnt den Trace einer Nachricht, nachdem ihre Zeile gelesen wurde.
+     *
+     * @param readStartNanos Zeitpunkt vor dem Lesen (inklusive Warten auf Daten)
+     * @param bytes          Länge der gelesenen Zeile
+     */
+    public static void begin(String submarineId, long readStartNanos, int bytes) {
+        boolean sampled = SAMPLE_EVERY > 0
+                && (SAMPLE_EVERY == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0);
+        if (!sampled && !EVENT_TYPE.isEnabled()) {
+            current.remove();
+            return;
+        }
+        Trace trace = new Trace(submarineId, bytes, sampled);
+        trace.nanos[Span.READ.ordinal()] = trace.startNanos - readStartNanos;
+        trace.event.begin();
+        current.set(trace);
+    }
+
+    /**
+     * Zeitstempel für den Beginn eines Abschnitts; 0, wenn im aktuellen Thread
+     * kein Trace läuft (dann kostet das Messen nichts).
+     */
+    public static long start() {
+        return current.get() != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Addiert die Zeit seit startNanos zum Abschnitt des laufenden Traces.
+     */
+    public static void span(Span span, long startNanos) {
+        Trace trace = current.get();
+        if (trace != null && startNanos != 0) {
+            trace.nanos[span.ordinal()] += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * Setzt das cmd der Nachricht, sobald es geparst ist.
+     */
+    public static void command(String cmd) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.cmd = cmd;
+        }
+    }
+
+    /**
+     * Schließt den Trace ab, legt ihn im Puffer ab und schreibt das JFR-Event.
+     */
+    public static void end(String submarineId) {
+        Trace trace = current.get();
+        if (trace == null) {
+            return;
+        }
+        current.remove();
+        trace.totalNanos = System.nanoTime() - trace.startNanos;
+        if (submarineId != null) {
+            trace.submarineId = submarineId;
+        }
+        IngestTraceEvent event = trace.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.submarineId = trace.submarineId;
+            event.cmd = trace.cmd;
+            event.bytes = trace.bytes;
+            event.read = trace.nanos[Span.READ.ordinal()];
+            event.parse = trace.nanos[Span.PARSE.ordinal()];
+            event.handler = trace.nanos[Span.HANDLER.ordinal()];
+            event.picture = trace.nanos[Span.PICTURE.ordinal()];
+            event.pictureWrite = trace.nanos[Span.PICTURE_WRITE.ordinal()];
+            event.repository = trace.nanos[Span.REPOSITORY.ordinal()];
+            event.commit();
+        }
+        if (trace.sampled) {
+            buffer.set((int) (written.getAndIncrement() & (CAPACITY - 1)), trace);
+        }
+    }
+
+    /**
+     * Bericht über die gepufferten Traces: die n langsamsten (nach Verarbeitungszeit
+     * ohne Lesen) und die mittlere Zeit je Abschnitt.
+     */
+    public static JSONObject slowest(int n) {
+        List<Trace> traces = new ArrayList<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            Trace t = buffer.get(i);
+            if (t != null) {
+                traces.add(t);
+            }
+        }
+        long[] sums = new long[Span.values().length];
+        for (Trace t : traces) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += t.nanos[i];
+            }
+        }
+        JSONObject mean = new JSONObject();
+        for (Span s : Span.values()) {
+            mean.put(s.key + "Ms", traces.isEmpty() ? 0 : toMillis(sums[s.ordinal()] / traces.size()));
+        }
+
+        traces.sort(Comparator.comparingLong((Trace t) -> t.totalNanos).reversed());
+        JSONArray list = new JSONArray();
+        for (Trace t : traces.subList(0, Math.min(n, traces.size()))) {
+            list.put(t.toJson());
+        }
+        return new JSONObject()
+                .put("sampleEvery", SAMPLE_EVERY)
+                .put("capacity", CAPACITY)
+                .put("recorded", written.get())
+                .put("buffered", traces.size())
+                .put("meanSpans", mean)
+                .put("slowest", list);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static int roundUpToPowerOfTwo(int n) {
+        int v = Integer.highestOneBit(Math.max(2, n) - 1) << 1;
+        return v > 0 ? v : 1 << 30;
+    }
+
+    // ------------------------------------------------------------
+    // Trace und JFR-Event
+    // ------------------------------------------------------------
+
+    private static final class Trace {
+        private final long timestamp = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final long[] nanos = new long[Span.values().length];
+        private final IngestTraceEvent event = new IngestTraceEvent();
+        private final int bytes;
+        private final boolean sampled;
+        private String submarineId;
+        private String cmd = "";
+        private long totalNanos;
+
+        Trace(String submarineId, int bytes, boolean sampled) {
+            this.submarineId = submarineId;
+            this.bytes = bytes;
+            this.sampled = sampled;
+        }
+
+        JSONObject toJson() {
+            JSONObject spans = new JSONObject();
+            for (Span s : Span.values()) {
+                spans.put(s.key + "Ms", toMillis(nanos[s.ordinal()]));
+            }
+            return new JSONObject()
+                    .put("submarineId", submarineId)
+                    .put("cmd", cmd)
+                    .put("timestamp", timestamp)
+                    .put("bytes", bytes)
+                    .put("totalMs", toMillis(totalNanos))
+                    .put("spans", spans);
+        }
+    }
+
+    /**
+     * JFR-Event je verarbeiteter Submarine-Nachricht. Die Dauer des Events ist die
+     * Verarbeitung ohne Lesen, die Felder enthalten die einzelnen Abschnitte.
+     */
+    @Name("shipapp.IngestTrace")
+    @Label("Submarine Ingest")
+    @Category({"ShipApp", "Ingest"})
+    @Description("Verarbeitung einer Submarine-Nachricht vom Socket bis zur Datenbank")
+    static final class IngestTraceEvent extends Event {
+        @Label("Submarine")
+        String submarineId;
+
+        @Label("Command")
+        String cmd;
+
+        @Label("Bytes")
+        int bytes;
+
+        @Label("Read")
+        @Timespan(Timespan.NANOSECONDS)
+        long read;
+
+        @Label("Parse")
+        @Timespan(Timespan.NANOSECONDS)
+        long parse;
+
+        @Label("Handler")
+        @Timespan(Timespan.NANOSECONDS)
+        long handler;
+
+        @Label("Picture Decode")
+        @Timespan(Timespan.NANOSECONDS)
+        long picture;
+
+        @Label("Picture Write")
+        @Timespan(Timespan.NANOSECONDS)
+        long pictureWrite;
+
+        @Label("Repository")
+        @Timespan(Timespan.NANOSECONDS)
+        long repository;
+    }
+}
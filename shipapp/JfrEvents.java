@@ -0,0 +1,177 @@
+package shipapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK-Flight-Recorder-Events der ShipApp.
+ *
+ * Die Events werden an den heißen Stellen erzeugt (Nachrichten vom Ocean-Server und
+ * von Submarines, Datenbank, Bildverarbeitung, HTTP). Ohne laufende Aufzeichnung
+ * kosten sie nur das Anlegen eines kleinen Objekts. Aufzeichnungen lassen sich zur
+ * Laufzeit über /api/admin/jfr starten und sichern ({@link FlightRecording}).
+ *
+ * Verwendung:
+ * <pre>
+ * JfrEvents.Database event = JfrEvents.Database.start();
+ * ...
+ * event.finish("saveMeasurements");
+ * </pre>
+ */
+public final class JfrEvents {
+
+    private static final String CATEGORY = "ShipApp";
+
+    private JfrEvents() {
+    }
+
+    @Name("shipapp.OceanMessage")
+    @Label("Ocean Message")
+    @Category({CATEGORY, "Ocean"})
+    @Description("Verarbeitung einer Nachricht des Ocean-Servers (Ship-Port)")
+    public static final class OceanMessage extends Event {
+        @Label("Command")
+        String cmd;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        public static OceanMessage start() {
+            OceanMessage event = new OceanMessage();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String cmd, int bytes) {
+            end();
+            if (shouldCommit()) {
+                this.cmd = cmd;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("shipapp.SubmarineMessage")
+    @Label("Submarine Message")
+    @Category({CATEGORY, "Submarine"})
+    @Description("Verarbeitung einer Nachricht eines Submarines")
+    public static final class SubmarineMessage extends Event {
+        @Label("Submarine")
+        String submarineId;
+
+        @Label("Command")
+        String cmd;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        public static SubmarineMessage start() {
+            SubmarineMessage event = new SubmarineMessage();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String submarineId, String cmd, int bytes) {
+            end();
+            if (shouldCommit()) {
+                this.submarineId = submarineId;
+                this.cmd = cmd;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("shipapp.Database")
+    @Label("Database Operation")
+    @Category({CATEGORY, "Database"})
+    @Description("Aufruf einer Methode von SubmarineRepository")
+    public static final class Database extends Event {
+        @Label("Operation")
+        String operation;
+
+        public static Database start() {
+            Database event = new Database();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String operation) {
+            end();
+            if (shouldCommit()) {
+                this.operation = operation;
+                commit();
+            }
+        }
+    }
+
+    @Name("shipapp.Picture")
+    @Label("Picture Processing")
+    @Category({CATEGORY, "Submarine"})
+    @Description("Dekodieren, Speichern oder Umwandeln eines Submarine-Bildes")
+    public static final class Picture extends Event {
+        @Label("Submarine")
+        String submarineId;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        public static Picture start() {
+            Picture event = new Picture();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String submarineId, String operation, int bytes) {
+            end();
+            if (shouldCommit()) {
+                this.submarineId = submarineId;
+                this.operation = operation;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("shipapp.HttpRequest")
+    @Label("HTTP Request")
+    @Category({CATEGORY, "HTTP"})
+    @Description("Anfrage an die HTTP-API")
+    public static final class HttpRequest extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Path")
+        String path;
+
+        @Label("Status")
+        int status;
+
+        public static HttpRequest start() {
+            HttpRequest event = new HttpRequest();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String method, String path, int status) {
+            end();
+            if (shouldCommit()) {
+                this.method = method;
+                this.path = path;
+                this.status = status;
+                commit();
+            }
+        }
+    }
+}
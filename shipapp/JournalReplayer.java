@@ -0,0 +1,304 @@
+package shipapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientException;
+
+/**
+ * Überträgt die Ereignisse des {@link EventJournal} in die Datenbank.
+ *
+ * Läuft als eigener Thread mit eigener Verbindung. Bis zu batchSize Ereignisse werden
+ * in einer Transaktion eingetragen, zusammen mit je einer Zeile (Journal-Kennung, seq)
+ * in journal_applied. Ist diese Zeile schon vorhanden (Absturz zwischen Commit und
+ * Checkpoint), wird das Ereignis übersprungen; jedes Ereignis landet so genau einmal
+ * in der Datenbank. journal_applied merkt sich auch die ID neuer Bildzeilen, damit
+ * Bildverweise (duplicate_of) ihr Original finden.
+ *
+ * Ist die Datenbank nicht erreichbar, wartet der Replayer mit wachsendem Abstand
+ * (bis 30 s) bzw. solange der Circuit Breaker des Repositorys offen ist und versucht
+ * es erneut; die Ereignisse bleiben so lange im Journal.
+ * Scheitert ein einzelnes Ereignis dauerhaft (z.B. ungültige Daten), wird es mit
+ * Fehlermeldung übersprungen, statt alle folgenden aufzuhalten. Fehler, die jedes
+ * Ereignis träfen, verwerfen nichts: ein nicht passendes Schema (SQLState-Klasse 42,
+ * z.B. fehlende Tabelle journal_applied oder neue Spalten ohne Migration) und jeder
+ * Fehler an journal_applied selbst werden wie ein Verbindungsfehler wiederholt.
+ */
+final class JournalReplayer {
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long IDLE_MILLIS = 100;
+    private static final long CLEANUP_INTERVAL_MILLIS = 60 * 60 * 1000L;
+
+    private static final Metrics.Counter REPLAYED = Metrics.counter(
+            "shipapp_journal_replayed_total", "Aus dem Journal in die Datenbank übertragene Ereignisse").labels();
+    private static final Metrics.Counter DUPLICATES = Metrics.counter(
+            "shipapp_journal_duplicates_total", "Übersprungene, bereits übertragene Ereignisse").labels();
+    private static final Metrics.Counter FAILED = Metrics.counter(
+            "shipapp_journal_failed_total", "Dauerhaft fehlgeschlagene und verworfene Ereignisse").labels();
+    private static final Metrics.Histogram BATCH_SECONDS = Metrics.histogram(
+            "shipapp_journal_batch_seconds", "Dauer einer Übertragungs-Transaktion").labels();
+
+    private final EventJournal journal;
+    private final SubmarineRepository repository;
+    private final int batchSize;
+
+    private volatile boolean running;
+    private volatile long applied;
+    private Thread thread;
+
+    JournalReplayer(EventJournal journal, SubmarineRepository repository, int batchSize) {
+        this.journal = journal;
+        this.repository = repository;
+        this.batchSize = Math.max(1, batchSize);
+        this.applied = journal.readCheckpoint();
+        Metrics.gauge("shipapp_journal_lag_events", "Gesicherte, noch nicht übertragene Ereignisse im Journal",
+                () -> Math.max(0, journal.syncedSeq() - applied));
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this::run, "ShipAppApi-JournalReplay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * seq des zuletzt übertragenen Ereignisses.
+     */
+    long applied() {
+        return applied;
+    }
+
+    private void run() {
+        Connection connection = null;
+        EventJournal.Reader reader = null;
+        long backoff = 0;
+        long lastCleanup = 0;
+        // nach einem dauerhaften Fehler bis zu dessen seq einzeln übertragen, um das
+        // fehlerhafte Ereignis zu finden
+        int limit = batchSize;
+        long singleUntil = 0;
+
+        while (running) {
+            try {
+                if (reader == null) {
+                    reader = journal.reader(applied);
+                }
+                if (connection == null) {
+                    if (!repository.databaseAvailable()) {
+                        // Circuit Breaker offen: dessen Probe verbindet neu, nicht jeder selbst
+                        Thread.sleep(IDLE_MILLIS * 5);
+                        continue;
+                    }
+                    connection = SubmarineRepository.openConnection();
+                    connection.setAutoCommit(false);
+                }
+                int n = replayBatch(connection, reader, limit);
+                if (backoff > 0) {
+                    AsyncLog.info("journal", "Journal wird wieder übertragen (%d Ereignisse offen)",
+                            journal.syncedSeq() - applied);
+                    backoff = 0;
+                }
+                if (n > 0) {
+                    if (applied >= singleUntil) {
+                        limit = batchSize;
+                    }
+                    continue;
+                }
+                if (System.currentTimeMillis() - lastCleanup > CLEANUP_INTERVAL_MILLIS) {
+                    cleanup(connection);
+                    lastCleanup = System.currentTimeMillis();
+                }
+                Thread.sleep(IDLE_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            } catch (PoisonEventException e) {
+                rollbackQuietly(connection);
+                reader = closeQuietly(reader);
+                if (limit > 1) {
+                    limit = 1;
+                    singleUntil = e.seq;
+                    continue;
+                }
+                FAILED.inc();
+                AsyncLog.error("journal", "Ereignis %d (%s) kann nicht übertragen werden und wird verworfen: %s",
+                        e.seq, e.op, e.getCause().getMessage());
+                applied = e.seq;
+                try {
+                    journal.checkpoint(applied, null);
+                } catch (IOException io) {
+                    AsyncLog.error("journal", "Checkpoint konnte nicht geschrieben werden: %s", io.getMessage());
+                }
+                limit = batchSize;
+            } catch (SQLException | IOException e) {
+                rollbackQuietly(connection);
+                reader = closeQuietly(reader);
+                if (e instanceof SQLException sql) {
+                    repository.connectionFailed(sql);
+                    closeQuietly(connection);
+                    connection = null;
+                }
+                if (backoff == 0 && e instanceof SQLException sql && schemaError(sql)) {
+                    AsyncLog.error("journal", "Datenbankschema passt nicht zum Journal, Ereignisse bleiben im Journal "
+                            + "(database/schema.sql bzw. Migrationen ausführen): %s", e.getMessage());
+                } else if (backoff == 0) {
+                    AsyncLog.warn("journal", "Übertragung des Journals unterbrochen, neuer Versuch mit Verzögerung: %s",
+                            e.getMessage());
+                }
+                backoff = Math.min(MAX_BACKOFF_MILLIS, Math.max(500, backoff * 2));
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        closeQuietly(reader);
+        closeQuietly(connection);
+    }
+
+    // bis zu limit Ereignisse in einer Transaktion übertragen; Anzahl der übertragenen
+    private int replayBatch(Connection connection, EventJournal.Reader reader, int limit)
+            throws SQLException, IOException, PoisonEventException {
+        long start = System.nanoTime();
+        long last = applied;
+        Path segment = null;
+        int n = 0;
+        while (n < limit) {
+            EventJournal.Entry e = reader.next();
+            if (e == null) {
+                break;
+            }
+            replayOne(connection, e);
+            last = e.seq();
+            segment = e.segment();
+            n++;
+        }
+        if (n == 0) {
+            return 0;
+        }
+        connection.commit();
+        repository.connectionSucceeded();
+        applied = last;
+        journal.checkpoint(last, segment);
+        REPLAYED.add(n);
+        BATCH_SECONDS.observeSince(start);
+        return n;
+    }
+
+    // Fehler an journal_applied betreffen jedes Ereignis und werden nur wiederholt; als
+    // verworfen gilt ein Ereignis nur, wenn sein eigenes Eintragen scheitert
+    private void replayOne(Connection connection, EventJournal.Entry e) throws SQLException, PoisonEventException {
+        try (PreparedStatement mark = connection.prepareStatement(
+                "INSERT IGNORE INTO journal_applied (journal_id, seq) VALUES (?, ?)")) {
+            mark.setString(1, journal.id());
+            mark.setLong(2, e.seq());
+            if (mark.executeUpdate() == 0) {
+                DUPLICATES.inc();
+                return;
+            }
+        }
+        long rowId;
+        try {
+            rowId = repository.apply(connection, e.op(), e.time(), e.args(), e.blob(), e.blobOffset(), e.blobLength());
+        } catch (SQLException ex) {
+            if (retryable(ex) || !isValid(connection)) {
+                throw ex;
+            }
+            throw new PoisonEventException(e.seq(), e.op(), ex);
+        }
+        if (rowId > 0) {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE journal_applied SET row_id = ? WHERE journal_id = ? AND seq = ?")) {
+                update.setLong(1, rowId);
+                update.setString(2, journal.id());
+                update.setLong(3, e.seq());
+                update.executeUpdate();
+            }
+        }
+    }
+
+    // Verbindungsabbruch, Sperr-Timeout, nicht passendes Schema o.ä.: später erneut versuchen
+    private static boolean retryable(SQLException e) {
+        return e instanceof SQLTransientException || SubmarineRepository.isConnectionError(e) || schemaError(e);
+    }
+
+    // fehlende Tabelle oder Spalte, Syntaxfehler: trifft alle Ereignisse dieser Art
+    private static boolean schemaError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLSyntaxErrorException || (state != null && state.startsWith("42"));
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // alte Einträge in journal_applied entfernen (nach einem Tag werden sie nicht mehr gebraucht)
+    private void cleanup(Connection connection) throws SQLException {
+        int deleted;
+        do {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "DELETE FROM journal_applied WHERE applied_at < NOW() - INTERVAL 1 DAY LIMIT 5000")) {
+                deleted = stmt.executeUpdate();
+            }
+            connection.commit();
+        } while (deleted > 0 && running);
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                // Verbindung ist ohnehin unbrauchbar
+            }
+        }
+    }
+
+    private static <T extends AutoCloseable> T closeQuietly(T closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // ignorieren
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ein Ereignis, das auch bei funktionierender Verbindung nicht eingetragen werden kann.
+     */
+    private static final class PoisonEventException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final long seq;
+        final String op;
+
+        PoisonEventException(long seq, String op, SQLException cause) {
+            super(cause);
+            this.seq = seq;
+            this.op = op;
+        }
+    }
+}
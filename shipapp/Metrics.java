@@ -0,0 +1,325 @@
+package shipapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Metriken der ShipApp: Zähler, Latenz-Histogramme und Gauges.
+ *
+ * Alle Metriken liegen in einer JVM-weiten Registry (im Fleet-Modus teilen sich
+ * alle Schiffe die Werte) und werden von GET /api/metrics im Prometheus-Textformat
+ * ausgegeben. Zähler und Histogramme sind lock-frei ({@link LongAdder},
+ * {@link AtomicLongArray}) und können aus beliebig vielen Threads beschrieben werden.
+ *
+ * Verwendung:
+ * <pre>
+ * private static final Metrics.Family&lt;Metrics.Counter&gt; MESSAGES =
+ *         Metrics.counter("shipapp_messages_total", "Empfangene Nachrichten", "source", "cmd");
+ * MESSAGES.labels("ocean", cmd).inc();
+ * </pre>
+ *
+ * Histogramme messen in Nanosekunden und bilden intern log-lineare Buckets auf
+ * Mikrosekunden-Basis (16 Unterteilungen je Zweierpotenz, Fehler unter 7 %).
+ * Für Prometheus werden daraus kumulative Buckets an Zweierpotenzen von 16 µs
+ * bis ca. 67 s in Sekunden erzeugt.
+ */
+public final class Metrics {
+
+    private static final Map<String, Family<?>> families = new ConcurrentSkipListMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Registriert (oder liefert) einen Zähler mit den angegebenen Label-Namen.
+     */
+    public static Family<Counter> counter(String name, String help, String... labelNames) {
+        return register(name, help, "counter", labelNames, k -> new Counter());
+    }
+
+    /**
+     * Registriert (oder liefert) ein Latenz-Histogramm (Einheit Sekunden).
+     */
+    public static Family<Histogram> histogram(String name, String help, String... labelNames) {
+        return register(name, help, "histogram", labelNames, k -> new Histogram());
+    }
+
+    /**
+     * Registriert einen Gauge; ein bereits vorhandener Gauge gleichen Namens wird ersetzt.
+     */
+    public static void gauge(String name, String help, LongSupplier supplier) {
+        gauges.put(name, new Gauge(help, supplier));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Family<T> register(String name, String help, String type, String[] labelNames,
+                                          Function<String, T> factory) {
+        return (Family<T>) families.computeIfAbsent(name, k -> new Family<>(name, help, type, labelNames, factory));
+    }
+
+    // ------------------------------------------------------------
+    // Metrik-Typen
+    // ------------------------------------------------------------
+
+    /**
+     * Metrik-Familie: eine Metrik mit allen Label-Kombinationen.
+     */
+    public static final class Family<T> {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final String[] labelNames;
+        private final Function<String, T> factory;
+        private final Map<String, T> children = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, String type, String[] labelNames, Function<String, T> factory) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+            this.factory = factory;
+            if (labelNames.length == 0) {
+                // Metriken ohne Labels erscheinen sofort mit 0 im Export
+                children.put("", factory.apply(""));
+            }
+        }
+
+        /**
+         * Wert für genau ein Label (ohne Array-Allokation).
+         */
+        public T labels(String value) {
+            if (labelNames.length != 1) {
+                throw new IllegalArgumentException(name + ": erwartet " + labelNames.length + " Label-Werte");
+            }
+            return children.computeIfAbsent(value, factory);
+        }
+
+        /**
+         * Wert für die Label-Kombination; ohne Argumente die Metrik ohne Labels.
+         */
+        public T labels(String... values) {
+            if (values.length != labelNames.length) {
+                throw new IllegalArgumentException(name + ": erwartet " + labelNames.length + " Label-Werte");
+            }
+            return children.computeIfAbsent(String.join("\u0001", values), factory);
+        }
+
+        private String labelString(String key, String extraName, String extraValue) {
+            StringBuilder sb = new StringBuilder();
+            String[] values = labelNames.length == 0 ? new String[0] : key.split("\u0001", -1);
+            for (int i = 0; i < labelNames.length; i++) {
+                appendLabel(sb, labelNames[i], values[i]);
+            }
+            if (extraName != null) {
+                appendLabel(sb, extraName, extraValue);
+            }
+            return sb.length() == 0 ? "" : "{" + sb + "}";
+        }
+    }
+
+    /**
+     * Monoton steigender Zähler.
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Latenz-Histogramm mit log-linearen Buckets (Mikrosekunden).
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        // Prometheus-Grenzen: 2^4 µs .. 2^26 µs
+        private static final int FIRST_EXPORT_EXP = 4;
+        private static final int LAST_EXPORT_EXP = 26;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+        public void observeNanos(long nanos) {
+            long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+            buckets.incrementAndGet(index(micros));
+            count.increment();
+            sumNanos.add(Math.max(0, nanos));
+            maxMicros.accumulate(micros);
+        }
+
+        /**
+         * Misst die Zeit seit startNanos (aus {@link System#nanoTime()}).
+         */
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * @param p Perzentil 0..100
+         * @return Obergrenze des Buckets in Mikrosekunden
+         */
+        public long percentileMicros(double p) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(n * p / 100.0));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxMicros.get());
+                }
+            }
+            return maxMicros.get();
+        }
+
+        // Anzahl Werte unter 2^exp µs
+        private long countBelow(int exp) {
+            long c = 0;
+            int end = index(1L << exp);
+            for (int i = 0; i < end; i++) {
+                c += buckets.get(i);
+            }
+            return c;
+        }
+
+        private static int index(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+        }
+    }
+
+    private record Gauge(String help, LongSupplier supplier) {
+    }
+
+    // ------------------------------------------------------------
+    // Export
+    // ------------------------------------------------------------
+
+    /**
+     * Alle Metriken im Prometheus-Textformat (Version 0.0.4).
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family<?> f : families.values()) {
+            sb.append("# HELP ").append(f.name).append(' ').append(escapeHelp(f.help)).append('\n');
+            sb.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+            for (Map.Entry<String, ?> e : new ConcurrentSkipListMap<>(f.children).entrySet()) {
+                if (e.getValue() instanceof Counter c) {
+                    sb.append(f.name).append(f.labelString(e.getKey(), null, null)).append(' ').append(c.get()).append('\n');
+                } else if (e.getValue() instanceof Histogram h) {
+                    long total = h.count();
+                    for (int exp = Histogram.FIRST_EXPORT_EXP; exp <= Histogram.LAST_EXPORT_EXP; exp++) {
+                        String le = formatDouble((1L << exp) / 1_000_000.0);
+                        sb.append(f.name).append("_bucket").append(f.labelString(e.getKey(), "le", le))
+                                .append(' ').append(Math.min(total, h.countBelow(exp))).append('\n');
+                    }
+                    sb.append(f.name).append("_bucket").append(f.labelString(e.getKey(), "le", "+Inf"))
+                            .append(' ').append(total).append('\n');
+                    sb.append(f.name).append("_sum").append(f.labelString(e.getKey(), null, null)).append(' ')
+                            .append(formatDouble(h.sumNanos.sum() / 1e9)).append('\n');
+                    sb.append(f.name).append("_count").append(f.labelString(e.getKey(), null, null)).append(' ')
+                            .append(total).append('\n');
+                }
+            }
+        }
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            sb.append("# HELP ").append(e.getKey()).append(' ').append(escapeHelp(e.getValue().help())).append('\n');
+            sb.append("# TYPE ").append(e.getKey()).append(" gauge\n");
+            sb.append(e.getKey()).append(' ').append(e.getValue().supplier().getAsLong()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Kompakte JSON-Sicht (für das Frontend): Zähler, Gauges und Histogramme mit Perzentilen in ms.
+     */
+    public static JSONObject toJson() {
+        JSONObject root = new JSONObject();
+        for (Family<?> f : families.values()) {
+            JSONArray series = new JSONArray();
+            for (Map.Entry<String, ?> e : f.children.entrySet()) {
+                JSONObject labels = new JSONObject();
+                String[] values = f.labelNames.length == 0 ? new String[0] : e.getKey().split("\u0001", -1);
+                for (int i = 0; i < f.labelNames.length; i++) {
+                    labels.put(f.labelNames[i], values[i]);
+                }
+                JSONObject jo = new JSONObject().put("labels", labels);
+                if (e.getValue() instanceof Counter c) {
+                    jo.put("value", c.get());
+                } else if (e.getValue() instanceof Histogram h) {
+                    jo.put("count", h.count())
+                            .put("p50Ms", h.percentileMicros(50) / 1000.0)
+                            .put("p90Ms", h.percentileMicros(90) / 1000.0)
+                            .put("p99Ms", h.percentileMicros(99) / 1000.0)
+                            .put("maxMs", h.maxMicros.get() / 1000.0);
+                }
+                series.put(jo);
+            }
+            root.put(f.name, series);
+        }
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            root.put(e.getKey(), e.getValue().supplier().getAsLong());
+        }
+        return root;
+    }
+
+    private static void appendLabel(StringBuilder sb, String name, String value) {
+        if (sb.length() > 0) {
+            sb.append(',');
+        }
+        sb.append(name).append("=\"")
+                .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String formatDouble(double d) {
+        return String.format(Locale.ROOT, "%.6f", d).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+    }
+}
@@ -0,0 +1,545 @@
+package shipapp;
+
+import ocean.Course;
+import ocean.Ground;
+import ocean.PackedVec2D;
+import ocean.Rudder;
+import ocean.ShipKinematics;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Führt eine Folge von navigate-Befehlen für POST /api/navigate/sequence aus.
+ *
+ * Statt auf jede move2d-Antwort einzeln zu warten, hält der Sequencer bis zu window
+ * Befehle gleichzeitig unterwegs. Der Ocean-Server beantwortet navigate-Befehle in
+ * Reihenfolge (move2d, crash oder eine Fehlermeldung), daher gehört jede Antwort zum
+ * ältesten offenen Befehl. Für jeden Schritt wird der erwartete Zustand mit
+ * {@link ShipKinematics} berechnet; weicht die Antwort ab, wird sie übernommen und im
+ * Schritt als "expected" vermerkt.
+ *
+ * Nach einem crash werden keine weiteren Befehle gesendet; die Antworten auf die noch
+ * offenen (bzw. auf einzelne Befehle über POST /api/navigate) werden verworfen und nicht
+ * der nächsten Folge zugeordnet. Es läuft immer höchstens eine Folge je Schiff.
+ *
+ * Die Aufrufe onMove2d/onCrash/onError kommen aus dem Lese-Thread der Ocean-Verbindung.
+ */
+final class NavigationSequencer {
+
+    private static final Metrics.Family<Metrics.Counter> SEQUENCES = Metrics.counter(
+            "shipapp_navigate_sequences_total", "Ausgeführte Navigationsfolgen je Ergebnis", "status");
+    private static final Metrics.Counter STEPS = Metrics.counter(
+            "shipapp_navigate_sequence_steps_total", "In Navigationsfolgen gefahrene Schritte").labels();
+    private static final Metrics.Histogram STEP_SECONDS = Metrics.histogram(
+            "shipapp_navigate_step_seconds", "Zeit vom Senden eines navigate-Befehls bis zur Antwort").labels();
+
+    /**
+     * Gibt die Schritte einer Folge vor.
+     */
+    interface Plan {
+        /**
+         * Nächster Befehl ab dem vorhergesagten Zustand (nach allen offenen Befehlen);
+         * null, wenn (vorerst) keiner mehr gesendet werden soll.
+         */
+        Action next(long sector, int dir);
+
+        /**
+         * true, wenn die Folge mit dem tatsächlich erreichten Sektor am Ziel ist.
+         */
+        boolean reached(long sector);
+
+        /**
+         * Ergebnis, wenn next() nichts mehr liefert und alle Antworten da sind.
+         */
+        String exhausted();
+
+        void toJson(JSONObject result);
+    }
+
+    /**
+     * Empfängt jeden abgeschlossenen Schritt (für Streaming), außerhalb jeder Sperre.
+     */
+    interface StepListener {
+        void step(JSONObject step) throws IOException;
+    }
+
+    record Action(Rudder rudder, Course course) {
+    }
+
+    private static final class Pending {
+        final Action action;
+        final long sentAt = System.nanoTime();
+
+        Pending(Action action) {
+            this.action = action;
+        }
+    }
+
+    private final Predicate<JSONObject> sender;
+    private final Object lock = new Object();
+
+    // Zustand der laufenden Folge (unter lock)
+    private boolean active;
+    private final ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+    private final List<JSONObject> trajectory = new ArrayList<>();
+    private long sector;
+    private int dir;
+    private String status;
+    private String error;
+    private JSONObject crash;
+    private long lastResponse;
+
+    // Antworten auf Befehle außerhalb einer Folge bzw. einer abgebrochenen Folge
+    private int orphans;
+    private long orphansExpireAt;
+
+    /**
+     * @param sender sendet einen Befehl an den Ocean-Server; false, wenn keine Verbindung besteht
+     */
+    NavigationSequencer(Predicate<JSONObject> sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Führt einen einzelnen Befehl außerhalb einer Folge aus (z.B. launch), sofern keine
+     * Folge läuft. Prüfung und Senden geschehen unter der Sperre, ein begin() kann nicht
+     * dazwischenkommen.
+     *
+     * @return false, wenn eine Folge läuft; send wurde dann nicht aufgerufen
+     */
+    boolean runIfIdle(Runnable send) {
+        synchronized (lock) {
+            if (active) {
+                return false;
+            }
+            send.run();
+            return true;
+        }
+    }
+
+    /**
+     * Einzelner navigate-Befehl außerhalb einer Folge wie {@link #runIfIdle}; dessen
+     * Antwort wird übergangen, ein folgendes begin() wartet bis zu timeoutMillis auf sie.
+     *
+     * @return false, wenn eine Folge läuft; send wurde dann nicht aufgerufen
+     */
+    boolean tryUntracked(long timeoutMillis, Runnable send) {
+        synchronized (lock) {
+            if (active) {
+                return false;
+            }
+            orphans++;
+            orphansExpireAt = System.currentTimeMillis() + timeoutMillis;
+            send.run();
+            return true;
+        }
+    }
+
+    /**
+     * Beansprucht den Sequencer für eine neue Folge. Wartet bis zu timeoutMillis auf
+     * ausstehende Antworten früherer Befehle, damit der Startzustand stimmt.
+     *
+     * @return false, wenn bereits eine Folge läuft
+     */
+    boolean begin(long timeoutMillis) throws InterruptedException {
+        synchronized (lock) {
+            if (active) {
+                return false;
+            }
+            active = true;
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long now;
+            while (orphans > 0 && (now = System.currentTimeMillis()) < Math.min(deadline, orphansExpireAt)) {
+                lock.wait(Math.min(deadline, orphansExpireAt) - now);
+            }
+            orphans = 0;
+            return true;
+        }
+    }
+
+    /**
+     * Gibt den Sequencer wieder frei, falls execute() nicht aufgerufen wird.
+     */
+    void abandon() {
+        synchronized (lock) {
+            active = false;
+        }
+    }
+
+    /**
+     * Führt die Folge ab dem Startzustand aus; begin() muss vorher true geliefert haben.
+     *
+     * @param window            höchstens so viele Befehle gleichzeitig unterwegs
+     * @param stepTimeoutMillis so lange wird auf die nächste Antwort gewartet
+     * @param listener          erhält jeden Schritt sofort, darf null sein
+     * @return Ergebnis mit status, trajectory und Endzustand
+     */
+    JSONObject execute(Vec2D startSector, int startDir, Plan plan, int window, long stepTimeoutMillis,
+                       StepListener listener) throws IOException, InterruptedException {
+        synchronized (lock) {
+            sector = startSector.toPacked();
+            dir = startDir;
+            status = null;
+            error = null;
+            crash = null;
+            trajectory.clear();
+            inFlight.clear();
+            lastResponse = System.nanoTime();
+        }
+        int emitted = 0;
+        try {
+            while (true) {
+                List<JSONObject> toSend = new ArrayList<>();
+                List<JSONObject> steps;
+                boolean done;
+                synchronized (lock) {
+                    if (status == null) {
+                        fill(plan, window, toSend);
+                    }
+                    if (status == null && toSend.isEmpty() && inFlight.isEmpty()) {
+                        status = plan.reached(sector) ? "reached" : plan.exhausted();
+                    }
+                    if (status == null && toSend.isEmpty()) {
+                        long waitNanos = lastResponse + stepTimeoutMillis * 1_000_000L - System.nanoTime();
+                        if (waitNanos <= 0) {
+                            status = "timeout";
+                            error = "Keine Antwort des Ocean-Servers innerhalb von " + stepTimeoutMillis + " ms";
+                            abortInFlight(stepTimeoutMillis);
+                        } else {
+                            lock.wait(Math.max(1, waitNanos / 1_000_000L));
+                        }
+                    }
+                    steps = new ArrayList<>(trajectory.subList(emitted, trajectory.size()));
+                    emitted = trajectory.size();
+                    done = status != null;
+                }
+                for (int i = 0; i < toSend.size(); i++) {
+                    if (!sender.test(toSend.get(i))) {
+                        synchronized (lock) {
+                            // nicht gesendete Befehle bekommen keine Antwort
+                            for (int j = i; j < toSend.size(); j++) {
+                                inFlight.pollLast();
+                            }
+                            if (status == null) {
+                                status = "error";
+                                error = "Keine Verbindung zum Ocean-Server";
+                            }
+                            abortInFlight(stepTimeoutMillis);
+                        }
+                        break;
+                    }
+                }
+                if (listener != null) {
+                    for (JSONObject step : steps) {
+                        listener.step(step);
+                    }
+                }
+                if (done) {
+                    break;
+                }
+            }
+            synchronized (lock) {
+                SEQUENCES.labels(status).inc();
+                return result(plan);
+            }
+        } finally {
+            synchronized (lock) {
+                if (status == null) {
+                    status = "error";
+                    abortInFlight(stepTimeoutMillis);
+                }
+                active = false;
+            }
+        }
+    }
+
+    /**
+     * Bricht die laufende Folge ab (z.B. bei POST /api/reset).
+     */
+    void cancel(String reason) {
+        synchronized (lock) {
+            if (active && status == null) {
+                status = "error";
+                error = reason;
+                abortInFlight(5000);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    void onMove2d(Vec2D newSector, Vec2D newDir) {
+        synchronized (lock) {
+            Pending p = take();
+            if (p == null) {
+                return;
+            }
+            int expectedDir = ShipKinematics.turn(dir, p.action.rudder());
+            long expected = ShipKinematics.step(sector, dir, p.action.rudder(), p.action.course());
+            long actual = newSector != null ? newSector.toPacked() : expected;
+            int actualDir = newDir != null ? ShipKinematics.dirIndex(newDir.getX(), newDir.getY()) : -1;
+            if (actualDir < 0) {
+                actualDir = expectedDir;
+            }
+            JSONObject step = step(p)
+                    .put("sector", PackedVec2D.toVec2D(actual).toJson())
+                    .put("dir", ShipKinematics.dirVec(actualDir).toJson());
+            if (actual != expected || actualDir != expectedDir) {
+                step.put("expected", new JSONObject()
+                        .put("sector", PackedVec2D.toVec2D(expected).toJson())
+                        .put("dir", ShipKinematics.dirVec(expectedDir).toJson()));
+                AsyncLog.warn("ocean.sequence", "Schritt %d: erwartet %s, gemeldet %s",
+                        trajectory.size() + 1, PackedVec2D.toVec2D(expected), PackedVec2D.toVec2D(actual));
+            }
+            sector = actual;
+            dir = actualDir;
+            trajectory.add(step);
+            STEPS.inc();
+            lock.notifyAll();
+        }
+    }
+
+    void onCrash(String message, Vec2D crashSector) {
+        synchronized (lock) {
+            Pending p = take();
+            if (p == null) {
+                return;
+            }
+            JSONObject step = step(p).put("crash", message);
+            if (crashSector != null) {
+                step.put("sector", crashSector.toJson());
+            }
+            trajectory.add(step);
+            crash = new JSONObject().put("message", message);
+            if (crashSector != null) {
+                crash.put("sector", crashSector.toJson());
+            }
+            status = "crashed";
+            // die übrigen Befehle beantwortet der Server mit "nicht gestartet"
+            abortInFlight(5000);
+            lock.notifyAll();
+        }
+    }
+
+    void onError(String text) {
+        synchronized (lock) {
+            Pending p = take();
+            if (p == null) {
+                return;
+            }
+            trajectory.add(step(p).put("error", text));
+            status = "error";
+            error = text;
+            abortInFlight(5000);
+            lock.notifyAll();
+        }
+    }
+
+    // ältester offener Befehl der laufenden Folge, null wenn die Antwort nicht dazugehört
+    private Pending take() {
+        if (orphans > 0) {
+            if (System.currentTimeMillis() < orphansExpireAt) {
+                orphans--;
+                lock.notifyAll();
+                return null;
+            }
+            orphans = 0;
+        }
+        Pending p = inFlight.poll();
+        if (p != null) {
+            lastResponse = System.nanoTime();
+            STEP_SECONDS.observeSince(p.sentAt);
+        }
+        return p;
+    }
+
+    private JSONObject step(Pending p) {
+        return new JSONObject()
+                .put("step", trajectory.size() + 1)
+                .put("rudder", p.action.rudder().name())
+                .put("course", p.action.course().name())
+                .put("millis", (System.nanoTime() - p.sentAt) / 1_000_000L);
+    }
+
+    // Fenster mit neuen Befehlen auffüllen, ausgehend vom vorhergesagten Zustand
+    private void fill(Plan plan, int window, List<JSONObject> toSend) {
+        long s = sector;
+        int d = dir;
+        for (Pending p : inFlight) {
+            s = ShipKinematics.step(s, d, p.action.rudder(), p.action.course());
+            d = ShipKinematics.turn(d, p.action.rudder());
+        }
+        while (inFlight.size() < window) {
+            Action a = plan.next(s, d);
+            if (a == null) {
+                break;
+            }
+            s = ShipKinematics.step(s, d, a.rudder(), a.course());
+            d = ShipKinematics.turn(d, a.rudder());
+            inFlight.add(new Pending(a));
+            toSend.add(new JSONObject()
+                    .put("cmd", "navigate")
+                    .put("rudder", a.rudder().name())
+                    .put("course", a.course().name()));
+        }
+    }
+
+    // Antworten auf noch offene Befehle gehören nicht mehr zur Folge
+    private void abortInFlight(long timeoutMillis) {
+        if (!inFlight.isEmpty()) {
+            orphans += inFlight.size();
+            orphansExpireAt = System.currentTimeMillis() + timeoutMillis;
+            inFlight.clear();
+        }
+    }
+
+    private JSONObject result(Plan plan) {
+        JSONObject result = new JSONObject()
+                .put("status", status)
+                .put("steps", trajectory.size())
+                .put("sector", PackedVec2D.toVec2D(sector).toJson())
+                .put("dir", ShipKinematics.dirVec(dir).toJson())
+                .put("trajectory", new JSONArray(trajectory));
+        plan.toJson(result);
+        if (crash != null) {
+            result.put("crash", crash);
+        }
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+
+    /**
+     * Feste Liste von Ruder/Kurs-Schritten, optional mit Zielsektor (geplante Route des
+     * Autopiloten).
+     */
+    static final class StepsPlan implements Plan {
+        private final List<Action> actions;
+        private final Vec2D target;
+        private int next;
+
+        StepsPlan(List<Action> actions) {
+            this(actions, null);
+        }
+
+        StepsPlan(List<Action> actions, Vec2D target) {
+            this.actions = actions;
+            this.target = target;
+        }
+
+        @Override
+        public Action next(long sector, int dir) {
+            return next < actions.size() ? actions.get(next++) : null;
+        }
+
+        @Override
+        public boolean reached(long sector) {
+            return target != null && sector == target.toPacked();
+        }
+
+        @Override
+        public String exhausted() {
+            return "completed";
+        }
+
+        @Override
+        public void toJson(JSONObject result) {
+            result.put("planned", actions.size());
+            if (target != null) {
+                result.put("target", target.toJson());
+            }
+        }
+    }
+
+    /**
+     * Fährt schrittweise auf einen Zielsektor zu: je Schritt die der 6 Ruder/Kurs-
+     * Kombinationen, die dem Ziel am nächsten kommt. Sektoren, die laut Karte nicht
+     * befahrbar sind (Land, Eis), werden gemieden; unbekannte gelten als befahrbar.
+     * Bereits besuchte Zustände (Sektor und Richtung) werden nicht wiederholt, damit
+     * die Fahrt nicht im Kreis läuft.
+     */
+    static final class TargetPlan implements Plan {
+        private static final Rudder[] RUDDERS = { Rudder.Center, Rudder.Left, Rudder.Right };
+        private static final Course[] COURSES = { Course.Forward, Course.Backward };
+
+        private record State(long sector, int dir) {
+        }
+
+        private final long target;
+        private final int maxSteps;
+        private final TerrainMap map;
+        private final Set<State> visited = new HashSet<>();
+        private int planned;
+        private boolean stuck;
+
+        TargetPlan(Vec2D target, int maxSteps, TerrainMap map) {
+            this.target = target.toPacked();
+            this.maxSteps = maxSteps;
+            this.map = map;
+        }
+
+        @Override
+        public Action next(long sector, int dir) {
+            visited.add(new State(sector, dir));
+            if (sector == target || planned >= maxSteps || stuck) {
+                return null;
+            }
+            Action best = null;
+            long bestDistance = Long.MAX_VALUE;
+            for (Course course : COURSES) {
+                for (Rudder rudder : RUDDERS) {
+                    long next = ShipKinematics.step(sector, dir, rudder, course);
+                    int nextDir = ShipKinematics.turn(dir, rudder);
+                    if (!navigable(next) || visited.contains(new State(next, nextDir))) {
+                        continue;
+                    }
+                    long dx = PackedVec2D.x(next) - PackedVec2D.x(target);
+                    long dy = PackedVec2D.y(next) - PackedVec2D.y(target);
+                    long distance = dx * dx + dy * dy;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = new Action(rudder, course);
+                    }
+                }
+            }
+            if (best == null) {
+                stuck = true;
+                return null;
+            }
+            planned++;
+            return best;
+        }
+
+        @Override
+        public boolean reached(long sector) {
+            return sector == target;
+        }
+
+        @Override
+        public String exhausted() {
+            return stuck ? "unreachable" : "limit";
+        }
+
+        @Override
+        public void toJson(JSONObject result) {
+            result.put("target", PackedVec2D.toVec2D(target).toJson());
+        }
+
+        private boolean navigable(long sector) {
+            if (map == null) {
+                return true;
+            }
+            Ground ground = map.getGround(PackedVec2D.x(sector), PackedVec2D.y(sector));
+            return ground != Ground.Land && ground != Ground.Ice;
+        }
+    }
+}
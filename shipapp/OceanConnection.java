@@ -0,0 +1,542 @@
+package shipapp;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Verbindung zum Ship-Port des Ocean-Servers, die sich nach Abbrüchen selbst erneuert.
+ *
+ * Empfangene Zeilen gehen an lineHandler (Lese-Thread der Verbindung). Reißt die
+ * Verbindung ab, baut ein Hintergrund-Thread sie neu auf: erster Versuch sofort, danach
+ * mit wachsendem Abstand bis reconnectMaxMillis. Befehle, die in dieser Zeit über
+ * {@link #send} kommen, werden gepuffert (höchstens bufferSize, der älteste fällt heraus)
+ * und nach dem Wiederaufbau in Reihenfolge gesendet, sofern sie nicht älter als ihre
+ * Gültigkeit sind. Ein Ruder-Befehl von vor einer Minute soll nicht mehr ausgeführt werden.
+ *
+ * Direkt nach dem Wiederaufbau und vor den gepufferten Befehlen wird der Befehl aus
+ * dem Handshake-Supplier gesendet (z.B. erneuter launch, da der Ocean-Server das
+ * Schiff mit der alten Verbindung vergisst). Beides schreibt der Reconnect-Thread
+ * außerhalb der Sperre auf den neuen Socket; {@link #send} puffert so lange weiter.
+ * Scheitert das Schreiben, kommen die Befehle zurück in den Puffer.
+ *
+ * Antworten kommen in der Reihenfolge der Befehle. Damit eine Fehlermeldung dem
+ * richtigen Befehl zugeordnet werden kann, merkt sich die Verbindung die gesendeten,
+ * noch unbeantworteten Befehle ({@link #answered}, {@link #errorAnswers}).
+ *
+ * Zustandswechsel gehen an die registrierten {@link Listener}.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.ocean.reconnectMaxMillis=n   (größter Abstand der Versuche, Standard 5000)
+ *   -Dshipapp.ocean.bufferSize=n           (gepufferte Befehle, Standard 256)
+ *   -Dshipapp.ocean.commandTtlMillis=n     (Gültigkeit gepufferter Befehle, Standard 3000)
+ */
+final class OceanConnection {
+
+    enum State { CONNECTING, CONNECTED, RECONNECTING, CLOSED }
+
+    /**
+     * Empfänger von Zustandswechseln. Wird auf dem Thread aufgerufen, der den Wechsel
+     * auslöst, und sollte nicht blockieren.
+     */
+    interface Listener {
+        void stateChanged(State from, State to, String reason);
+    }
+
+    /**
+     * Ergebnis von {@link #send}.
+     */
+    enum SendResult { SENT, BUFFERED, REJECTED }
+
+    static final long RECONNECT_MAX_MILLIS = Integer.getInteger("shipapp.ocean.reconnectMaxMillis", 5000);
+    static final int BUFFER_SIZE = Integer.getInteger("shipapp.ocean.bufferSize", 256);
+    static final long COMMAND_TTL_MILLIS = Integer.getInteger("shipapp.ocean.commandTtlMillis", 3000);
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long RECONNECT_MIN_MILLIS = 50;
+
+    private static final Metrics.Counter RECONNECTS = Metrics.counter(
+            "shipapp_ocean_reconnects_total", "Wiederaufgebaute Verbindungen zum Ocean-Server").labels();
+    private static final Metrics.Family<Metrics.Counter> BUFFERED = Metrics.counter(
+            "shipapp_ocean_commands_buffered_total", "Befehle an den Ocean-Server je Ergebnis (buffered, resent, expired, overflow, rejected)", "result");
+    private static final Metrics.Histogram OUTAGE_SECONDS = Metrics.histogram(
+            "shipapp_ocean_outage_seconds", "Dauer der Verbindungsunterbrechungen zum Ocean-Server").labels();
+
+    private record Pending(String line, String cmd, long expiresAt) {
+    }
+
+    // Befehle, auf die der Ocean-Server genau eine Antwort (oder eine Fehlermeldung) schickt
+    private static final Set<String> ANSWERED_COMMANDS = Set.of("launch", "navigate", "scan", "radar");
+    private static final int MAX_UNANSWERED = 1024;
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final Consumer<String> lineHandler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Supplier<JSONObject> handshake = () -> null;
+
+    // Zustand, Socket und Puffer (unter lock)
+    private final Object lock = new Object();
+    private State state = State.CONNECTING;
+    private Socket socket;
+    private PrintWriter out;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private long disconnectedAt;
+    private long generation;
+    private Thread reconnector;
+    // gesendete, noch unbeantwortete Befehle der aktuellen Verbindung, älteste zuerst
+    private final ArrayDeque<String> unanswered = new ArrayDeque<>();
+    // reconnectNow() während RECONNECTING: Wartezeit abbrechen und Backoff zurücksetzen
+    private boolean retryNow;
+
+    /**
+     * @param name        Name für Threads und Log (z.B. Schiffsname oder Port)
+     * @param lineHandler verarbeitet jede empfangene, nicht leere Zeile
+     */
+    OceanConnection(String name, String host, int port, Consumer<String> lineHandler) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.lineHandler = lineHandler;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Befehl, der nach jedem Wiederaufbau vor den gepufferten Befehlen gesendet wird
+     * (null = keiner).
+     */
+    void setHandshake(Supplier<JSONObject> handshake) {
+        this.handshake = handshake;
+    }
+
+    /**
+     * Erster Verbindungsaufbau, synchron. Danach erneuert sich die Verbindung selbst.
+     *
+     * @throws IOException wenn der Ocean-Server nicht erreichbar ist
+     */
+    void connect() throws IOException {
+        System.out.printf("Verbinde zu Ocean-Server %s:%d ...%n", host, port);
+        Socket s = open();
+        synchronized (lock) {
+            attach(s);
+        }
+        System.out.println("Verbindung zum Ocean-Server aufgebaut.");
+        fire(State.CONNECTING, State.CONNECTED, "verbunden");
+    }
+
+    /**
+     * Sendet einen Befehl mit der Standard-Gültigkeit.
+     */
+    SendResult send(JSONObject cmd) {
+        return send(cmd, COMMAND_TTL_MILLIS);
+    }
+
+    /**
+     * Sendet einen Befehl oder puffert ihn, solange die Verbindung neu aufgebaut wird.
+     *
+     * @param ttlMillis wie lange der Befehl gepuffert gültig bleibt
+     */
+    SendResult send(JSONObject cmd, long ttlMillis) {
+        String line = cmd.toString();
+        String cmdName = cmd.optString("cmd", "?");
+        State lostFrom = null;
+        synchronized (lock) {
+            if (state == State.CLOSED) {
+                BUFFERED.labels("rejected").inc();
+                return SendResult.REJECTED;
+            }
+            if (state == State.CONNECTED) {
+                out.println(line);
+                if (!out.checkError()) {
+                    written(cmdName);
+                    return SendResult.SENT;
+                }
+                // Schreiben fehlgeschlagen: Verbindung gilt als verloren, Befehl puffern
+                lostFrom = detach("Schreibfehler");
+            }
+            if (pending.size() >= BUFFER_SIZE) {
+                pending.pollFirst();
+                BUFFERED.labels("overflow").inc();
+            }
+            pending.addLast(new Pending(line, cmdName, System.currentTimeMillis() + ttlMillis));
+            BUFFERED.labels("buffered").inc();
+        }
+        if (lostFrom != null) {
+            fire(lostFrom, State.RECONNECTING, "Schreibfehler");
+        }
+        return SendResult.BUFFERED;
+    }
+
+    /**
+     * Trennt die Verbindung, verwirft gepufferte Befehle und baut sofort neu auf
+     * (z.B. für ein frisches Spiel nach einem Reset). Kehrt zurück, ohne auf den
+     * Aufbau zu warten.
+     */
+    void reconnectNow() {
+        State from;
+        synchronized (lock) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            pending.clear();
+            from = state;
+            if (state == State.CONNECTED) {
+                detach("Reset");
+            } else if (state == State.RECONNECTING) {
+                retryNow = true;
+                lock.notifyAll();
+            }
+        }
+        if (from == State.CONNECTED) {
+            fire(from, State.RECONNECTING, "Reset");
+        }
+    }
+
+    /**
+     * Meldet die Antwort auf einen Befehl (z.B. move2d auf navigate). Offene Befehle
+     * davor gelten als unbeantwortet und werden vergessen.
+     */
+    void answered(String cmd) {
+        synchronized (lock) {
+            if (unanswered.contains(cmd)) {
+                while (!cmd.equals(unanswered.pollFirst())) {
+                    // älterer Befehl ohne Antwort
+                }
+            }
+        }
+    }
+
+    /**
+     * Ordnet eine Fehlermeldung des Ocean-Servers zu: Sie beantwortet den ältesten
+     * offenen Befehl.
+     *
+     * @return Name dieses Befehls oder null, wenn keiner offen ist (Meldung ohne Befehl)
+     */
+    String errorAnswers() {
+        synchronized (lock) {
+            return unanswered.pollFirst();
+        }
+    }
+
+    // Befehl wurde auf die aktuelle Verbindung geschrieben (unter lock)
+    private void written(String cmd) {
+        if (!ANSWERED_COMMANDS.contains(cmd)) {
+            return;
+        }
+        if (unanswered.size() >= MAX_UNANSWERED) {
+            unanswered.pollFirst();
+        }
+        unanswered.addLast(cmd);
+    }
+
+    State state() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    /**
+     * Zustand für GET /state.
+     */
+    JSONObject toJson() {
+        synchronized (lock) {
+            JSONObject jo = new JSONObject()
+                    .put("state", state.name())
+                    .put("buffered", pending.size());
+            if (state == State.RECONNECTING) {
+                jo.put("disconnectedMs", System.currentTimeMillis() - disconnectedAt);
+            }
+            return jo;
+        }
+    }
+
+    void close() {
+        State from;
+        synchronized (lock) {
+            from = state;
+            state = State.CLOSED;
+            pending.clear();
+            closeSocket();
+            if (reconnector != null) {
+                reconnector.interrupt();
+            }
+        }
+        fire(from, State.CLOSED, "geschlossen");
+    }
+
+    // ------------------------------------------------------------
+    // Verbindungsaufbau
+    // ------------------------------------------------------------
+
+    private Socket open() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            return s;
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+    }
+
+    // neue Verbindung übernehmen und Lese-Thread starten (unter lock)
+    private void attach(Socket s) throws IOException {
+        attach(s, writer(s));
+    }
+
+    private void attach(Socket s, PrintWriter writer) throws IOException {
+        socket = s;
+        unanswered.clear();
+        out = writer;
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        state = State.CONNECTED;
+        long gen = ++generation;
+        Thread t = new Thread(() -> readLoop(in, gen), "ShipAppApi-ShipListener-" + name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Verbindung als verloren markieren und Wiederaufbau starten (unter lock); alter Zustand
+    private State detach(String reason) {
+        State from = state;
+        closeSocket();
+        // Antworten auf der alten Verbindung kommen nicht mehr
+        unanswered.clear();
+        generation++;
+        state = State.RECONNECTING;
+        disconnectedAt = System.currentTimeMillis();
+        AsyncLog.warn("ocean.connection", "Verbindung zum Ocean-Server %s:%d unterbrochen (%s), baue neu auf",
+                host, port, reason);
+        if (reconnector == null || !reconnector.isAlive()) {
+            reconnector = new Thread(this::reconnectLoop, "ShipAppApi-OceanReconnect-" + name);
+            reconnector.setDaemon(true);
+            reconnector.start();
+        }
+        return from;
+    }
+
+    private static PrintWriter writer(Socket s) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    private void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        socket = null;
+        out = null;
+    }
+
+    private void readLoop(BufferedReader in, long gen) {
+        String reason = "vom Ocean-Server beendet";
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                AsyncLog.debug("ocean.raw", "Vom Ocean-Server empfangen: %s", line);
+                try {
+                    lineHandler.accept(line);
+                } catch (RuntimeException e) {
+                    AsyncLog.error("ocean.connection", "Fehler beim Verarbeiten einer Ocean-Nachricht: %s", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            reason = e.getMessage();
+        }
+        State from = null;
+        synchronized (lock) {
+            // nur die aktuelle Verbindung darf einen Wiederaufbau auslösen
+            if (gen == generation && state == State.CONNECTED) {
+                from = detach(reason);
+            }
+        }
+        if (from != null) {
+            fire(from, State.RECONNECTING, reason);
+        }
+    }
+
+    private void reconnectLoop() {
+        long backoff = 0;
+        while (true) {
+            synchronized (lock) {
+                long deadline = System.currentTimeMillis() + backoff;
+                try {
+                    while (!retryNow && state == State.RECONNECTING) {
+                        long left = deadline - System.currentTimeMillis();
+                        if (left <= 0) {
+                            break;
+                        }
+                        lock.wait(left);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (retryNow) {
+                    retryNow = false;
+                    backoff = 0;
+                }
+                if (state != State.RECONNECTING) {
+                    return;
+                }
+            }
+            Socket s;
+            try {
+                s = open();
+            } catch (IOException e) {
+                backoff = Math.min(RECONNECT_MAX_MILLIS, Math.max(RECONNECT_MIN_MILLIS, backoff * 2));
+                AsyncLog.debug("ocean.connection", "Ocean-Server %s:%d nicht erreichbar, nächster Versuch in %d ms: %s",
+                        host, port, backoff, e.getMessage());
+                continue;
+            }
+            List<Pending> resend;
+            synchronized (lock) {
+                if (state != State.RECONNECTING) {
+                    closeQuietly(s);
+                    return;
+                }
+                resend = takePending();
+            }
+            // Handshake und gepufferte Befehle ohne Sperre schreiben; send() puffert weiter
+            JSONObject first = handshake.get();
+            List<String> sent = new ArrayList<>();
+            PrintWriter writer = null;
+            try {
+                writer = writer(s);
+                if (first != null) {
+                    writer.println(first.toString());
+                    sent.add(first.optString("cmd", "?"));
+                }
+                for (Pending p : resend) {
+                    writer.println(p.line());
+                    sent.add(p.cmd());
+                }
+            } catch (IOException e) {
+                writer = null;
+            }
+            if (writer == null || writer.checkError()) {
+                closeQuietly(s);
+                synchronized (lock) {
+                    requeue(resend);
+                }
+                backoff = Math.min(RECONNECT_MAX_MILLIS, Math.max(RECONNECT_MIN_MILLIS, backoff * 2));
+                AsyncLog.debug("ocean.connection", "Schreiben nach dem Wiederaufbau fehlgeschlagen, nächster Versuch in %d ms",
+                        backoff);
+                continue;
+            }
+            BUFFERED.labels("resent").add(resend.size());
+
+            long outage;
+            synchronized (lock) {
+                if (state != State.RECONNECTING) {
+                    closeQuietly(s);
+                    return;
+                }
+                try {
+                    attach(s, writer);
+                } catch (IOException e) {
+                    closeSocket();
+                    state = State.RECONNECTING;
+                    backoff = Math.min(RECONNECT_MAX_MILLIS, Math.max(RECONNECT_MIN_MILLIS, backoff * 2));
+                    continue;
+                }
+                for (String cmd : sent) {
+                    written(cmd);
+                }
+                // während des Schreibens gepufferte Befehle (wenige) wie in send() unter der Sperre
+                if (!flushPending()) {
+                    closeSocket();
+                    unanswered.clear();
+                    generation++;
+                    state = State.RECONNECTING;
+                    backoff = Math.min(RECONNECT_MAX_MILLIS, Math.max(RECONNECT_MIN_MILLIS, backoff * 2));
+                    continue;
+                }
+                outage = System.currentTimeMillis() - disconnectedAt;
+                reconnector = null;
+            }
+            RECONNECTS.inc();
+            OUTAGE_SECONDS.observeNanos(outage * 1_000_000L);
+            AsyncLog.info("ocean.connection", "Verbindung zum Ocean-Server wieder aufgebaut nach %d ms", outage);
+            fire(State.RECONNECTING, State.CONNECTED, "wieder verbunden nach " + outage + " ms");
+            return;
+        }
+    }
+
+    // noch gültige gepufferte Befehle aus dem Puffer nehmen (unter lock)
+    private List<Pending> takePending() {
+        List<Pending> valid = new ArrayList<>(pending.size());
+        long now = System.currentTimeMillis();
+        Pending p;
+        while ((p = pending.pollFirst()) != null) {
+            if (p.expiresAt() < now) {
+                BUFFERED.labels("expired").inc();
+                AsyncLog.debug("ocean.connection", "Gepufferter Befehl %s verfallen", p.cmd());
+                continue;
+            }
+            valid.add(p);
+        }
+        return valid;
+    }
+
+    // nicht gesendete Befehle vor die inzwischen gepufferten zurücklegen (unter lock)
+    private void requeue(List<Pending> unsent) {
+        for (int i = unsent.size() - 1; i >= 0; i--) {
+            pending.addFirst(unsent.get(i));
+        }
+        while (pending.size() > BUFFER_SIZE) {
+            pending.pollFirst();
+            BUFFERED.labels("overflow").inc();
+        }
+    }
+
+    // gepufferte Befehle auf die aktuelle Verbindung schreiben (unter lock); false bei Schreibfehler
+    private boolean flushPending() {
+        List<Pending> valid = takePending();
+        for (Pending p : valid) {
+            out.println(p.line());
+            written(p.cmd());
+        }
+        if (out.checkError()) {
+            requeue(valid);
+            return false;
+        }
+        BUFFERED.labels("resent").add(valid.size());
+        return true;
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void fire(State from, State to, String reason) {
+        for (Listener l : listeners) {
+            l.stateChanged(from, to, reason);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package shipapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wartung der wachsenden Tabellen measurements, submarine_positions und
+ * submarine_pictures (Endpunkte /api/admin/maintenance).
+ *
+ * Ein Hintergrund-Thread prüft regelmäßig jede Tabelle über eine eigene Verbindung:
+ * - Partitionierte Tabellen (siehe database/partitioning.sql): Partitionen für die
+ *   nächsten Monate bzw. Tage werden vorab aus der leeren Partition pmax abgespalten,
+ *   Partitionen, die vollständig älter als die Aufbewahrungsdauer sind, werden
+ *   mit DROP PARTITION entfernt (ohne Zeilen einzeln zu löschen).
+ * - Nicht partitionierte Tabellen: alte Zeilen werden in kleinen Blöcken gelöscht,
+ *   jeder Block ist eine eigene kurze Transaktion, dazwischen eine Pause. So
+ *   sperrt die Bereinigung die Tabelle nie lange.
+ *
+ * POST /api/admin/maintenance stößt einen Lauf im selben Hintergrund-Thread an und wartet
+ * nicht darauf; das blockweise Löschen kann Minuten dauern.
+ *
+ * Es gibt höchstens eine Wartung pro JVM, im Fleet-Modus teilen sich alle Schiffe die
+ * Datenbank. Ohne Aufbewahrungsdauer wird nichts gelöscht, es werden nur Partitionen
+ * angelegt.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.maintenance.intervalMinutes=n     (Standard 60, 0 = aus)
+ *   -Dshipapp.partitions.interval=month|day     (Standard month)
+ *   -Dshipapp.partitions.ahead=n                (vorab angelegte Partitionen, Standard 3)
+ *   -Dshipapp.retention.days=n                  (Aufbewahrung aller Tabellen, Standard 0 = unbegrenzt)
+ *   -Dshipapp.retention.&lt;tabelle&gt;.days=n       (abweichend für eine Tabelle)
+ *   -Dshipapp.retention.batchSize=n             (Zeilen je DELETE, Standard 5000)
+ *   -Dshipapp.retention.pauseMillis=n           (Pause zwischen zwei DELETEs, Standard 200)
+ */
+public final class PartitionMaintenance {
+
+    static final String[] TABLES = { "measurements", "submarine_positions", "submarine_pictures" };
+
+    private static final String PROP_PREFIX = "shipapp.";
+    private static final int INTERVAL_MINUTES = Integer.getInteger(PROP_PREFIX + "maintenance.intervalMinutes", 60);
+    private static final boolean DAILY = "day".equalsIgnoreCase(System.getProperty(PROP_PREFIX + "partitions.interval", "month"));
+    private static final int AHEAD = Math.max(1, Integer.getInteger(PROP_PREFIX + "partitions.ahead", 3));
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger(PROP_PREFIX + "retention.batchSize", 5000));
+    private static final long PAUSE_MILLIS = Integer.getInteger(PROP_PREFIX + "retention.pauseMillis", 200);
+
+    // MySQL TO_DAYS('1970-01-01')
+    private static final long TO_DAYS_EPOCH = 719_528;
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter DAY_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private static final Metrics.Family<Metrics.Counter> PARTITIONS_CREATED = Metrics.counter(
+            "shipapp_partitions_created_total", "Vorab angelegte Partitionen je Tabelle", "table");
+    private static final Metrics.Family<Metrics.Counter> PARTITIONS_DROPPED = Metrics.counter(
+            "shipapp_partitions_dropped_total", "Wegen Aufbewahrungsdauer entfernte Partitionen je Tabelle", "table");
+    private static final Metrics.Family<Metrics.Counter> ROWS_DELETED = Metrics.counter(
+            "shipapp_retention_rows_deleted_total", "Blockweise gelöschte Zeilen je Tabelle", "table");
+    private static final Metrics.Histogram RUN_SECONDS = Metrics.histogram(
+            "shipapp_maintenance_seconds", "Dauer eines Wartungslaufs über alle Tabellen").labels();
+
+    private static final Object RUN_LOCK = new Object();
+    private static ScheduledExecutorService scheduler;
+    private static boolean scheduled;
+    // angestoßener Lauf, der noch nicht fertig ist
+    private static boolean pending;
+    private static final Map<String, JSONObject> lastRun = new LinkedHashMap<>();
+    private static long lastRunAt;
+    private static String lastError;
+
+    private PartitionMaintenance() {
+    }
+
+    /**
+     * Startet die regelmäßige Wartung (nur beim ersten Aufruf, Intervall aus den Properties).
+     */
+    public static synchronized void startFromConfig() {
+        if (scheduled || INTERVAL_MINUTES <= 0) {
+            return;
+        }
+        scheduled = true;
+        // erster Lauf kurz nach dem Start, damit der Start selbst nicht verzögert wird
+        scheduler().scheduleWithFixedDelay(PartitionMaintenance::runQuietly, 1, INTERVAL_MINUTES * 60L, TimeUnit.SECONDS);
+        System.out.printf("Tabellenwartung aktiv (alle %d min, Partitionen je %s)%n",
+                INTERVAL_MINUTES, DAILY ? "Tag" : "Monat");
+    }
+
+    /**
+     * Stößt einen Wartungslauf im Hintergrund-Thread an; läuft oder wartet schon einer,
+     * wird kein weiterer eingereiht.
+     *
+     * @return Zustand wie {@link #status()}, mit running = true
+     */
+    public static synchronized JSONObject submit() {
+        if (!pending) {
+            pending = true;
+            scheduler().execute(() -> {
+                try {
+                    runQuietly();
+                } finally {
+                    submitDone();
+                }
+            });
+        }
+        return status();
+    }
+
+    private static synchronized void submitDone() {
+        pending = false;
+    }
+
+    private static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ShipAppApi-Maintenance");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Führt einen Wartungslauf sofort im aufrufenden Thread aus.
+     *
+     * @return Ergebnis je Tabelle
+     * @throws SQLException wenn keine Verbindung zur Datenbank möglich ist
+     */
+    private static JSONObject runNow() throws SQLException {
+        long start = System.nanoTime();
+        JfrEvents.Database event = JfrEvents.Database.start();
+        try (Connection connection = SubmarineRepository.openConnection()) {
+            // nur ein Lauf gleichzeitig (Zeitplan und POST /api/admin/maintenance)
+            synchronized (RUN_LOCK) {
+                for (String table : TABLES) {
+                    JSONObject result;
+                    try {
+                        result = maintain(connection, table);
+                    } catch (SQLException e) {
+                        AsyncLog.error("db.maintenance", "Wartung von %s fehlgeschlagen: %s", table, e.getMessage());
+                        result = new JSONObject().put("error", e.getMessage());
+                    }
+                    finished(table, result);
+                }
+                return status();
+            }
+        } finally {
+            RUN_SECONDS.observeSince(start);
+            event.finish("maintenance");
+        }
+    }
+
+    public static synchronized JSONObject status() {
+        JSONObject tables = new JSONObject();
+        for (Map.Entry<String, JSONObject> e : lastRun.entrySet()) {
+            tables.put(e.getKey(), e.getValue());
+        }
+        return new JSONObject()
+                .put("intervalMinutes", INTERVAL_MINUTES)
+                .put("partitionInterval", DAILY ? "day" : "month")
+                .put("ahead", AHEAD)
+                .put("lastRun", lastRunAt)
+                .put("running", pending)
+                .put("error", lastError != null ? lastError : JSONObject.NULL)
+                .put("tables", tables);
+    }
+
+    private static synchronized void finished(String table, JSONObject result) {
+        lastRun.put(table, result);
+        lastRunAt = System.currentTimeMillis();
+    }
+
+    private static synchronized void failed(String error) {
+        lastError = error;
+    }
+
+    private static void runQuietly() {
+        try {
+            runNow();
+            failed(null);
+        } catch (SQLException e) {
+            failed(e.getMessage());
+            AsyncLog.warn("db.maintenance", "Tabellenwartung übersprungen, keine Datenbank: %s", e.getMessage());
+        } catch (RuntimeException e) {
+            AsyncLog.error("db.maintenance", "Tabellenwartung fehlgeschlagen: %s", e.toString());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Eine Tabelle
+    // ------------------------------------------------------------
+
+    private record Partition(String name, long lessThanDays) {
+    }
+
+    private static JSONObject maintain(Connection connection, String table) throws SQLException {
+        int retentionDays = Integer.getInteger(PROP_PREFIX + "retention." + table + ".days",
+                Integer.getInteger(PROP_PREFIX + "retention.days", 0));
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        JSONObject result = new JSONObject().put("retentionDays", retentionDays);
+
+        List<Partition> partitions = partitions(connection, table);
+        if (partitions.isEmpty()) {
+            result.put("partitioned", false);
+            if (retentionDays > 0) {
+                result.put("deletedRows", deleteInBatches(connection, table, today.minusDays(retentionDays)));
+            }
+            return result;
+        }
+
+        result.put("partitioned", true);
+        JSONArray created = new JSONArray();
+        for (Partition p : createAhead(connection, table, partitions, today)) {
+            created.put(p.name());
+        }
+        JSONArray dropped = new JSONArray();
+        if (retentionDays > 0) {
+            long cutoffDays = toDays(today.minusDays(retentionDays));
+            for (Partition p : partitions) {
+                // pmax (MAXVALUE) und die Partition mit dem Stichtag bleiben stehen
+                if (p.lessThanDays() > 0 && p.lessThanDays() <= cutoffDays) {
+                    execute(connection, "ALTER TABLE " + table + " DROP PARTITION " + p.name());
+                    PARTITIONS_DROPPED.labels(table).inc();
+                    AsyncLog.info("db.maintenance", "%s: Partition %s entfernt", table, p.name());
+                    dropped.put(p.name());
+                }
+            }
+        }
+        return result.put("created", created).put("dropped", dropped).put("partitions", partitions.size()
+                + created.length() - dropped.length());
+    }
+
+    // Partitionen aus information_schema; leer, wenn die Tabelle nicht partitioniert ist
+    private static List<Partition> partitions(Connection connection, String table) throws SQLException {
+        String sql = """
+            SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL
+            ORDER BY PARTITION_ORDINAL_POSITION
+            """;
+        List<Partition> result = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String description = rs.getString(2);
+                    long lessThan = "MAXVALUE".equalsIgnoreCase(description) ? -1 : Long.parseLong(description.trim());
+                    result.add(new Partition(rs.getString(1), lessThan));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Spaltet aus pmax die Partitionen bis einschließlich AHEAD Zeiträume nach heute ab.
+     * pmax ist dabei leer, das REORGANIZE kopiert also keine Daten.
+     */
+    private static List<Partition> createAhead(Connection connection, String table, List<Partition> existing,
+                                               LocalDate today) throws SQLException {
+        List<Partition> created = new ArrayList<>();
+        boolean hasMax = existing.stream().anyMatch(p -> p.lessThanDays() < 0);
+        if (!hasMax) {
+            AsyncLog.warn("db.maintenance", "%s: keine Partition pmax (MAXVALUE), lege keine Partitionen an", table);
+            return created;
+        }
+        long highest = existing.stream().mapToLong(Partition::lessThanDays).max().orElse(0);
+        LocalDate period = periodStart(today);
+        for (int i = 0; i <= AHEAD; i++) {
+            LocalDate next = DAILY ? period.plusDays(1) : period.plusMonths(1);
+            if (toDays(next) > highest) {
+                created.add(new Partition((DAILY ? DAY_NAME : MONTH_NAME).format(period), toDays(next)));
+            }
+            period = next;
+        }
+        if (created.isEmpty()) {
+            return created;
+        }
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(table).append(" REORGANIZE PARTITION pmax INTO (");
+        for (Partition p : created) {
+            sql.append("PARTITION ").append(p.name()).append(" VALUES LESS THAN (").append(p.lessThanDays()).append("), ");
+        }
+        sql.append("PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        execute(connection, sql.toString());
+        PARTITIONS_CREATED.labels(table).add(created.size());
+        AsyncLog.info("db.maintenance", "%s: %d Partitionen angelegt", table, created.size());
+        return created;
+    }
+
+    /**
+     * Löscht Zeilen vor dem Stichtag in Blöcken von BATCH_SIZE, jeder Block in einer
+     * eigenen Transaktion (autocommit).
+     */
+    private static long deleteInBatches(Connection connection, String table, LocalDate cutoff) throws SQLException {
+        String sql = "DELETE FROM " + table + " WHERE recorded_at < ? LIMIT " + BATCH_SIZE;
+        long total = 0;
+        connection.setAutoCommit(true);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.from(cutoff.atStartOfDay(ZoneOffset.UTC).toInstant()));
+            int deleted;
+            do {
+                deleted = stmt.executeUpdate();
+                total += deleted;
+                ROWS_DELETED.labels(table).add(deleted);
+                if (deleted == BATCH_SIZE && PAUSE_MILLIS > 0) {
+                    Thread.sleep(PAUSE_MILLIS);
+                }
+            } while (deleted == BATCH_SIZE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (total > 0) {
+            AsyncLog.info("db.maintenance", "%s: %d Zeilen vor %s gelöscht", table, total, cutoff);
+        }
+        return total;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static LocalDate periodStart(LocalDate day) {
+        return DAILY ? day : day.withDayOfMonth(1);
+    }
+
+    static long toDays(LocalDate date) {
+        return date.toEpochDay() + TO_DAYS_EPOCH;
+    }
+}
@@ -0,0 +1,142 @@
+package shipapp;
+
+import java.awt.image.BufferedImage;
+import java.util.zip.CRC32C;
+
+/**
+ * Erkennt Bilder, die (fast) gleich dem zuletzt gespeicherten Bild desselben
+ * Submarines sind.
+ *
+ * Ein Submarine, das still steht, schickt immer wieder dasselbe Bild. Für jedes Bild
+ * werden zwei Prüfsummen gebildet:
+ * - ein Inhalts-Hash über die PNG-Bytes (CRC32C und Länge); stimmt er überein,
+ *   muss das Bild nicht einmal dekodiert werden
+ * - ein Differenz-Hash (dHash) über ein 9x8-Graustufenraster des dekodierten Bildes;
+ *   ähnliche Bilder unterscheiden sich darin nur in wenigen der 64 Bits
+ *
+ * Verglichen wird immer mit dem zuletzt gespeicherten Bild (der Referenz), nicht mit
+ * dem vorherigen Duplikat, damit sich langsame Veränderungen nicht aufsummieren.
+ * Nach maxAgeSeconds wird trotzdem wieder ein volles Bild gespeichert.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.pictures.dedup=false             (Erkennung abschalten, Standard true)
+ *   -Dshipapp.pictures.dedup.threshold=n       (max. abweichende dHash-Bits, Standard 4, -1 = nur byteweise gleiche)
+ *   -Dshipapp.pictures.dedup.maxAgeSeconds=n   (spätestens dann neue Referenz, Standard 300)
+ *
+ * Nicht threadsicher, eine Instanz pro SubmarineSession.
+ */
+final class PictureDeduplicator {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("shipapp.pictures.dedup", "true"));
+    static final int THRESHOLD = Integer.getInteger("shipapp.pictures.dedup.threshold", 4);
+    static final long MAX_AGE_MILLIS = Integer.getInteger("shipapp.pictures.dedup.maxAgeSeconds", 300) * 1000L;
+
+    private static final Metrics.Family<Metrics.Counter> PICTURES = Metrics.counter(
+            "shipapp_pictures_dedup_total", "Empfangene Bilder je Ergebnis der Duplikaterkennung (stored, exact, similar)", "result");
+
+    // Raster für den dHash: 9 Spalten ergeben 8 Differenzen je Zeile
+    private static final int HASH_W = 9;
+    private static final int HASH_H = 8;
+    // Stichproben je Rasterzelle und Richtung
+    private static final int SAMPLES = 6;
+
+    /**
+     * Zuletzt gespeichertes Bild. id ist der Schlüssel aus
+     * {@link SubmarineRepository#savePicture} (0, wenn es nicht gespeichert wurde, z.B. ohne Datenbank).
+     */
+    record Reference(String name, long contentHash, long perceptualHash, long storedAt, long id) {
+    }
+
+    private Reference reference;
+
+    /**
+     * Inhalts-Hash der PNG-Bytes: Länge in den oberen, CRC32C in den unteren 32 Bit.
+     */
+    static long contentHash(byte[] png, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(png, offset, length);
+        return ((long) length << 32) | crc.getValue();
+    }
+
+    /**
+     * Differenz-Hash: Bit gesetzt, wenn eine Rasterzelle heller ist als ihr rechter Nachbar.
+     */
+    static long perceptualHash(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        long hash = 0;
+        for (int row = 0; row < HASH_H; row++) {
+            int previous = cellLuma(image, w, h, 0, row);
+            for (int col = 1; col < HASH_W; col++) {
+                int luma = cellLuma(image, w, h, col, row);
+                hash = (hash << 1) | (previous > luma ? 1 : 0);
+                previous = luma;
+            }
+        }
+        return hash;
+    }
+
+    // mittlere Helligkeit einer Rasterzelle aus SAMPLES x SAMPLES Stichproben
+    private static int cellLuma(BufferedImage image, int w, int h, int col, int row) {
+        int x0 = col * w / HASH_W;
+        int x1 = Math.max(x0 + 1, (col + 1) * w / HASH_W);
+        int y0 = row * h / HASH_H;
+        int y1 = Math.max(y0 + 1, (row + 1) * h / HASH_H);
+        int sum = 0;
+        for (int sy = 0; sy < SAMPLES; sy++) {
+            int y = Math.min(h - 1, y0 + (y1 - y0) * (2 * sy + 1) / (2 * SAMPLES));
+            for (int sx = 0; sx < SAMPLES; sx++) {
+                int x = Math.min(w - 1, x0 + (x1 - x0) * (2 * sx + 1) / (2 * SAMPLES));
+                int rgb = image.getRGB(x, y);
+                sum += (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+            }
+        }
+        return sum / (SAMPLES * SAMPLES);
+    }
+
+    /**
+     * Prüft vor dem Dekodieren, ob das Bild byteweise dem gespeicherten gleicht.
+     *
+     * @return die Referenz oder null, wenn das Bild weiter verarbeitet werden muss
+     */
+    Reference exactDuplicate(long contentHash, long now) {
+        Reference ref = current(now);
+        if (ref != null && ref.contentHash() == contentHash) {
+            PICTURES.labels("exact").inc();
+            return ref;
+        }
+        return null;
+    }
+
+    /**
+     * Prüft nach dem Dekodieren, ob das Bild dem gespeicherten ähnlich genug ist.
+     *
+     * @return die Referenz oder null, wenn das Bild gespeichert werden soll
+     */
+    Reference similarDuplicate(long perceptualHash, long now) {
+        Reference ref = current(now);
+        if (ref != null && THRESHOLD >= 0 && Long.bitCount(ref.perceptualHash() ^ perceptualHash) <= THRESHOLD) {
+            PICTURES.labels("similar").inc();
+            return ref;
+        }
+        return null;
+    }
+
+    /**
+     * Merkt sich ein gespeichertes Bild als neue Referenz. Ohne Zeile in der Datenbank
+     * (id 0) gibt es keine Referenz, sonst blieben von den folgenden Duplikaten nur
+     * Verweise auf nichts.
+     */
+    void stored(String name, long contentHash, long perceptualHash, long now, long id) {
+        reference = id != 0 ? new Reference(name, contentHash, perceptualHash, now, id) : null;
+        PICTURES.labels("stored").inc();
+    }
+
+    private Reference current(long now) {
+        Reference ref = reference;
+        if (!ENABLED || ref == null || now - ref.storedAt() > MAX_AGE_MILLIS) {
+            return null;
+        }
+        return ref;
+    }
+}
@@ -0,0 +1,281 @@
+package shipapp;
+
+import ocean.OceanPicture;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Verkleinerte Varianten der Submarine-Bilder für die Live-View.
+ *
+ * Jedes eingehende Bild wird im Hintergrund auf die Größen {@link Size#THUMB} und
+ * {@link Size#PREVIEW} verkleinert. Die Varianten liegen in einem LRU-Cache im
+ * Speicher (begrenzt in Bytes) und als PNG unter pictures/&lt;größe&gt;/&lt;name&gt;.png,
+ * so dass sie auch nach einem Neustart nicht neu berechnet werden müssen.
+ *
+ * Der Worker-Pool ist klein und seine Warteschlange begrenzt. Kommt für ein Bild
+ * ein neueres, bevor es verarbeitet wurde, wird nur das neuere verkleinert. Ist die
+ * Warteschlange voll, wird das Bild übersprungen; fehlende Varianten erzeugt
+ * {@link #get} bei Bedarf synchron.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.thumbnails.threads=n     (Worker-Threads, Standard 2)
+ *   -Dshipapp.thumbnails.queue=n       (Warteschlange, Standard 64)
+ *   -Dshipapp.thumbnails.cacheMb=n     (Speicher-Cache in MB, Standard 32)
+ *   -Dshipapp.thumbnails.dir=pfad      (Standard: pictures)
+ */
+public class PictureThumbnailer {
+
+    /**
+     * Bildgrößen; die Zahl ist die maximale Kantenlänge in Pixeln, 0 = Original.
+     */
+    public enum Size {
+        THUMB(160),
+        PREVIEW(480),
+        FULL(0);
+
+        private final int maxEdge;
+
+        Size(int maxEdge) {
+            this.maxEdge = maxEdge;
+        }
+
+        /**
+         * Liest den Query-Parameter size (thumb, thumbnail, preview, full); unbekannt = FULL.
+         */
+        public static Size parse(String value) {
+            if (value == null) {
+                return FULL;
+            }
+            return switch (value.toLowerCase()) {
+                case "thumb", "thumbnail" -> THUMB;
+                case "preview" -> PREVIEW;
+                default -> FULL;
+            };
+        }
+
+        public String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Metrics.Family<Metrics.Counter> GENERATED = Metrics.counter(
+            "shipapp_thumbnails_generated_total", "Erzeugte Bildvarianten je Größe", "size");
+    private static final Metrics.Family<Metrics.Counter> CACHE = Metrics.counter(
+            "shipapp_thumbnail_cache_total", "Zugriffe auf Bildvarianten je Ergebnis (memory, disk, miss)", "result");
+    private static final Metrics.Counter SKIPPED = Metrics.counter(
+            "shipapp_thumbnails_skipped_total", "Bilder, die wegen voller Warteschlange nicht verkleinert wurden").labels();
+    private static final Metrics.Histogram SECONDS = Metrics.histogram(
+            "shipapp_thumbnail_seconds", "Dauer für Verkleinern und Kodieren aller Varianten eines Bildes").labels();
+
+    private final Path dir;
+    private final long maxCacheBytes;
+    private final ThreadPoolExecutor executor;
+
+    // neuestes noch nicht verarbeitetes Bild je Submarine
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    // LRU-Cache: "<name>/<size>" -> PNG-Bytes
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+
+    private record Pending(String name, BufferedImage image) {
+    }
+
+    public PictureThumbnailer() {
+        this(Paths.get(System.getProperty("shipapp.thumbnails.dir", "pictures")),
+                Integer.getInteger("shipapp.thumbnails.threads", 2),
+                Integer.getInteger("shipapp.thumbnails.queue", 64),
+                Integer.getInteger("shipapp.thumbnails.cacheMb", 32) * 1024L * 1024L);
+    }
+
+    public PictureThumbnailer(Path dir, int threads, int queueSize, long maxCacheBytes) {
+        this.dir = dir;
+        this.maxCacheBytes = maxCacheBytes;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread t = new Thread(r, "ShipAppApi-Thumbnails-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Plant die Verkleinerung eines neu empfangenen Bildes ein (kehrt sofort zurück).
+     *
+     * @param submarineId Submarine, von dem das Bild stammt
+     * @param name        eindeutiger Name des Bildes, z.B. der Dateiname ohne .png
+     * @param image       bereits dekodiertes Bild
+     */
+    public void submit(String submarineId, String name, BufferedImage image) {
+        if (pending.put(submarineId, new Pending(name, image)) != null) {
+            // für dieses Submarine ist schon ein Auftrag eingeplant, er nimmt das neueste Bild
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                Pending p = pending.remove(submarineId);
+                if (p != null) {
+                    generate(p.name(), p.image());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(submarineId);
+            SKIPPED.inc();
+        }
+    }
+
+    /**
+     * Liefert eine Variante als PNG: aus dem Speicher, von der Platte oder, wenn sie
+     * noch fehlt, sofort aus dem Original berechnet.
+     *
+     * @param original liefert das Original-PNG (wird nur bei Bedarf aufgerufen, darf null liefern)
+     * @return PNG-Bytes oder null, wenn kein Original vorhanden ist
+     */
+    public byte[] get(String name, Size size, Supplier<byte[]> original) {
+        if (size == Size.FULL) {
+            return original.get();
+        }
+        String key = name + "/" + size.key();
+        byte[] cached = cacheGet(key);
+        if (cached != null) {
+            CACHE.labels("memory").inc();
+            return cached;
+        }
+        Path file = file(name, size);
+        try {
+            if (Files.isRegularFile(file)) {
+                byte[] bytes = Files.readAllBytes(file);
+                cachePut(key, bytes);
+                CACHE.labels("disk").inc();
+                return bytes;
+            }
+        } catch (IOException e) {
+            AsyncLog.warn("thumbnail", "Bildvariante %s nicht lesbar: %s", file, e.getMessage());
+        }
+        CACHE.labels("miss").inc();
+        byte[] png = original.get();
+        if (png == null) {
+            return null;
+        }
+        BufferedImage image = OceanPicture.convertBytes2Image(png, 0, png.length);
+        if (image == null) {
+            return null;
+        }
+        return generate(name, image).get(size);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------------------------
+    // Verkleinern
+    // ------------------------------------------------------------
+
+    private Map<Size, byte[]> generate(String name, BufferedImage image) {
+        long start = System.nanoTime();
+        Map<Size, byte[]> result = new LinkedHashMap<>();
+        BufferedImage source = image;
+        // von groß nach klein, die kleinere Variante entsteht aus der größeren
+        for (Size size : new Size[] { Size.PREVIEW, Size.THUMB }) {
+            source = scale(source, size.maxEdge);
+            byte[] png = encode(source);
+            if (png == null) {
+                continue;
+            }
+            result.put(size, png);
+            cachePut(name + "/" + size.key(), png);
+            write(file(name, size), png);
+            GENERATED.labels(size.key()).inc();
+        }
+        SECONDS.observeSince(start);
+        return result;
+    }
+
+    // Skaliert auf höchstens maxEdge Pixel Kantenlänge, in Halbierungsschritten für bessere Qualität
+    static BufferedImage scale(BufferedImage src, int maxEdge) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double factor = Math.min(1.0, maxEdge / (double) Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * factor));
+        int targetH = Math.max(1, (int) Math.round(h * factor));
+        BufferedImage current = src;
+        while (current.getWidth() != targetW || current.getHeight() != targetH) {
+            int nextW = Math.max(targetW, current.getWidth() / 2);
+            int nextH = Math.max(targetH, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(nextW, nextH, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, nextW, nextH, null);
+            g.dispose();
+            current = next;
+        }
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            return ImageIO.write(image, "png", bos) ? bos.toByteArray() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Caches
+    // ------------------------------------------------------------
+
+    // Namen stammen (über die Submarine-ID) aus dem Netz, daher nur unkritische Zeichen
+    private Path file(String name, Size size) {
+        return dir.resolve(size.key()).resolve(name.replaceAll("[^A-Za-z0-9_.-]", "_") + ".png");
+    }
+
+    // schreibt erst in eine temporäre Datei, damit Leser nie eine halbe Datei sehen
+    private void write(Path file, byte[] png) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, png);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            AsyncLog.warn("thumbnail", "Bildvariante %s nicht gespeichert: %s", file, e.getMessage());
+        }
+    }
+
+    private synchronized byte[] cacheGet(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void cachePut(String key, byte[] png) {
+        byte[] old = cache.put(key, png);
+        cacheBytes += png.length - (old != null ? old.length : 0);
+        Iterator<byte[]> it = cache.values().iterator();
+        while (cacheBytes > maxCacheBytes && it.hasNext()) {
+            cacheBytes -= it.next().length;
+            it.remove();
+        }
+    }
+}
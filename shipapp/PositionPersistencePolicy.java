@@ -0,0 +1,200 @@
+package shipapp;
+
+import ocean.Vec;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entscheidet, welche Positionen aus ready-Nachrichten in submarine_positions
+ * geschrieben werden.
+ *
+ * Statt einer Zeile pro ready-Nachricht werden geschrieben:
+ * - Keyframes: die erste Position einer Session und danach spätestens alle
+ *   keyframeSeconds eine Position (Spalte is_keyframe)
+ * - Deltas: Positionen, die sich um mindestens minDistance (Position oder Tiefe)
+ *   oder minAngleDegrees (Richtung) von der zuletzt geschriebenen unterscheiden
+ *
+ * Wurden vor einem Delta oder vor dem Ende der Session Positionen ausgelassen, wird
+ * die letzte davon mitgeschrieben ({@link #flush()}).
+ * Sonst läge bei der Rekonstruktion die ganze Wartezeit eines stehenden Submarines
+ * auf der Strecke zum nächsten Punkt. Zwischen zwei geschriebenen Zeilen weicht die
+ * tatsächliche Spur so höchstens um die Schwellwerte ab;
+ * {@link #reconstruct(JSONArray, long, long, long)} interpoliert linear.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.positions.filter=false            (jede Position schreiben, Standard true)
+ *   -Dshipapp.positions.keyframeSeconds=n       (Standard 60)
+ *   -Dshipapp.positions.minDistance=n           (Koordinaten-Einheiten, Standard 5)
+ *   -Dshipapp.positions.minAngleDegrees=n       (Standard 10)
+ *
+ * Nicht threadsicher, eine Instanz pro SubmarineSession.
+ */
+final class PositionPersistencePolicy {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("shipapp.positions.filter", "true"));
+    static final long KEYFRAME_MILLIS = Integer.getInteger("shipapp.positions.keyframeSeconds", 60) * 1000L;
+    static final int MIN_DISTANCE = Integer.getInteger("shipapp.positions.minDistance", 5);
+    static final double MIN_ANGLE_COS = Math.cos(Math.toRadians(Integer.getInteger("shipapp.positions.minAngleDegrees", 10)));
+
+    // höchstens so viele Punkte liefert reconstruct()
+    static final int MAX_RECONSTRUCTED = 10_000;
+
+    private static final Metrics.Family<Metrics.Counter> POSITIONS = Metrics.counter(
+            "shipapp_positions_total", "Positionen aus ready-Nachrichten je Ergebnis (keyframe, delta, hold, skipped)", "result");
+
+    /**
+     * Eine zu schreibende Position.
+     */
+    record Sample(long time, Vec pos, Vec dir, int depth, int distance, boolean keyframe) {
+    }
+
+    private Sample lastWritten;
+    private long lastKeyframe;
+    // zuletzt ausgelassene Position (wird vor dem nächsten Delta geschrieben)
+    private Sample held;
+
+    /**
+     * Nimmt die Position einer ready-Nachricht entgegen.
+     *
+     * @return die zu schreibenden Positionen in zeitlicher Reihenfolge (leer, 1 oder 2)
+     */
+    List<Sample> offer(long time, Vec pos, Vec dir, int depth, int distance) {
+        List<Sample> result = new ArrayList<>(2);
+        if (pos == null) {
+            return result;
+        }
+        boolean keyframe = !ENABLED || lastWritten == null || time - lastKeyframe >= KEYFRAME_MILLIS;
+        if (!keyframe && !moved(lastWritten, pos, dir, depth)) {
+            held = new Sample(time, pos, dir, depth, distance, false);
+            POSITIONS.labels("skipped").inc();
+            return result;
+        }
+        if (held != null) {
+            result.add(held);
+            POSITIONS.labels("hold").inc();
+            held = null;
+        }
+        Sample sample = new Sample(time, pos, dir, depth, distance, keyframe);
+        result.add(sample);
+        lastWritten = sample;
+        if (keyframe) {
+            lastKeyframe = time;
+        }
+        POSITIONS.labels(keyframe ? "keyframe" : "delta").inc();
+        return result;
+    }
+
+    /**
+     * Am Ende der Session: die zuletzt ausgelassene Position, damit die gespeicherte
+     * Spur an der letzten bekannten Position endet.
+     *
+     * @return zu schreibende Position oder null, wenn keine aussteht
+     */
+    Sample flush() {
+        Sample sample = held;
+        held = null;
+        if (sample != null) {
+            lastWritten = sample;
+            POSITIONS.labels("hold").inc();
+        }
+        return sample;
+    }
+
+    private static boolean moved(Sample last, Vec pos, Vec dir, int depth) {
+        long dx = pos.getX() - last.pos().getX();
+        long dy = pos.getY() - last.pos().getY();
+        long dz = pos.getZ() - last.pos().getZ();
+        if (dx * dx + dy * dy + dz * dz >= (long) MIN_DISTANCE * MIN_DISTANCE
+                || Math.abs(depth - last.depth()) >= MIN_DISTANCE) {
+            return true;
+        }
+        if (dir == null || last.dir() == null) {
+            return dir != last.dir();
+        }
+        double lenA = length(dir);
+        double lenB = length(last.dir());
+        if (lenA == 0 || lenB == 0) {
+            return lenA != lenB;
+        }
+        double dot = (double) dir.getX() * last.dir().getX()
+                + (double) dir.getY() * last.dir().getY()
+                + (double) dir.getZ() * last.dir().getZ();
+        return dot / (lenA * lenB) < MIN_ANGLE_COS;
+    }
+
+    private static double length(Vec v) {
+        return Math.sqrt((double) v.getX() * v.getX() + (double) v.getY() * v.getY() + (double) v.getZ() * v.getZ());
+    }
+
+    // ------------------------------------------------------------
+    // Rekonstruktion
+    // ------------------------------------------------------------
+
+    /**
+     * Rekonstruiert die Spur aus gespeicherten Zeilen (aufsteigend nach t, Felder wie in
+     * {@link SubmarineRepository#getPositions}).
+     *
+     * Gespeicherte Zeilen werden unverändert geliefert (stored=true), dazwischen im
+     * Abstand step linear interpolierte Punkte (stored=false, Richtung der früheren Zeile).
+     *
+     * @param step Abstand der interpolierten Punkte in ms; 0 = nur die gespeicherten Zeilen
+     */
+    static JSONArray reconstruct(JSONArray rows, long from, long to, long step) {
+        JSONArray result = new JSONArray();
+        int n = rows.length();
+        if (n == 0) {
+            return result;
+        }
+        long first = Math.max(from, rows.getJSONObject(0).getLong("t"));
+        long last = Math.min(to, rows.getJSONObject(n - 1).getLong("t"));
+        if (step > 0) {
+            step = Math.max(step, (last - first) / MAX_RECONSTRUCTED + 1);
+        }
+
+        int next = 0;
+        long t = step > 0 ? first : Long.MAX_VALUE;
+        while (next < n || t <= last) {
+            // gespeicherte Zeilen bis einschließlich t exakt übernehmen
+            if (next < n && rows.getJSONObject(next).getLong("t") <= t) {
+                JSONObject row = rows.getJSONObject(next++);
+                long rt = row.getLong("t");
+                if (rt >= first && rt <= last) {
+                    result.put(new JSONObject(row.toMap()).put("stored", true));
+                }
+                if (rt == t) {
+                    t += step;
+                }
+                continue;
+            }
+            if (t > last) {
+                break;
+            }
+            JSONObject a = rows.getJSONObject(next - 1);
+            JSONObject b = rows.getJSONObject(next);
+            long ta = a.getLong("t");
+            double f = (t - ta) / (double) (b.getLong("t") - ta);
+            JSONObject point = new JSONObject()
+                    .put("t", t)
+                    .put("x", lerp(a, b, "x", f))
+                    .put("y", lerp(a, b, "y", f))
+                    .put("z", lerp(a, b, "z", f))
+                    .put("depth", lerp(a, b, "depth", f))
+                    .put("keyframe", false)
+                    .put("stored", false);
+            if (a.has("dir")) {
+                point.put("dir", a.get("dir"));
+            }
+            result.put(point);
+            t += step;
+        }
+        return result;
+    }
+
+    private static double lerp(JSONObject a, JSONObject b, String key, double f) {
+        double va = a.getDouble(key);
+        return va + (b.getDouble(key) - va) * f;
+    }
+}
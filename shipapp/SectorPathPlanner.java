@@ -0,0 +1,366 @@
+package shipapp;
+
+import ocean.Course;
+import ocean.Ground;
+import ocean.Rudder;
+import ocean.ShipKinematics;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Routenplanung für den Autopiloten (POST /api/autopilot): A* über die aus Radar-Echos
+ * bekannte Karte ({@link TerrainMap}).
+ *
+ * Ein Zustand ist Sektor plus Fahrtrichtung, denn das Schiff kann sich je Schritt nur um
+ * 45 Grad drehen ({@link ShipKinematics}); die Nachfolger sind die 6 Ruder/Kurs-
+ * Kombinationen. Ein Schritt vorwärts kostet 2, rückwärts 3, damit Vorwärtsfahrt bevorzugt
+ * wird; als Schätzung dient der Chebyshev-Abstand mal 2 (jeder Schritt ändert x und y um
+ * höchstens 1), die Route ist damit die kürzeste.
+ *
+ * Geplant wird auf einem Ausschnitt der Karte (bekannte Sektoren, Start und Ziel plus Rand),
+ * der unter einer einzigen Lesesperre kopiert und bis zur nächsten Kartenänderung
+ * wiederverwendet wird. Offene und geschlossene Menge sind primitive Arrays über den
+ * Zustandsindex (Binärheap aus int, g-Werte, Vorgänger, Stempel), je Thread wiederverwendet;
+ * es entstehen keine Objekte je Zustand. Befahrbar sind Water und Harbour; unbekannte
+ * Sektoren nur mit allowUnknown (dann mit Aufschlag, bekanntes Wasser wird bevorzugt).
+ *
+ * Das Ziel darf höchstens UNKNOWN_MARGIN Sektoren außerhalb der bekannten Karte (samt Start)
+ * liegen, und der Ausschnitt höchstens shipapp.autopilot.maxStates Zustände haben; sonst
+ * wirft plan() eine IllegalArgumentException. Größere Arbeitsbereiche behält ein Thread
+ * nach der Planung nicht.
+ *
+ * Threadsicher.
+ */
+final class SectorPathPlanner {
+
+    private static final int FORWARD_COST = 2;
+    private static final int BACKWARD_COST = 3;
+    private static final int UNKNOWN_COST = 2;
+
+    // Rand um die bekannte Karte, in dem unbekannte Sektoren befahren werden dürfen
+    private static final int UNKNOWN_MARGIN = 8;
+
+    // größter Kartenausschnitt in Zuständen (Sektoren mal Richtungen); je Zustand belegt der
+    // Workspace 17 Byte, größere Arbeitsbereiche gibt der Thread nach der Planung wieder frei
+    private static final int MAX_STATES = Math.max(1 << 16, Integer.getInteger("shipapp.autopilot.maxStates", 1 << 23));
+    private static final int RETAINED_STATES = Math.min(MAX_STATES, 1 << 20);
+
+    private static final Rudder[] RUDDERS = { Rudder.Center, Rudder.Left, Rudder.Right };
+    private static final Course[] COURSES = { Course.Forward, Course.Backward };
+
+    private static final Metrics.Family<Metrics.Counter> PLANS = Metrics.counter(
+            "shipapp_autopilot_plans_total", "Routenplanungen je Ergebnis", "result");
+    private static final Metrics.Histogram PLAN_SECONDS = Metrics.histogram(
+            "shipapp_autopilot_plan_seconds", "Dauer einer Routenplanung (A*)").labels();
+
+    /**
+     * Geplante Route: Befehle und die Sektoren nach jedem Befehl.
+     */
+    record Route(List<NavigationSequencer.Action> actions, List<Vec2D> sectors, int cost, int expanded, long nanos) {
+
+        JSONObject toJson() {
+            JSONArray path = new JSONArray();
+            for (int i = 0; i < actions.size(); i++) {
+                path.put(new JSONObject()
+                        .put("rudder", actions.get(i).rudder().name())
+                        .put("course", actions.get(i).course().name())
+                        .put("sector", sectors.get(i).toJson()));
+            }
+            return new JSONObject()
+                    .put("length", actions.size())
+                    .put("cost", cost)
+                    .put("expanded", expanded)
+                    .put("planMicros", nanos / 1000)
+                    .put("path", path);
+        }
+    }
+
+    /**
+     * Kopie eines Kartenausschnitts (Ground-Ordinal je Sektor) mit dem Kartenstand, aus dem
+     * sie stammt.
+     */
+    private record Snapshot(long version, int minX, int minY, int width, int height, byte[] grid) {
+
+        boolean contains(Vec2D v) {
+            return v.getX() >= minX && v.getY() >= minY && v.getX() < minX + width && v.getY() < minY + height;
+        }
+    }
+
+    /**
+     * Arrays einer Planung, je Thread wiederverwendet. Gültig sind g/parent/action eines
+     * Zustands nur, wenn sein Stempel der aktuellen Planung entspricht; so muss zwischen
+     * zwei Planungen nichts gelöscht werden.
+     */
+    private static final class Workspace {
+        int[] g = new int[0];
+        int[] parent = new int[0];
+        byte[] action = new byte[0];
+        int[] seen = new int[0];
+        int[] closed = new int[0];
+        int stamp;
+        final Heap open = new Heap();
+
+        boolean oversized() {
+            return g.length > RETAINED_STATES || open.capacity() > RETAINED_STATES;
+        }
+
+        void prepare(int states) {
+            if (g.length < states || stamp == Integer.MAX_VALUE) {
+                int n = Math.max(states, g.length);
+                g = new int[n];
+                parent = new int[n];
+                action = new byte[n];
+                seen = new int[n];
+                closed = new int[n];
+                stamp = 0;
+            }
+            stamp++;
+            open.clear();
+        }
+    }
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private final TerrainMap map;
+    private volatile Snapshot snapshot;
+
+    SectorPathPlanner(TerrainMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Plant die Route von (start, startDir) zum Zielsektor; die Richtung am Ziel ist beliebig.
+     *
+     * @return Route (leer, wenn das Schiff schon am Ziel ist) oder null, wenn es keine gibt
+     * @throws IllegalArgumentException wenn das Ziel zu weit außerhalb der bekannten Karte liegt
+     */
+    Route plan(Vec2D start, int startDir, Vec2D target, boolean allowUnknown) {
+        Workspace ws = WORKSPACE.get();
+        try {
+            return plan(ws, start, startDir, target, allowUnknown);
+        } finally {
+            if (ws.oversized()) {
+                WORKSPACE.remove();
+            }
+        }
+    }
+
+    private Route plan(Workspace ws, Vec2D start, int startDir, Vec2D target, boolean allowUnknown) {
+        long begin = System.nanoTime();
+        Snapshot snap = snapshot(start, target);
+        int width = snap.width();
+        byte[] grid = snap.grid();
+
+        int startCell = (start.getY() - snap.minY()) * width + (start.getX() - snap.minX());
+        int tx = target.getX() - snap.minX();
+        int ty = target.getY() - snap.minY();
+        int targetCell = ty * width + tx;
+        int targetGround = grid[targetCell];
+        boolean targetOk = targetGround == Ground.None.ordinal() ? allowUnknown : navigable(targetGround);
+
+        ws.prepare(width * snap.height() * ShipKinematics.DIRECTIONS);
+        int stamp = ws.stamp;
+        int[] g = ws.g;
+        int[] parent = ws.parent;
+        byte[] action = ws.action;
+        int[] seen = ws.seen;
+        int[] closed = ws.closed;
+        Heap open = ws.open;
+
+        int startState = startCell * ShipKinematics.DIRECTIONS + startDir;
+        g[startState] = 0;
+        parent[startState] = -1;
+        seen[startState] = stamp;
+        open.push(startState, priority(FORWARD_COST * chebyshev(start.getX() - snap.minX(), start.getY() - snap.minY(), tx, ty), 0));
+
+        int expanded = 0;
+        int found = startCell == targetCell ? startState : -1;
+        while (found < 0 && targetOk && !open.isEmpty()) {
+            int s = open.pop();
+            if (closed[s] == stamp) {
+                continue;
+            }
+            closed[s] = stamp;
+            expanded++;
+            int cell = s / ShipKinematics.DIRECTIONS;
+            if (cell == targetCell) {
+                found = s;
+                break;
+            }
+            int dir = s % ShipKinematics.DIRECTIONS;
+            int x = cell % width;
+            int y = cell / width;
+            for (int c = 0; c < COURSES.length; c++) {
+                int sign = COURSES[c] == Course.Backward ? -1 : 1;
+                for (int r = 0; r < RUDDERS.length; r++) {
+                    int nd = ShipKinematics.turn(dir, RUDDERS[r]);
+                    int nx = x + sign * ShipKinematics.dirX(nd);
+                    int ny = y + sign * ShipKinematics.dirY(nd);
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= snap.height()) {
+                        continue;
+                    }
+                    int ground = grid[ny * width + nx];
+                    boolean unknown = ground == Ground.None.ordinal();
+                    if (unknown ? !allowUnknown : !navigable(ground)) {
+                        continue;
+                    }
+                    int ns = (ny * width + nx) * ShipKinematics.DIRECTIONS + nd;
+                    int cost = g[s] + (sign > 0 ? FORWARD_COST : BACKWARD_COST) + (unknown ? UNKNOWN_COST : 0);
+                    if (seen[ns] != stamp || cost < g[ns]) {
+                        seen[ns] = stamp;
+                        g[ns] = cost;
+                        parent[ns] = s;
+                        action[ns] = (byte) (c * RUDDERS.length + r);
+                        open.push(ns, priority(cost + FORWARD_COST * chebyshev(nx, ny, tx, ty), cost));
+                    }
+                }
+            }
+        }
+
+        long nanos = System.nanoTime() - begin;
+        PLAN_SECONDS.observeNanos(nanos);
+        if (found < 0) {
+            PLANS.labels("unreachable").inc();
+            AsyncLog.info("autopilot", "Keine Route von %s nach %s (%d Zustände untersucht, %d µs)",
+                    start, target, expanded, nanos / 1000);
+            return null;
+        }
+        PLANS.labels("found").inc();
+
+        List<NavigationSequencer.Action> actions = new ArrayList<>();
+        List<Vec2D> sectors = new ArrayList<>();
+        for (int s = found; parent[s] >= 0; s = parent[s]) {
+            int cell = s / ShipKinematics.DIRECTIONS;
+            actions.add(new NavigationSequencer.Action(RUDDERS[action[s] % RUDDERS.length], COURSES[action[s] / RUDDERS.length]));
+            sectors.add(new Vec2D(snap.minX() + cell % width, snap.minY() + cell / width));
+        }
+        Collections.reverse(actions);
+        Collections.reverse(sectors);
+        AsyncLog.debug("autopilot", "Route von %s nach %s: %d Schritte, %d Zustände untersucht, %d µs",
+                start, target, actions.size(), expanded, nanos / 1000);
+        return new Route(actions, sectors, g[found], expanded, nanos);
+    }
+
+    // Kartenausschnitt: bekannte Sektoren, Start und Ziel plus Rand; nur bei Änderung neu kopiert
+    private Snapshot snapshot(Vec2D start, Vec2D target) {
+        long version = map.version();
+        Snapshot snap = snapshot;
+        if (snap != null && snap.version() == version && snap.contains(start) && snap.contains(target)) {
+            return snap;
+        }
+        int[] known = map.bounds();
+        long minX = start.getX();
+        long minY = start.getY();
+        long maxX = start.getX();
+        long maxY = start.getY();
+        if (known != null) {
+            minX = Math.min(minX, known[0]);
+            minY = Math.min(minY, known[1]);
+            maxX = Math.max(maxX, known[2]);
+            maxY = Math.max(maxY, known[3]);
+        }
+        minX -= UNKNOWN_MARGIN;
+        minY -= UNKNOWN_MARGIN;
+        maxX += UNKNOWN_MARGIN;
+        maxY += UNKNOWN_MARGIN;
+        if (target.getX() < minX || target.getY() < minY || target.getX() > maxX || target.getY() > maxY) {
+            throw new IllegalArgumentException("target more than " + UNKNOWN_MARGIN + " sectors outside the known map");
+        }
+        long width = maxX - minX + 1;
+        long height = maxY - minY + 1;
+        if (width * height * ShipKinematics.DIRECTIONS > MAX_STATES) {
+            throw new IllegalArgumentException("map section too large for planning (" + width + "x" + height + ")");
+        }
+        snap = new Snapshot(version, (int) minX, (int) minY, (int) width, (int) height,
+                map.groundGrid((int) minX, (int) minY, (int) width, (int) height));
+        snapshot = snap;
+        return snap;
+    }
+
+    private static boolean navigable(int ground) {
+        return ground == Ground.Water.ordinal() || ground == Ground.Harbour.ordinal();
+    }
+
+    // nach f, bei Gleichstand zuerst der Zustand mit größerem g (näher am Ziel); das erspart
+    // auf offener See das Abarbeiten ganzer Flächen gleich guter Zustände
+    private static long priority(int f, int g) {
+        return ((long) f << 32) | (Integer.MAX_VALUE - g);
+    }
+
+    private static int chebyshev(int x, int y, int tx, int ty) {
+        return Math.max(Math.abs(x - tx), Math.abs(y - ty));
+    }
+
+    /**
+     * Binärer Min-Heap aus Zustandsindizes mit ihrer Priorität (siehe priority()). Veraltete
+     * Einträge bleiben liegen und werden beim Entnehmen über die geschlossene Menge
+     * übersprungen.
+     */
+    private static final class Heap {
+        private int[] states = new int[256];
+        private long[] priorities = new long[256];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int capacity() {
+            return states.length;
+        }
+
+        void push(int state, long priority) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (priorities[p] <= priority) {
+                    break;
+                }
+                states[i] = states[p];
+                priorities[i] = priorities[p];
+                i = p;
+            }
+            states[i] = state;
+            priorities[i] = priority;
+        }
+
+        int pop() {
+            int top = states[0];
+            int state = states[--size];
+            long priority = priorities[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                    child++;
+                }
+                if (priorities[child] >= priority) {
+                    break;
+                }
+                states[i] = states[child];
+                priorities[i] = priorities[child];
+                i = child;
+            }
+            states[i] = state;
+            priorities[i] = priority;
+            return top;
+        }
+    }
+}
@@ -5,17 +5,18 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import ocean.AppLauncher;
 import ocean.Course;
+import ocean.HexCodec;
 import ocean.Rudder;
 import ocean.Route;
+import ocean.ShipKinematics;
 import ocean.Vec;
 import ocean.Vec2D;
 import ocean.OceanPicture;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -28,10 +29,21 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Comparator;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HTTP-API für die ShipApp, damit das React-Frontend die bestehende
@@ -55,6 +67,31 @@ public class ShipAppApiServer {
     private static final int DEFAULT_SUB_SERVER_PORT = 6000;
     private static final int DEFAULT_HTTP_PORT = 8080;
 
+    // Wartezeit auf die ready-Nachricht eines neu gestarteten Submarines
+    private static final long SUBMARINE_READY_TIMEOUT_MS = 30_000;
+
+    // Metriken (GET /api/metrics), JVM-weit für alle Schiffe
+    private static final Metrics.Family<Metrics.Counter> MESSAGES = Metrics.counter(
+            "shipapp_messages_received_total", "Empfangene Protokollnachrichten je Quelle und cmd", "source", "cmd");
+    private static final Metrics.Family<Metrics.Histogram> HANDLER_SECONDS = Metrics.histogram(
+            "shipapp_message_handler_seconds", "Verarbeitungszeit je Nachricht (Parsen und Handler)", "source", "cmd");
+    private static final Metrics.Family<Metrics.Histogram> HTTP_SECONDS = Metrics.histogram(
+            "shipapp_http_request_seconds", "Dauer der HTTP-Anfragen je Kontext", "context", "method", "code");
+    private static final Metrics.Family<Metrics.Histogram> ROUND_TRIP_SECONDS = Metrics.histogram(
+            "shipapp_ocean_round_trip_seconds", "Antwortzeit des Ocean-Servers auf scan/radar", "cmd");
+    private static final Metrics.Family<Metrics.Counter> ROUND_TRIP_TIMEOUTS = Metrics.counter(
+            "shipapp_ocean_round_trip_timeouts_total", "scan/radar ohne Antwort des Ocean-Servers", "cmd");
+    private static final Metrics.Counter PICTURE_BYTES = Metrics.counter(
+            "shipapp_picture_bytes_total", "Empfangene Bilddaten in Bytes (PNG)").labels();
+    private static final AtomicInteger ACTIVE_SESSIONS = new AtomicInteger();
+    private static final AtomicInteger OCEAN_CONNECTIONS = new AtomicInteger();
+
+    static {
+        Metrics.gauge("shipapp_submarine_sessions_active", "Verbundene Submarines", ACTIVE_SESSIONS::get);
+        Metrics.gauge("shipapp_ocean_connections_active", "Offene Verbindungen zum Ocean-Server", OCEAN_CONNECTIONS::get);
+        Metrics.gauge("shipapp_log_dropped_total", "Verworfene Log-Einträge (Puffer voll)", AsyncLog::getDroppedCount);
+    }
+
     // Instanz-Konfiguration (pro Schiff unterschiedlich)
     private final String oceanHost;
     private final int oceanShipPort;
@@ -62,10 +99,18 @@ public class ShipAppApiServer {
     private final int subServerPort;
     private final int httpPort;
 
-    // Verbindung Ocean-Server (Ship-Port)
-    private Socket shipSocket;
-    private BufferedReader shipIn;
-    private PrintWriter shipOut;
+    // Verbindung Ocean-Server (Ship-Port), baut sich nach Abbrüchen selbst neu auf
+    private OceanConnection ocean;
+
+    // Nach einem Verbindungsabbruch das Schiff mit dem letzten launch neu starten
+    private static final boolean RELAUNCH = Boolean.parseBoolean(System.getProperty("shipapp.ocean.relaunch", "true"));
+    private volatile JSONObject lastLaunch;
+
+    // Mehrschrittige Navigation (POST /api/navigate/sequence)
+    private static final int SEQUENCE_WINDOW = Integer.getInteger("shipapp.navigate.window", 4);
+    private static final long STEP_TIMEOUT_MILLIS = Long.getLong("shipapp.navigate.stepTimeoutMillis", 2000);
+    private static final int MAX_SEQUENCE_STEPS = 10_000;
+    private final NavigationSequencer sequencer = new NavigationSequencer(this::sendNavigation);
 
     // Zustand Schiff
     private String shipId;
@@ -85,9 +130,26 @@ public class ShipAppApiServer {
     private ServerSocket submarineServerSocket;
     private final Map<String, SubmarineSession> submarineSessions = new HashMap<>();
 
+    // Gestartete Submarines, deren erste ready-Nachricht noch aussteht (FIFO)
+    private final Queue<CompletableFuture<String>> pendingLaunches = new ConcurrentLinkedQueue<>();
+
     // Datenbank-Repository für Submarine-Daten
     private SubmarineRepository submarineRepository;
 
+    // Aus Radar-Echos gelernte Karte (im Fleet-Modus geteilt)
+    private TerrainMap terrainMap;
+    private SectorPathPlanner pathPlanner;
+
+    // Verkleinerte Bildvarianten für die Live-View (im Fleet-Modus geteilt)
+    private PictureThumbnailer thumbnailer;
+
+    // Letzte Positionen je Submarine (GET /api/submarine/track)
+    private final TrackStore trackStore = new TrackStore();
+
+    // Letztes Bild einer Session; name ist auch der Dateiname unter pictures/ (ohne .png)
+    private record LastPicture(String name, byte[] png, long timestamp) {
+    }
+
     /**
      * Konstruktor mit Standard-Konfiguration.
      */
@@ -152,36 +214,145 @@ public class ShipAppApiServer {
     }
 
     public void start() throws Exception {
-        // 1. Datenbank-Repository initialisieren
+        // 1. Datenbank-Repository und Karte initialisieren
         submarineRepository = new SubmarineRepository();
+        terrainMap = new TerrainMap();
+        thumbnailer = new PictureThumbnailer();
 
-        // 2. Verbindung zum Ocean-Server
-        connectToOceanServer(oceanHost, oceanShipPort);
+        // 2./3. Ocean-Server-Verbindung und Submarine-Server
+        startShip();
 
-        // 3. Submarine-Server starten
-        startSubmarineServer(subServerPort, oceanHost, oceanSubPort);
+        // optional: vorgewaermte Submarine-JVMs (-Dshipapp.submarine.pool=<Anzahl>)
+        enableSubmarinePoolFromConfig();
+
+        // Partitionen anlegen und alte Daten entfernen (-Dshipapp.maintenance.*, -Dshipapp.retention.*)
+        PartitionMaintenance.startFromConfig();
+
+        // Höhenkarte aus den Messpunkten (-Dshipapp.heightmap.*)
+        HeightmapBuilder.startFromConfig();
 
         // 4. HTTP-Server starten
         HttpServer httpServer = HttpServer.create(new InetSocketAddress(httpPort), 0);
-        httpServer.createContext("/api/state", new StateHandler());
-        httpServer.createContext("/api/launch", new LaunchHandler());
-        httpServer.createContext("/api/navigate", new NavigateHandler());
-        httpServer.createContext("/api/scan", new ScanHandler());
-        httpServer.createContext("/api/radar", new RadarHandler());
-        httpServer.createContext("/api/submarine/start", new SubStartHandler());
-        httpServer.createContext("/api/submarine/pilot", new SubPilotHandler());
-        httpServer.createContext("/api/submarine/kill", new SubKillHandler());
-        httpServer.createContext("/api/submarine/picture/latest", new SubPictureLatestFileHandler());
-        httpServer.createContext("/api/submarine/picture", new SubPictureHandler());
-        httpServer.createContext("/api/submarine/measurements", new MeasurementsHandler());
-        httpServer.createContext("/api/reset", new ResetHandler());
+        registerHandlers(httpServer, "/api");
         httpServer.createContext("/api", this::handleRoot);
-        httpServer.setExecutor(null);
+        // mehrere Threads: Navigationsfolgen und Autopilot warten auf den Ocean-Server,
+        // /api/state und /api/reset sollen währenddessen weiter antworten
+        AtomicInteger threadNo = new AtomicInteger();
+        httpServer.setExecutor(Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "ShipAppApi-Http-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
         httpServer.start();
 
         System.out.println("ShipAppApiServer läuft auf http://localhost:" + httpPort + "/api");
     }
 
+    /**
+     * Startet dieses Schiff innerhalb eines {@link FleetHost}: HTTP-Server,
+     * Datenbank-Repository, Karte und Bildverkleinerung werden von allen Schiffen geteilt.
+     *
+     * @param httpServer  gemeinsamer HTTP-Server
+     * @param apiPrefix   Pfad-Präfix dieses Schiffs, z.B. "/api/ships/2"
+     * @param repository  gemeinsames Repository (kann null sein)
+     * @param map         gemeinsame Karte
+     * @param thumbnailer gemeinsame Bildverkleinerung
+     */
+    void startInFleet(HttpServer httpServer, String apiPrefix, SubmarineRepository repository,
+                      TerrainMap map, PictureThumbnailer thumbnailer) throws IOException {
+        this.submarineRepository = repository;
+        this.terrainMap = map;
+        this.thumbnailer = thumbnailer;
+        startShip();
+        registerHandlers(httpServer, apiPrefix);
+    }
+
+    private void startShip() throws IOException {
+        pathPlanner = new SectorPathPlanner(terrainMap);
+
+        // Verbindung zum Ocean-Server
+        ocean = new OceanConnection(String.valueOf(subServerPort), oceanHost, oceanShipPort, this::handleShipMessage);
+        ocean.addListener(this::oceanStateChanged);
+        ocean.setHandshake(this::relaunchCommand);
+        ocean.connect();
+
+        // Submarine-Server starten
+        startSubmarineServer(subServerPort, oceanHost, oceanSubPort);
+    }
+
+    // Obergrenze für count in POST /api/submarine/start (jede Submarine ist eine eigene JVM)
+    private static final int MAX_SUBMARINE_START = Integer.getInteger("shipapp.submarine.maxStart",
+            Math.max(8, Integer.getInteger("shipapp.submarine.pool", 0)));
+
+    static void enableSubmarinePoolFromConfig() {
+        int poolSize = Integer.getInteger("shipapp.submarine.pool", 0);
+        if (poolSize > 0) {
+            AppLauncher.enableWarmPool("", poolSize);
+            System.out.printf("Submarine-JVM-Pool aktiv (%d JVMs)%n", poolSize);
+        }
+    }
+
+    private void registerHandlers(HttpServer httpServer, String prefix) {
+        context(httpServer, prefix, "/state", new StateHandler());
+        context(httpServer, prefix, "/launch", new LaunchHandler());
+        context(httpServer, prefix, "/navigate", new NavigateHandler());
+        context(httpServer, prefix, "/navigate/sequence", new NavigateSequenceHandler());
+        context(httpServer, prefix, "/autopilot", new AutopilotHandler());
+        context(httpServer, prefix, "/scan", new ScanHandler());
+        context(httpServer, prefix, "/radar", new RadarHandler());
+        context(httpServer, prefix, "/map", new MapHandler());
+        context(httpServer, prefix, "/map/heightmap", new HeightmapHandler());
+        context(httpServer, prefix, "/submarine/start", new SubStartHandler());
+        context(httpServer, prefix, "/submarine/launchstats", new LaunchStatsHandler());
+        context(httpServer, prefix, "/submarine/pilot", new SubPilotHandler());
+        context(httpServer, prefix, "/submarine/kill", new SubKillHandler());
+        context(httpServer, prefix, "/submarine/picture/latest", new SubPictureLatestFileHandler());
+        context(httpServer, prefix, "/submarine/picture", new SubPictureHandler());
+        context(httpServer, prefix, "/submarine/measurements", new MeasurementsHandler());
+        context(httpServer, prefix, "/submarine/track", new SubTrackHandler());
+        context(httpServer, prefix, "/submarine/positions", new SubPositionsHandler());
+        context(httpServer, prefix, "/reset", new ResetHandler());
+        context(httpServer, prefix, "/metrics", new MetricsHandler());
+        context(httpServer, prefix, "/trace/slowest", new TraceSlowestHandler());
+        context(httpServer, prefix, "/admin/jfr", new JfrHandler());
+        context(httpServer, prefix, "/admin/maintenance", new MaintenanceHandler());
+    }
+
+    private static void context(HttpServer httpServer, String prefix, String path, HttpHandler handler) {
+        httpServer.createContext(prefix + path, timed(path, handler));
+    }
+
+    /**
+     * Misst die Dauer jeder Anfrage an handler (Metrik shipapp_http_request_seconds).
+     */
+    static HttpHandler timed(String context, HttpHandler handler) {
+        return exchange -> {
+            long start = System.nanoTime();
+            JfrEvents.HttpRequest event = JfrEvents.HttpRequest.start();
+            try {
+                handler.handle(exchange);
+            } finally {
+                HTTP_SECONDS.labels(context, exchange.getRequestMethod(), Integer.toString(exchange.getResponseCode()))
+                        .observeSince(start);
+                event.finish(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), exchange.getResponseCode());
+            }
+        };
+    }
+
+    String getShipId() {
+        return shipId;
+    }
+
+    int getSubServerPort() {
+        return subServerPort;
+    }
+
+    int getSubmarineCount() {
+        synchronized (submarineSessions) {
+            return submarineSessions.size();
+        }
+    }
+
     // ------------------------------------------------------------
     // HTTP Hilfsfunktionen
     // ------------------------------------------------------------
@@ -196,7 +367,7 @@ public class ShipAppApiServer {
         }
     }
 
-    private void sendJson(HttpExchange exchange, int statusCode, JSONObject body) throws IOException {
+    static void sendJson(HttpExchange exchange, int statusCode, JSONObject body) throws IOException {
         byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
         exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
@@ -206,7 +377,7 @@ public class ShipAppApiServer {
         }
     }
 
-    private void handleOptions(HttpExchange exchange) throws IOException {
+    static void handleOptions(HttpExchange exchange) throws IOException {
         exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
         exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
@@ -225,35 +396,44 @@ public class ShipAppApiServer {
                 handleOptions(exchange);
                 return;
             }
-            JSONObject root = new JSONObject();
-            if (shipId != null) {
-                JSONObject ship = new JSONObject();
-                ship.put("id", shipId);
-                if (currentSector != null) {
-                    ship.put("sector", new JSONObject()
-                            .put("x", currentSector.getX())
-                            .put("y", currentSector.getY()));
-                }
-                if (currentDir != null) {
-                    ship.put("dir", new JSONObject()
-                            .put("x", currentDir.getX())
-                            .put("y", currentDir.getY()));
-                }
-                root.put("ship", ship);
-            } else {
-                root.put("ship", JSONObject.NULL);
-            }
+            sendJson(exchange, 200, buildStateJson());
+        }
+    }
 
-            JSONArray subs = new JSONArray();
-            synchronized (submarineSessions) {
-                for (SubmarineSession s : submarineSessions.values()) {
-                    subs.put(s.toJson());
-                }
+    /**
+     * Zustand von Schiff und Submarines für GET /state.
+     */
+    JSONObject buildStateJson() {
+        JSONObject root = new JSONObject();
+        if (shipId != null) {
+            JSONObject ship = new JSONObject();
+            ship.put("id", shipId);
+            if (currentSector != null) {
+                ship.put("sector", new JSONObject()
+                        .put("x", currentSector.getX())
+                        .put("y", currentSector.getY()));
             }
-            root.put("submarines", subs);
+            if (currentDir != null) {
+                ship.put("dir", new JSONObject()
+                        .put("x", currentDir.getX())
+                        .put("y", currentDir.getY()));
+            }
+            root.put("ship", ship);
+        } else {
+            root.put("ship", JSONObject.NULL);
+        }
 
-            sendJson(exchange, 200, root);
+        JSONArray subs = new JSONArray();
+        synchronized (submarineSessions) {
+            for (SubmarineSession s : submarineSessions.values()) {
+                subs.put(s.toJson());
+            }
+        }
+        root.put("submarines", subs);
+        if (ocean != null) {
+            root.put("ocean", ocean.toJson());
         }
+        return root;
     }
 
     private class LaunchHandler implements HttpHandler {
@@ -282,7 +462,14 @@ public class ShipAppApiServer {
             cmd.put("sector", sector.toJson());
             cmd.put("dir", dir.toJson());
 
-            sendToShip(cmd);
+            boolean sent = sequencer.runIfIdle(() -> {
+                lastLaunch = cmd;
+                sendToShip(cmd);
+            });
+            if (!sent) {
+                sendJson(exchange, 409, new JSONObject().put("error", "navigation sequence running"));
+                return;
+            }
 
             sendJson(exchange, 200, new JSONObject().put("status", "sent"));
         }
@@ -307,12 +494,235 @@ public class ShipAppApiServer {
             cmd.put("cmd", "navigate");
             cmd.put("rudder", rudder.name());
             cmd.put("course", course.name());
-            sendToShip(cmd);
+            if (!sequencer.tryUntracked(STEP_TIMEOUT_MILLIS, () -> sendToShip(cmd))) {
+                sendJson(exchange, 409, new JSONObject().put("error", "navigation sequence running"));
+                return;
+            }
 
             sendJson(exchange, 200, new JSONObject().put("status", "sent"));
         }
     }
 
+    /**
+     * POST /api/navigate/sequence - mehrere navigate-Befehle in einer Anfrage, die Befehle
+     * werden überlappend gesendet und jede Antwort ihrem Schritt zugeordnet.
+     *   {"steps": [{"rudder": "Left", "course": "Forward", "repeat": 3}, ...]}
+     *   {"target": {"x": 12, "y": 7}, "maxSteps": 200}
+     * Optional "window" (Befehle gleichzeitig unterwegs) und "stream": true bzw. ?stream=true:
+     * dann kommt jeder Schritt sofort als eigene Zeile (application/x-ndjson), zuletzt die
+     * Zusammenfassung mit status.
+     */
+    private class NavigateSequenceHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, new JSONObject().put("error", "Method not allowed"));
+                return;
+            }
+            String body = readBody(exchange);
+            NavigationSequencer.Plan plan;
+            int window;
+            boolean stream;
+            try {
+                JSONObject jo = body.isEmpty() ? new JSONObject() : new JSONObject(body);
+                plan = sequencePlan(jo);
+                window = Math.max(1, Math.min(32, jo.optInt("window", SEQUENCE_WINDOW)));
+                stream = jo.optBoolean("stream", false);
+            } catch (IllegalArgumentException | JSONException e) {
+                sendJson(exchange, 400, new JSONObject().put("error", e.getMessage()));
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    String[] pair = param.split("=");
+                    if (pair.length == 2 && "stream".equals(pair[0])) {
+                        stream = Boolean.parseBoolean(pair[1]);
+                    }
+                }
+            }
+
+            NavigationSequencer.Plan sequence = plan;
+            runSequence(exchange, (sector, dir, info) -> sequence, window, stream);
+        }
+    }
+
+    /**
+     * POST /api/autopilot - plant mit {@link SectorPathPlanner} eine Route vom aktuellen
+     * Sektor zum Ziel und fährt sie wie eine Navigationsfolge ab.
+     *   {"target": {"x": 40, "y": 12}}
+     * Optional "unknown": true (unbekannte Sektoren am Rand der Karte mitbenutzen),
+     * "execute": false (nur planen), "window" und "stream" wie bei /navigate/sequence.
+     */
+    private class AutopilotHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, new JSONObject().put("error", "Method not allowed"));
+                return;
+            }
+            String body = readBody(exchange);
+            Vec2D target;
+            boolean allowUnknown;
+            boolean execute;
+            int window;
+            boolean stream;
+            try {
+                JSONObject jo = body.isEmpty() ? new JSONObject() : new JSONObject(body);
+                JSONObject targetJson = jo.getJSONObject("target");
+                target = new Vec2D(targetJson.getInt("x"), targetJson.getInt("y"));
+                allowUnknown = jo.optBoolean("unknown", false);
+                execute = jo.optBoolean("execute", true);
+                window = Math.max(1, Math.min(32, jo.optInt("window", SEQUENCE_WINDOW)));
+                stream = jo.optBoolean("stream", false);
+            } catch (JSONException e) {
+                sendJson(exchange, 400, new JSONObject().put("error", e.getMessage()));
+                return;
+            }
+
+            runSequence(exchange, (sector, dir, info) -> {
+                SectorPathPlanner.Route route = pathPlanner.plan(sector, dir, target, allowUnknown);
+                if (route == null) {
+                    info.put("status", "unreachable").put("target", target.toJson());
+                    return null;
+                }
+                info.put("route", route.toJson());
+                if (!execute) {
+                    info.put("status", "planned").put("target", target.toJson());
+                    return null;
+                }
+                return new NavigationSequencer.StepsPlan(route.actions(), target);
+            }, window, stream);
+        }
+    }
+
+    /**
+     * Erzeugt den Plan einer Folge aus dem Startzustand des Schiffs.
+     */
+    private interface SequencePlanner {
+        /**
+         * @param info zusätzliche Felder der Antwort
+         * @return Plan oder null, wenn nichts gefahren wird (die Antwort ist dann info)
+         */
+        NavigationSequencer.Plan plan(Vec2D sector, int dir, JSONObject info);
+    }
+
+    // Folge ausführen und als JSON bzw. NDJSON (stream) beantworten
+    private void runSequence(HttpExchange exchange, SequencePlanner planner, int window, boolean stream)
+            throws IOException {
+        try {
+            if (!sequencer.begin(STEP_TIMEOUT_MILLIS)) {
+                sendJson(exchange, 409, new JSONObject().put("error", "navigation sequence running"));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        boolean started = false;
+        try {
+            Vec2D sector;
+            int dir;
+            synchronized (this) {
+                sector = shipId != null ? currentSector : null;
+                dir = currentDirIndex();
+            }
+            if (sector == null || dir < 0) {
+                sendJson(exchange, 409, new JSONObject().put("error", "ship not launched"));
+                return;
+            }
+            JSONObject info = new JSONObject();
+            NavigationSequencer.Plan plan;
+            try {
+                plan = planner.plan(sector, dir, info);
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, new JSONObject().put("error", e.getMessage()));
+                return;
+            }
+            if (plan == null) {
+                sendJson(exchange, 200, info);
+                return;
+            }
+
+            started = true;
+            if (!stream) {
+                JSONObject result = sequencer.execute(sector, dir, plan, window, STEP_TIMEOUT_MILLIS, null);
+                for (String key : info.keySet()) {
+                    result.put(key, info.get(key));
+                }
+                sendJson(exchange, 200, result);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson; charset=utf-8");
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (!info.isEmpty()) {
+                    os.write((info + "\n").getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                }
+                JSONObject result = sequencer.execute(sector, dir, plan, window, STEP_TIMEOUT_MILLIS, step -> {
+                    os.write((step + "\n").getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                });
+                result.remove("trajectory");
+                os.write((result + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!started) {
+                sequencer.abandon();
+            }
+        }
+    }
+
+    private NavigationSequencer.Plan sequencePlan(JSONObject jo) {
+        JSONObject target = jo.optJSONObject("target");
+        if (target != null) {
+            int maxSteps = Math.max(1, Math.min(MAX_SEQUENCE_STEPS, jo.optInt("maxSteps", 200)));
+            return new NavigationSequencer.TargetPlan(new Vec2D(target.getInt("x"), target.getInt("y")), maxSteps, terrainMap);
+        }
+        JSONArray steps = jo.optJSONArray("steps");
+        if (steps == null || steps.isEmpty()) {
+            throw new IllegalArgumentException("steps or target required");
+        }
+        List<NavigationSequencer.Action> actions = new ArrayList<>();
+        for (int i = 0; i < steps.length(); i++) {
+            JSONObject step = steps.getJSONObject(i);
+            NavigationSequencer.Action action = new NavigationSequencer.Action(
+                    Rudder.valueOf(step.optString("rudder", Rudder.Center.name())),
+                    Course.valueOf(step.optString("course", Course.Forward.name())));
+            int repeat = step.optInt("repeat", 1);
+            if (repeat < 1 || actions.size() + repeat > MAX_SEQUENCE_STEPS) {
+                throw new IllegalArgumentException("invalid repeat or more than " + MAX_SEQUENCE_STEPS + " steps");
+            }
+            for (int r = 0; r < repeat; r++) {
+                actions.add(action);
+            }
+        }
+        return new NavigationSequencer.StepsPlan(actions);
+    }
+
+    // Fahrtrichtung als Index (ShipKinematics); launched meldet keine Richtung, dann die aus dem launch
+    private int currentDirIndex() {
+        Vec2D dir = currentDir;
+        if (dir == null) {
+            JSONObject launch = lastLaunch;
+            JSONObject dirJson = launch != null ? launch.optJSONObject("dir") : null;
+            dir = dirJson != null ? Vec2D.fromJson(dirJson) : null;
+        }
+        return dir != null ? ShipKinematics.dirIndex(dir.getX(), dir.getY()) : -1;
+    }
+
     private class ScanHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -327,6 +737,7 @@ public class ShipAppApiServer {
 
             JSONObject cmd = new JSONObject();
             cmd.put("cmd", "scan");
+            long sentAt = System.nanoTime();
             sendToShip(cmd);
 
             Integer depth;
@@ -342,6 +753,11 @@ public class ShipAppApiServer {
                 depth = lastScanDepth;
                 stddev = lastScanStddev;
             }
+            if (depth != null) {
+                ROUND_TRIP_SECONDS.labels("scan").observeSince(sentAt);
+            } else {
+                ROUND_TRIP_TIMEOUTS.labels("scan").inc();
+            }
             JSONObject resp = new JSONObject();
             resp.put("depth", depth != null ? depth : JSONObject.NULL);
             resp.put("stddev", stddev != null ? stddev : JSONObject.NULL);
@@ -362,6 +778,7 @@ public class ShipAppApiServer {
 
             JSONObject cmd = new JSONObject();
             cmd.put("cmd", "radar");
+            long sentAt = System.nanoTime();
             sendToShip(cmd);
 
             JSONArray echos;
@@ -375,12 +792,229 @@ public class ShipAppApiServer {
                 }
                 echos = lastRadarEchos;
             }
+            if (echos != null) {
+                ROUND_TRIP_SECONDS.labels("radar").observeSince(sentAt);
+            } else {
+                ROUND_TRIP_TIMEOUTS.labels("radar").inc();
+            }
             JSONObject resp = new JSONObject();
             resp.put("echos", echos != null ? echos : new JSONArray());
             sendJson(exchange, 200, resp);
         }
     }
 
+    /**
+     * Metriken im Prometheus-Textformat.
+     * GET /api/metrics, mit ?format=json als JSON mit Perzentilen
+     */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null && query.contains("format=json")) {
+                sendJson(exchange, 200, Metrics.toJson());
+                return;
+            }
+            byte[] bytes = Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Langsamste Submarine-Nachrichten aus dem Trace-Puffer ({@link IngestTracer}).
+     * GET /api/trace/slowest?n=20
+     */
+    static class TraceSlowestHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            int n = 20;
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    String[] pair = param.split("=");
+                    if (pair.length == 2 && "n".equals(pair[0])) {
+                        try {
+                            n = Math.max(1, Integer.parseInt(pair[1]));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+            }
+            sendJson(exchange, 200, IngestTracer.slowest(n));
+        }
+    }
+
+    /**
+     * Steuerung der JFR-Aufzeichnung ({@link FlightRecording}).
+     * GET  /api/admin/jfr                                   - Status
+     * POST /api/admin/jfr/start?settings=profile&maxAge=600 - Aufzeichnung starten
+     * POST /api/admin/jfr/dump?file=name.jfr                - Zwischenstand sichern
+     * POST /api/admin/jfr/stop?file=name.jfr                - beenden und sichern
+     */
+    static class JfrHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String action = path.substring(path.lastIndexOf('/') + 1);
+            if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 200, FlightRecording.status());
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, new JSONObject().put("error", "Method not allowed"));
+                return;
+            }
+
+            String settings = "default";
+            String file = null;
+            Duration maxAge = null;
+            try {
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null) {
+                    for (String param : query.split("&")) {
+                        String[] pair = param.split("=");
+                        if (pair.length != 2) {
+                            continue;
+                        }
+                        switch (pair[0]) {
+                            case "settings" -> settings = pair[1];
+                            case "file" -> file = pair[1];
+                            case "maxAge" -> maxAge = Duration.ofSeconds(Long.parseLong(pair[1]));
+                            default -> {
+                            }
+                        }
+                    }
+                }
+
+                switch (action) {
+                    case "start" -> sendJson(exchange, 200, FlightRecording.start(settings, maxAge));
+                    case "dump" -> sendJson(exchange, 200, new JSONObject()
+                            .put("file", FlightRecording.dump(file).toAbsolutePath().toString()));
+                    case "stop" -> sendJson(exchange, 200, new JSONObject()
+                            .put("file", FlightRecording.stop(file).toAbsolutePath().toString()));
+                    default -> sendJson(exchange, 404, new JSONObject().put("error", "unknown action: " + action));
+                }
+            } catch (IllegalStateException e) {
+                sendJson(exchange, 409, new JSONObject().put("error", e.getMessage()));
+            } catch (ParseException | IllegalArgumentException e) {
+                sendJson(exchange, 400, new JSONObject().put("error", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Tabellenwartung ({@link PartitionMaintenance}).
+     * GET  /api/admin/maintenance - Ergebnis des letzten Laufs
+     * POST /api/admin/maintenance - Lauf im Hintergrund anstoßen (202 mit dem Zustand)
+     */
+    static class MaintenanceHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 200, PartitionMaintenance.status());
+                return;
+            }
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, new JSONObject().put("error", "Method not allowed"));
+                return;
+            }
+            sendJson(exchange, 202, PartitionMaintenance.submit());
+        }
+    }
+
+    /**
+     * Höhenkarte des Meeresbodens aus den Messpunkten (siehe {@link HeightmapBuilder}).
+     * GET  /api/map/heightmap              - Gitter mit mean/min/max/count als JSON
+     * GET  /api/map/heightmap?format=bin   - gesicherte Datei (GZIP, Aufbau siehe HeightmapBuilder.file())
+     * POST /api/map/heightmap[?full=true]  - neue Messpunkte sofort übernehmen bzw. alles neu aufbauen
+     */
+    static class HeightmapHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            String format = "json";
+            boolean full = false;
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    String[] pair = param.split("=");
+                    if (pair.length == 2 && "format".equals(pair[0])) {
+                        format = pair[1];
+                    } else if (pair.length == 2 && "full".equals(pair[0])) {
+                        full = Boolean.parseBoolean(pair[1]);
+                    }
+                }
+            }
+            if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                try {
+                    sendJson(exchange, 200, HeightmapBuilder.runNow(full));
+                } catch (java.sql.SQLException e) {
+                    sendJson(exchange, 503, new JSONObject().put("error", "Datenbank nicht verfügbar: " + e.getMessage()));
+                }
+                return;
+            }
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, new JSONObject().put("error", "Method not allowed"));
+                return;
+            }
+            if (!"bin".equals(format)) {
+                sendJson(exchange, 200, HeightmapBuilder.toJson());
+                return;
+            }
+            Path file = HeightmapBuilder.file();
+            if (file == null) {
+                sendJson(exchange, 404, new JSONObject().put("error", "no heightmap yet"));
+                return;
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Aus Radar-Echos bekannte Sektoren (Untergrund und Höhe).
+     * GET /api/map
+     */
+    private class MapHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            sendJson(exchange, 200, terrainMap.toJson());
+        }
+    }
+
     private class SubStartHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -388,8 +1022,43 @@ public class ShipAppApiServer {
                 handleOptions(exchange);
                 return;
             }
-            startSubmarineProcess(oceanHost, oceanSubPort);
-            sendJson(exchange, 200, new JSONObject().put("status", "sent"));
+            String body = readBody(exchange);
+            int count;
+            try {
+                JSONObject jo = body.isEmpty() ? new JSONObject() : new JSONObject(body);
+                count = Math.max(1, jo.optInt("count", 1));
+            } catch (JSONException e) {
+                sendJson(exchange, 400, new JSONObject().put("error", e.getMessage()));
+                return;
+            }
+            if (count > MAX_SUBMARINE_START) {
+                sendJson(exchange, 400, new JSONObject()
+                        .put("error", "count must not exceed " + MAX_SUBMARINE_START));
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                startSubmarineProcess(oceanHost, oceanSubPort);
+            }
+            sendJson(exchange, 200, new JSONObject().put("status", "sent").put("count", count));
+        }
+    }
+
+    /**
+     * Startzeiten gestarteter Submarines (Start bis ready) je Startart,
+     * inkl. Gewinn durch AppCDS (gainMs) und Anzahl bereitstehender Pool-JVMs.
+     * GET /api/submarine/launchstats
+     */
+    private class LaunchStatsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+            JSONObject resp = new JSONObject();
+            resp.put("startup", AppLauncher.getStartupStatsJson());
+            resp.put("poolIdle", AppLauncher.getWarmPoolIdleCount());
+            sendJson(exchange, 200, resp);
         }
     }
 
@@ -459,7 +1128,7 @@ public class ShipAppApiServer {
 
     /**
      * Serves the latest picture file from disk (pictures/sub_*_*.png).
-     * GET /api/submarine/picture/latest?id=<submarineId> - optional filter by submarine id.
+     * GET /api/submarine/picture/latest?id=<submarineId>&size=thumb|preview|full - optional filter by submarine id.
      * Returns raw PNG so the UI can use it as img src when the JSON picture API returns nothing.
      */
     private class SubPictureLatestFileHandler implements HttpHandler {
@@ -475,11 +1144,14 @@ public class ShipAppApiServer {
             }
             String query = exchange.getRequestURI().getQuery();
             String submarineId = null;
+            PictureThumbnailer.Size size = PictureThumbnailer.Size.FULL;
             if (query != null) {
                 for (String param : query.split("&")) {
                     String[] pair = param.split("=");
                     if (pair.length == 2 && "id".equals(pair[0])) {
                         submarineId = pair[1];
+                    } else if (pair.length == 2 && "size".equals(pair[0])) {
+                        size = PictureThumbnailer.Size.parse(pair[1]);
                     }
                 }
             }
@@ -515,7 +1187,17 @@ public class ShipAppApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
-            byte[] body = Files.readAllBytes(latest.get());
+            Path file = latest.get();
+            String fileName = file.getFileName().toString();
+            byte[] body = thumbnailer != null
+                    ? thumbnailer.get(fileName.substring(0, fileName.length() - ".png".length()), size,
+                            () -> readQuietly(file))
+                    : Files.readAllBytes(file);
+            if (body == null) {
+                exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
             exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
             exchange.getResponseHeaders().add("Content-Type", "image/png");
             exchange.getResponseHeaders().add("Cache-Control", "no-cache");
@@ -526,9 +1208,18 @@ public class ShipAppApiServer {
         }
     }
 
+    private static byte[] readQuietly(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            AsyncLog.warn("thumbnail", "Bild %s nicht lesbar: %s", file, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Handler zum Abrufen des letzten Bildes eines Submarines für die Live-View.
-     * GET /api/submarine/picture?id=<submarineId> - Letztes Bild als Base64
+     * GET /api/submarine/picture?id=<submarineId>&size=thumb|preview|full - Letztes Bild als Base64
      *
      * Sucht zuerst im Memory (aktive Session), dann in der Datenbank.
      */
@@ -543,11 +1234,14 @@ public class ShipAppApiServer {
             // Query-Parameter auslesen
             String query = exchange.getRequestURI().getQuery();
             String submarineId = null;
+            PictureThumbnailer.Size size = PictureThumbnailer.Size.FULL;
             if (query != null) {
                 for (String param : query.split("&")) {
                     String[] pair = param.split("=");
                     if (pair.length == 2 && "id".equals(pair[0])) {
                         submarineId = pair[1];
+                    } else if (pair.length == 2 && "size".equals(pair[0])) {
+                        size = PictureThumbnailer.Size.parse(pair[1]);
                     }
                 }
             }
@@ -563,7 +1257,7 @@ public class ShipAppApiServer {
                 if (submarineId == null || submarineId.isEmpty()) {
                     // Erstes Submarine mit Bild nehmen
                     session = submarineSessions.values().stream()
-                            .filter(s -> s.lastPictureHex != null && !s.lastPictureHex.isEmpty())
+                            .filter(s -> s.lastPicture != null)
                             .findFirst()
                             .orElse(submarineSessions.values().stream().findFirst().orElse(null));
                 } else {
@@ -573,8 +1267,8 @@ public class ShipAppApiServer {
 
             if (session != null) {
                 foundId = session.getIdSafe();
-                base64 = session.getLastPictureBase64();
-                timestamp = session.lastPictureTimestamp;
+                base64 = session.getLastPictureBase64(size);
+                timestamp = session.getLastPictureTimestamp();
             }
 
             // 2. Falls kein Memory-Bild, aus Datenbank laden
@@ -593,7 +1287,13 @@ public class ShipAppApiServer {
                     String hexFromDb = dbPicture.optString("picture_hex", null);
                     timestamp = dbPicture.optLong("captured_at", 0);
                     if (hexFromDb != null && !hexFromDb.isEmpty()) {
-                        base64 = hexToBase64(hexFromDb);
+                        if (size == PictureThumbnailer.Size.FULL || thumbnailer == null) {
+                            base64 = hexToBase64(hexFromDb);
+                        } else {
+                            String name = "db_" + foundId + "_" + timestamp;
+                            byte[] variant = thumbnailer.get(name, size, () -> HexCodec.decode(hexFromDb));
+                            base64 = variant != null ? java.util.Base64.getEncoder().encodeToString(variant) : null;
+                        }
                     }
                 }
             }
@@ -603,6 +1303,7 @@ public class ShipAppApiServer {
                 resp.put("id", foundId != null ? foundId : JSONObject.NULL);
                 resp.put("picture", base64);
                 resp.put("timestamp", timestamp);
+                resp.put("size", size.key());
                 resp.put("hasPicture", true);
             } else {
                 resp.put("id", foundId != null ? foundId : JSONObject.NULL);
@@ -612,23 +1313,28 @@ public class ShipAppApiServer {
 
             sendJson(exchange, 200, resp);
         }
+    }
 
-        private String hexToBase64(String hex) {
-            try {
-                int len = hex.length();
-                byte[] data = new byte[len / 2];
-                for (int i = 0; i < len; i += 2) {
-                    data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                                         + Character.digit(hex.charAt(i + 1), 16));
-                }
-                return java.util.Base64.getEncoder().encodeToString(data);
-            } catch (Exception e) {
-                System.err.println("Fehler bei Hex->Base64 Konvertierung: " + e.getMessage());
-                return null;
-            }
+    /**
+     * Wandelt ein hex-codiertes Bild (aus der Datenbank) in Base64 für die Live-View um.
+     * Package-private für die Benchmarks.
+     */
+    static String hexToBase64(String hex) {
+        try {
+            return HexCodec.hexToBase64(hex);
+        } catch (Exception e) {
+            System.err.println("Fehler bei Hex->Base64 Konvertierung: " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * Hex-String in Bytes (Live-View-Bild einer Session). Package-private für die Benchmarks.
+     */
+    static byte[] hexStringToByteArray(String hex) {
+        return HexCodec.decode(hex);
+    }
+
     private class ResetHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -648,7 +1354,9 @@ public class ShipAppApiServer {
                 }
             }
 
+            sequencer.cancel("Session zurückgesetzt");
             shipId = null;
+            lastLaunch = null;
             currentSector = null;
             currentDir = null;
             currentAbsPos = null;
@@ -670,22 +1378,8 @@ public class ShipAppApiServer {
             }
 
             // bestehende Verbindung zum Ocean-Server schließen und neu aufbauen,
-            // damit ein wirklich frisches Spiel möglich ist
-            try {
-                if (shipSocket != null && !shipSocket.isClosed()) {
-                    shipSocket.close();
-                }
-            } catch (IOException ignored) {
-            }
-            shipSocket = null;
-            shipIn = null;
-            shipOut = null;
-
-            try {
-                connectToOceanServer(oceanHost, oceanShipPort);
-            } catch (IOException e) {
-                System.err.println("Fehler beim Reconnect zum Ocean-Server nach Reset: " + e.getMessage());
-            }
+            // damit ein wirklich frisches Spiel möglich ist (im Hintergrund)
+            ocean.reconnectNow();
 
             JSONObject resp = new JSONObject().put("status", "reset");
             sendJson(exchange, 200, resp);
@@ -747,41 +1441,170 @@ public class ShipAppApiServer {
         }
     }
 
-    // ------------------------------------------------------------
-    // Verbindung Ocean-Server (Ship-Client)
-    // ------------------------------------------------------------
+    /**
+     * Handler für die Spur eines Submarines aus dem Speicher (ohne Datenbank).
+     * GET /api/submarine/track?id=<submarineId>&from=<epochMillis>&tolerance=<Einheiten>
+     *
+     * Die Spur wird mit Douglas-Peucker vereinfacht (tolerance, Standard 0 = nur
+     * Punkte auf einer Geraden entfallen).
+     */
+    private class SubTrackHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
 
-    private void connectToOceanServer(String host, int port) throws IOException {
-        System.out.printf("Verbinde zu Ocean-Server %s:%d ...%n", host, port);
-        shipSocket = new Socket(host, port);
-        shipIn = new BufferedReader(new InputStreamReader(shipSocket.getInputStream(), StandardCharsets.UTF_8));
-        shipOut = new PrintWriter(new OutputStreamWriter(shipSocket.getOutputStream(), StandardCharsets.UTF_8), true);
-        System.out.println("Verbindung zum Ocean-Server aufgebaut.");
+            // Query-Parameter auslesen
+            String query = exchange.getRequestURI().getQuery();
+            String submarineId = null;
+            long from = 0;
+            double tolerance = 0;
+            if (query != null) {
+                try {
+                    for (String param : query.split("&")) {
+                        String[] pair = param.split("=");
+                        if (pair.length == 2 && "id".equals(pair[0])) {
+                            submarineId = pair[1];
+                        } else if (pair.length == 2 && "from".equals(pair[0])) {
+                            from = Long.parseLong(pair[1]);
+                        } else if (pair.length == 2 && "tolerance".equals(pair[0])) {
+                            tolerance = Math.max(0, Double.parseDouble(pair[1]));
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    sendJson(exchange, 400, new JSONObject().put("error", "invalid number: " + e.getMessage()));
+                    return;
+                }
+            }
 
-        Thread t = new Thread(this::shipListenLoop, "ShipAppApi-ShipListener");
-        t.setDaemon(true);
-        t.start();
+            if (submarineId == null || submarineId.isEmpty()) {
+                sendJson(exchange, 400, new JSONObject().put("error", "missing id"));
+                return;
+            }
+            JSONObject track = trackStore.track(submarineId, from, tolerance);
+            if (track == null) {
+                sendJson(exchange, 404, new JSONObject().put("error", "no track for submarine").put("id", submarineId));
+                return;
+            }
+            sendJson(exchange, 200, track);
+        }
     }
 
-    private void shipListenLoop() {
-        try {
-            String line;
-            while ((line = shipIn.readLine()) != null) {
-                if (line.isBlank()) {
-                    continue;
+    /**
+     * Handler für die gespeicherte Positionshistorie eines Submarines.
+     * GET /api/submarine/positions?id=<submarineId>&from=<epochMillis>&to=<epochMillis>&step=<ms>
+     *
+     * Liefert die gespeicherten Keyframes und Deltas exakt und dazwischen im Abstand
+     * step linear interpolierte Punkte (step=0: nur gespeicherte). Standard ist die
+     * letzte Stunde.
+     */
+    private class SubPositionsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                handleOptions(exchange);
+                return;
+            }
+
+            if (submarineRepository == null) {
+                sendJson(exchange, 500, new JSONObject().put("error", "Datenbank nicht verfügbar"));
+                return;
+            }
+
+            // Query-Parameter auslesen
+            String query = exchange.getRequestURI().getQuery();
+            String submarineId = null;
+            long to = System.currentTimeMillis();
+            long from = -1;
+            long step = 0;
+            if (query != null) {
+                try {
+                    for (String param : query.split("&")) {
+                        String[] pair = param.split("=");
+                        if (pair.length == 2 && "id".equals(pair[0])) {
+                            submarineId = pair[1];
+                        } else if (pair.length == 2 && "from".equals(pair[0])) {
+                            from = Long.parseLong(pair[1]);
+                        } else if (pair.length == 2 && "to".equals(pair[0])) {
+                            to = Long.parseLong(pair[1]);
+                        } else if (pair.length == 2 && "step".equals(pair[0])) {
+                            step = Math.max(0, Long.parseLong(pair[1]));
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    sendJson(exchange, 400, new JSONObject().put("error", "invalid number: " + e.getMessage()));
+                    return;
                 }
-                System.out.println("Vom Ocean-Server empfangen: " + line);
-                handleShipMessage(line);
             }
-        } catch (IOException e) {
-            System.err.println("Verbindung zum Ocean-Server wurde beendet: " + e.getMessage());
-            e.printStackTrace();
+            if (submarineId == null || submarineId.isEmpty()) {
+                sendJson(exchange, 400, new JSONObject().put("error", "missing id"));
+                return;
+            }
+            if (from < 0) {
+                from = to - 3_600_000L;
+            }
+
+            JSONArray rows = submarineRepository.getPositions(submarineId, from, to);
+            JSONArray positions = PositionPersistencePolicy.reconstruct(rows, from, to, step);
+            JSONObject resp = new JSONObject()
+                    .put("submarine_id", submarineId)
+                    .put("from", from)
+                    .put("to", to)
+                    .put("step", step)
+                    .put("stored", rows.length())
+                    .put("count", positions.length())
+                    .put("positions", positions);
+            sendJson(exchange, 200, resp);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Verbindung Ocean-Server (Ship-Client)
+    // ------------------------------------------------------------
+
+    private void oceanStateChanged(OceanConnection.State from, OceanConnection.State to, String reason) {
+        if (to == OceanConnection.State.CONNECTED) {
+            OCEAN_CONNECTIONS.incrementAndGet();
+        } else if (from == OceanConnection.State.CONNECTED) {
+            OCEAN_CONNECTIONS.decrementAndGet();
+            if (shipId != null && lastLaunch != null && RELAUNCH) {
+                AsyncLog.info("ocean.connection", "Schiff %s wird nach dem Wiederaufbau neu gestartet", shipId);
+            }
         }
     }
 
-    private synchronized void handleShipMessage(String jsonLine) {
+    /**
+     * launch für den Wiederaufbau: Der Ocean-Server kennt das Schiff der alten Verbindung
+     * nicht mehr, es wird am letzten bekannten Sektor mit der letzten Richtung neu gestartet.
+     */
+    private JSONObject relaunchCommand() {
+        JSONObject launch = lastLaunch;
+        if (!RELAUNCH || launch == null || shipId == null) {
+            return null;
+        }
+        JSONObject cmd = new JSONObject(launch.toMap());
+        Vec2D sector = currentSector;
+        Vec2D dir = currentDir;
+        if (sector != null) {
+            cmd.put("sector", sector.toJson());
+        }
+        if (dir != null) {
+            cmd.put("dir", dir.toJson());
+        }
+        return cmd;
+    }
+
+    synchronized void handleShipMessage(String jsonLine) {
+        long start = System.nanoTime();
+        JfrEvents.OceanMessage event = JfrEvents.OceanMessage.start();
         JSONObject msg = new JSONObject(jsonLine);
         String cmd = msg.optString("cmd", "");
+        String request = requestOf(cmd);
+        if (request != null && ocean != null) {
+            ocean.answered(request);
+        }
         switch (cmd) {
             case "launched" -> handleLaunched(msg);
             case "message" -> handleShipInfoMessage(msg);
@@ -789,8 +1612,25 @@ public class ShipAppApiServer {
             case "crash" -> handleShipCrash(msg);
             case "scanned" -> handleScanned(msg);
             case "radarresponse" -> handleRadarResponse(msg);
-            default -> System.out.println("Unbekannte Ship-Server-Nachricht: " + msg.toString());
+            default -> {
+                AsyncLog.warn("ocean.unknown", "Unbekannte Ship-Server-Nachricht: %s", msg);
+                cmd = "unknown";
+            }
         }
+        MESSAGES.labels("ocean", cmd).inc();
+        HANDLER_SECONDS.labels("ocean", cmd).observeSince(start);
+        event.finish(cmd, jsonLine.length());
+    }
+
+    // Befehl, den eine Nachricht des Ocean-Servers beantwortet (null: keine Antwort)
+    private static String requestOf(String reply) {
+        return switch (reply) {
+            case "launched" -> "launch";
+            case "move2d", "crash" -> "navigate";
+            case "scanned" -> "scan";
+            case "radarresponse" -> "radar";
+            default -> null;
+        };
     }
 
     private void handleLaunched(JSONObject msg) {
@@ -806,14 +1646,18 @@ public class ShipAppApiServer {
             Vec2D abs2d = Vec2D.fromJson(absposJson);
             this.currentAbsPos = abs2d != null ? abs2d.asVec() : null;
         }
-        System.out.printf("Ship erfolgreich gelauncht. ID=%s, Sektor=%s, Pos=%s%n",
+        AsyncLog.info("ocean.launched", "Ship erfolgreich gelauncht. ID=%s, Sektor=%s, Pos=%s",
                 shipId, currentSector, currentAbsPos);
     }
 
     private void handleShipInfoMessage(JSONObject msg) {
         String type = msg.optString("type", "info");
         String text = msg.optString("text", "");
-        System.out.printf("Ship-Server-Message (%s): %s%n", type, text);
+        AsyncLog.info("ocean.message", "Ship-Server-Message (%s): %s", type, text);
+        // nur Fehler auf einen navigate-Befehl betreffen die Navigationsfolge
+        if ("error".equals(type) && ocean != null && "navigate".equals(ocean.errorAnswers())) {
+            sequencer.onError(text);
+        }
     }
 
     private void handleMove2d(JSONObject msg) {
@@ -830,8 +1674,9 @@ public class ShipAppApiServer {
             Vec2D abs2d = Vec2D.fromJson(absposJson);
             currentAbsPos = abs2d != null ? abs2d.asVec() : null;
         }
-        System.out.printf("Neue Schiffsposition: Sektor=%s, Richtung=%s, Pos=%s%n",
+        AsyncLog.info("ocean.move2d", "Neue Schiffsposition: Sektor=%s, Richtung=%s, Pos=%s",
                 currentSector, currentDir, currentAbsPos);
+        sequencer.onMove2d(sectorJson != null ? currentSector : null, dirJson != null ? currentDir : null);
     }
 
     private void handleShipCrash(JSONObject msg) {
@@ -840,7 +1685,8 @@ public class ShipAppApiServer {
         JSONObject sunkPosJson = msg.optJSONObject("sunkPos");
         Vec2D sector = sectorJson != null ? Vec2D.fromJson(sectorJson) : null;
         Vec sunkPos = sunkPosJson != null ? Vec.fromJson(sunkPosJson) : null;
-        System.out.printf("!!! Ship-Crash: %s, Sektor=%s, Sink-Pos=%s%n", message, sector, sunkPos);
+        AsyncLog.warn("ocean.crash", "!!! Ship-Crash: %s, Sektor=%s, Sink-Pos=%s", message, sector, sunkPos);
+        sequencer.onCrash(message, sector);
     }
 
     private void handleScanned(JSONObject msg) {
@@ -851,7 +1697,7 @@ public class ShipAppApiServer {
             lastScanStddev = stddev;
             scanLock.notifyAll();
         }
-        System.out.printf("Scan-Ergebnis (ShipID=%s): depth=%d m, stddev=%.2f%n",
+        AsyncLog.info("ocean.scanned", "Scan-Ergebnis (ShipID=%s): depth=%d m, stddev=%.2f",
                 msg.optString("id", "?"), depth, stddev);
     }
 
@@ -861,15 +1707,22 @@ public class ShipAppApiServer {
             lastRadarEchos = echos != null ? echos : new JSONArray();
             radarLock.notifyAll();
         }
-        System.out.println("Radar-Antwort mit " + (echos != null ? echos.length() : 0) + " Echos");
+        if (terrainMap != null) {
+            terrainMap.recordEchos(echos);
+        }
+        AsyncLog.info("ocean.radar", "Radar-Antwort mit %d Echos", echos != null ? echos.length() : 0);
     }
 
-    private synchronized void sendToShip(JSONObject cmd) {
-        if (shipOut == null) {
-            System.err.println("Keine Verbindung zum Ocean-Server.");
-            return;
+    // navigate-Befehl einer Folge; false, wenn er weder gesendet noch gepuffert wurde
+    private boolean sendNavigation(JSONObject cmd) {
+        return ocean != null && ocean.send(cmd) != OceanConnection.SendResult.REJECTED;
+    }
+
+    // während eines Wiederaufbaus wird der Befehl gepuffert (OceanConnection)
+    private void sendToShip(JSONObject cmd) {
+        if (ocean == null || ocean.send(cmd) == OceanConnection.SendResult.REJECTED) {
+            AsyncLog.warn("ocean.send", "Keine Verbindung zum Ocean-Server.");
         }
-        shipOut.println(cmd.toString());
     }
 
     // ------------------------------------------------------------
@@ -895,7 +1748,7 @@ public class ShipAppApiServer {
                 Socket s = submarineServerSocket.accept();
                 SubmarineSession session = new SubmarineSession(s);
                 session.start();
-                System.out.println("Neue Submarine-Verbindung angenommen.");
+                AsyncLog.info("sub.accept", "Neue Submarine-Verbindung angenommen.");
             } catch (IOException e) {
                 if (!submarineServerSocket.isClosed()) {
                     System.err.println("Fehler im Submarine-Accept-Loop: " + e.getMessage());
@@ -919,24 +1772,43 @@ public class ShipAppApiServer {
             int shipPort = submarineServerSocket.getLocalPort();
             System.out.printf("Starte Submarine (shipId=%s, shipHost=%s, shipPort=%d, oceanHost=%s, oceanSubPort=%d)%n",
                     shipId, shipHost, shipPort, oceanHost, oceanSubPort);
-            boolean ok = AppLauncher.startSubmarine(shipId, shipHost, shipPort, oceanHost, oceanSubPort);
-            if (!ok) {
-                System.err.println("Submarine-Prozess konnte nicht gestartet werden.");
-            } else {
-                System.out.println("Submarine-Prozess gestartet (siehe Submarine-GUI).");
-            }
+            CompletableFuture<String> ready = new CompletableFuture<>();
+            pendingLaunches.add(ready);
+            long startedAt = System.nanoTime();
+            AppLauncher.startSubmarineAsync("", shipId, shipHost, shipPort, oceanHost, oceanSubPort, ready)
+                    .orTimeout(SUBMARINE_READY_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .whenComplete((id, error) -> {
+                        pendingLaunches.remove(ready);
+                        if (error != null) {
+                            AsyncLog.error("sub.launch", "Submarine-Prozess konnte nicht gestartet werden: %s", error);
+                        } else {
+                            AsyncLog.info("sub.launch", "Submarine %s bereit nach %d ms",
+                                    id, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+                        }
+                    });
         } catch (IOException e) {
             System.err.println("Fehler beim Ermitteln des lokalen Hostnamens: " + e.getMessage());
         }
     }
 
+    // Erste ready-Nachricht einer neuen Verbindung: ältesten offenen Start abschließen.
+    // Bereits fehlgeschlagene Starts (Prozess beendet, Timeout) werden übersprungen.
+    private void completePendingLaunch(String submarineId) {
+        CompletableFuture<String> pending;
+        while ((pending = pendingLaunches.poll()) != null) {
+            if (pending.complete(submarineId)) {
+                return;
+            }
+        }
+    }
+
     // ------------------------------------------------------------
     // Innere Klasse: SubmarineSession
     // ------------------------------------------------------------
 
-    private class SubmarineSession extends Thread {
+    class SubmarineSession extends Thread {
         private final Socket socket;
-        private final BufferedReader in;
+        private final SubmarineLineReader in;
         private final PrintWriter out;
         private String submarineId;
         private Vec lastPos;
@@ -945,13 +1817,18 @@ public class ShipAppApiServer {
         private int distance;
         
         // Letztes empfangenes Bild für Live-View
-        private String lastPictureHex;
-        private long lastPictureTimestamp;
+        private volatile LastPicture lastPicture;
+
+        // zuletzt gespeichertes Bild, um Duplikate nicht erneut abzulegen
+        private final PictureDeduplicator pictureDedup = new PictureDeduplicator();
+
+        // schreibt nur Keyframes und Positionen mit Bewegung in die Datenbank
+        private final PositionPersistencePolicy positionPolicy = new PositionPersistencePolicy();
 
         SubmarineSession(Socket socket) throws IOException {
             super("ShipAppApi-SubmarineSession");
             this.socket = socket;
-            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.in = new SubmarineLineReader(socket.getInputStream());
             this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
         }
 
@@ -970,51 +1847,59 @@ public class ShipAppApiServer {
             }
             jo.put("depth", depth);
             jo.put("distance", distance);
-            jo.put("hasPicture", lastPictureHex != null && !lastPictureHex.isEmpty());
-            jo.put("pictureTimestamp", lastPictureTimestamp);
+            LastPicture picture = lastPicture;
+            jo.put("hasPicture", picture != null);
+            jo.put("pictureTimestamp", picture != null ? picture.timestamp() : 0);
             return jo;
         }
         
         /**
-         * Gibt das letzte empfangene Bild als Base64 zurück.
+         * Gibt das letzte empfangene Bild in der gewünschten Größe als Base64 zurück.
          */
-        String getLastPictureBase64() {
-            if (lastPictureHex == null || lastPictureHex.isEmpty()) {
+        String getLastPictureBase64(PictureThumbnailer.Size size) {
+            LastPicture picture = lastPicture;
+            if (picture == null) {
                 return null;
             }
-            // Hex-String in Bytes konvertieren, dann Base64
-            try {
-                byte[] bytes = hexStringToByteArray(lastPictureHex);
-                return java.util.Base64.getEncoder().encodeToString(bytes);
-            } catch (Exception e) {
-                System.err.println("Fehler bei Hex->Base64 Konvertierung: " + e.getMessage());
+            byte[] bytes = thumbnailer != null
+                    ? thumbnailer.get(picture.name(), size, picture::png)
+                    : picture.png();
+            if (bytes == null) {
                 return null;
             }
+            JfrEvents.Picture event = JfrEvents.Picture.start();
+            String base64 = java.util.Base64.getEncoder().encodeToString(bytes);
+            event.finish(submarineId, "base64", bytes.length);
+            return base64;
         }
-        
-        private byte[] hexStringToByteArray(String hex) {
-            int len = hex.length();
-            byte[] data = new byte[len / 2];
-            for (int i = 0; i < len; i += 2) {
-                data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                                     + Character.digit(hex.charAt(i + 1), 16));
-            }
-            return data;
+
+        long getLastPictureTimestamp() {
+            LastPicture picture = lastPicture;
+            return picture != null ? picture.timestamp() : 0;
         }
 
         @Override
         public void run() {
+            ACTIVE_SESSIONS.incrementAndGet();
             try {
-                String line;
-                while ((line = in.readLine()) != null) {
-                    if (line.isBlank()) {
-                        continue;
+                while (true) {
+                    long readStart = System.nanoTime();
+                    if (!in.next()) {
+                        break;
+                    }
+                    IngestTracer.begin(submarineId, readStart, (int) Math.min(Integer.MAX_VALUE, in.messageBytes()));
+                    try {
+                        handleSubmarineMessage(in.line(), in.picture(), in.pictureLength());
+                    } finally {
+                        IngestTracer.end(submarineId);
                     }
-                    handleSubmarineMessage(line);
                 }
             } catch (IOException e) {
-                System.err.println("Submarine-Verbindung beendet: " + e.getMessage());
+                AsyncLog.warn("sub.session", "Submarine-Verbindung beendet: %s", e.getMessage());
             } finally {
+                in.release();
+                ACTIVE_SESSIONS.decrementAndGet();
+                flushPosition();
                 synchronized (submarineSessions) {
                     if (submarineId != null) {
                         submarineSessions.remove(submarineId);
@@ -1027,21 +1912,51 @@ public class ShipAppApiServer {
             }
         }
 
-        private void handleSubmarineMessage(String jsonLine) {
+        // zuletzt ausgelassene Position speichern, sonst endet die Spur vor der letzten Position
+        private void flushPosition() {
+            PositionPersistencePolicy.Sample sample = positionPolicy.flush();
+            if (sample != null && submarineRepository != null && submarineId != null) {
+                submarineRepository.savePosition(submarineId, sample.pos(), sample.dir(), sample.depth(),
+                        sample.distance(), sample.time(), sample.keyframe());
+            }
+        }
+
+        void handleSubmarineMessage(String jsonLine) {
+            handleSubmarineMessage(jsonLine, null, 0);
+        }
+
+        /**
+         * @param picture vom {@link SubmarineLineReader} bereits dekodiertes Bild (oder null),
+         *                nur während des Aufrufs gültig
+         */
+        void handleSubmarineMessage(String jsonLine, byte[] picture, int pictureLength) {
+            long start = System.nanoTime();
+            JfrEvents.SubmarineMessage event = JfrEvents.SubmarineMessage.start();
             JSONObject msg = new JSONObject(jsonLine);
             String cmd = msg.optString("cmd", "");
+            IngestTracer.span(IngestTracer.Span.PARSE, start);
+            long handlerStart = IngestTracer.start();
             switch (cmd) {
                 case "ready" -> handleReady(msg);
                 case "message" -> handleSubMessage(msg);
                 case "measure" -> handleMeasure(msg);
-                case "picture" -> handlePicture(msg);
+                case "picture" -> handlePicture(msg, picture, pictureLength);
                 case "crash" -> handleSubCrash(msg);
                 case "arise" -> handleArise(msg);
-                default -> System.out.println("Unbekannte Submarine-Nachricht: " + msg.toString());
+                default -> {
+                    AsyncLog.warn("sub.unknown", "Unbekannte Submarine-Nachricht: %s", msg);
+                    cmd = "unknown";
+                }
             }
+            IngestTracer.span(IngestTracer.Span.HANDLER, handlerStart);
+            IngestTracer.command(cmd);
+            MESSAGES.labels("submarine", cmd).inc();
+            HANDLER_SECONDS.labels("submarine", cmd).observeSince(start);
+            event.finish(submarineId, cmd, jsonLine.length());
         }
 
         private void handleReady(JSONObject msg) {
+            boolean firstReady = this.submarineId == null;
             this.submarineId = msg.optString("id", this.submarineId);
             JSONObject posJson = msg.optJSONObject("pos");
             JSONObject dirJson = msg.optJSONObject("dir");
@@ -1052,13 +1967,21 @@ public class ShipAppApiServer {
             synchronized (submarineSessions) {
                 submarineSessions.put(getIdSafe(), this);
             }
-            System.out.printf("Submarine READY (id=%s): pos=%s, depth=%d, distance=%d%n",
+            if (firstReady) {
+                completePendingLaunch(getIdSafe());
+            }
+            AsyncLog.info("sub.ready", "Submarine READY (id=%s): pos=%s, depth=%d, distance=%d",
                     submarineId, lastPos, depth, distance);
+            long now = System.currentTimeMillis();
+            trackStore.add(submarineId, now, lastPos, depth, distance);
 
             // In Datenbank speichern
             if (submarineRepository != null && submarineId != null) {
                 submarineRepository.saveSubmarine(submarineId, shipId);
-                submarineRepository.savePosition(submarineId, lastPos, lastDir, depth, distance);
+                for (PositionPersistencePolicy.Sample sample : positionPolicy.offer(now, lastPos, lastDir, depth, distance)) {
+                    submarineRepository.savePosition(submarineId, sample.pos(), sample.dir(), sample.depth(),
+                            sample.distance(), sample.time(), sample.keyframe());
+                }
             }
         }
 
@@ -1067,14 +1990,14 @@ public class ShipAppApiServer {
             String text = msg.optString("text", "");
             JSONObject posJson = msg.optJSONObject("pos");
             Vec pos = posJson != null ? Vec.fromJson(posJson) : null;
-            System.out.printf("Submarine-Message (id=%s, type=%s): %s, pos=%s%n",
+            AsyncLog.info("sub.message", "Submarine-Message (id=%s, type=%s): %s, pos=%s",
                     submarineId, type, text, pos);
         }
 
         private void handleMeasure(JSONObject msg) {
             JSONArray vecs = msg.optJSONArray("vecs");
             int count = vecs != null ? vecs.length() : 0;
-            System.out.printf("Submarine MEASURE (id=%s): %d neue Messpunkte%n", submarineId, count);
+            AsyncLog.info("sub.measure", "Submarine MEASURE (id=%s): %d neue Messpunkte", submarineId, count);
 
             // Messpunkte in Datenbank speichern
             if (submarineRepository != null && submarineId != null && vecs != null) {
@@ -1082,56 +2005,113 @@ public class ShipAppApiServer {
             }
         }
 
-        private void handlePicture(JSONObject msg) {
-            String hex = msg.optString("picture", "");
-            int len = hex != null ? hex.length() : 0;
-            System.out.printf("Submarine PICTURE (id=%s): Bild empfangen (PNG-Hex-String, Länge=%d)%n",
-                    submarineId, len);
-
-            if (hex == null || hex.isEmpty()) {
+        private void handlePicture(JSONObject msg, byte[] picture, int pictureLength) {
+            byte[] png;
+            if (picture != null && pictureLength > 0) {
+                png = Arrays.copyOf(picture, pictureLength);
+            } else {
+                // Bild als Hex-String im JSON (z.B. aus den Benchmarks)
+                String hex = msg.optString("picture", "");
+                if (hex.isEmpty()) {
+                    AsyncLog.info("sub.picture", "Submarine PICTURE (id=%s): leeres Bild", submarineId);
+                    return;
+                }
+                try {
+                    png = HexCodec.decode(hex);
+                } catch (IllegalArgumentException e) {
+                    AsyncLog.error("sub.picture", "Submarine PICTURE: ungültiger Hex-String: %s", e.getMessage());
+                    return;
+                }
+            }
+            AsyncLog.info("sub.picture", "Submarine PICTURE (id=%s): Bild empfangen (PNG, %d Bytes)",
+                    submarineId, png.length);
+            PICTURE_BYTES.add(png.length);
+
+            // Byteweise gleiche Bilder gar nicht erst dekodieren
+            long ts = System.currentTimeMillis();
+            long contentHash = PictureDeduplicator.contentHash(png, 0, png.length);
+            PictureDeduplicator.Reference duplicate = pictureDedup.exactDuplicate(contentHash, ts);
+            if (duplicate != null) {
+                keepDuplicate(duplicate, png, ts, contentHash, 0);
                 return;
             }
 
-            // Letztes Bild für Live-View speichern
-            this.lastPictureHex = hex;
-            this.lastPictureTimestamp = System.currentTimeMillis();
+            // Letztes Bild für Live-View speichern; der Name ist auch der Dateiname
+            String idSafe = submarineId != null ? submarineId : "unknown";
+            String name = "sub_" + idSafe + "_" + ts;
+            this.lastPicture = new LastPicture(name, png, ts);
 
             String savedFilePath = null;
+            long perceptualHash = 0;
 
             try {
                 // Hex-String in Bild umwandeln
-                var img = OceanPicture.convertHexString2Image(hex);
+                long decodeStart = IngestTracer.start();
+                JfrEvents.Picture decodeEvent = JfrEvents.Picture.start();
+                var img = OceanPicture.convertBytes2Image(png, 0, png.length);
+                decodeEvent.finish(submarineId, "decode", png.length);
+                IngestTracer.span(IngestTracer.Span.PICTURE, decodeStart);
                 if (img == null) {
-                    System.err.println("Submarine PICTURE: Konnte Bild aus Hex-String nicht dekodieren.");
+                    AsyncLog.error("sub.picture", "Submarine PICTURE: Konnte Bild aus Hex-String nicht dekodieren.");
                     return;
                 }
 
+                // Fast gleiche Bilder (z.B. stehendes Submarine) nur als Verweis speichern
+                perceptualHash = PictureDeduplicator.perceptualHash(img);
+                duplicate = pictureDedup.similarDuplicate(perceptualHash, ts);
+                if (duplicate != null) {
+                    keepDuplicate(duplicate, png, ts, contentHash, perceptualHash);
+                    return;
+                }
+
+                // Thumbnail und Vorschau im Hintergrund erzeugen
+                if (thumbnailer != null) {
+                    thumbnailer.submit(getIdSafe(), name, img);
+                }
+
                 // Zielverzeichnis vorbereiten (relativ zum Working-Directory)
                 File dir = new File("pictures");
                 if (!dir.exists() && !dir.mkdirs()) {
-                    System.err.println("Submarine PICTURE: Konnte Verzeichnis 'pictures' nicht anlegen.");
+                    AsyncLog.error("sub.picture", "Submarine PICTURE: Konnte Verzeichnis 'pictures' nicht anlegen.");
                     return;
                 }
 
                 // Dateiname: pictures/sub_<id>_<timestamp>.png
-                String idSafe = submarineId != null ? submarineId : "unknown";
-                long ts = System.currentTimeMillis();
-                String filename = new File(dir, "sub_" + idSafe + "_" + ts + ".png").getPath();
+                String filename = new File(dir, name + ".png").getPath();
 
+                long writeStart = IngestTracer.start();
+                JfrEvents.Picture writeEvent = JfrEvents.Picture.start();
                 boolean ok = OceanPicture.saveAsPNG(img, filename);
+                writeEvent.finish(submarineId, "write", png.length);
+                IngestTracer.span(IngestTracer.Span.PICTURE_WRITE, writeStart);
                 if (ok) {
-                    System.out.println("Submarine PICTURE: Bild gespeichert unter: " + filename);
+                    AsyncLog.info("sub.picture", "Submarine PICTURE: Bild gespeichert unter: %s", filename);
                     savedFilePath = filename;
                 } else {
-                    System.err.println("Submarine PICTURE: Speichern unter '" + filename + "' fehlgeschlagen.");
+                    AsyncLog.error("sub.picture", "Submarine PICTURE: Speichern unter '%s' fehlgeschlagen.", filename);
                 }
             } catch (Exception e) {
-                System.err.println("Submarine PICTURE: Fehler beim Speichern des Bildes: " + e.getMessage());
+                AsyncLog.error("sub.picture", "Submarine PICTURE: Fehler beim Speichern des Bildes: %s", e.getMessage());
             }
 
             // Bild in Datenbank speichern
+            long pictureId = 0;
+            if (submarineRepository != null && submarineId != null) {
+                pictureId = submarineRepository.savePicture(submarineId, png, savedFilePath, contentHash, perceptualHash);
+            }
+            pictureDedup.stored(name, contentHash, perceptualHash, ts, pictureId);
+        }
+
+        /**
+         * Duplikat: keine Datei und kein Thumbnail, in der Datenbank nur ein Verweis.
+         * Die Live-View zeigt das neue Bild, verkleinerte Varianten stammen von der Referenz.
+         */
+        private void keepDuplicate(PictureDeduplicator.Reference reference, byte[] png, long ts,
+                                   long contentHash, long perceptualHash) {
+            this.lastPicture = new LastPicture(reference.name(), png, ts);
+            AsyncLog.debug("sub.picture", "Submarine PICTURE (id=%s): Duplikat von %s", submarineId, reference.name());
             if (submarineRepository != null && submarineId != null) {
-                submarineRepository.savePicture(submarineId, hex, savedFilePath);
+                submarineRepository.savePictureReference(submarineId, reference.id(), contentHash, perceptualHash);
             }
         }
 
@@ -1141,7 +2121,7 @@ public class ShipAppApiServer {
             JSONObject sunkPosJson = msg.optJSONObject("sunkPos");
             Vec2D sector = sectorJson != null ? Vec2D.fromJson(sectorJson) : null;
             Vec sunkPos = sunkPosJson != null ? Vec.fromJson(sunkPosJson) : null;
-            System.out.printf("!!! Submarine-Crash (id=%s): %s, Sektor=%s, SinkPos=%s%n",
+            AsyncLog.warn("sub.crash", "!!! Submarine-Crash (id=%s): %s, Sektor=%s, SinkPos=%s",
                     submarineId, message, sector, sunkPos);
 
             // Crash in Datenbank speichern
@@ -1153,7 +2133,7 @@ public class ShipAppApiServer {
         private void handleArise(JSONObject msg) {
             JSONObject arisePosJson = msg.optJSONObject("arisePos");
             Vec arisePos = arisePosJson != null ? Vec.fromJson(arisePosJson) : null;
-            System.out.printf("Submarine ARISE (id=%s): arisePos=%s%n", submarineId, arisePos);
+            AsyncLog.info("sub.arise", "Submarine ARISE (id=%s): arisePos=%s", submarineId, arisePos);
 
             // Arise-Event in Datenbank speichern
             if (submarineRepository != null && submarineId != null) {
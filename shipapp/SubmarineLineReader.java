@@ -0,0 +1,333 @@
+package shipapp;
+
+import ocean.HexCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Liest die Nachrichten einer Submarine-Verbindung zeilenweise, ohne Bilder als
+ * riesige Strings zu erzeugen.
+ *
+ * Eine picture-Nachricht ist eine einzige Zeile mit dem PNG als Hex-String
+ * (mehrere MB). Mit {@link java.io.BufferedReader#readLine()} entstünde daraus
+ * ein String, den {@code new JSONObject} und {@code optString} jeweils noch einmal
+ * kopieren. Dieser Reader erkennt stattdessen den Schlüssel {@code "picture"} beim
+ * Lesen und dekodiert den Wert direkt aus dem Lesepuffer in einen Byte-Puffer aus
+ * einem kleinen Pool. In der Zeile ({@link #line()}) bleibt nur {@code "picture":""}
+ * stehen, der Rest der Nachricht wird normal als JSON geparst. Der Speicherbedarf
+ * pro Bild liegt damit bei etwa der PNG-Größe.
+ *
+ * Nachrichten über der maximalen Größe (-Dshipapp.submarine.maxMessage, Bytes inklusive
+ * Hex-Daten, Standard 32 MB) und Bilder mit ungültigem Hex werden bis zum Zeilenende
+ * verworfen und gezählt; die Verbindung bleibt bestehen.
+ *
+ * Nicht threadsicher, eine Instanz pro Verbindung.
+ */
+final class SubmarineLineReader {
+
+    static final int DEFAULT_MAX_MESSAGE = Integer.getInteger("shipapp.submarine.maxMessage", 32 * 1024 * 1024);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_PICTURE_SIZE = 64 * 1024;
+    // Pool für Bildpuffer: wenige Puffer, sehr große werden nicht aufgehoben
+    private static final int POOL_SIZE = 8;
+    private static final int POOL_MAX_BUFFER = 4 * 1024 * 1024;
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private static final byte[] PICTURE_KEY = "picture".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Metrics.Family<Metrics.Counter> REJECTED = Metrics.counter(
+            "shipapp_submarine_messages_rejected_total", "Verworfene Submarine-Nachrichten je Grund", "reason");
+
+    // Zustand des JSON-Scanners außerhalb der Hex-Daten
+    private static final int KEY_NONE = 0;
+    private static final int KEY_PICTURE = 1;
+    private static final int KEY_PICTURE_COLON = 2;
+
+    private final InputStream in;
+    private final int maxMessage;
+    private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private long messageBytes;
+
+    private byte[] picture;
+    private int pictureLength;
+    private int carry = -1;
+
+    private boolean inString;
+    private boolean escape;
+    private int stringStart;
+    private int keyState;
+    private boolean inHex;
+
+    SubmarineLineReader(InputStream in) {
+        this(in, DEFAULT_MAX_MESSAGE);
+    }
+
+    SubmarineLineReader(InputStream in, int maxMessage) {
+        this.in = in;
+        this.maxMessage = maxMessage;
+    }
+
+    /**
+     * Liest die nächste nicht-leere Nachricht. Der Bildpuffer der vorherigen Nachricht
+     * geht dabei an den Pool zurück und darf danach nicht mehr benutzt werden.
+     *
+     * @return false am Ende des Streams
+     */
+    boolean next() throws IOException {
+        release();
+        while (true) {
+            String rejected = null;
+            reset();
+            boolean eol = false;
+            while (!eol) {
+                if (pos == limit && !fill()) {
+                    // Ende des Streams: unvollständige Zeile wie readLine() noch zurückgeben
+                    if (rejected == null && !inHex && lineLength > 0) {
+                        return true;
+                    }
+                    release();
+                    return false;
+                }
+                if (rejected != null) {
+                    eol = skipToEndOfLine();
+                    continue;
+                }
+                try {
+                    eol = inHex ? scanHex() : scanJson();
+                } catch (IllegalArgumentException e) {
+                    rejected = "invalid_hex";
+                }
+                if (rejected == null && messageBytes > maxMessage) {
+                    rejected = "too_large";
+                }
+            }
+            if (rejected != null) {
+                REJECTED.labels(rejected).inc();
+                AsyncLog.warn("sub.reader", "Submarine-Nachricht verworfen (%s, %d Bytes)", rejected, messageBytes);
+                release();
+                continue;
+            }
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--;
+            }
+            if (!isBlank()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Die Nachricht als JSON-Text; ein Bild steht hier als leerer String.
+     */
+    String line() {
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Dekodierte Bilddaten (PNG) oder null; gültig bis zum nächsten {@link #next()}.
+     */
+    byte[] picture() {
+        return picture;
+    }
+
+    int pictureLength() {
+        return pictureLength;
+    }
+
+    /**
+     * Gelesene Bytes der letzten Nachricht inklusive Hex-Daten.
+     */
+    long messageBytes() {
+        return messageBytes;
+    }
+
+    /**
+     * Gibt den Bildpuffer an den Pool zurück (auch am Ende der Verbindung aufrufen).
+     */
+    void release() {
+        if (picture != null) {
+            giveBack(picture);
+            picture = null;
+            pictureLength = 0;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Scanner
+    // ------------------------------------------------------------
+
+    private void reset() {
+        lineLength = 0;
+        messageBytes = 0;
+        carry = -1;
+        inString = false;
+        escape = false;
+        keyState = KEY_NONE;
+        inHex = false;
+    }
+
+    // JSON-Text Byte für Byte; true am Zeilenende
+    private boolean scanJson() {
+        while (pos < limit && !inHex) {
+            byte b = buffer[pos++];
+            messageBytes++;
+            if (b == '\n') {
+                return true;
+            }
+            append(b);
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    inString = false;
+                    keyState = isPictureKey() ? KEY_PICTURE : KEY_NONE;
+                }
+            } else if (b == '"') {
+                if (keyState == KEY_PICTURE_COLON) {
+                    inHex = true;
+                } else {
+                    inString = true;
+                    stringStart = lineLength;
+                }
+                keyState = KEY_NONE;
+            } else if (b == ':' && keyState == KEY_PICTURE) {
+                keyState = KEY_PICTURE_COLON;
+            } else if (b != ' ' && b != '\t' && b != '\r') {
+                keyState = KEY_NONE;
+            }
+        }
+        return false;
+    }
+
+    // Hex-Daten bis zum schließenden Anführungszeichen; true am Zeilenende
+    private boolean scanHex() {
+        int end = pos;
+        while (end < limit && buffer[end] != '"' && buffer[end] != '\n') {
+            end++;
+        }
+        messageBytes += end - pos;
+        if (messageBytes > maxMessage) {
+            pos = end;
+            return false;
+        }
+        decodeHex(pos, end);
+        pos = end;
+        if (end == limit) {
+            return false;
+        }
+        if (buffer[end] == '\n' || carry >= 0) {
+            // Zeilenende im Bild oder ungerade Anzahl Zeichen
+            throw new IllegalArgumentException("Bild unvollständig");
+        }
+        pos++;
+        messageBytes++;
+        append((byte) '"');
+        inHex = false;
+        return false;
+    }
+
+    private void decodeHex(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        ensurePictureCapacity(pictureLength + (to - from + 1) / 2);
+        if (carry >= 0) {
+            byte[] pair = { (byte) carry, buffer[from++] };
+            pictureLength += HexCodec.decode(pair, 0, 2, picture, pictureLength);
+            carry = -1;
+        }
+        int even = (to - from) & ~1;
+        pictureLength += HexCodec.decode(buffer, from, from + even, picture, pictureLength);
+        if (from + even < to) {
+            carry = buffer[to - 1];
+        }
+    }
+
+    private boolean skipToEndOfLine() {
+        while (pos < limit) {
+            messageBytes++;
+            if (buffer[pos++] == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPictureKey() {
+        int len = lineLength - 1 - stringStart;
+        return len == PICTURE_KEY.length
+                && Arrays.equals(line, stringStart, lineLength - 1, PICTURE_KEY, 0, PICTURE_KEY.length);
+    }
+
+    private boolean isBlank() {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] != ' ' && line[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(byte b) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = b;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private void ensurePictureCapacity(int capacity) {
+        if (picture == null) {
+            picture = take(capacity);
+        } else if (capacity > picture.length) {
+            picture = Arrays.copyOf(picture, Math.max(capacity, picture.length * 2));
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Pool
+    // ------------------------------------------------------------
+
+    private static byte[] take(int capacity) {
+        byte[] b = pool.poll();
+        if (b != null) {
+            pooled.decrementAndGet();
+            if (b.length >= capacity) {
+                return b;
+            }
+        }
+        return new byte[Math.max(capacity, INITIAL_PICTURE_SIZE)];
+    }
+
+    private static void giveBack(byte[] b) {
+        if (b.length <= POOL_MAX_BUFFER && pooled.incrementAndGet() <= POOL_SIZE) {
+            pool.offer(b);
+        } else if (b.length <= POOL_MAX_BUFFER) {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package shipapp;
 
+import ocean.HexCodec;
 import ocean.Vec;
 import ocean.Vec2D;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +22,12 @@ import java.util.List;
  * - Bilder (submarine_pictures)
  * - Crash-Ereignisse (submarine_crashes)
  * - Auftauchen-Ereignisse (submarine_arises)
+ *
+ * Schreibende Methoden legen das Ereignis zuerst im {@link EventJournal} ab und kehren
+ * zurück, ohne auf die Datenbank zu warten; der {@link JournalReplayer} überträgt es.
+ * Ist die Datenbank langsam oder weg, wächst nur das Journal, verloren geht nichts
+ * (auch nicht bei einem Neustart). Lesende Methoden sehen ein Ereignis erst nach der
+ * Übertragung.
  */
 public class SubmarineRepository {
 
@@ -28,47 +37,160 @@ public class SubmarineRepository {
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = ""; // Anpassen falls Passwort gesetzt
 
-    private Connection connection;
+    // Metriken (GET /api/metrics)
+    private static final Metrics.Family<Metrics.Histogram> STATEMENT_SECONDS = Metrics.histogram(
+            "shipapp_db_statement_seconds", "Dauer der Datenbank-Operationen je Methode", "op");
+    private static final Metrics.Family<Metrics.Counter> STATEMENT_FAILURES = Metrics.counter(
+            "shipapp_db_statement_failures_total", "Fehlgeschlagene Datenbank-Operationen je Methode", "op");
+    private static final Metrics.Histogram CONNECT_SECONDS = Metrics.histogram(
+            "shipapp_db_connect_seconds", "Dauer der Verbindungsaufbauten zur Datenbank").labels();
+    private static final Metrics.Counter CONNECT_FAILURES = Metrics.counter(
+            "shipapp_db_connect_failures_total", "Fehlgeschlagene Verbindungsaufbauten zur Datenbank").labels();
+    private static final Metrics.Counter JOURNAL_FAILURES = Metrics.counter(
+            "shipapp_journal_append_failures_total", "Ereignisse, die nicht ins Journal geschrieben werden konnten").labels();
+
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger("shipapp.db.connectTimeoutMillis", 3000);
+
+    private volatile Connection connection;
+
+    // Ist die Datenbank weg, brechen Aufrufe sofort ab; neu verbunden wird im Hintergrund
+    private final CircuitBreaker breaker = new CircuitBreaker("db",
+            Integer.getInteger("shipapp.db.failureThreshold", 3),
+            500,
+            Integer.getInteger("shipapp.db.backoffMaxSeconds", 30) * 1000L,
+            this::reconnect);
+
+    private EventJournal journal;
+    private JournalReplayer replayer;
 
     /**
-     * Erstellt eine neue Repository-Instanz und verbindet zur Datenbank.
+     * Erstellt eine neue Repository-Instanz, verbindet zur Datenbank und öffnet das
+     * Journal (sofern nicht mit -Dshipapp.journal.enabled=false abgeschaltet).
      */
     public SubmarineRepository() {
         connect();
+        openJournalFromConfig();
     }
 
     /**
-     * Stellt die Verbindung zur MySQL/MariaDB-Datenbank her.
+     * Stellt die Verbindung zur MySQL/MariaDB-Datenbank her. Schlägt das fehl, wird der
+     * Circuit Breaker geöffnet und im Hintergrund weiter versucht.
      */
     private void connect() {
         try {
-            String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC",
-                    DB_HOST, DB_PORT, DB_NAME);
-            connection = DriverManager.getConnection(url, DB_USER, DB_PASSWORD);
-            System.out.println("Datenbankverbindung hergestellt: " + url);
+            reconnect();
+            System.out.println("Datenbankverbindung hergestellt: " + url());
         } catch (SQLException e) {
             System.err.println("Fehler bei der Datenbankverbindung: " + e.getMessage());
-            e.printStackTrace();
+            breaker.open(e);
         }
     }
 
     /**
-     * Prüft ob die Verbindung aktiv ist und stellt sie ggf. wieder her.
+     * Ersetzt die gemeinsame Verbindung durch eine neue (auch Probe des Circuit Breakers).
      */
-    private void ensureConnection() {
+    private void reconnect() throws SQLException {
+        long start = System.nanoTime();
+        JfrEvents.Database event = JfrEvents.Database.start();
         try {
-            if (connection == null || connection.isClosed()) {
-                connect();
+            Connection old = connection;
+            connection = openConnection();
+            if (old != null) {
+                try {
+                    old.close();
+                } catch (SQLException e) {
+                    // alte Verbindung war ohnehin unbrauchbar
+                }
             }
         } catch (SQLException e) {
-            connect();
+            CONNECT_FAILURES.inc();
+            throw e;
+        } finally {
+            CONNECT_SECONDS.observeSince(start);
+            event.finish("connect");
+        }
+    }
+
+    /**
+     * Öffnet eine eigene Verbindung, z.B. für {@link PartitionMaintenance}, damit lange
+     * Wartungsbefehle die Verbindung der Submarine-Sessions nicht blockieren.
+     */
+    static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url(), DB_USER, DB_PASSWORD);
+    }
+
+    private static String url() {
+        return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC"
+                        + "&connectTimeout=%d",
+                DB_HOST, DB_PORT, DB_NAME, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Die gemeinsame Verbindung oder null, wenn die Datenbank gerade nicht erreichbar ist
+     * (Circuit Breaker offen). Baut selbst keine Verbindung auf, damit kein Session-Thread
+     * auf einen Verbindungs-Timeout wartet.
+     */
+    private Connection connection() {
+        if (!breaker.allow()) {
+            return null;
+        }
+        Connection c = connection;
+        try {
+            if (c != null && !c.isClosed()) {
+                return c;
+            }
+        } catch (SQLException e) {
+            // wie eine geschlossene Verbindung behandeln
+        }
+        breaker.open(new SQLException("Verbindung geschlossen"));
+        return null;
+    }
+
+    /**
+     * Meldet einen fehlgeschlagenen Aufruf. Nur Verbindungsfehler zählen für den
+     * Circuit Breaker, nicht z.B. verletzte Constraints.
+     */
+    void connectionFailed(SQLException e) {
+        if (isConnectionError(e)) {
+            breaker.failure(e);
         }
     }
 
     /**
-     * Schließt die Datenbankverbindung.
+     * Meldet einen erfolgreichen Aufruf; Verbindungsfehler zählen nur in Folge.
+     */
+    void connectionSucceeded() {
+        breaker.success();
+    }
+
+    /**
+     * true, solange der Circuit Breaker geschlossen ist.
+     */
+    boolean databaseAvailable() {
+        return breaker.state() == CircuitBreaker.State.CLOSED;
+    }
+
+    static boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException
+                || (state != null && state.startsWith("08"));
+    }
+
+    /**
+     * Schließt Journal und Datenbankverbindung.
      */
     public void close() {
+        if (replayer != null) {
+            replayer.stop();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                AsyncLog.error("db", "Fehler beim Schließen des Journals: %s", e.getMessage());
+            }
+        }
         if (connection != null) {
             try {
                 connection.close();
@@ -79,6 +201,143 @@ public class SubmarineRepository {
         }
     }
 
+    // ========================================================================
+    // Journal
+    // ========================================================================
+
+    /**
+     * Öffnet das Journal laut System-Properties. Schlägt das fehl (z.B. Verzeichnis
+     * von einem anderen Prozess belegt), wird wie bisher direkt geschrieben.
+     */
+    private void openJournalFromConfig() {
+        if (!Boolean.parseBoolean(System.getProperty("shipapp.journal.enabled", "true"))) {
+            return;
+        }
+        Path dir = Path.of(System.getProperty("shipapp.journal.dir", "journal"));
+        long segmentBytes = Integer.getInteger("shipapp.journal.segmentMb", 64) * 1024L * 1024L;
+        long maxBytes = Integer.getInteger("shipapp.journal.maxMb", 2048) * 1024L * 1024L;
+        boolean waitForSync = !"none".equals(System.getProperty("shipapp.journal.sync", "group"));
+        try {
+            journal = new EventJournal(dir, segmentBytes, maxBytes, waitForSync);
+            replayer = new JournalReplayer(journal, this, Integer.getInteger("shipapp.journal.batchSize", 500));
+            replayer.start();
+            AsyncLog.info("journal", "Journal %s geöffnet (Kennung %s, %d Ereignisse noch nicht übertragen)",
+                    dir.toAbsolutePath(), journal.id(), journal.lastSeq() - replayer.applied());
+        } catch (IOException e) {
+            journal = null;
+            AsyncLog.error("journal", "Journal nicht verfügbar, schreibe direkt in die Datenbank: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Schreibt ein Ereignis: ins Journal (von dort überträgt der {@link JournalReplayer}
+     * es in die Datenbank) oder ohne Journal direkt über die gemeinsame Verbindung.
+     *
+     * @return bei Bildern der Schlüssel für Verweise: ID der neuen Zeile (&gt; 0) oder
+     *         -seq des Journal-Eintrags (&lt; 0); 0, wenn nichts gespeichert wurde
+     */
+    private long write(String op, JSONObject args, byte[] blob) {
+        int blobLength = blob != null ? blob.length : 0;
+        if (journal != null) {
+            long start = System.nanoTime();
+            try {
+                return -journal.append(op, args, blob, 0, blobLength);
+            } catch (IOException e) {
+                JOURNAL_FAILURES.inc();
+                AsyncLog.error("journal", "Schreiben ins Journal fehlgeschlagen (%s), direkt in die Datenbank: %s",
+                        op, e.getMessage());
+            } finally {
+                IngestTracer.span(IngestTracer.Span.REPOSITORY, start);
+            }
+        }
+        Connection c = connection();
+        if (c == null) return 0;
+        try {
+            long id = apply(c, op, System.currentTimeMillis(), args, blob, 0, blobLength);
+            breaker.success();
+            return id;
+        } catch (SQLException e) {
+            connectionFailed(e);
+            AsyncLog.error("db.error", "Fehler bei %s: %s", op, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Datenbank-Aufruf für {@link #timed}.
+     */
+    @FunctionalInterface
+    interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Führt einen Datenbank-Aufruf aus und misst ihn einheitlich: Dauer und Fehler je
+     * Operation (Metriken), Repository-Abschnitt des Ingest-Traces und JFR-Event.
+     *
+     * @param op Name der Operation (Label der Metriken, JFR-Feld)
+     */
+    private static <T> T timed(String op, SqlCall<T> call) throws SQLException {
+        long start = System.nanoTime();
+        JfrEvents.Database event = JfrEvents.Database.start();
+        try {
+            return call.call();
+        } catch (SQLException e) {
+            STATEMENT_FAILURES.labels(op).inc();
+            throw e;
+        } finally {
+            STATEMENT_SECONDS.labels(op).observeSince(start);
+            IngestTracer.span(IngestTracer.Span.REPOSITORY, start);
+            event.finish(op);
+        }
+    }
+
+    /**
+     * Abfrage über die gemeinsame Verbindung mit {@link #timed}; meldet Erfolg bzw.
+     * Verbindungsfehler an den Circuit Breaker.
+     */
+    private <T> T query(String op, SqlCall<T> call) throws SQLException {
+        try {
+            T result = timed(op, call);
+            breaker.success();
+            return result;
+        } catch (SQLException e) {
+            connectionFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Führt ein Ereignis auf der Verbindung aus. Läuft die Verbindung im Autocommit,
+     * werden mehrteilige Ereignisse (Messpunkte) in einer eigenen Transaktion geschrieben,
+     * sonst in der laufenden des Aufrufers.
+     *
+     * @param time Zeitpunkt des Ereignisses (ms); wird als recorded_at o.ä. eingetragen,
+     *             damit nachträglich übertragene Ereignisse ihre ursprüngliche Zeit behalten
+     * @return ID einer neuen Bildzeile, sonst 0
+     * @throws SQLException wenn das Ereignis nicht eingetragen werden konnte
+     */
+    long apply(Connection c, String op, long time, JSONObject a, byte[] blob, int blobOffset, int blobLength)
+            throws SQLException {
+        Timestamp at = new Timestamp(time);
+        return timed(op, () -> {
+            switch (op) {
+                case "saveSubmarine" -> insertSubmarine(c, a, at);
+                case "updateSubmarineStatus" -> updateStatus(c, a.getString("submarineId"), a.getString("status"), at);
+                case "savePosition" -> insertPosition(c, a);
+                case "saveMeasurements" -> insertMeasurements(c, a, at);
+                case "savePicture" -> {
+                    return insertPicture(c, a, at, blob, blobOffset, blobLength);
+                }
+                case "savePictureReference" -> insertPictureReference(c, a, at);
+                case "saveCrash" -> insertCrash(c, a, at);
+                case "saveArise" -> insertArise(c, a, at);
+                default -> throw new SQLException("Unbekannte Operation im Journal: " + op);
+            }
+            return 0L;
+        });
+    }
+
     // ========================================================================
     // Submarine-Stammdaten
     // ========================================================================
@@ -90,24 +349,27 @@ public class SubmarineRepository {
      * @param shipId ID des zugehörigen Schiffs
      */
     public void saveSubmarine(String submarineId, String shipId) {
-        ensureConnection();
-        if (connection == null) return;
+        write("saveSubmarine", new JSONObject()
+                .put("submarineId", submarineId)
+                .put("shipId", shipId != null ? shipId : "unknown"), null);
+    }
 
+    private static void insertSubmarine(Connection c, JSONObject a, Timestamp at) throws SQLException {
         String sql = """
-            INSERT INTO submarines (id, ship_id, status)
-            VALUES (?, ?, 'active')
+            INSERT INTO submarines (id, ship_id, status, created_at, last_seen)
+            VALUES (?, ?, 'active', ?, ?)
             ON DUPLICATE KEY UPDATE 
-                last_seen = CURRENT_TIMESTAMP,
+                last_seen = VALUES(last_seen),
                 ship_id = VALUES(ship_id)
             """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
-            stmt.setString(2, shipId != null ? shipId : "unknown");
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
+            stmt.setString(1, a.getString("submarineId"));
+            stmt.setString(2, a.getString("shipId"));
+            stmt.setTimestamp(3, at);
+            stmt.setTimestamp(4, at);
             stmt.executeUpdate();
-            System.out.println("Submarine gespeichert: " + submarineId);
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern des Submarines: " + e.getMessage());
+            AsyncLog.debug("db.submarine", "Submarine gespeichert: %s", a.getString("submarineId"));
         }
     }
 
@@ -118,17 +380,19 @@ public class SubmarineRepository {
      * @param status neuer Status (active, crashed, surfaced)
      */
     public void updateSubmarineStatus(String submarineId, String status) {
-        ensureConnection();
-        if (connection == null) return;
+        write("updateSubmarineStatus", new JSONObject()
+                .put("submarineId", submarineId)
+                .put("status", status), null);
+    }
 
-        String sql = "UPDATE submarines SET status = ?, last_seen = CURRENT_TIMESTAMP WHERE id = ?";
+    private static void updateStatus(Connection c, String submarineId, String status, Timestamp at) throws SQLException {
+        String sql = "UPDATE submarines SET status = ?, last_seen = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
             stmt.setString(1, status);
-            stmt.setString(2, submarineId);
+            stmt.setTimestamp(2, at);
+            stmt.setString(3, submarineId);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Aktualisieren des Submarine-Status: " + e.getMessage());
         }
     }
 
@@ -137,26 +401,45 @@ public class SubmarineRepository {
     // ========================================================================
 
     /**
-     * Speichert eine neue Position für ein Submarine (Ready-Event).
+     * Speichert eine Position für ein Submarine (Ready-Event). Welche Positionen
+     * gespeichert werden, entscheidet {@link PositionPersistencePolicy}.
      * 
      * @param submarineId ID des Submarines
      * @param pos aktuelle Position
      * @param dir aktuelle Richtung (kann null sein)
      * @param depth aktuelle Tiefe
      * @param distance zurückgelegte Distanz
+     * @param recordedAt Empfangszeitpunkt der Position (ms)
+     * @param keyframe true für Keyframes, false für Deltas
      */
-    public void savePosition(String submarineId, Vec pos, Vec dir, int depth, int distance) {
-        ensureConnection();
-        if (connection == null || pos == null) return;
+    public void savePosition(String submarineId, Vec pos, Vec dir, int depth, int distance,
+                             long recordedAt, boolean keyframe) {
+        if (pos == null) return;
+        JSONObject args = new JSONObject()
+                .put("submarineId", submarineId)
+                .put("pos", pos.toJsonArray())
+                .put("depth", depth)
+                .put("distance", distance)
+                .put("recordedAt", recordedAt)
+                .put("keyframe", keyframe);
+        if (dir != null) {
+            args.put("dir", dir.toJsonArray());
+        }
+        write("savePosition", args, null);
+    }
 
+    private static void insertPosition(Connection c, JSONObject a) throws SQLException {
         String sql = """
             INSERT INTO submarine_positions 
-            (submarine_id, pos_x, pos_y, pos_z, dir_x, dir_y, dir_z, depth, distance)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            (submarine_id, pos_x, pos_y, pos_z, dir_x, dir_y, dir_z, depth, distance, recorded_at, is_keyframe)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
+        Vec pos = Vec.fromJson(a.getJSONArray("pos"));
+        JSONArray dirJson = a.optJSONArray("dir");
+        Vec dir = dirJson != null ? Vec.fromJson(dirJson) : null;
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
+            stmt.setString(1, a.getString("submarineId"));
             stmt.setDouble(2, pos.getX());
             stmt.setDouble(3, pos.getY());
             stmt.setDouble(4, pos.getZ());
@@ -171,11 +454,65 @@ public class SubmarineRepository {
                 stmt.setNull(7, Types.DOUBLE);
             }
             
-            stmt.setInt(8, depth);
-            stmt.setInt(9, distance);
+            stmt.setInt(8, a.getInt("depth"));
+            stmt.setInt(9, a.getInt("distance"));
+            stmt.setTimestamp(10, new Timestamp(a.getLong("recordedAt")));
+            stmt.setBoolean(11, a.getBoolean("keyframe"));
             stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Gibt die gespeicherten Positionen eines Submarines in einem Zeitraum zurück
+     * (Keyframes und Deltas, aufsteigend nach Zeit).
+     * 
+     * @param submarineId ID des Submarines
+     * @param fromMillis Beginn (ms, inklusive)
+     * @param toMillis Ende (ms, inklusive)
+     * @return JSONArray mit t, x, y, z, dir, depth, distance und keyframe
+     */
+    public JSONArray getPositions(String submarineId, long fromMillis, long toMillis) {
+        Connection c = connection();
+        JSONArray result = new JSONArray();
+        if (c == null) return result;
+
+        String sql = """
+            SELECT pos_x, pos_y, pos_z, dir_x, dir_y, dir_z, depth, distance, recorded_at, is_keyframe
+            FROM submarine_positions
+            WHERE submarine_id = ? AND recorded_at BETWEEN ? AND ?
+            ORDER BY recorded_at, id
+            LIMIT 100000
+            """;
+
+        try {
+            return query("getPositions", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql)) {
+                    stmt.setString(1, submarineId);
+                    stmt.setTimestamp(2, new Timestamp(fromMillis));
+                    stmt.setTimestamp(3, new Timestamp(toMillis));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            JSONObject point = new JSONObject();
+                            point.put("t", rs.getTimestamp("recorded_at").getTime());
+                            point.put("x", rs.getDouble("pos_x"));
+                            point.put("y", rs.getDouble("pos_y"));
+                            point.put("z", rs.getDouble("pos_z"));
+                            double dirX = rs.getDouble("dir_x");
+                            if (!rs.wasNull()) {
+                                point.put("dir", new JSONArray().put(dirX).put(rs.getDouble("dir_y")).put(rs.getDouble("dir_z")));
+                            }
+                            point.put("depth", rs.getInt("depth"));
+                            point.put("distance", rs.getInt("distance"));
+                            point.put("keyframe", rs.getBoolean("is_keyframe"));
+                            result.put(point);
+                        }
+                    }
+                }
+                return result;
+            });
         } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern der Position: " + e.getMessage());
+            AsyncLog.error("db", "Fehler beim Abrufen der Positionen: %s", e.getMessage());
+            return result;
         }
     }
 
@@ -190,13 +527,22 @@ public class SubmarineRepository {
      * @param vecs JSONArray mit den Messpunkten
      */
     public void saveMeasurements(String submarineId, JSONArray vecs) {
-        ensureConnection();
-        if (connection == null || vecs == null || vecs.isEmpty()) return;
+        if (vecs == null || vecs.isEmpty()) return;
+        write("saveMeasurements", new JSONObject()
+                .put("submarineId", submarineId)
+                .put("vecs", vecs), null);
+    }
 
-        String sql = "INSERT INTO measurements (submarine_id, vec_x, vec_y, vec_z) VALUES (?, ?, ?, ?)";
+    private static void insertMeasurements(Connection c, JSONObject a, Timestamp at) throws SQLException {
+        String sql = "INSERT INTO measurements (submarine_id, vec_x, vec_y, vec_z, recorded_at) VALUES (?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            connection.setAutoCommit(false);
+        String submarineId = a.getString("submarineId");
+        JSONArray vecs = a.getJSONArray("vecs");
+        boolean ownTransaction = c.getAutoCommit();
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
+            if (ownTransaction) {
+                c.setAutoCommit(false);
+            }
 
             for (int i = 0; i < vecs.length(); i++) {
                 JSONObject vecJson = vecs.optJSONObject(i);
@@ -209,20 +555,31 @@ public class SubmarineRepository {
                 stmt.setDouble(2, vec.getX());
                 stmt.setDouble(3, vec.getY());
                 stmt.setDouble(4, vec.getZ());
+                stmt.setTimestamp(5, at);
                 stmt.addBatch();
             }
 
             stmt.executeBatch();
-            connection.commit();
-            connection.setAutoCommit(true);
-            System.out.printf("Submarine %s: %d Messpunkte gespeichert%n", submarineId, vecs.length());
+            if (ownTransaction) {
+                c.commit();
+            }
+            AsyncLog.debug("db.measure", "Submarine %s: %d Messpunkte gespeichert", submarineId, vecs.length());
         } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern der Messpunkte: " + e.getMessage());
-            try {
-                connection.rollback();
-                connection.setAutoCommit(true);
-            } catch (SQLException ex) {
-                // ignorieren
+            if (ownTransaction) {
+                try {
+                    c.rollback();
+                } catch (SQLException ex) {
+                    // ignorieren
+                }
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                try {
+                    c.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    // ignorieren
+                }
             }
         }
     }
@@ -233,25 +590,110 @@ public class SubmarineRepository {
 
     /**
      * Speichert ein empfangenes Bild.
-     * 
+     * Die Spalte picture_hex wird über einen Reader befüllt, der die Bytes hex-codiert;
+     * ShipApp legt dafür keinen Hex-String des ganzen Bildes an. Connector/J liest den
+     * Reader bei clientseitig vorbereiteten Statements allerdings selbst vollständig ein.
+     * Im Journal liegen die PNG-Bytes unverändert.
+     *
      * @param submarineId ID des Submarines
-     * @param pictureHex Hex-String des PNG-Bildes
+     * @param png PNG-Bytes des Bildes
      * @param filePath Pfad zur gespeicherten Datei (kann null sein)
+     * @param contentHash Inhalts-Hash der PNG-Bytes (siehe {@link PictureDeduplicator})
+     * @param perceptualHash dHash des Bildes
+     * @return Schlüssel für {@link #savePictureReference}: ID der neuen Zeile (&gt; 0),
+     *         mit Journal -seq des Eintrags (&lt; 0), 0 wenn nicht gespeichert wurde
      */
-    public void savePicture(String submarineId, String pictureHex, String filePath) {
-        ensureConnection();
-        if (connection == null || pictureHex == null || pictureHex.isEmpty()) return;
+    public long savePicture(String submarineId, byte[] png, String filePath, long contentHash, long perceptualHash) {
+        if (png == null || png.length == 0) return 0;
+        JSONObject args = new JSONObject()
+                .put("submarineId", submarineId)
+                .put("contentHash", contentHash)
+                .put("perceptualHash", perceptualHash);
+        if (filePath != null) {
+            args.put("filePath", filePath);
+        }
+        return write("savePicture", args, png);
+    }
 
-        String sql = "INSERT INTO submarine_pictures (submarine_id, picture_hex, file_path) VALUES (?, ?, ?)";
+    private static long insertPicture(Connection c, JSONObject a, Timestamp at, byte[] png, int offset, int length)
+            throws SQLException {
+        String sql = """
+            INSERT INTO submarine_pictures
+            (submarine_id, picture_hex, file_path, content_hash, perceptual_hash, recorded_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
-            stmt.setString(2, pictureHex);
-            stmt.setString(3, filePath);
+        try (PreparedStatement stmt = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, a.getString("submarineId"));
+            stmt.setCharacterStream(2, HexCodec.reader(png, offset, length), 2L * length);
+            stmt.setString(3, a.optString("filePath", null));
+            stmt.setLong(4, a.getLong("contentHash"));
+            stmt.setLong(5, a.getLong("perceptualHash"));
+            stmt.setTimestamp(6, at);
             stmt.executeUpdate();
-            System.out.printf("Submarine %s: Bild gespeichert (Länge=%d)%n", submarineId, pictureHex.length());
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern des Bildes: " + e.getMessage());
+            AsyncLog.debug("db.picture", "Submarine %s: Bild gespeichert (%d Bytes)", a.getString("submarineId"), length);
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Speichert ein Bild, das (fast) gleich einem bereits gespeicherten ist, nur als
+     * Verweis auf dieses (ohne picture_hex und Datei).
+     *
+     * @param submarineId ID des Submarines
+     * @param duplicateOf Schlüssel des gespeicherten Bildes aus {@link #savePicture}
+     * @param contentHash Inhalts-Hash der PNG-Bytes
+     * @param perceptualHash dHash des Bildes (0, wenn das Bild nicht dekodiert wurde)
+     */
+    public void savePictureReference(String submarineId, long duplicateOf, long contentHash, long perceptualHash) {
+        if (duplicateOf == 0) return;
+        write("savePictureReference", new JSONObject()
+                .put("submarineId", submarineId)
+                .put("duplicateOf", duplicateOf)
+                .put("contentHash", contentHash)
+                .put("perceptualHash", perceptualHash), null);
+    }
+
+    private void insertPictureReference(Connection c, JSONObject a, Timestamp at) throws SQLException {
+        long duplicateOf = a.getLong("duplicateOf");
+        if (duplicateOf < 0) {
+            // Original kam über das Journal: seine Zeile steht in journal_applied
+            duplicateOf = appliedRowId(c, -duplicateOf);
+            if (duplicateOf <= 0) {
+                AsyncLog.warn("db.picture", "Submarine %s: Original des Bildverweises nicht gespeichert, Verweis entfällt",
+                        a.getString("submarineId"));
+                return;
+            }
+        }
+
+        String sql = """
+            INSERT INTO submarine_pictures
+            (submarine_id, duplicate_of, content_hash, perceptual_hash, recorded_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
+            stmt.setString(1, a.getString("submarineId"));
+            stmt.setLong(2, duplicateOf);
+            stmt.setLong(3, a.getLong("contentHash"));
+            stmt.setLong(4, a.getLong("perceptualHash"));
+            stmt.setTimestamp(5, at);
+            stmt.executeUpdate();
+        }
+    }
+
+    // ID der Zeile, die das Journal-Ereignis seq angelegt hat (0, wenn unbekannt)
+    private long appliedRowId(Connection c, long seq) throws SQLException {
+        if (journal == null) return 0;
+        try (PreparedStatement stmt = c.prepareStatement(
+                "SELECT row_id FROM journal_applied WHERE journal_id = ? AND seq = ?")) {
+            stmt.setString(1, journal.id());
+            stmt.setLong(2, seq);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
         }
     }
 
@@ -262,25 +704,36 @@ public class SubmarineRepository {
      * @return JSONObject mit picture_hex und captured_at, oder null
      */
     public JSONObject getLatestPicture(String submarineId) {
-        ensureConnection();
-        if (connection == null) return null;
+        Connection c = connection();
+        if (c == null) return null;
 
-        String sql = "SELECT picture_hex, captured_at FROM submarine_pictures WHERE submarine_id = ? ORDER BY captured_at DESC LIMIT 1";
+        // Verweise (duplicate_of) liefern die Daten des referenzierten Bildes
+        String sql = """
+            SELECT COALESCE(p.picture_hex, r.picture_hex) AS picture_hex, p.recorded_at AS captured_at
+            FROM submarine_pictures p
+            LEFT JOIN submarine_pictures r ON r.id = p.duplicate_of
+            WHERE p.submarine_id = ? ORDER BY p.recorded_at DESC LIMIT 1
+            """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    JSONObject result = new JSONObject();
-                    result.put("picture_hex", rs.getString("picture_hex"));
-                    result.put("captured_at", rs.getTimestamp("captured_at").getTime());
-                    return result;
+        try {
+            return query("getLatestPicture", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql)) {
+                    stmt.setString(1, submarineId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            JSONObject result = new JSONObject();
+                            result.put("picture_hex", rs.getString("picture_hex"));
+                            result.put("captured_at", rs.getTimestamp("captured_at").getTime());
+                            return result;
+                        }
+                    }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Abrufen des letzten Bildes: " + e.getMessage());
+            return null;
         }
-        return null;
     }
 
     /**
@@ -289,24 +742,34 @@ public class SubmarineRepository {
      * @return JSONObject mit submarine_id, picture_hex und captured_at, oder null
      */
     public JSONObject getLatestPictureAny() {
-        ensureConnection();
-        if (connection == null) return null;
-
-        String sql = "SELECT submarine_id, picture_hex, captured_at FROM submarine_pictures ORDER BY captured_at DESC LIMIT 1";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                JSONObject result = new JSONObject();
-                result.put("submarine_id", rs.getString("submarine_id"));
-                result.put("picture_hex", rs.getString("picture_hex"));
-                result.put("captured_at", rs.getTimestamp("captured_at").getTime());
-                return result;
-            }
+        Connection c = connection();
+        if (c == null) return null;
+
+        String sql = """
+            SELECT p.submarine_id, COALESCE(p.picture_hex, r.picture_hex) AS picture_hex, p.recorded_at AS captured_at
+            FROM submarine_pictures p
+            LEFT JOIN submarine_pictures r ON r.id = p.duplicate_of
+            ORDER BY p.recorded_at DESC LIMIT 1
+            """;
+
+        try {
+            return query("getLatestPictureAny", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        JSONObject result = new JSONObject();
+                        result.put("submarine_id", rs.getString("submarine_id"));
+                        result.put("picture_hex", rs.getString("picture_hex"));
+                        result.put("captured_at", rs.getTimestamp("captured_at").getTime());
+                        return result;
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Abrufen des letzten Bildes: " + e.getMessage());
+            return null;
         }
-        return null;
     }
 
     // ========================================================================
@@ -314,7 +777,7 @@ public class SubmarineRepository {
     // ========================================================================
 
     /**
-     * Speichert ein Crash-Ereignis.
+     * Speichert ein Crash-Ereignis und setzt den Status auf crashed.
      * 
      * @param submarineId ID des Submarines
      * @param message Crash-Nachricht
@@ -322,16 +785,32 @@ public class SubmarineRepository {
      * @param sunkPos Position des Absturzes (kann null sein)
      */
     public void saveCrash(String submarineId, String message, Vec2D sector, Vec sunkPos) {
-        ensureConnection();
-        if (connection == null) return;
+        JSONObject args = new JSONObject()
+                .put("submarineId", submarineId)
+                .put("message", message);
+        if (sector != null) {
+            args.put("sector", sector.toJsonArray());
+        }
+        if (sunkPos != null) {
+            args.put("sunkPos", sunkPos.toJsonArray());
+        }
+        write("saveCrash", args, null);
+    }
 
+    private static void insertCrash(Connection c, JSONObject a, Timestamp at) throws SQLException {
         String sql = """
             INSERT INTO submarine_crashes 
-            (submarine_id, message, sector_x, sector_y, sunk_pos_x, sunk_pos_y, sunk_pos_z)
-            VALUES (?, ?, ?, ?, ?, ?, ?)
+            (submarine_id, message, sector_x, sector_y, sunk_pos_x, sunk_pos_y, sunk_pos_z, crashed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        String submarineId = a.getString("submarineId");
+        String message = a.optString("message", null);
+        JSONArray sectorJson = a.optJSONArray("sector");
+        Vec2D sector = sectorJson != null ? Vec2D.fromJson(sectorJson) : null;
+        JSONArray sunkJson = a.optJSONArray("sunkPos");
+        Vec sunkPos = sunkJson != null ? Vec.fromJson(sunkJson) : null;
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
             stmt.setString(1, submarineId);
             stmt.setString(2, message);
             
@@ -352,15 +831,14 @@ public class SubmarineRepository {
                 stmt.setNull(6, Types.DOUBLE);
                 stmt.setNull(7, Types.DOUBLE);
             }
+            stmt.setTimestamp(8, at);
             
             stmt.executeUpdate();
-            System.out.printf("Submarine %s: Crash gespeichert - %s%n", submarineId, message);
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern des Crashs: " + e.getMessage());
+            AsyncLog.info("db.crash", "Submarine %s: Crash gespeichert - %s", submarineId, message);
         }
 
         // Status aktualisieren
-        updateSubmarineStatus(submarineId, "crashed");
+        updateStatus(c, submarineId, "crashed", at);
     }
 
     // ========================================================================
@@ -368,18 +846,29 @@ public class SubmarineRepository {
     // ========================================================================
 
     /**
-     * Speichert ein Arise-Ereignis (Submarine taucht auf).
+     * Speichert ein Arise-Ereignis (Submarine taucht auf) und setzt den Status auf surfaced.
      * 
      * @param submarineId ID des Submarines
      * @param arisePos Position des Auftauchens
      */
     public void saveArise(String submarineId, Vec arisePos) {
-        ensureConnection();
-        if (connection == null) return;
+        JSONObject args = new JSONObject().put("submarineId", submarineId);
+        if (arisePos != null) {
+            args.put("arisePos", arisePos.toJsonArray());
+        }
+        write("saveArise", args, null);
+    }
 
-        String sql = "INSERT INTO submarine_arises (submarine_id, arise_pos_x, arise_pos_y, arise_pos_z) VALUES (?, ?, ?, ?)";
+    private static void insertArise(Connection c, JSONObject a, Timestamp at) throws SQLException {
+        String sql = """
+            INSERT INTO submarine_arises (submarine_id, arise_pos_x, arise_pos_y, arise_pos_z, arisen_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        String submarineId = a.getString("submarineId");
+        JSONArray posJson = a.optJSONArray("arisePos");
+        Vec arisePos = posJson != null ? Vec.fromJson(posJson) : null;
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
             stmt.setString(1, submarineId);
             
             if (arisePos != null) {
@@ -391,15 +880,14 @@ public class SubmarineRepository {
                 stmt.setNull(3, Types.DOUBLE);
                 stmt.setNull(4, Types.DOUBLE);
             }
+            stmt.setTimestamp(5, at);
             
             stmt.executeUpdate();
-            System.out.printf("Submarine %s: Arise gespeichert%n", submarineId);
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern des Arise-Events: " + e.getMessage());
+            AsyncLog.info("db.arise", "Submarine %s: Arise gespeichert", submarineId);
         }
 
         // Status aktualisieren
-        updateSubmarineStatus(submarineId, "surfaced");
+        updateStatus(c, submarineId, "surfaced", at);
     }
 
     // ========================================================================
@@ -413,22 +901,24 @@ public class SubmarineRepository {
      * @return Anzahl der Messpunkte
      */
     public int getMeasurementCount(String submarineId) {
-        ensureConnection();
-        if (connection == null) return 0;
+        Connection c = connection();
+        if (c == null) return 0;
 
         String sql = "SELECT COUNT(*) FROM measurements WHERE submarine_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+        try {
+            return query("getMeasurementCount", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql)) {
+                    stmt.setString(1, submarineId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
                 }
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Zählen der Messpunkte: " + e.getMessage());
+            return 0;
         }
-        return 0;
     }
 
     /**
@@ -438,28 +928,33 @@ public class SubmarineRepository {
      * @return JSONArray mit allen Messpunkten
      */
     public JSONArray getMeasurements(String submarineId) {
-        ensureConnection();
+        Connection c = connection();
         JSONArray result = new JSONArray();
-        if (connection == null) return result;
+        if (c == null) return result;
 
         String sql = "SELECT vec_x, vec_y, vec_z, recorded_at FROM measurements WHERE submarine_id = ? ORDER BY recorded_at";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, submarineId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    JSONObject point = new JSONObject();
-                    point.put("x", rs.getDouble("vec_x"));
-                    point.put("y", rs.getDouble("vec_y"));
-                    point.put("z", rs.getDouble("vec_z"));
-                    point.put("recorded_at", rs.getTimestamp("recorded_at").toString());
-                    result.put(point);
+        try {
+            return query("getMeasurements", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql)) {
+                    stmt.setString(1, submarineId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            JSONObject point = new JSONObject();
+                            point.put("x", rs.getDouble("vec_x"));
+                            point.put("y", rs.getDouble("vec_y"));
+                            point.put("z", rs.getDouble("vec_z"));
+                            point.put("recorded_at", rs.getTimestamp("recorded_at").toString());
+                            result.put(point);
+                        }
+                    }
                 }
-            }
+                return result;
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Abrufen der Messpunkte: " + e.getMessage());
+            return result;
         }
-        return result;
     }
 
     /**
@@ -468,21 +963,26 @@ public class SubmarineRepository {
      * @return Liste der Submarine-IDs
      */
     public List<String> getActiveSubmarines() {
-        ensureConnection();
+        Connection c = connection();
         List<String> result = new ArrayList<>();
-        if (connection == null) return result;
+        if (c == null) return result;
 
         String sql = "SELECT id FROM submarines WHERE status = 'active'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                result.add(rs.getString("id"));
-            }
+        try {
+            return query("getActiveSubmarines", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString("id"));
+                    }
+                }
+                return result;
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Abrufen aktiver Submarines: " + e.getMessage());
+            return result;
         }
-        return result;
     }
 
     /**
@@ -491,19 +991,21 @@ public class SubmarineRepository {
      * @return Gesamtzahl der Messpunkte
      */
     public int getTotalMeasurementCount() {
-        ensureConnection();
-        if (connection == null) return 0;
+        Connection c = connection();
+        if (c == null) return 0;
 
         String sql = "SELECT COUNT(*) FROM measurements";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+        try {
+            return query("getTotalMeasurementCount", () -> {
+                try (PreparedStatement stmt = c.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Fehler beim Zählen aller Messpunkte: " + e.getMessage());
+            return 0;
         }
-        return 0;
     }
 }
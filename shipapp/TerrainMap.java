@@ -0,0 +1,198 @@
+package shipapp;
+
+import ocean.Ground;
+import ocean.LongIntMap;
+import ocean.PackedVec2D;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Karte der bekannten Sektoren, aufgebaut aus den Radar-Echos der Schiffe.
+ *
+ * Pro Sektor werden Untergrund ({@link Ground}) und Höhe gespeichert, gepackt in
+ * einen int-Wert einer primitiven Map (Schlüssel: {@link PackedVec2D}).
+ * Threadsicher; im Fleet-Modus teilen sich alle Schiffe eine Instanz.
+ */
+public class TerrainMap {
+
+    private static final int UNKNOWN = -1;
+
+    private final LongIntMap cells = new LongIntMap(1024, UNKNOWN);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // wird bei jeder Änderung erhöht (Zwischenspeicher der Routenplanung)
+    private volatile long version;
+
+    /**
+     * Übernimmt alle Echos einer radarresponse-Nachricht.
+     *
+     * @param echos JSONArray mit Einträgen {sector, height, ground}
+     */
+    public void recordEchos(JSONArray echos) {
+        if (echos == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < echos.length(); i++) {
+                JSONObject echo = echos.optJSONObject(i);
+                if (echo == null || echo.optJSONObject("sector") == null) {
+                    continue;
+                }
+                Vec2D sector = Vec2D.fromJson(echo.getJSONObject("sector"));
+                if (sector == null) {
+                    continue;
+                }
+                Ground ground = parseGround(echo.optString("ground", Ground.None.name()));
+                cells.put(sector.toPacked(), encode(ground, echo.optInt("height", 0)));
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void record(int x, int y, Ground ground, int height) {
+        lock.writeLock().lock();
+        try {
+            cells.put(PackedVec2D.pack(x, y), encode(ground, height));
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Untergrund des Sektors oder {@link Ground#None}, falls unbekannt
+     */
+    public Ground getGround(int x, int y) {
+        int v = get(x, y);
+        return v == UNKNOWN ? Ground.None : Ground.values()[v & 0xF];
+    }
+
+    /**
+     * @return Höhe des Sektors oder 0, falls unbekannt
+     */
+    public int getHeight(int x, int y) {
+        int v = get(x, y);
+        return v == UNKNOWN ? 0 : v >> 4;
+    }
+
+    public boolean isKnown(int x, int y) {
+        return get(x, y) != UNKNOWN;
+    }
+
+    /**
+     * Änderungszähler; gleicher Wert bedeutet unveränderte Karte.
+     */
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cells.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Begrenzungsrechteck aller bekannten Sektoren.
+     *
+     * @return {minX, minY, maxX, maxY} oder null, solange nichts bekannt ist
+     */
+    public int[] bounds() {
+        int[] b = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        lock.readLock().lock();
+        try {
+            cells.forEach((key, value) -> {
+                int x = PackedVec2D.x(key);
+                int y = PackedVec2D.y(key);
+                b[0] = Math.min(b[0], x);
+                b[1] = Math.min(b[1], y);
+                b[2] = Math.max(b[2], x);
+                b[3] = Math.max(b[3], y);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return b[0] <= b[2] ? b : null;
+    }
+
+    /**
+     * Untergrund eines Rechtecks unter einer einzigen Lesesperre (für die Routenplanung).
+     *
+     * @return Ground-Ordinal je Sektor, zeilenweise ab (minX, minY); unbekannt = {@link Ground#None}
+     */
+    public byte[] groundGrid(int minX, int minY, int width, int height) {
+        byte[] grid = new byte[width * height];
+        Arrays.fill(grid, (byte) Ground.None.ordinal());
+        lock.readLock().lock();
+        try {
+            if ((long) width * height > cells.size()) {
+                cells.forEach((key, value) -> {
+                    int x = PackedVec2D.x(key) - minX;
+                    int y = PackedVec2D.y(key) - minY;
+                    if (x >= 0 && y >= 0 && x < width && y < height) {
+                        grid[y * width + x] = (byte) (value & 0xF);
+                    }
+                });
+            } else {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int v = cells.get(PackedVec2D.pack(minX + x, minY + y));
+                        if (v != UNKNOWN) {
+                            grid[y * width + x] = (byte) (v & 0xF);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return grid;
+    }
+
+    public JSONObject toJson() {
+        JSONArray sectors = new JSONArray();
+        lock.readLock().lock();
+        try {
+            cells.forEach((key, value) -> sectors.put(new JSONObject()
+                    .put("x", PackedVec2D.x(key))
+                    .put("y", PackedVec2D.y(key))
+                    .put("ground", Ground.values()[value & 0xF].name())
+                    .put("height", value >> 4)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new JSONObject().put("count", sectors.length()).put("sectors", sectors);
+    }
+
+    private int get(int x, int y) {
+        lock.readLock().lock();
+        try {
+            return cells.get(PackedVec2D.pack(x, y));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // untere 4 Bit: Ground-Ordinal, Rest: Höhe (mit Vorzeichen)
+    private static int encode(Ground ground, int height) {
+        return (height << 4) | ground.ordinal();
+    }
+
+    private static Ground parseGround(String name) {
+        try {
+            return Ground.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return Ground.None;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package shipapp;
+
+import ocean.Vec;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Die letzten Positionen jedes Submarines im Speicher, für GET /api/submarine/track.
+ *
+ * Jede ready-Nachricht landet (zusätzlich zur Tabelle submarine_positions) im
+ * Ringpuffer ihres Submarines. Die Puffer liegen außerhalb des Java-Heaps
+ * (direkter ByteBuffer, ein Datensatz aus Zeitstempel, x, y, z, depth und distance
+ * je 32 Bytes), der Garbage Collector muss sie also nicht durchsuchen. Ist ein
+ * Puffer voll, wird die älteste Position überschrieben.
+ *
+ * Beim Abruf wird die Spur mit dem Douglas-Peucker-Verfahren vereinfacht: Punkte,
+ * die weniger als tolerance von der Verbindungslinie ihrer Nachbarn abweichen,
+ * entfallen. So kann die UI lange Spuren zeichnen, ohne tausende Zeilen zu laden.
+ *
+ * Konfiguration über System-Properties:
+ *   -Dshipapp.track.capacity=n         (Positionen je Submarine, Standard 4096)
+ *   -Dshipapp.track.maxSubmarines=n    (Anzahl Spuren, die am längsten unbenutzte fällt weg, Standard 256)
+ */
+public class TrackStore {
+
+    private static final int RECORD_BYTES = 32;
+    private static final int OFF_TIME = 0;
+    private static final int OFF_X = 8;
+    private static final int OFF_Y = 12;
+    private static final int OFF_Z = 16;
+    private static final int OFF_DEPTH = 20;
+    private static final int OFF_DISTANCE = 24;
+
+    private static final Metrics.Counter POINTS = Metrics.counter(
+            "shipapp_track_points_total", "In den Spurspeicher geschriebene Positionen").labels();
+    private static final AtomicLong OFF_HEAP_BYTES = new AtomicLong();
+
+    static {
+        Metrics.gauge("shipapp_track_offheap_bytes", "Belegter Speicher der Spur-Ringpuffer außerhalb des Heaps",
+                OFF_HEAP_BYTES::get);
+    }
+
+    private final int capacity;
+    private final int maxSubmarines;
+
+    // Zugriffsreihenfolge: die zuletzt benutzte Spur steht hinten
+    private final LinkedHashMap<String, Track> tracks = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TrackStore() {
+        this(Integer.getInteger("shipapp.track.capacity", 4096),
+                Integer.getInteger("shipapp.track.maxSubmarines", 256));
+    }
+
+    public TrackStore(int capacity, int maxSubmarines) {
+        this.capacity = Math.max(2, capacity);
+        this.maxSubmarines = Math.max(1, maxSubmarines);
+    }
+
+    /**
+     * Hängt eine Position an die Spur des Submarines an.
+     */
+    public void add(String submarineId, long timestamp, Vec pos, int depth, int distance) {
+        if (submarineId == null || pos == null) {
+            return;
+        }
+        Track track;
+        synchronized (tracks) {
+            track = tracks.get(submarineId);
+            if (track == null) {
+                track = new Track(capacity);
+                tracks.put(submarineId, track);
+                Iterator<Track> it = tracks.values().iterator();
+                while (tracks.size() > maxSubmarines && it.hasNext()) {
+                    it.next().release();
+                    it.remove();
+                }
+            }
+        }
+        track.add(timestamp, pos.getX(), pos.getY(), pos.getZ(), depth, distance);
+        POINTS.inc();
+    }
+
+    /**
+     * Spur eines Submarines ab einem Zeitpunkt, vereinfacht mit Douglas-Peucker.
+     *
+     * @param fromMillis nur Positionen ab diesem Zeitpunkt (0 = alle)
+     * @param tolerance  maximale Abweichung in Koordinaten-Einheiten (0 = nur exakt
+     *                   kollineare Punkte entfallen)
+     * @return JSON mit den verbleibenden Punkten oder null, wenn es keine Spur gibt
+     */
+    public JSONObject track(String submarineId, long fromMillis, double tolerance) {
+        Track track;
+        synchronized (tracks) {
+            track = tracks.get(submarineId);
+        }
+        if (track == null) {
+            return null;
+        }
+        Snapshot s = track.snapshot(fromMillis);
+        boolean[] keep = simplify(s, tolerance);
+
+        JSONArray points = new JSONArray();
+        for (int i = 0; i < s.n; i++) {
+            if (keep[i]) {
+                points.put(new JSONObject()
+                        .put("t", s.t[i])
+                        .put("x", s.x[i])
+                        .put("y", s.y[i])
+                        .put("z", s.z[i])
+                        .put("depth", s.depth[i])
+                        .put("distance", s.distance[i]));
+            }
+        }
+        return new JSONObject()
+                .put("id", submarineId)
+                .put("from", fromMillis)
+                .put("tolerance", tolerance)
+                .put("total", s.n)
+                .put("count", points.length())
+                .put("track", points);
+    }
+
+    // ------------------------------------------------------------
+    // Douglas-Peucker
+    // ------------------------------------------------------------
+
+    // iterativ mit eigenem Stapel, damit lange Spuren keinen Stack-Overflow auslösen
+    static boolean[] simplify(Snapshot s, double tolerance) {
+        boolean[] keep = new boolean[s.n];
+        if (s.n <= 2) {
+            Arrays.fill(keep, true);
+            return keep;
+        }
+        keep[0] = true;
+        keep[s.n - 1] = true;
+        double tolSq = tolerance * tolerance;
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[] { 0, s.n - 1 });
+        while (!stack.isEmpty()) {
+            int[] range = stack.pop();
+            int first = range[0];
+            int last = range[1];
+            int index = -1;
+            double maxSq = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceSq(s, i, first, last);
+                if (d > maxSq) {
+                    maxSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxSq > tolSq) {
+                keep[index] = true;
+                stack.push(new int[] { first, index });
+                stack.push(new int[] { index, last });
+            }
+        }
+        return keep;
+    }
+
+    // Quadrat des Abstands von Punkt p zur Strecke a-b (3D)
+    private static double distanceSq(Snapshot s, int p, int a, int b) {
+        double ax = s.x[a], ay = s.y[a], az = s.z[a];
+        double dx = s.x[b] - ax, dy = s.y[b] - ay, dz = s.z[b] - az;
+        double px = s.x[p] - ax, py = s.y[p] - ay, pz = s.z[p] - az;
+        double lenSq = dx * dx + dy * dy + dz * dz;
+        double u = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy + pz * dz) / lenSq));
+        double ex = px - u * dx, ey = py - u * dy, ez = pz - u * dz;
+        return ex * ex + ey * ey + ez * ez;
+    }
+
+    // ------------------------------------------------------------
+    // Ringpuffer
+    // ------------------------------------------------------------
+
+    /**
+     * Kopie eines Ausschnitts der Spur in Arrays, in zeitlicher Reihenfolge.
+     */
+    static final class Snapshot {
+        final int n;
+        final long[] t;
+        final int[] x;
+        final int[] y;
+        final int[] z;
+        final int[] depth;
+        final int[] distance;
+
+        Snapshot(int n) {
+            this.n = n;
+            t = new long[n];
+            x = new int[n];
+            y = new int[n];
+            z = new int[n];
+            depth = new int[n];
+            distance = new int[n];
+        }
+    }
+
+    private static final class Track {
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private long written;
+
+        Track(int capacity) {
+            this.capacity = capacity;
+            this.buffer = ByteBuffer.allocateDirect(capacity * RECORD_BYTES).order(ByteOrder.nativeOrder());
+            OFF_HEAP_BYTES.addAndGet(buffer.capacity());
+        }
+
+        // der Speicher selbst wird freigegeben, sobald der GC den Puffer einsammelt
+        void release() {
+            OFF_HEAP_BYTES.addAndGet(-buffer.capacity());
+        }
+
+        synchronized void add(long timestamp, int x, int y, int z, int depth, int distance) {
+            int base = (int) (written % capacity) * RECORD_BYTES;
+            buffer.putLong(base + OFF_TIME, timestamp);
+            buffer.putInt(base + OFF_X, x);
+            buffer.putInt(base + OFF_Y, y);
+            buffer.putInt(base + OFF_Z, z);
+            buffer.putInt(base + OFF_DEPTH, depth);
+            buffer.putInt(base + OFF_DISTANCE, distance);
+            written++;
+        }
+
+        synchronized Snapshot snapshot(long fromMillis) {
+            int count = (int) Math.min(written, capacity);
+            long oldest = written - count;
+            // Zeitstempel steigen, daher den ersten passenden Datensatz binär suchen
+            long lo = oldest;
+            long hi = written;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (buffer.getLong(offset(mid) + OFF_TIME) < fromMillis) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            Snapshot s = new Snapshot((int) (written - lo));
+            for (int i = 0; i < s.n; i++) {
+                int base = offset(lo + i);
+                s.t[i] = buffer.getLong(base + OFF_TIME);
+                s.x[i] = buffer.getInt(base + OFF_X);
+                s.y[i] = buffer.getInt(base + OFF_Y);
+                s.z[i] = buffer.getInt(base + OFF_Z);
+                s.depth[i] = buffer.getInt(base + OFF_DEPTH);
+                s.distance[i] = buffer.getInt(base + OFF_DISTANCE);
+            }
+            return s;
+        }
+
+        private int offset(long seq) {
+            return (int) (seq % capacity) * RECORD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package simulator;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sendet Zeilen einer Verbindung mit künstlicher Verzögerung (latency + zufälliger jitter).
+ *
+ * Die Reihenfolge der Nachrichten bleibt erhalten: Jede Nachricht ist frühestens
+ * zum Zeitpunkt ihrer Vorgängerin fällig. Ohne Verzögerung wird direkt geschrieben.
+ */
+class DelayedWriter {
+
+    private final PrintWriter out;
+    private final ScheduledExecutorService scheduler;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final Random random;
+
+    private final ArrayDeque<Object[]> queue = new ArrayDeque<>();
+    private long lastDue;
+
+    DelayedWriter(PrintWriter out, ScheduledExecutorService scheduler, long latencyMs, long jitterMs, Random random) {
+        this.out = out;
+        this.scheduler = scheduler;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMs);
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMs);
+        this.random = random;
+    }
+
+    void send(String line) {
+        if (latencyNanos == 0 && jitterNanos == 0) {
+            synchronized (out) {
+                out.println(line);
+            }
+            return;
+        }
+        long delay;
+        synchronized (queue) {
+            long jitter = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+            long due = Math.max(System.nanoTime() + latencyNanos + jitter, lastDue);
+            lastDue = due;
+            queue.add(new Object[] { due, line });
+            delay = due - System.nanoTime();
+        }
+        scheduler.schedule(this::drain, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    // schreibt alle fälligen Nachrichten in Reihenfolge
+    private void drain() {
+        synchronized (out) {
+            while (true) {
+                String line;
+                synchronized (queue) {
+                    Object[] head = queue.peek();
+                    if (head == null || (long) head[0] > System.nanoTime()) {
+                        break;
+                    }
+                    queue.poll();
+                    line = (String) head[1];
+                }
+                out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package simulator;
+
+import ocean.Course;
+import ocean.Ground;
+import ocean.PackedVec2D;
+import ocean.Rudder;
+import ocean.SectorNeighbourhood;
+import ocean.ShipKinematics;
+import ocean.Vec;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless Ersatz für den Ocean-Server (oceanstarter.jar) für Last- und Latenztests.
+ *
+ * Der Ship-Port spricht das Schiffsprotokoll (launch, navigate, scan, radar, exit bzw.
+ * launched, move2d, scanned, radarresponse, crash, message), ohne Begrenzung der
+ * Schiffszahl. Das Gelände ist synthetisch ({@link SimTerrain}), optional mit den
+ * Wracks aus meer_objects.data. Jede Antwort kann mit fester Latenz und Jitter
+ * verzögert werden.
+ *
+ * Zusätzlich kann der Simulator selbst Last erzeugen:
+ * - virtuelle Schiffe ({@link VirtualShip}) gegen den eigenen Ship-Port,
+ * - virtuelle Submarines ({@link VirtualSubmarine}) gegen den Submarine-Server
+ *   einer laufenden ShipApp (Port 6000).
+ * Alle Zufallswerte hängen nur vom Seed ab (je Schiff-Verbindung seed ^ laufende Nummer der Verbindung).
+ *
+ * Aufruf (alle Optionen optional):
+ *   java simulator.OceanSimulator -shipport=8150 -subport=8151 -seed=42 -size=100
+ *        -objects=meer_objects.data -latency=0 -jitter=0
+ *        -ships=0 -shiprate=2 -subs=0 -subrate=1 -subhost=localhost -subserverport=6000
+ *        -stats=5 -duration=0
+ */
+public class OceanSimulator {
+
+    private final SimTerrain terrain;
+    private final long seed;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final SimStats stats = new SimStats();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    // fortlaufende Nummern je Port, werden nie zurückgezählt (Zufallsstrom je Schiff: seed ^ Nummer)
+    private final AtomicInteger shipConnections = new AtomicInteger();
+    private final AtomicInteger subConnections = new AtomicInteger();
+    private final AtomicInteger shipIds = new AtomicInteger();
+    private final AtomicInteger activeShips = new AtomicInteger();
+
+    private volatile boolean running = true;
+    private ServerSocket shipServer;
+    private ServerSocket subServer;
+
+    public OceanSimulator(SimTerrain terrain, long seed, long latencyMs, long jitterMs) {
+        this.terrain = terrain;
+        this.seed = seed;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "OceanSimulator-Send");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        long seed = Long.parseLong(opts.getOrDefault("seed", "42"));
+        int size = Integer.parseInt(opts.getOrDefault("size", "100"));
+        int shipPort = Integer.parseInt(opts.getOrDefault("shipport", "8150"));
+        int subPort = Integer.parseInt(opts.getOrDefault("subport", "8151"));
+
+        SimTerrain terrain = new SimTerrain(size, size, seed);
+        String objects = opts.get("objects");
+        if (objects != null && Files.exists(Path.of(objects))) {
+            System.out.printf("Wracks geladen: %d (%s)%n", terrain.loadObjects(Path.of(objects)), objects);
+        }
+
+        OceanSimulator sim = new OceanSimulator(terrain, seed,
+                Long.parseLong(opts.getOrDefault("latency", "0")),
+                Long.parseLong(opts.getOrDefault("jitter", "0")));
+        sim.start(shipPort, subPort);
+        System.out.printf("OceanSimulator gestartet: Ship-Port=%d, Submarine-Port=%d, Gitter=%dx%d, Seed=%d%n",
+                shipPort, subPort, size, size, seed);
+
+        int ships = Integer.parseInt(opts.getOrDefault("ships", "0"));
+        double shipRate = Double.parseDouble(opts.getOrDefault("shiprate", "2"));
+        for (int i = 0; i < ships; i++) {
+            sim.startDriver(new VirtualShip(i, "localhost", shipPort, terrain, seed ^ i, shipRate, sim.stats,
+                    () -> sim.running), "VirtualShip-" + i);
+        }
+
+        int subs = Integer.parseInt(opts.getOrDefault("subs", "0"));
+        double subRate = Double.parseDouble(opts.getOrDefault("subrate", "1"));
+        String subHost = opts.getOrDefault("subhost", "localhost");
+        int subServerPort = Integer.parseInt(opts.getOrDefault("subserverport", "6000"));
+        for (int i = 0; i < subs; i++) {
+            sim.startDriver(new VirtualSubmarine(i, subHost, subServerPort, terrain, seed ^ (0x5B00_0000L + i),
+                    subRate, sim.stats, () -> sim.running), "VirtualSubmarine-" + i);
+        }
+
+        long statsSec = Long.parseLong(opts.getOrDefault("stats", "5"));
+        if (statsSec > 0) {
+            sim.scheduler.scheduleAtFixedRate(() -> System.out.println(sim.statusLine(statsSec * 1000)),
+                    statsSec, statsSec, TimeUnit.SECONDS);
+        }
+
+        long duration = Long.parseLong(opts.getOrDefault("duration", "0"));
+        if (duration > 0) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+            sim.stop();
+            System.out.println("Ende: " + sim.statusLine(0));
+            System.exit(0);
+        }
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Öffnet Ship- und Submarine-Port und nimmt Verbindungen im Hintergrund an.
+     */
+    public void start(int shipPort, int subPort) throws IOException {
+        shipServer = new ServerSocket(shipPort, 1024);
+        subServer = new ServerSocket(subPort, 1024);
+        startDriver(() -> acceptLoop(shipServer, true), "OceanSimulator-ShipAccept");
+        startDriver(() -> acceptLoop(subServer, false), "OceanSimulator-SubAccept");
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            shipServer.close();
+            subServer.close();
+        } catch (IOException ignored) {
+        }
+        scheduler.shutdownNow();
+    }
+
+    public SimStats getStats() {
+        return stats;
+    }
+
+    String statusLine(long intervalMs) {
+        return String.format("[sim] verbindungen=%d schiffe=%d  %s",
+                connectionCount.get(), activeShips.get(), stats.report(intervalMs));
+    }
+
+    // Threads mit kleinem Stack, damit tausende Verbindungen möglich sind
+    private void startDriver(Runnable r, String name) {
+        Thread t = new Thread(null, r, name, 256 * 1024);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void acceptLoop(ServerSocket server, boolean ships) {
+        while (running && !server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                connectionCount.incrementAndGet();
+                if (ships) {
+                    int index = shipConnections.getAndIncrement();
+                    startDriver(new ShipSession(s, index), "OceanSimulator-Ship-" + index);
+                } else {
+                    startDriver(() -> submarineSession(s), "OceanSimulator-Sub-" + subConnections.getAndIncrement());
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("OceanSimulator: Fehler beim Annehmen: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Submarine-Port: Das Protokoll zwischen submarine.jar und Ocean-Server ist nicht
+    // Teil dieses Projekts. Nachrichten werden nur gezählt, damit Submarines nicht hängen.
+    private void submarineSession(Socket socket) {
+        try (socket; BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (running && (line = in.readLine()) != null) {
+                String cmd = line.isBlank() ? "" : new JSONObject(line).optString("cmd", "?");
+                stats.count("oceansub." + cmd);
+            }
+        } catch (Exception ignored) {
+        } finally {
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Schiff-Verbindung
+    // ------------------------------------------------------------
+
+    private class ShipSession implements Runnable {
+
+        private final Socket socket;
+        private final Random random;
+        private DelayedWriter out;
+
+        private String id;
+        private long sector;
+        private int dir;
+        private boolean launched;
+
+        ShipSession(Socket socket, int index) {
+            this.socket = socket;
+            this.random = new Random(seed ^ index);
+        }
+
+        @Override
+        public void run() {
+            try (socket; BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                out = new DelayedWriter(new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8),
+                        scheduler, latencyMs, jitterMs, random);
+                String line;
+                while (running && (line = in.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    if (!handle(new JSONObject(line))) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                stats.count("ship.error");
+            } finally {
+                if (launched) {
+                    activeShips.decrementAndGet();
+                }
+                connectionCount.decrementAndGet();
+            }
+        }
+
+        // false = Verbindung beenden
+        private boolean handle(JSONObject msg) {
+            String cmd = msg.optString("cmd", "");
+            stats.count("ship." + cmd);
+            switch (cmd) {
+                case "launch" -> launch(msg);
+                case "navigate" -> navigate(msg);
+                case "scan" -> scan();
+                case "radar" -> radar();
+                case "exit" -> {
+                    return false;
+                }
+                default -> sendMessage("error", "Unbekannter Befehl: " + cmd);
+            }
+            return true;
+        }
+
+        private void launch(JSONObject msg) {
+            if (launched) {
+                sendMessage("error", "Schiff ist bereits gestartet");
+                return;
+            }
+            Vec2D s = msg.optJSONObject("sector") != null ? Vec2D.fromJson(msg.getJSONObject("sector")) : null;
+            Vec2D d = msg.optJSONObject("dir") != null ? Vec2D.fromJson(msg.getJSONObject("dir")) : null;
+            int dirIndex = d != null ? ShipKinematics.dirIndex(d.getX(), d.getY()) : -1;
+            if (s == null || dirIndex < 0) {
+                sendMessage("error", "launch: sector/dir ungueltig");
+                return;
+            }
+            if (!terrain.isNavigable(s.getX(), s.getY())) {
+                sendMessage("error", "launch: Sektor " + s + " ist nicht befahrbar (" + terrain.groundAt(s.getX(), s.getY()) + ")");
+                return;
+            }
+            id = "sim-" + shipIds.incrementAndGet();
+            sector = s.toPacked();
+            dir = dirIndex;
+            launched = true;
+            activeShips.incrementAndGet();
+            send(new JSONObject()
+                    .put("cmd", "launched")
+                    .put("id", id)
+                    .put("sector", s.toJson())
+                    .put("abspos", absPos(sector).toJson()));
+        }
+
+        private void navigate(JSONObject msg) {
+            if (!checkLaunched()) {
+                return;
+            }
+            Rudder rudder = parse(Rudder.class, msg.optString("rudder"), Rudder.Center);
+            Course course = parse(Course.class, msg.optString("course"), Course.Forward);
+            long next = ShipKinematics.step(sector, dir, rudder, course);
+            dir = ShipKinematics.turn(dir, rudder);
+            int x = PackedVec2D.x(next);
+            int y = PackedVec2D.y(next);
+            if (!terrain.isNavigable(x, y)) {
+                Ground ground = terrain.groundAt(x, y);
+                Vec2D abs = absPos(next);
+                send(new JSONObject()
+                        .put("cmd", "crash")
+                        .put("message", ground == Ground.None ? "Schiff hat das Meer verlassen" : "Schiff auf " + ground + " gelaufen")
+                        .put("sector", PackedVec2D.toVec2D(next).toJson())
+                        .put("sunkPos", new Vec(abs.getX(), abs.getY(), terrain.heightAt(x, y)).toJson()));
+                stats.count("ship.crashed");
+                launched = false;
+                activeShips.decrementAndGet();
+                return;
+            }
+            sector = next;
+            send(new JSONObject()
+                    .put("cmd", "move2d")
+                    .put("sector", PackedVec2D.toVec2D(sector).toJson())
+                    .put("dir", ShipKinematics.dirVec(dir).toJson())
+                    .put("abspos", absPos(sector).toJson()));
+        }
+
+        private void scan() {
+            if (!checkLaunched()) {
+                return;
+            }
+            int x = PackedVec2D.x(sector);
+            int y = PackedVec2D.y(sector);
+            double stddev = 0.5 + terrain.wrecksAt(x, y) * 4.0 + random.nextDouble();
+            int depth = (int) Math.round(-terrain.heightAt(x, y) + random.nextGaussian() * stddev);
+            send(new JSONObject()
+                    .put("cmd", "scanned")
+                    .put("id", id)
+                    .put("depth", Math.max(0, depth))
+                    .put("stddev", stddev));
+        }
+
+        private void radar() {
+            if (!checkLaunched()) {
+                return;
+            }
+            JSONArray echos = new JSONArray();
+            SectorNeighbourhood.forEachNeighbour(PackedVec2D.x(sector), PackedVec2D.y(sector), (x, y) -> {
+                echos.put(new JSONObject()
+                        .put("sector", new Vec2D(x, y).toJson())
+                        .put("height", terrain.heightAt(x, y))
+                        .put("ground", terrain.groundAt(x, y).name()));
+                return true;
+            });
+            send(new JSONObject().put("cmd", "radarresponse").put("echos", echos));
+        }
+
+        private boolean checkLaunched() {
+            if (!launched) {
+                sendMessage("error", "Schiff ist nicht gestartet");
+            }
+            return launched;
+        }
+
+        private void sendMessage(String type, String text) {
+            send(new JSONObject().put("cmd", "message").put("type", type).put("text", text));
+        }
+
+        private void send(JSONObject msg) {
+            out.send(msg.toString());
+        }
+    }
+
+    // Mitte des Sektors in absoluten Koordinaten
+    private static Vec2D absPos(long sector) {
+        return new Vec2D(PackedVec2D.x(sector) * SimTerrain.SECTOR_SIZE + SimTerrain.SECTOR_SIZE / 2,
+                PackedVec2D.y(sector) * SimTerrain.SECTOR_SIZE + SimTerrain.SECTOR_SIZE / 2);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, E fallback) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return fallback;
+        }
+    }
+
+    // -name=wert
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("-") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                opts.put(arg.substring(1, eq).toLowerCase(), arg.substring(eq + 1));
+            }
+        }
+        return opts;
+    }
+}
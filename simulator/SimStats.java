@@ -0,0 +1,66 @@
+package simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zähler und Antwortzeiten des Simulators.
+ *
+ * Zähler werden über einen Namen angesprochen (z.B. "ship.navigate", "sub.measure").
+ * {@link #report(long)} liefert eine Zeile mit Raten pro Sekunde seit dem letzten
+ * Aufruf und der mittleren Antwortzeit je Befehl.
+ */
+public class SimStats {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder[]> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastCounts = new ConcurrentHashMap<>();
+
+    public void count(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Merkt sich eine Antwortzeit (Nanosekunden) für den Befehl name.
+     */
+    public void recordLatency(String name, long nanos) {
+        LongAdder[] v = latencies.computeIfAbsent(name, k -> new LongAdder[] { new LongAdder(), new LongAdder() });
+        v[0].increment();
+        v[1].add(nanos);
+    }
+
+    public long get(String name) {
+        LongAdder a = counters.get(name);
+        return a != null ? a.sum() : 0;
+    }
+
+    /**
+     * @param intervalMs Abstand zum letzten Aufruf, für die Raten
+     * @return Statuszeile, z.B. "ship.navigate=120/s rtt(ship.navigate)=21.3ms ..."
+     */
+    public synchronized String report(long intervalMs) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            long total = e.getValue().sum();
+            long delta = total - lastCounts.getOrDefault(e.getKey(), 0L);
+            lastCounts.put(e.getKey(), total);
+            sb.append(e.getKey()).append('=').append(total);
+            if (intervalMs > 0) {
+                sb.append(String.format(" (%.1f/s)", delta * 1000.0 / intervalMs));
+            }
+            sb.append("  ");
+        }
+        for (Map.Entry<String, LongAdder[]> e : new TreeMap<>(latencies).entrySet()) {
+            long n = e.getValue()[0].sumThenReset();
+            long sum = e.getValue()[1].sumThenReset();
+            if (n > 0) {
+                sb.append(String.format("rtt(%s)=%.2fms  ", e.getKey(),
+                        sum / (double) n / TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        }
+        return sb.toString().trim();
+    }
+}
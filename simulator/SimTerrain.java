@@ -0,0 +1,191 @@
+package simulator;
+
+import ocean.Ground;
+import ocean.Vec;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetisches Gelände für den {@link OceanSimulator}.
+ *
+ * Das Gitter hat width x height Sektoren zu je {@link #SECTOR_SIZE} Einheiten.
+ * Die Höhen entstehen aus geglättetem Zufallsrauschen und sind für denselben
+ * Seed immer gleich. Höhe > 0 ist Land (an den Polen Eis), Wasser hat negative
+ * Höhe (= Tiefe). Einzelne Küstensektoren werden zu Häfen.
+ *
+ * Optional werden die Wracks aus meer_objects.data (hex-codiertes JSON mit
+ * "sunklist") geladen; sie erhöhen die Streuung beim Scan ihres Sektors.
+ */
+public class SimTerrain {
+
+    public static final int SECTOR_SIZE = 100;
+
+    private final int width;
+    private final int height;
+    private final int[] heights;
+    private final Ground[] grounds;
+    private final int[] wrecks;
+
+    public SimTerrain(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.heights = new int[width * height];
+        this.grounds = new Ground[width * height];
+        this.wrecks = new int[width * height];
+        generate(new Random(seed));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public Ground groundAt(int x, int y) {
+        return contains(x, y) ? grounds[y * width + x] : Ground.None;
+    }
+
+    public int heightAt(int x, int y) {
+        return contains(x, y) ? heights[y * width + x] : 0;
+    }
+
+    public int wrecksAt(int x, int y) {
+        return contains(x, y) ? wrecks[y * width + x] : 0;
+    }
+
+    /**
+     * Befahrbar für Schiffe: Wasser und Häfen innerhalb des Gitters.
+     */
+    public boolean isNavigable(int x, int y) {
+        Ground g = groundAt(x, y);
+        return g == Ground.Water || g == Ground.Harbour;
+    }
+
+    /**
+     * Liefert einen zufälligen befahrbaren Sektor (deterministisch für denselben Random).
+     */
+    public Vec2D randomWaterSector(Random random) {
+        for (int i = 0; i < 10_000; i++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            if (groundAt(x, y) == Ground.Water) {
+                return new Vec2D(x, y);
+            }
+        }
+        return new Vec2D(width / 2, height / 2);
+    }
+
+    /**
+     * Lädt Wracks aus einer meer_objects.data-Datei (hex-codiertes JSON).
+     *
+     * @return Anzahl der geladenen Objekte
+     */
+    public int loadObjects(Path file) throws IOException {
+        String hex = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        String json = new String(HexFormat.of().parseHex(hex), StandardCharsets.UTF_8);
+        JSONArray sunkList = new JSONObject(json).optJSONArray("sunklist");
+        int count = 0;
+        if (sunkList == null) {
+            return 0;
+        }
+        for (int i = 0; i < sunkList.length(); i++) {
+            JSONArray objects = sunkList.getJSONObject(i).optJSONArray("objects");
+            if (objects == null) {
+                continue;
+            }
+            for (int j = 0; j < objects.length(); j++) {
+                JSONObject obj = objects.getJSONObject(j);
+                JSONObject sectorJson = obj.optJSONObject("sector");
+                Vec2D sector = sectorJson != null ? Vec2D.fromJson(sectorJson) : null;
+                if (sector == null) {
+                    JSONObject posJson = obj.optJSONObject("pos");
+                    Vec pos = posJson != null ? Vec.fromJson(posJson) : null;
+                    sector = pos != null ? new Vec2D(pos.getX() / SECTOR_SIZE, pos.getY() / SECTOR_SIZE) : null;
+                }
+                if (sector != null && contains(sector.getX(), sector.getY())) {
+                    wrecks[sector.getY() * width + sector.getX()]++;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------
+    // Generierung
+    // ------------------------------------------------------------
+
+    private void generate(Random random) {
+        // grobes Rauschen auf einem 8er-Raster, bilinear interpoliert
+        int step = 8;
+        int gw = width / step + 2;
+        int gh = height / step + 2;
+        double[] grid = new double[gw * gh];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = random.nextDouble();
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gx = x / step;
+                int gy = y / step;
+                double fx = (x % step) / (double) step;
+                double fy = (y % step) / (double) step;
+                double top = lerp(grid[gy * gw + gx], grid[gy * gw + gx + 1], fx);
+                double bottom = lerp(grid[(gy + 1) * gw + gx], grid[(gy + 1) * gw + gx + 1], fx);
+                double v = lerp(top, bottom, fy) + (random.nextDouble() - 0.5) * 0.1;
+                // ca. 25 % Land: Werte über 0.7 werden Land, sonst Tiefe bis -300 m
+                int h = v > 0.7 ? (int) ((v - 0.7) * 300) + 1 : -(int) ((0.7 - v) * 400) - 10;
+                heights[y * width + x] = h;
+                boolean polar = y < 3 || y >= height - 3;
+                grounds[y * width + x] = h > 0 ? (polar ? Ground.Ice : Ground.Land) : Ground.Water;
+            }
+        }
+        // Häfen: einzelne Wasser-Sektoren direkt an der Küste
+        List<Integer> coast = new ArrayList<>();
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (grounds[y * width + x] == Ground.Water && hasLandNeighbour(x, y)) {
+                    coast.add(y * width + x);
+                }
+            }
+        }
+        int harbours = Math.min(coast.size(), Math.max(1, width * height / 500));
+        for (int i = 0; i < harbours; i++) {
+            int idx = coast.remove(random.nextInt(coast.size()));
+            grounds[idx] = Ground.Harbour;
+            heights[idx] = -5;
+        }
+    }
+
+    private boolean hasLandNeighbour(int x, int y) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                Ground g = grounds[(y + dy) * width + x + dx];
+                if (g == Ground.Land) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+}
@@ -0,0 +1,359 @@
+package simulator;
+
+import ocean.Vec;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lastgenerator für den Submarine-Server einer ShipApp (Standard-Port 6000).
+ *
+ * Öffnet N Verbindungen, die sich wie Submarines verhalten, und sendet je Verbindung
+ * ready-, measure-, picture-, crash- und arise-Nachrichten mit einstellbaren Raten und
+ * Nutzlastgrößen. Bilder sind echte PNGs (Rauschen), hex-codiert wie bei submarine.jar.
+ *
+ * Messung der Ende-zu-Ende-Latenz: Jede ready-Nachricht trägt im Feld distance eine
+ * fortlaufende Nummer. Ein Poller fragt GET /api/state ab; sobald der Server für ein
+ * Submarine eine Nummer meldet, sind alle ready-Nachrichten bis zu dieser Nummer
+ * verarbeitet (Latenz = Zeitpunkt der Beobachtung - Sendezeitpunkt, Auflösung = Poll-Intervall).
+ * Als Warteschlange des Servers gilt die Zahl gesendeter, aber noch nicht als
+ * verarbeitet beobachteter Nachrichten über alle Verbindungen.
+ *
+ * Aufruf (alle Optionen optional):
+ *   java simulator.SubmarineSwarm -host=localhost -port=6000 -api=http://localhost:8080/api
+ *        -subs=100 -measurerate=5 -points=10 -picturerate=0.2 -picture=160x120
+ *        -readyrate=1 -crashrate=0 -ariserate=0 -ramp=0 -poll=50 -report=5 -duration=60 -seed=42
+ * Raten sind Nachrichten pro Sekunde und Verbindung.
+ */
+public class SubmarineSwarm {
+
+    private static final String[] TYPES = { "ready", "measure", "picture", "crash", "arise" };
+
+    private final String host;
+    private final int port;
+    private final double[] rates;
+    private final int points;
+    private final int pictureWidth;
+    private final int pictureHeight;
+    private final long seed;
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> sent = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder writeBlockedNanos = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final LatencyHistogram intervalLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    private volatile boolean running = true;
+
+    public SubmarineSwarm(String host, int port, double[] rates, int points, int pictureWidth, int pictureHeight, long seed) {
+        this.host = host;
+        this.port = port;
+        this.rates = rates;
+        this.points = points;
+        this.pictureWidth = pictureWidth;
+        this.pictureHeight = pictureHeight;
+        this.seed = seed;
+        for (String type : TYPES) {
+            sent.put(type, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = OceanSimulator.parseArgs(args);
+        String[] picture = opts.getOrDefault("picture", "160x120").split("x");
+        double[] rates = {
+                Double.parseDouble(opts.getOrDefault("readyrate", "1")),
+                Double.parseDouble(opts.getOrDefault("measurerate", "5")),
+                Double.parseDouble(opts.getOrDefault("picturerate", "0.2")),
+                Double.parseDouble(opts.getOrDefault("crashrate", "0")),
+                Double.parseDouble(opts.getOrDefault("ariserate", "0")) };
+        SubmarineSwarm swarm = new SubmarineSwarm(
+                opts.getOrDefault("host", "localhost"),
+                Integer.parseInt(opts.getOrDefault("port", "6000")),
+                rates,
+                Integer.parseInt(opts.getOrDefault("points", "10")),
+                Integer.parseInt(picture[0]), Integer.parseInt(picture[1]),
+                Long.parseLong(opts.getOrDefault("seed", "42")));
+
+        int subs = Integer.parseInt(opts.getOrDefault("subs", "100"));
+        long rampMs = TimeUnit.SECONDS.toMillis(Long.parseLong(opts.getOrDefault("ramp", "0")));
+        long pollMs = Long.parseLong(opts.getOrDefault("poll", "50"));
+        long reportMs = TimeUnit.SECONDS.toMillis(Long.parseLong(opts.getOrDefault("report", "5")));
+        long durationMs = TimeUnit.SECONDS.toMillis(Long.parseLong(opts.getOrDefault("duration", "60")));
+        String api = opts.getOrDefault("api", "http://localhost:8080/api");
+
+        System.out.printf("SubmarineSwarm: %d Verbindungen -> %s:%d, Raten/s ready=%.2f measure=%.2f picture=%.2f crash=%.2f arise=%.2f, "
+                        + "%d Punkte/measure, Bild %sx%s%n", subs, swarm.host, swarm.port,
+                rates[0], rates[1], rates[2], rates[3], rates[4], swarm.points, picture[0], picture[1]);
+
+        Thread poller = new Thread(() -> swarm.pollLoop(api, pollMs), "SubmarineSwarm-Poll");
+        poller.setDaemon(true);
+        poller.start();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < subs; i++) {
+            int index = i;
+            Thread t = new Thread(null, () -> swarm.runConnection(index), "SubmarineSwarm-" + i, 256 * 1024);
+            t.setDaemon(true);
+            t.start();
+            if (rampMs > 0) {
+                Thread.sleep(rampMs / subs);
+            }
+        }
+
+        long lastReport = System.currentTimeMillis();
+        long lastLag = 0;
+        long[] lastSent = new long[TYPES.length];
+        long lastBytes = 0;
+        while (System.currentTimeMillis() - start < durationMs) {
+            Thread.sleep(Math.min(reportMs, Math.max(1, durationMs - (System.currentTimeMillis() - start))));
+            long now = System.currentTimeMillis();
+            lastLag = swarm.report(now - lastReport, lastSent, lastBytes, lastLag);
+            lastBytes = swarm.bytesSent.sum();
+            lastReport = now;
+        }
+        swarm.running = false;
+        swarm.summary(System.currentTimeMillis() - start);
+        System.exit(0);
+    }
+
+    // ------------------------------------------------------------
+    // Verbindungen
+    // ------------------------------------------------------------
+
+    private static final class Connection {
+        final String id;
+        // gesendete ready-Nummer -> {Sendezeit (ns), Anzahl bis dahin gesendeter Nachrichten}
+        final ConcurrentNavigableMap<Integer, long[]> probes = new ConcurrentSkipListMap<>();
+        volatile long messages;
+        volatile long observedMessages;
+        volatile int observedSeq = -1;
+
+        Connection(String id) {
+            this.id = id;
+        }
+    }
+
+    private void runConnection(int index) {
+        Random random = new Random(seed ^ index);
+        Connection conn = new Connection("swarm-" + index);
+        String pictureHex = VirtualSubmarine.createPicture(random, pictureWidth, pictureHeight);
+        Vec pos = new Vec(random.nextInt(10_000), random.nextInt(10_000), -random.nextInt(300));
+        try (Socket socket = new Socket(host, port);
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            connected.incrementAndGet();
+            connections.put(conn.id, conn);
+            // ready zuerst, damit der Server die Verbindung einem Submarine zuordnet
+            int seq = 0;
+            send(out, conn, ready(conn, seq++, pos, random), "ready");
+            long[] next = new long[TYPES.length];
+            long now = System.nanoTime();
+            for (int t = 0; t < TYPES.length; t++) {
+                // erste Nachricht je Typ zufällig versetzt
+                next[t] = rates[t] > 0 ? now + (long) (random.nextDouble() * intervalNanos(rates[t])) : Long.MAX_VALUE;
+            }
+            while (running) {
+                int type = 0;
+                for (int t = 1; t < TYPES.length; t++) {
+                    if (next[t] < next[type]) {
+                        type = t;
+                    }
+                }
+                if (next[type] == Long.MAX_VALUE) {
+                    Thread.sleep(100);
+                    continue;
+                }
+                long wait = next[type] - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                JSONObject msg = switch (type) {
+                    case 0 -> ready(conn, seq++, pos, random);
+                    case 1 -> measure(pos, random);
+                    case 2 -> new JSONObject().put("cmd", "picture").put("picture", pictureHex);
+                    case 3 -> new JSONObject().put("cmd", "crash").put("message", "Swarm-Crash " + conn.id)
+                            .put("sector", new Vec2D(pos.getX() / SimTerrain.SECTOR_SIZE, pos.getY() / SimTerrain.SECTOR_SIZE).toJson())
+                            .put("sunkPos", pos.toJson());
+                    default -> new JSONObject().put("cmd", "arise").put("arisePos", new Vec(pos.getX(), pos.getY(), 0).toJson());
+                };
+                send(out, conn, msg, TYPES[type]);
+                next[type] += intervalNanos(rates[type]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (running) {
+                errors.increment();
+                System.err.printf("SubmarineSwarm: Verbindung %s beendet: %s%n", conn.id, e.getMessage());
+            }
+        } finally {
+            if (connections.remove(conn.id) != null) {
+                connected.decrementAndGet();
+            }
+        }
+    }
+
+    private JSONObject ready(Connection conn, int seq, Vec pos, Random random) {
+        conn.probes.put(seq, new long[] { System.nanoTime(), conn.messages + 1 });
+        return new JSONObject()
+                .put("cmd", "ready")
+                .put("id", conn.id)
+                .put("pos", pos.toJson())
+                .put("dir", new Vec(1, 0, 0).toJson())
+                .put("depth", -pos.getZ() + random.nextInt(10))
+                .put("distance", seq);
+    }
+
+    private JSONObject measure(Vec pos, Random random) {
+        JSONArray vecs = new JSONArray();
+        for (int i = 0; i < points; i++) {
+            vecs.put(new Vec(pos.getX() + random.nextInt(200) - 100, pos.getY() + random.nextInt(200) - 100,
+                    pos.getZ() - random.nextInt(50)).toJson());
+        }
+        return new JSONObject().put("cmd", "measure").put("vecs", vecs);
+    }
+
+    private void send(Writer out, Connection conn, JSONObject msg, String type) throws Exception {
+        String line = msg.toString();
+        long start = System.nanoTime();
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        // blockiert write, ist der Empfangspuffer des Servers voll
+        writeBlockedNanos.add(System.nanoTime() - start);
+        conn.messages++;
+        sent.get(type).increment();
+        bytesSent.add(line.length() + 1);
+    }
+
+    private static long intervalNanos(double rate) {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    // ------------------------------------------------------------
+    // Beobachtung über /api/state
+    // ------------------------------------------------------------
+
+    private void pollLoop(String api, long pollMs) {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(api + "/state")).timeout(Duration.ofSeconds(5)).GET().build();
+        boolean warned = false;
+        while (running) {
+            try {
+                HttpResponse<String> resp = client.send(request, HttpResponse.BodyHandlers.ofString());
+                long now = System.nanoTime();
+                JSONArray subs = new JSONObject(resp.body()).optJSONArray("submarines");
+                for (int i = 0; subs != null && i < subs.length(); i++) {
+                    JSONObject sub = subs.getJSONObject(i);
+                    Connection conn = connections.get(sub.optString("id"));
+                    if (conn != null) {
+                        observe(conn, sub.optInt("distance", -1), now);
+                    }
+                }
+            } catch (Exception e) {
+                if (!warned) {
+                    System.err.println("SubmarineSwarm: " + api + "/state nicht erreichbar, keine Latenzmessung: " + e.getMessage());
+                    warned = true;
+                }
+            }
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void observe(Connection conn, int seq, long now) {
+        if (seq <= conn.observedSeq) {
+            return;
+        }
+        ConcurrentNavigableMap<Integer, long[]> done = conn.probes.headMap(seq, true);
+        for (long[] probe : done.values()) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(now - probe[0]);
+            intervalLatency.record(micros);
+            totalLatency.record(micros);
+        }
+        long[] last = conn.probes.get(seq);
+        if (last != null) {
+            conn.observedMessages = last[1];
+        }
+        conn.observedSeq = seq;
+        done.clear();
+    }
+
+    // ------------------------------------------------------------
+    // Ausgabe
+    // ------------------------------------------------------------
+
+    // liefert die aktuelle Warteschlangenlänge (Nachrichten)
+    private long report(long intervalMs, long[] lastSent, long lastBytes, long lastLag) {
+        long total = 0;
+        StringBuilder types = new StringBuilder();
+        for (int t = 0; t < TYPES.length; t++) {
+            long n = sent.get(TYPES[t]).sum();
+            long delta = n - lastSent[t];
+            lastSent[t] = n;
+            total += delta;
+            if (n > 0) {
+                types.append(String.format(" %s=%.1f", TYPES[t], delta * 1000.0 / intervalMs));
+            }
+        }
+        long lag = queuedMessages();
+        System.out.printf("[swarm] verbunden=%d  msgs/s=%.1f (%s )  MB/s=%.2f  latenz p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms (n=%d)"
+                        + "  warteschlange=%d (%+.1f/s)  write-blockiert=%.0fms%n",
+                connected.get(), total * 1000.0 / intervalMs, types,
+                (bytesSent.sum() - lastBytes) / 1024.0 / 1024.0 * 1000.0 / intervalMs,
+                intervalLatency.percentile(50) / 1000.0, intervalLatency.percentile(90) / 1000.0,
+                intervalLatency.percentile(99) / 1000.0, intervalLatency.max() / 1000.0, intervalLatency.count(),
+                lag, (lag - lastLag) * 1000.0 / intervalMs,
+                TimeUnit.NANOSECONDS.toMillis(writeBlockedNanos.sumThenReset()) / 1.0);
+        intervalLatency.reset();
+        return lag;
+    }
+
+    private long queuedMessages() {
+        long lag = 0;
+        for (Connection conn : connections.values()) {
+            lag += Math.max(0, conn.messages - conn.observedMessages);
+        }
+        return lag;
+    }
+
+    private void summary(long durationMs) {
+        long total = 0;
+        for (String type : TYPES) {
+            total += sent.get(type).sum();
+        }
+        System.out.printf("[swarm] Ergebnis nach %.1fs: %d Nachrichten (%.1f/s), %.1f MB, Fehler=%d%n",
+                durationMs / 1000.0, total, total * 1000.0 / durationMs, bytesSent.sum() / 1024.0 / 1024.0, errors.sum());
+        System.out.printf("[swarm] Ingest-Latenz: n=%d mittel=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms%n",
+                totalLatency.count(), totalLatency.mean() / 1000.0, totalLatency.percentile(50) / 1000.0,
+                totalLatency.percentile(90) / 1000.0, totalLatency.percentile(99) / 1000.0,
+                totalLatency.percentile(99.9) / 1000.0, totalLatency.max() / 1000.0);
+        System.out.printf("[swarm] Warteschlange am Ende: %d Nachrichten%n", queuedMessages());
+    }
+}
@@ -0,0 +1,109 @@
+package simulator;
+
+import ocean.Course;
+import ocean.Rudder;
+import ocean.ShipKinematics;
+import ocean.Vec2D;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Virtuelles Schiff: verbindet sich mit einem Ship-Port, startet in einem zufälligen
+ * Wasser-Sektor und schickt mit der eingestellten Rate navigate-, scan- und
+ * radar-Befehle. Nach einem Crash wird neu gestartet.
+ *
+ * Jeder Befehl wartet auf seine Antwort; die Antwortzeit landet in {@link SimStats}.
+ */
+public class VirtualShip implements Runnable {
+
+    private final int index;
+    private final String host;
+    private final int port;
+    private final SimTerrain terrain;
+    private final Random random;
+    private final long intervalMs;
+    private final SimStats stats;
+    private final BooleanSupplier running;
+
+    public VirtualShip(int index, String host, int port, SimTerrain terrain, long seed, double rate,
+                       SimStats stats, BooleanSupplier running) {
+        this.index = index;
+        this.host = host;
+        this.port = port;
+        this.terrain = terrain;
+        this.random = new Random(seed);
+        this.intervalMs = rate > 0 ? (long) (1000 / rate) : 1000;
+        this.stats = stats;
+        this.running = running;
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            // Start gestaffelt, damit nicht alle Schiffe im selben Takt senden
+            Thread.sleep(random.nextInt((int) Math.max(1, intervalMs)));
+            boolean launched = false;
+            while (running.getAsBoolean()) {
+                JSONObject cmd;
+                String name;
+                if (!launched) {
+                    Vec2D sector = terrain.randomWaterSector(random);
+                    cmd = new JSONObject()
+                            .put("cmd", "launch")
+                            .put("name", "virtual-" + index)
+                            .put("typ", "ship")
+                            .put("sector", sector.toJson())
+                            .put("dir", ShipKinematics.dirVec(random.nextInt(ShipKinematics.DIRECTIONS)).toJson());
+                    name = "launch";
+                } else {
+                    int action = random.nextInt(10);
+                    if (action < 6) {
+                        // meist geradeaus, selten rueckwaerts
+                        Rudder rudder = Rudder.values()[random.nextInt(4) == 0 ? random.nextInt(3) : Rudder.Center.ordinal()];
+                        Course course = random.nextInt(20) == 0 ? Course.Backward : Course.Forward;
+                        cmd = new JSONObject().put("cmd", "navigate").put("rudder", rudder.name()).put("course", course.name());
+                        name = "navigate";
+                    } else if (action < 8) {
+                        cmd = new JSONObject().put("cmd", "scan");
+                        name = "scan";
+                    } else {
+                        cmd = new JSONObject().put("cmd", "radar");
+                        name = "radar";
+                    }
+                }
+                long start = System.nanoTime();
+                out.println(cmd);
+                String line = in.readLine();
+                if (line == null) {
+                    break;
+                }
+                stats.recordLatency(name, System.nanoTime() - start);
+                String reply = new JSONObject(line).optString("cmd", "");
+                switch (reply) {
+                    case "launched" -> launched = true;
+                    case "crash" -> launched = false;
+                    case "message" -> stats.count("virtualship.message");
+                    default -> {
+                    }
+                }
+                Thread.sleep(intervalMs);
+            }
+            out.println(new JSONObject().put("cmd", "exit"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.count("virtualship.error");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package simulator;
+
+import ocean.Ground;
+import ocean.OceanPicture;
+import ocean.Route;
+import ocean.Vec;
+import ocean.Vec2D;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Virtuelles Submarine: verbindet sich mit dem Submarine-Server einer ShipApp
+ * (Port 6000) und verhält sich wie submarine.jar aus Sicht des Schiffs.
+ *
+ * Ablauf: ready, danach mit der eingestellten Rate measure (Messpunkte des
+ * Meeresbodens um die aktuelle Position) und jedes n-te Mal ein picture (echtes PNG,
+ * hex-codiert). pilot-Befehle ändern Richtung bzw. Tiefe und werden mit ready
+ * bestätigt. Fährt das Submarine auf Land, sendet es crash und beendet sich;
+ * bei Route.UP an der Oberfläche sendet es arise.
+ */
+public class VirtualSubmarine implements Runnable {
+
+    private static final int POINTS_PER_MEASURE = 10;
+    private static final int PICTURE_EVERY = 20;
+    private static final int STEP = 10;
+
+    private final String host;
+    private final int port;
+    private final SimTerrain terrain;
+    private final Random random;
+    private final long intervalMs;
+    private final SimStats stats;
+    private final BooleanSupplier running;
+
+    private final String id;
+    private Vec pos;
+    private Vec dir;
+    private int distance;
+
+    public VirtualSubmarine(int index, String host, int port, SimTerrain terrain, long seed, double rate,
+                            SimStats stats, BooleanSupplier running) {
+        this.host = host;
+        this.port = port;
+        this.terrain = terrain;
+        this.random = new Random(seed);
+        this.intervalMs = rate > 0 ? (long) (1000 / rate) : 1000;
+        this.stats = stats;
+        this.running = running;
+        this.id = "vsub-" + index;
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            Vec2D sector = terrain.randomWaterSector(random);
+            pos = new Vec(sector.getX() * SimTerrain.SECTOR_SIZE + random.nextInt(SimTerrain.SECTOR_SIZE),
+                    sector.getY() * SimTerrain.SECTOR_SIZE + random.nextInt(SimTerrain.SECTOR_SIZE), -10);
+            dir = new Vec(1, 0, 0);
+            String picture = createPicture(random);
+            Thread.sleep(random.nextInt((int) Math.max(1, intervalMs)));
+
+            send(out, ready(), "ready");
+            int tick = 0;
+            while (running.getAsBoolean()) {
+                while (in.ready()) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        return;
+                    }
+                    if (!handle(new JSONObject(line), out)) {
+                        return;
+                    }
+                }
+                if (!move(out)) {
+                    return;
+                }
+                send(out, measure(), "measure");
+                if (++tick % PICTURE_EVERY == 0) {
+                    send(out, new JSONObject().put("cmd", "picture").put("picture", picture), "picture");
+                }
+                Thread.sleep(intervalMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.count("virtualsub.error");
+        }
+    }
+
+    // false = Submarine ist beendet
+    private boolean handle(JSONObject msg, PrintWriter out) {
+        if (!"pilot".equals(msg.optString("cmd"))) {
+            return true;
+        }
+        stats.count("virtualsub.pilot");
+        Route route;
+        try {
+            route = Route.valueOf(msg.optString("route", Route.None.name()));
+        } catch (IllegalArgumentException e) {
+            route = Route.None;
+        }
+        switch (route) {
+            case N -> dir = new Vec(0, 1, 0);
+            case NE -> dir = new Vec(1, 1, 0);
+            case E -> dir = new Vec(1, 0, 0);
+            case SE -> dir = new Vec(1, -1, 0);
+            case S -> dir = new Vec(0, -1, 0);
+            case SW -> dir = new Vec(-1, -1, 0);
+            case W -> dir = new Vec(-1, 0, 0);
+            case NW -> dir = new Vec(-1, 1, 0);
+            case C -> dir = new Vec(0, 0, 0);
+            case DOWN -> pos = new Vec(pos.getX(), pos.getY(), pos.getZ() - STEP);
+            case UP -> {
+                pos = new Vec(pos.getX(), pos.getY(), Math.min(0, pos.getZ() + STEP));
+                if (pos.getZ() == 0) {
+                    send(out, new JSONObject().put("cmd", "arise").put("arisePos", pos.toJson()), "arise");
+                    return false;
+                }
+            }
+            default -> {
+            }
+        }
+        send(out, ready(), "ready");
+        return true;
+    }
+
+    // bewegt das Submarine einen Schritt; false nach einem Crash
+    private boolean move(PrintWriter out) {
+        Vec next = new Vec(pos).add(new Vec(dir).mul(STEP));
+        int sx = Math.floorDiv(next.getX(), SimTerrain.SECTOR_SIZE);
+        int sy = Math.floorDiv(next.getY(), SimTerrain.SECTOR_SIZE);
+        Ground ground = terrain.groundAt(sx, sy);
+        if (ground == Ground.Land || ground == Ground.Ice || ground == Ground.None
+                || next.getZ() < terrain.heightAt(sx, sy)) {
+            send(out, new JSONObject()
+                    .put("cmd", "crash")
+                    .put("message", "Submarine " + id + " auf Grund gelaufen (" + ground + ")")
+                    .put("sector", new Vec2D(sx, sy).toJson())
+                    .put("sunkPos", next.toJson()), "crash");
+            return false;
+        }
+        distance += Math.abs(next.getX() - pos.getX()) + Math.abs(next.getY() - pos.getY());
+        pos = next;
+        return true;
+    }
+
+    private JSONObject ready() {
+        int sx = Math.floorDiv(pos.getX(), SimTerrain.SECTOR_SIZE);
+        int sy = Math.floorDiv(pos.getY(), SimTerrain.SECTOR_SIZE);
+        return new JSONObject()
+                .put("cmd", "ready")
+                .put("id", id)
+                .put("pos", pos.toJson())
+                .put("dir", dir.toJson())
+                .put("depth", -terrain.heightAt(sx, sy))
+                .put("distance", distance);
+    }
+
+    // Messpunkte des Meeresbodens in der Umgebung der aktuellen Position
+    private JSONObject measure() {
+        JSONArray vecs = new JSONArray();
+        for (int i = 0; i < POINTS_PER_MEASURE; i++) {
+            int x = pos.getX() + random.nextInt(2 * SimTerrain.SECTOR_SIZE) - SimTerrain.SECTOR_SIZE;
+            int y = pos.getY() + random.nextInt(2 * SimTerrain.SECTOR_SIZE) - SimTerrain.SECTOR_SIZE;
+            int z = terrain.heightAt(Math.floorDiv(x, SimTerrain.SECTOR_SIZE), Math.floorDiv(y, SimTerrain.SECTOR_SIZE));
+            vecs.put(new Vec(x, y, z).toJson());
+        }
+        return new JSONObject().put("cmd", "measure").put("vecs", vecs);
+    }
+
+    private void send(PrintWriter out, JSONObject msg, String name) {
+        out.println(msg);
+        stats.count("sub." + name);
+    }
+
+    /**
+     * Erzeugt ein PNG mit Zufallsrauschen und liefert es hex-codiert wie submarine.jar.
+     */
+    static String createPicture(Random random, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int blue = 80 + random.nextInt(120);
+                img.setRGB(x, y, (random.nextInt(40) << 16) | (random.nextInt(80) << 8) | blue);
+            }
+        }
+        return OceanPicture.convertImage2HexString(img);
+    }
+
+    private static String createPicture(Random random) {
+        return createPicture(random, 64, 48);
+    }
+}